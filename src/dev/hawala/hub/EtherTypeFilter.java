@@ -0,0 +1,99 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.hub;
+
+/**
+ * Set of ethertypes a client machine subscribed to, allowing the hub to forward
+ * only the packets the client is interested in (e.g. only XNS packets to a Dodo
+ * server running on a network also used for Pup or IP by emulators).
+ * <p>
+ * A new line receives all packets until the client subscribes to a set of ethertypes
+ * with a {@code SUBSCRIBE} control frame (see {@link HubControl}).
+ * </p>
+ * 
+ * @author Dodo contributors
+ */
+final class EtherTypeFilter {
+	
+	// bitmap of the subscribed ethertypes (null = all packets)
+	private volatile long[] accepted = null;
+	
+	/**
+	 * Get the ethertype of a packet.
+	 * 
+	 * @param p the packet.
+	 * @return the ethertype or {@code -1} if the packet is too short.
+	 */
+	static int getEtherType(NetHub.Packet p) {
+		if (p.packetLen < 14) { return -1; }
+		return ((p.data[14] & 0xFF) << 8) | (p.data[15] & 0xFF); // 2 length bytes + 2x 6 address bytes
+	}
+	
+	/**
+	 * Set the ethertypes to be forwarded to the line.
+	 * 
+	 * @param etherTypes the subscribed ethertypes, an empty array
+	 *   subscribes to all packets.
+	 */
+	void subscribe(int[] etherTypes) {
+		if (etherTypes.length == 0) {
+			this.accepted = null;
+			return;
+		}
+		long[] bits = new long[1024];
+		for (int t : etherTypes) {
+			bits[(t & 0xFFFF) >>> 6] |= 1L << t;
+		}
+		this.accepted = bits;
+	}
+	
+	/**
+	 * Check if packets with the ethertype are to be forwarded to the line.
+	 * 
+	 * @param etherType the ethertype of the packet (see {@link #getEtherType(NetHub.Packet)}).
+	 * @return {@code true} if the packet is to be forwarded.
+	 */
+	boolean accepts(int etherType) {
+		long[] bits = this.accepted;
+		if (bits == null || etherType < 0) { return true; }
+		return (bits[etherType >>> 6] & (1L << etherType)) != 0;
+	}
+	
+	@Override
+	public String toString() {
+		long[] bits = this.accepted;
+		if (bits == null) { return "all"; }
+		StringBuilder sb = new StringBuilder();
+		for (int t = 0; t < 65536; t++) {
+			if ((bits[t >>> 6] & (1L << t)) != 0) {
+				if (sb.length() > 0) { sb.append(","); }
+				sb.append(String.format("0x%04X", t));
+			}
+		}
+		return sb.toString();
+	}
+}
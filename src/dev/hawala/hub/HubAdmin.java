@@ -0,0 +1,112 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.hub;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Admin port of the NetHub, accepting local TCP connections for querying
+ * the traffic statistics and switching the per packet logging.
+ * <p>
+ * A client sends a single command line and gets the response, after which
+ * the connection is closed. Commands are:
+ * </p>
+ * <ul>
+ * <li>{@code stats} (or an empty line): statistics as plain text</li>
+ * <li>{@code json}: statistics as JSON object</li>
+ * <li>{@code log on} resp. {@code log off}: switch per packet logging</li>
+ * </ul>
+ * <p>
+ * For example: {@code echo json | nc localhost 3334}
+ * </p>
+ * 
+ * @author Dodo contributors
+ */
+class HubAdmin implements Runnable {
+	
+	private final ServerSocket serviceSocket;
+	
+	/**
+	 * Start the admin service on the given port on the loopback interface.
+	 * 
+	 * @param port the TCP port for the admin service.
+	 * @throws IOException if listening on the port is not possible.
+	 */
+	static void start(int port) throws IOException {
+		HubAdmin admin = new HubAdmin(new ServerSocket(port, 8, InetAddress.getLoopbackAddress()));
+		Thread thr = new Thread(admin);
+		thr.setDaemon(true);
+		thr.setName("HubAdmin");
+		thr.start();
+	}
+	
+	private HubAdmin(ServerSocket serviceSocket) {
+		this.serviceSocket = serviceSocket;
+	}
+
+	@Override
+	public void run() {
+		while(true) {
+			try (Socket s = this.serviceSocket.accept()) {
+				s.setSoTimeout(5000);
+				BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+				String cmd = in.readLine();
+				String response = this.handle((cmd == null) ? "" : cmd.trim().toLowerCase());
+				OutputStream out = s.getOutputStream();
+				out.write(response.getBytes(StandardCharsets.US_ASCII));
+				out.flush();
+			} catch (IOException e) {
+				NetHub.log("HubAdmin got exception(" + e.getClass().getCanonicalName() + "): " + e.getMessage());
+			}
+		}
+	}
+	
+	private String handle(String cmd) {
+		switch(cmd) {
+		case "":
+		case "stats":
+			return HubStatistics.toText(NetHub.getLines(), NetHub.getLearnedAddressCount(), NetHub.isPacketLogging());
+		case "json":
+			return HubStatistics.toJson(NetHub.getLines(), NetHub.getLearnedAddressCount(), NetHub.isPacketLogging());
+		case "log on":
+			NetHub.setPacketLogging(true);
+			return "packet logging: on\n";
+		case "log off":
+			NetHub.setPacketLogging(false);
+			return "packet logging: off\n";
+		default:
+			return "** invalid command, valid are: stats | json | log on | log off\n";
+		}
+	}
+}
@@ -0,0 +1,248 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.hub;
+
+import java.nio.charset.StandardCharsets;
+
+import dev.hawala.hub.NetHub.Packet;
+import dev.hawala.hub.NetHub.iLine;
+
+/**
+ * Control frames exchanged between the NetHub and the programs connected to it
+ * (other hubs resp. client machines), which are consumed by the hub instead of
+ * being forwarded to other lines.
+ * <p>
+ * A control frame is an ethernet frame with zero destination and source addresses,
+ * the ethertype {@code 0x88B5} (reserved by IEEE for local experimental use) and
+ * the 2 bytes {@code 'N' 'H'}, followed by an operation code byte and the
+ * operation specific payload.
+ * </p>
+ * 
+ * @author Dodo contributors
+ */
+final class HubControl {
+	
+	private HubControl() { }
+	
+	/** ethertype of hub control frames */
+	static final int ETHERTYPE = 0x88B5;
+	
+	private static final int MAGIC = 0x4E48; // 'N' 'H'
+	
+	/** hello from another hub, asking resp. accepting to operate the line as trunk */
+	static final int OP_TRUNK_HELLO = 1;
+	
+	/** ethernet frame forwarded through a trunk */
+	static final int OP_TRUNK_DATA = 2;
+	
+	/** list of MAC addresses reachable through the sending hub */
+	static final int OP_MAC_ANNOUNCE = 3;
+	
+	/** list of MAC addresses no longer reachable through the sending hub */
+	static final int OP_MAC_WITHDRAW = 4;
+	
+	/** list of ethertypes (2 bytes each) to be forwarded to the sending client, empty for all packets */
+	static final int OP_SUBSCRIBE = 5;
+	
+	/**
+	 * request from a client to exchange frames through the ring file with the
+	 * given path (see {@link ShmRings}) resp. reply from the hub with a status
+	 * byte (1 = attached, the last frame sent through TCP; 0 = refused)
+	 */
+	static final int OP_SHM_ATTACH = 6;
+	
+	/** sign of life from a client having nothing to send (for connectionless lines) */
+	static final int OP_KEEPALIVE = 7;
+	
+	/** request from a client to also receive the unicast packets switched between other lines (mirror port) */
+	static final int OP_MONITOR = 8;
+	
+	// positions in Packet.data (starting with the 2 length bytes)
+	private static final int ETHERTYPE_OFFSET = 2 + 12;
+	private static final int MAGIC_OFFSET = ETHERTYPE_OFFSET + 2;
+	private static final int OPCODE_OFFSET = MAGIC_OFFSET + 2;
+	
+	/** position of the operation payload in {@code Packet.data} */
+	static final int PAYLOAD_OFFSET = OPCODE_OFFSET + 1;
+	
+	/** length of the control frame header preceding the payload */
+	static final int HEADER_LENGTH = PAYLOAD_OFFSET - 2;
+	
+	/** maximal payload length of a control frame sent to a client machine */
+	static final int MAX_PAYLOAD_LENGTH = NetHub.PACKET_LENGTH - HEADER_LENGTH;
+	
+	/**
+	 * Check if the packet is a hub control frame.
+	 * 
+	 * @param p the packet to check.
+	 * @return {@code true} if {@code p} is a control frame to be handled
+	 *   by the hub itself.
+	 */
+	static boolean isControl(Packet p) {
+		return p.packetLen >= HEADER_LENGTH
+			&& getWord(p, ETHERTYPE_OFFSET) == ETHERTYPE
+			&& getWord(p, MAGIC_OFFSET) == MAGIC;
+	}
+	
+	/**
+	 * Create a control frame, the payload is to be filled in by the caller
+	 * starting at {@link #PAYLOAD_OFFSET}.
+	 * 
+	 * @param opcode the operation of the control frame.
+	 * @param payloadLength the length of the operation payload.
+	 * @return the new packet with a single reference held by the caller.
+	 */
+	static Packet create(int opcode, int payloadLength) {
+		Packet p = Packet.allocate();
+		for (int i = 2; i < ETHERTYPE_OFFSET; i++) {
+			p.data[i] = 0;
+		}
+		putWord(p, ETHERTYPE_OFFSET, ETHERTYPE);
+		putWord(p, MAGIC_OFFSET, MAGIC);
+		p.data[OPCODE_OFFSET] = (byte)opcode;
+		setLength(p, HEADER_LENGTH + payloadLength);
+		return p;
+	}
+	
+	/**
+	 * Process a control frame received on a line, consuming the reference
+	 * held by the caller.
+	 * 
+	 * @param p the control frame.
+	 * @param line the line where the frame was received.
+	 */
+	static void handle(Packet p, iLine line) {
+		int opcode = p.data[OPCODE_OFFSET] & 0xFF;
+		switch(opcode) {
+		case OP_TRUNK_HELLO:
+			HubTrunks.helloReceived(p, line);
+			break;
+		case OP_TRUNK_DATA:
+			HubTrunks.dataReceived(p, line);
+			break;
+		case OP_MAC_ANNOUNCE:
+			HubTrunks.announceReceived(p, line);
+			break;
+		case OP_MAC_WITHDRAW:
+			HubTrunks.withdrawReceived(p, line);
+			break;
+		case OP_SUBSCRIBE:
+			subscribe(p, line);
+			break;
+		case OP_SHM_ATTACH:
+			attachSharedMemory(p, line);
+			break;
+		case OP_KEEPALIVE:
+			break; // receiving the frame is the sign of life
+		case OP_MONITOR:
+			NetHub.addMonitor(line);
+			break;
+		default:
+			NetHub.log("** ignoring hub control frame with unknown opcode " + opcode);
+		}
+		p.release();
+	}
+	
+	private static void subscribe(Packet p, iLine line) {
+		int[] etherTypes = new int[getPayloadLength(p) / 2];
+		for (int i = 0; i < etherTypes.length; i++) {
+			etherTypes[i] = getWord(p, PAYLOAD_OFFSET + (i * 2));
+		}
+		EtherTypeFilter filter = line.getFilter();
+		String previous = filter.toString();
+		filter.subscribe(etherTypes);
+		if (!previous.equals(filter.toString())) { // (UDP clients repeat their subscription periodically)
+			NetHub.log("Line " + line.getStats().getRemote() + " subscribed to ethertypes: " + filter);
+		}
+	}
+	
+	private static void attachSharedMemory(Packet p, iLine line) {
+		String path = new String(p.data, PAYLOAD_OFFSET, getPayloadLength(p), StandardCharsets.UTF_8);
+		if (!line.attachSharedMemory(path)) {
+			NetHub.log("Line " + line.getStats().getRemote() + " => refused shared memory attach for: " + path);
+			line.enqueueOutPacket(createShmAttachReply(false));
+		}
+	}
+	
+	/**
+	 * Create the reply to a shared memory attach request.
+	 * 
+	 * @param attached was the ring file attached?
+	 * @return the reply control frame.
+	 */
+	static Packet createShmAttachReply(boolean attached) {
+		Packet p = create(OP_SHM_ATTACH, 1);
+		p.data[PAYLOAD_OFFSET] = (byte)(attached ? 1 : 0);
+		return p;
+	}
+	
+	/**
+	 * @param p the control frame.
+	 * @return the operation code of {@code p}.
+	 */
+	static int getOpcode(Packet p) {
+		return p.data[OPCODE_OFFSET] & 0xFF;
+	}
+	
+	/**
+	 * @param p the control frame.
+	 * @return the length of the payload of {@code p}.
+	 */
+	static int getPayloadLength(Packet p) {
+		return p.packetLen - HEADER_LENGTH;
+	}
+	
+	static void setLength(Packet p, int packetLen) {
+		p.packetLen = packetLen;
+		p.data[0] = (byte)((packetLen >> 8) & 0xFF);
+		p.data[1] = (byte)(packetLen & 0xFF);
+	}
+	
+	static int getWord(Packet p, int offset) {
+		return ((p.data[offset] & 0xFF) << 8) | (p.data[offset + 1] & 0xFF);
+	}
+	
+	static void putWord(Packet p, int offset, int value) {
+		p.data[offset] = (byte)((value >> 8) & 0xFF);
+		p.data[offset + 1] = (byte)(value & 0xFF);
+	}
+	
+	static long getLong(Packet p, int offset, int byteLen) {
+		long value = 0;
+		for (int i = 0; i < byteLen; i++) {
+			value = (value << 8) | (p.data[offset + i] & 0xFF);
+		}
+		return value;
+	}
+	
+	static void putLong(Packet p, int offset, int byteLen, long value) {
+		for (int i = byteLen - 1; i >= 0; i--) {
+			p.data[offset + i] = (byte)(value & 0xFF);
+			value >>>= 8;
+		}
+	}
+}
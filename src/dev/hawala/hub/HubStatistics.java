@@ -0,0 +1,317 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.hub;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import dev.hawala.hub.NetHub.Packet;
+import dev.hawala.hub.NetHub.iLine;
+
+/**
+ * Traffic statistics of the NetHub: counters for each line, for each ethertype
+ * and for the kind of forwarding (broadcast resp. unicast switched or flooded),
+ * with text and JSON renderings for the admin port.
+ * 
+ * @author Dodo contributors
+ */
+class HubStatistics {
+	
+	private static final long startTime = System.currentTimeMillis();
+	
+	/*
+	 * per line statistics
+	 */
+	
+	/**
+	 * Traffic counters for a single line, with the packets received on the line
+	 * counted as "in" and the packets sent to the machine on the line as "out".
+	 */
+	static class LineStats {
+		
+		private final int connNo;
+		private final String remote;
+		private final PacketQueue queue;
+		
+		private volatile String mode = "std";
+		
+		private final LongAdder packetsIn = new LongAdder();
+		private final LongAdder bytesIn = new LongAdder();
+		private final LongAdder broadcastsIn = new LongAdder();
+		private final LongAdder unicastsIn = new LongAdder();
+		private final LongAdder packetsOut = new LongAdder();
+		private final LongAdder bytesOut = new LongAdder();
+		private final LongAdder filteredOut = new LongAdder();
+		
+		LineStats(int connNo, String remote, PacketQueue queue) {
+			this.connNo = connNo;
+			this.remote = remote;
+			this.queue = queue;
+		}
+		
+		/**
+		 * @return the remote socket address of the line.
+		 */
+		String getRemote() {
+			return this.remote;
+		}
+		
+		/**
+		 * Set the framing mode of the line for display.
+		 * 
+		 * @param mode short name of the line mode.
+		 */
+		void setMode(String mode) {
+			this.mode = mode;
+		}
+		
+		/**
+		 * Count a packet not sent to the machine on the line, as not
+		 * matching the ethertypes subscribed for the line.
+		 */
+		void countFiltered() {
+			this.filteredOut.increment();
+		}
+		
+		/**
+		 * Count a packet sent to the machine on the line.
+		 * 
+		 * @param p the packet sent.
+		 */
+		void countOut(Packet p) {
+			this.packetsOut.increment();
+			this.bytesOut.add(p.packetLen);
+			EtherTypeStats ets = getEtherTypeStats(p);
+			if (ets != null) {
+				ets.packetsOut.increment();
+				ets.bytesOut.add(p.packetLen);
+			}
+		}
+	}
+	
+	/*
+	 * per ethertype statistics
+	 */
+	
+	private static class EtherTypeStats {
+		private final LongAdder packetsIn = new LongAdder();
+		private final LongAdder bytesIn = new LongAdder();
+		private final LongAdder packetsOut = new LongAdder();
+		private final LongAdder bytesOut = new LongAdder();
+	}
+	
+	private static final AtomicReferenceArray<EtherTypeStats> etherTypes = new AtomicReferenceArray<>(65536);
+	
+	private static EtherTypeStats getEtherTypeStats(Packet p) {
+		if (p.packetLen < 14) { return null; }
+		int etherType = ((p.data[14] & 0xFF) << 8) | (p.data[15] & 0xFF); // 2 length bytes + 2x 6 address bytes
+		EtherTypeStats ets = etherTypes.get(etherType);
+		if (ets == null) {
+			etherTypes.compareAndSet(etherType, null, new EtherTypeStats());
+			ets = etherTypes.get(etherType);
+		}
+		return ets;
+	}
+	
+	/*
+	 * forwarding statistics
+	 */
+	
+	/**
+	 * The way a received packet was forwarded by the hub.
+	 */
+	enum Forwarding {
+		/** broadcast or multicast packet, flooded to all other lines */
+		BROADCAST,
+		/** unicast packet to a known machine, sent only to the line of the machine */
+		SWITCHED,
+		/** unicast packet to an unknown machine, flooded to all other lines */
+		FLOODED
+	}
+	
+	private static final LongAdder broadcasts = new LongAdder();
+	private static final LongAdder switched = new LongAdder();
+	private static final LongAdder flooded = new LongAdder();
+	
+	/**
+	 * Count a packet received on a line.
+	 * 
+	 * @param stats the statistics of the line where the packet was received.
+	 * @param p the packet received.
+	 * @param forwarding the way the packet was forwarded.
+	 */
+	static void countIn(LineStats stats, Packet p, Forwarding forwarding) {
+		stats.packetsIn.increment();
+		stats.bytesIn.add(p.packetLen);
+		switch(forwarding) {
+		case BROADCAST:
+			stats.broadcastsIn.increment();
+			broadcasts.increment();
+			break;
+		case SWITCHED:
+			stats.unicastsIn.increment();
+			switched.increment();
+			break;
+		default:
+			stats.unicastsIn.increment();
+			flooded.increment();
+		}
+		EtherTypeStats ets = getEtherTypeStats(p);
+		if (ets != null) {
+			ets.packetsIn.increment();
+			ets.bytesIn.add(p.packetLen);
+		}
+	}
+	
+	/*
+	 * renderings
+	 */
+	
+	/**
+	 * Render the statistics as plain text table.
+	 * 
+	 * @param lines the lines currently connected.
+	 * @param learnedAddresses the number of machines known to the hub.
+	 * @param packetLogging is per packet logging currently active?
+	 * @return the statistics text.
+	 */
+	static String toText(List<iLine> lines, int learnedAddresses, boolean packetLogging) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("NetHub statistics: uptime %d s, lines: %d, learned addresses: %d, packet logging: %s\n",
+				(System.currentTimeMillis() - startTime) / 1000, lines.size(), learnedAddresses, packetLogging ? "on" : "off"));
+		long b = broadcasts.sum();
+		long s = switched.sum();
+		long f = flooded.sum();
+		long total = Math.max(1, b + s + f);
+		sb.append(String.format("forwarding: broadcast %d (%d%%), unicast switched %d (%d%%), unicast flooded %d (%d%%)\n",
+				b, (b * 100) / total, s, (s * 100) / total, f, (f * 100) / total));
+		
+		sb.append("\n line remote                    mode      pkts-in    bytes-in    pkts-out   bytes-out  bcast-in  ucast-in  queued   dropped  hi-water  filtered\n");
+		for (iLine line : lines) {
+			LineStats ls = line.getStats();
+			sb.append(String.format("%5d %-25s %-5s %11d %11d %11d %11d %9d %9d %7d %9d %9d %9d\n",
+					ls.connNo, ls.remote, ls.mode,
+					ls.packetsIn.sum(), ls.bytesIn.sum(), ls.packetsOut.sum(), ls.bytesOut.sum(),
+					ls.broadcastsIn.sum(), ls.unicastsIn.sum(),
+					ls.queue.size(), ls.queue.getDropped(), ls.queue.getHighWaterMark(), ls.filteredOut.sum()));
+		}
+		
+		sb.append("\n ethertype     pkts-in    bytes-in    pkts-out   bytes-out\n");
+		for (int i = 0; i < etherTypes.length(); i++) {
+			EtherTypeStats ets = etherTypes.get(i);
+			if (ets != null) {
+				sb.append(String.format("    0x%04X %11d %11d %11d %11d\n",
+						i, ets.packetsIn.sum(), ets.bytesIn.sum(), ets.packetsOut.sum(), ets.bytesOut.sum()));
+			}
+		}
+		
+		return sb.toString();
+	}
+	
+	/**
+	 * Render the statistics as JSON object.
+	 * 
+	 * @param lines the lines currently connected.
+	 * @param learnedAddresses the number of machines known to the hub.
+	 * @param packetLogging is per packet logging currently active?
+	 * @return the statistics JSON text.
+	 */
+	static String toJson(List<iLine> lines, int learnedAddresses, boolean packetLogging) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\n")
+		  .append("  \"uptimeSeconds\": ").append((System.currentTimeMillis() - startTime) / 1000).append(",\n")
+		  .append("  \"learnedAddresses\": ").append(learnedAddresses).append(",\n")
+		  .append("  \"packetLogging\": ").append(packetLogging).append(",\n")
+		  .append("  \"forwarding\": { \"broadcast\": ").append(broadcasts.sum())
+		  .append(", \"switched\": ").append(switched.sum())
+		  .append(", \"flooded\": ").append(flooded.sum()).append(" },\n");
+		
+		sb.append("  \"lines\": [");
+		String sep = "\n";
+		for (iLine line : lines) {
+			LineStats ls = line.getStats();
+			sb.append(sep)
+			  .append("    { \"connNo\": ").append(ls.connNo)
+			  .append(", \"remote\": ").append(jsonString(ls.remote))
+			  .append(", \"mode\": ").append(jsonString(ls.mode))
+			  .append(", \"packetsIn\": ").append(ls.packetsIn.sum())
+			  .append(", \"bytesIn\": ").append(ls.bytesIn.sum())
+			  .append(", \"packetsOut\": ").append(ls.packetsOut.sum())
+			  .append(", \"bytesOut\": ").append(ls.bytesOut.sum())
+			  .append(", \"broadcastsIn\": ").append(ls.broadcastsIn.sum())
+			  .append(", \"unicastsIn\": ").append(ls.unicastsIn.sum())
+			  .append(", \"queued\": ").append(ls.queue.size())
+			  .append(", \"enqueued\": ").append(ls.queue.getEnqueued())
+			  .append(", \"sent\": ").append(ls.queue.getSent())
+			  .append(", \"dropped\": ").append(ls.queue.getDropped())
+			  .append(", \"highWaterMark\": ").append(ls.queue.getHighWaterMark())
+			  .append(", \"filtered\": ").append(ls.filteredOut.sum())
+			  .append(" }");
+			sep = ",\n";
+		}
+		sb.append("\n  ],\n");
+		
+		sb.append("  \"etherTypes\": [");
+		sep = "\n";
+		for (int i = 0; i < etherTypes.length(); i++) {
+			EtherTypeStats ets = etherTypes.get(i);
+			if (ets != null) {
+				sb.append(sep)
+				  .append("    { \"etherType\": ").append(i)
+				  .append(", \"packetsIn\": ").append(ets.packetsIn.sum())
+				  .append(", \"bytesIn\": ").append(ets.bytesIn.sum())
+				  .append(", \"packetsOut\": ").append(ets.packetsOut.sum())
+				  .append(", \"bytesOut\": ").append(ets.bytesOut.sum())
+				  .append(" }");
+				sep = ",\n";
+			}
+		}
+		sb.append("\n  ]\n}\n");
+		
+		return sb.toString();
+	}
+	
+	// quote a string for JSON, escaping quotes, backslashes and control characters
+	private static String jsonString(String s) {
+		if (s == null) { return "null"; }
+		StringBuilder sb = new StringBuilder(s.length() + 2);
+		sb.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int)c));
+			} else {
+				sb.append(c);
+			}
+		}
+		sb.append('"');
+		return sb.toString();
+	}
+}
@@ -0,0 +1,424 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.hub;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dev.hawala.hub.NetHub.Packet;
+import dev.hawala.hub.NetHub.iLine;
+
+/**
+ * Trunk links between NetHub instances, allowing to spread the machines of
+ * one (virtual) network segment over several hub processes resp. hosts.
+ * <p>
+ * A trunk is a normal hub connection where both sides identified themselves
+ * as hub with a {@code TRUNK_HELLO} control frame carrying the random id of
+ * the hub. Frames crossing a trunk are encapsulated in {@code TRUNK_DATA} control
+ * frames carrying the id of the hub where the frame entered the trunk network,
+ * a sequence number assigned by this hub and a hop limit (TTL). Frames cross a
+ * trunk only if the target machine was learned on the trunk or if the frame is
+ * flooded (broadcast or unknown target).
+ * </p>
+ * <p>
+ * Loops in the trunk network are handled as follows:
+ * </p>
+ * <ul>
+ * <li>a trunk to the hub itself or a second trunk to the same hub is refused
+ * (keeping the link initiated by the hub with the lower id, so both sides
+ * choose the same link),</li>
+ * <li>a frame received with the own hub id as origin, a frame seen before (same
+ * origin and sequence number) or a frame with exhausted hop limit is not
+ * forwarded.</li>
+ * </ul>
+ * <p>
+ * As a trunk receives all flooded frames and may announce arbitrary MAC addresses,
+ * a {@code TRUNK_HELLO} on a line connected to this hub is accepted only from hubs
+ * on the same host or on a host configured as trunk target, unless trunks from any
+ * host were allowed with the {@code -remotetrunks} parameter.
+ * </p>
+ * <p>
+ * Besides learning from the forwarded frames, the hubs periodically announce the
+ * MAC addresses reachable through them to the trunk partners (and withdraw the
+ * addresses of dropped lines), so unicast frames to machines behind a trunk can be
+ * switched even for machines not recently sending.
+ * </p>
+ * 
+ * @author Dodo contributors
+ */
+final class HubTrunks {
+	
+	private HubTrunks() { }
+	
+	/** additional bytes of a frame encapsulated for a trunk */
+	static final int TRUNK_OVERHEAD = HubControl.HEADER_LENGTH + 8 + 4 + 1; // origin, seq, ttl
+	
+	/** hop limit for frames entering the trunk network */
+	static final int DEFAULT_TTL = 8;
+	
+	private static final int ORIGIN_OFFSET = HubControl.PAYLOAD_OFFSET;
+	private static final int SEQ_OFFSET = ORIGIN_OFFSET + 8;
+	private static final int TTL_OFFSET = SEQ_OFFSET + 4;
+	private static final int FRAME_OFFSET = TTL_OFFSET + 1;
+	
+	private static final int MAX_ADDRESSES_PER_FRAME = HubControl.MAX_PAYLOAD_LENGTH / 6;
+	
+	private static final long RECONNECT_INTERVAL_MS = 5_000;
+	private static final long MAX_ANNOUNCE_INTERVAL_MS = 30_000;
+	
+	// the id of this hub
+	private static final long hubId = new SecureRandom().nextLong() & 0x7FFF_FFFF_FFFF_FFFFL;
+	
+	// sequence numbers for frames entering the trunk network at this hub
+	private static final AtomicInteger sequence = new AtomicInteger();
+	
+	// the established trunks: line => id of the hub at the other end
+	private static final Map<iLine,Long> trunks = new ConcurrentHashMap<>();
+	
+	// the lines connected by this hub to other hubs: line => the connector having established the line
+	private static final Map<iLine,Connector> initiated = new ConcurrentHashMap<>();
+	
+	// the sequence numbers seen from other hubs for duplicate suppression
+	private static final Map<Long,SeqWindow> seenFrames = new ConcurrentHashMap<>();
+	
+	// the hosts configured as trunk targets, from where trunks are also accepted
+	private static final Set<String> peerHosts = ConcurrentHashMap.newKeySet();
+	
+	// accept trunks from hubs on any host?
+	private static volatile boolean remoteTrunks = false;
+	
+	private static Thread announcer = null;
+	
+	/**
+	 * @return the id of this hub in the trunk network.
+	 */
+	static long getHubId() {
+		return hubId;
+	}
+	
+	/**
+	 * @return {@code true} if at least one trunk is currently established.
+	 */
+	static boolean hasTrunks() {
+		return !trunks.isEmpty();
+	}
+	
+	/**
+	 * @param line the line to check.
+	 * @return {@code true} if {@code line} is a trunk to another hub.
+	 */
+	static boolean isTrunk(iLine line) {
+		return trunks.containsKey(line);
+	}
+	
+	/**
+	 * Create the encapsulation of a frame to be forwarded through trunks.
+	 * 
+	 * @param p the frame to encapsulate.
+	 * @param origin the id of the hub where the frame entered the trunk network.
+	 * @param seq the sequence number of the frame or {@code -1} for a frame
+	 *   entering the trunk network at this hub.
+	 * @param ttl the remaining hop limit.
+	 * @return the trunk frame with a single reference held by the caller.
+	 */
+	static Packet encapsulate(Packet p, long origin, int seq, int ttl) {
+		if (seq < 0) {
+			seq = sequence.getAndIncrement() & 0x7FFF_FFFF;
+		}
+		Packet t = HubControl.create(HubControl.OP_TRUNK_DATA, TRUNK_OVERHEAD - HubControl.HEADER_LENGTH + p.packetLen);
+		HubControl.putLong(t, ORIGIN_OFFSET, 8, origin);
+		HubControl.putLong(t, SEQ_OFFSET, 4, seq);
+		t.data[TTL_OFFSET] = (byte)ttl;
+		System.arraycopy(p.data, 2, t.data, FRAME_OFFSET, p.packetLen);
+		return t;
+	}
+	
+	/**
+	 * Accept trunks from hubs on any host, not only from the hub's host
+	 * and the hosts configured as trunk targets.
+	 */
+	static void acceptRemoteTrunks() {
+		remoteTrunks = true;
+	}
+	
+	/*
+	 * may the client on a line connected to this hub establish a trunk?
+	 */
+	private static boolean isTrustedPeer(iLine line) {
+		if (remoteTrunks || line.isLoopback()) {
+			return true;
+		}
+		InetAddress remote = line.getRemoteAddress();
+		if (remote == null) {
+			return false;
+		}
+		for (String host : peerHosts) {
+			try {
+				for (InetAddress addr : InetAddress.getAllByName(host)) {
+					if (addr.equals(remote)) {
+						return true;
+					}
+				}
+			} catch (UnknownHostException e) {
+				// not this peer
+			}
+		}
+		return false;
+	}
+	
+	static void helloReceived(Packet p, iLine line) {
+		if (HubControl.getPayloadLength(p) < 8) { return; }
+		long remoteId = HubControl.getLong(p, HubControl.PAYLOAD_OFFSET, 8);
+		Connector connector = initiated.get(line);
+		if (connector == null && !trunks.containsKey(line) && !isTrustedPeer(line)) {
+			NetHub.log("Trunk: refused trunk from " + line.getStats().getRemote() + " (not a configured trunk host)");
+			return;
+		}
+		if (connector != null) {
+			connector.remoteHubId = remoteId;
+		}
+		if (remoteId == hubId) {
+			NetHub.log("Trunk: connection is a loop to this hub => dropping line");
+			line.stop();
+			return;
+		}
+		if (trunks.containsKey(line)) {
+			return; // hello repeated
+		}
+		
+		// check for a trunk already established to the same hub
+		synchronized(trunks) {
+			for (Map.Entry<iLine,Long> e : trunks.entrySet()) {
+				if (e.getValue() != remoteId) { continue; }
+				iLine other = e.getKey();
+				long lineInitiator = (connector != null) ? hubId : remoteId;
+				long otherInitiator = initiated.containsKey(other) ? hubId : remoteId;
+				if (lineInitiator >= otherInitiator) {
+					NetHub.log("Trunk: duplicate trunk to hub " + Long.toHexString(remoteId) + " => dropping new line");
+					line.stop();
+					return;
+				}
+				NetHub.log("Trunk: duplicate trunk to hub " + Long.toHexString(remoteId) + " => dropping older line");
+				trunks.remove(other);
+				other.stop();
+			}
+			trunks.put(line, remoteId);
+		}
+		
+		line.getStats().setMode("trunk");
+		if (connector == null) {
+			sendHello(line);
+		}
+		NetHub.log("Trunk: established to hub " + Long.toHexString(remoteId) + " on " + line.getStats().getRemote());
+		announceTo(line);
+		startAnnouncer();
+	}
+	
+	static void dataReceived(Packet p, iLine line) {
+		if (!trunks.containsKey(line) || HubControl.getPayloadLength(p) < (FRAME_OFFSET - HubControl.PAYLOAD_OFFSET)) {
+			return;
+		}
+		long origin = HubControl.getLong(p, ORIGIN_OFFSET, 8);
+		int seq = (int)HubControl.getLong(p, SEQ_OFFSET, 4);
+		int ttl = p.data[TTL_OFFSET] & 0xFF;
+		if (origin == hubId) {
+			return; // went round a loop
+		}
+		if (!seenFrames.computeIfAbsent(origin, id -> new SeqWindow()).accept(seq)) {
+			return; // already received through another trunk
+		}
+		
+		Packet frame = Packet.allocate();
+		int frameLen = p.packetLen - TRUNK_OVERHEAD;
+		System.arraycopy(p.data, FRAME_OFFSET, frame.data, 2, frameLen);
+		HubControl.setLength(frame, frameLen);
+		NetHub.forward(frame, line, origin, seq, ttl - 1);
+	}
+	
+	static void announceReceived(Packet p, iLine line) {
+		if (!trunks.containsKey(line)) { return; }
+		int count = HubControl.getPayloadLength(p) / 6;
+		for (int i = 0; i < count; i++) {
+			NetHub.learnAnnounced(HubControl.getLong(p, HubControl.PAYLOAD_OFFSET + (i * 6), 6), line);
+		}
+	}
+	
+	static void withdrawReceived(Packet p, iLine line) {
+		if (!trunks.containsKey(line)) { return; }
+		int count = HubControl.getPayloadLength(p) / 6;
+		List<Long> removed = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			long addr = HubControl.getLong(p, HubControl.PAYLOAD_OFFSET + (i * 6), 6);
+			if (NetHub.forgetAddress(addr, line)) {
+				removed.add(addr);
+			}
+		}
+		sendAddresses(HubControl.OP_MAC_WITHDRAW, removed, line);
+	}
+	
+	/**
+	 * Handle a line being dropped by the hub.
+	 * 
+	 * @param line the line dropped.
+	 * @param forgotten the MAC addresses that were located on the line.
+	 */
+	static void lineDropped(iLine line, List<Long> forgotten) {
+		if (trunks.remove(line) != null) {
+			NetHub.log("Trunk: lost trunk on " + line.getStats().getRemote());
+		}
+		initiated.remove(line);
+		sendAddresses(HubControl.OP_MAC_WITHDRAW, forgotten, null);
+	}
+	
+	private static void sendHello(iLine line) {
+		Packet p = HubControl.create(HubControl.OP_TRUNK_HELLO, 8);
+		HubControl.putLong(p, HubControl.PAYLOAD_OFFSET, 8, hubId);
+		line.enqueueOutPacket(p);
+	}
+	
+	private static void announceTo(iLine trunk) {
+		List<Long> addresses = NetHub.getLearnedAddresses(l -> l != trunk);
+		if (addresses.isEmpty()) { return; }
+		sendAddressesTo(trunk, HubControl.OP_MAC_ANNOUNCE, addresses);
+	}
+	
+	private static void sendAddresses(int opcode, List<Long> addresses, iLine except) {
+		if (addresses.isEmpty()) { return; }
+		for (iLine trunk : trunks.keySet()) {
+			if (trunk != except) {
+				sendAddressesTo(trunk, opcode, addresses);
+			}
+		}
+	}
+	
+	private static void sendAddressesTo(iLine trunk, int opcode, List<Long> addresses) {
+		int pos = 0;
+		while(pos < addresses.size()) {
+			int count = Math.min(MAX_ADDRESSES_PER_FRAME, addresses.size() - pos);
+			Packet p = HubControl.create(opcode, count * 6);
+			for (int i = 0; i < count; i++) {
+				HubControl.putLong(p, HubControl.PAYLOAD_OFFSET + (i * 6), 6, addresses.get(pos++));
+			}
+			trunk.enqueueOutPacket(p);
+		}
+	}
+	
+	private static synchronized void startAnnouncer() {
+		if (announcer != null) { return; }
+		long interval = Math.max(1_000, Math.min(MAX_ANNOUNCE_INTERVAL_MS, NetHub.getMacAgingMs() / 3));
+		announcer = new Thread(() -> {
+			while(true) {
+				try {
+					Thread.sleep(interval);
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (iLine trunk : trunks.keySet()) {
+					announceTo(trunk);
+				}
+			}
+		});
+		announcer.setDaemon(true);
+		announcer.setName("Trunk announcer");
+		announcer.start();
+	}
+	
+	/**
+	 * Maintainer of a trunk connection to another hub, (re)connecting
+	 * the trunk when the hub is not connected.
+	 */
+	private static class Connector implements Runnable {
+		
+		private final String host;
+		private final int port;
+		
+		// the hub reached by the last connection (0 = unknown)
+		private volatile long remoteHubId = 0;
+		
+		private Connector(String host, int port) {
+			this.host = host;
+			this.port = port;
+		}
+		
+		private boolean isTrunkedToRemote() {
+			return this.remoteHubId != 0 && trunks.containsValue(this.remoteHubId);
+		}
+		
+		@Override
+		public void run() {
+			while(true) {
+				iLine line = null;
+				if (!this.isTrunkedToRemote()) {
+					try {
+						Socket s = new Socket(this.host, this.port);
+						s.setTcpNoDelay(true);
+						line = NetHub.addLine(s);
+						if (line != null) {
+							initiated.put(line, this);
+							NetHub.log("Trunk: connected to " + this.host + ":" + this.port);
+							sendHello(line);
+						}
+					} catch (IOException e) {
+						NetHub.log("Trunk: cannot connect to " + this.host + ":" + this.port + ": " + e.getMessage());
+					}
+				}
+				
+				// wait until the connection is lost
+				try {
+					do {
+						Thread.sleep(RECONNECT_INTERVAL_MS);
+					} while(line != null && NetHub.isConnected(line));
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Start maintaining a trunk connection to another hub.
+	 * 
+	 * @param host the host where the other hub runs.
+	 * @param port the port of the other hub.
+	 */
+	static void connect(String host, int port) {
+		peerHosts.add(host);
+		Thread t = new Thread(new Connector(host, port));
+		t.setDaemon(true);
+		t.setName("Trunk connector " + host + ":" + port);
+		t.start();
+	}
+}
@@ -0,0 +1,331 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.hub;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+import dev.hawala.hub.NetHub.iLine;
+
+/**
+ * Learning table of the NetHub, mapping the ethernet (MAC) addresses seen
+ * as source of packets to the line where the address is located, allowing to
+ * forward unicast packets only to the line of the target machine instead
+ * of flooding the packet to all lines.
+ * <p>
+ * Entries not refreshed by a packet from the machine within the aging interval
+ * are considered unknown (so packets to this address are flooded again), and
+ * all entries for a line are removed when the line is dropped.
+ * </p>
+ * <p>
+ * As {@code learn()} and {@code lookup()} are invoked for each packet, the table
+ * is an open addressing hash table with linear probing over primitive arrays, so
+ * these operations neither box the address nor allocate. Lookups and refreshes
+ * of an entry for the same line are lock-free, changes of the table are
+ * synchronized. A slot keeps its address until the table is rebuilt (removed
+ * entries become tombstones), so a lock-free reader finding an address
+ * at a slot may update the slot in place; the table is rebuilt without the
+ * removed and aged entries (growing if necessary) when it gets half full.
+ * </p>
+ * 
+ * @author Dodo contributors
+ */
+class MacTable {
+	
+	private static final int INITIAL_CAPACITY = 256; // power of 2
+	
+	// key values: the MAC address + 1 for an entry, resp. free and removed markers
+	private static final long FREE = 0;
+	private static final long REMOVED = -1;
+	
+	private static final class Table {
+		private final int mask;
+		private final AtomicLongArray keys;
+		private final AtomicReferenceArray<iLine> lines;
+		private final AtomicLongArray lastSeen;
+		
+		// (changed only while holding the lock of the MacTable)
+		private int used = 0; // slots not free
+		private int live = 0; // slots with an entry
+		
+		private Table(int capacity) {
+			this.mask = capacity - 1;
+			this.keys = new AtomicLongArray(capacity);
+			this.lines = new AtomicReferenceArray<>(capacity);
+			this.lastSeen = new AtomicLongArray(capacity);
+		}
+		
+		private int capacity() {
+			return this.mask + 1;
+		}
+		
+		// the slot of the address or -1 if not present
+		private int find(long addr) {
+			long key = addr + 1;
+			int i = hash(addr) & this.mask;
+			while(true) {
+				long k = this.keys.get(i);
+				if (k == key) { return i; }
+				if (k == FREE) { return -1; }
+				i = (i + 1) & this.mask;
+			}
+		}
+		
+		// (lock must be held, the table must have a free slot)
+		private void insert(long addr, iLine line, long now) {
+			int i = hash(addr) & this.mask;
+			while(this.keys.get(i) != FREE) {
+				i = (i + 1) & this.mask;
+			}
+			this.lines.set(i, line);
+			this.lastSeen.set(i, now);
+			this.keys.set(i, addr + 1); // publish the entry
+			this.used++;
+			this.live++;
+		}
+		
+		// (lock must be held)
+		private void remove(int i) {
+			this.keys.set(i, REMOVED);
+			this.lines.set(i, null);
+			this.live--;
+		}
+	}
+	
+	private static int hash(long addr) {
+		long h = addr * 0x9E37_79B9_7F4A_7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+	
+	private volatile Table table = new Table(INITIAL_CAPACITY);
+	
+	private final long agingMs;
+	
+	/**
+	 * Create a learning table.
+	 * 
+	 * @param agingMs the time in milliseconds after which an address not
+	 *   seen as packet source is forgotten.
+	 */
+	MacTable(long agingMs) {
+		this.agingMs = agingMs;
+	}
+	
+	/**
+	 * Check if the address is an ethernet unicast address.
+	 * 
+	 * @param addr the 48 bit MAC address
+	 * @return {@code false} if {@code addr} is a broadcast or multicast address.
+	 */
+	static boolean isUnicast(long addr) {
+		return (addr & 0x0100_0000_0000L) == 0; // group bit in first byte transmitted
+	}
+	
+	/*
+	 * refresh the entry if the address is already registered for the line
+	 * (a refresh racing with a rebuild of the table may get lost, so the entry
+	 * may age earlier unless refreshed by a later packet)
+	 */
+	private boolean refresh(long addr, iLine line, long now) {
+		Table t = this.table;
+		int i = t.find(addr);
+		if (i >= 0 && t.lines.get(i) == line) {
+			t.lastSeen.lazySet(i, now);
+			return true;
+		}
+		return false;
+	}
+	
+	/*
+	 * register the address for the line, replacing an existing entry
+	 * (lock must be held)
+	 */
+	private void put(long addr, iLine line, long now) {
+		Table t = this.table;
+		int i = t.find(addr);
+		if (i >= 0) {
+			t.lines.set(i, line);
+			t.lastSeen.set(i, now);
+			return;
+		}
+		if ((t.used + 1) * 2 > t.capacity()) {
+			t = this.rebuild(t, now);
+		}
+		t.insert(addr, line, now);
+	}
+	
+	/*
+	 * create a new table with the not aged entries of the table
+	 * (lock must be held)
+	 */
+	private Table rebuild(Table t, long now) {
+		int capacity = INITIAL_CAPACITY;
+		while(capacity < (t.live + 1) * 4) {
+			capacity <<= 1;
+		}
+		Table n = new Table(capacity);
+		long limit = now - this.agingMs;
+		for (int i = 0; i < t.capacity(); i++) {
+			long k = t.keys.get(i);
+			long seen = t.lastSeen.get(i);
+			if (k > 0 && seen >= limit) {
+				n.insert(k - 1, t.lines.get(i), seen);
+			}
+		}
+		this.table = n;
+		return n;
+	}
+	
+	/**
+	 * Register (or refresh) the line where a machine is located.
+	 * 
+	 * @param addr the source MAC address of a packet.
+	 * @param line the line where the packet was received.
+	 */
+	void learn(long addr, iLine line) {
+		if (!isUnicast(addr)) { return; }
+		long now = System.currentTimeMillis();
+		if (this.refresh(addr, line, now)) { return; }
+		synchronized(this) {
+			this.put(addr, line, now);
+		}
+	}
+	
+	/**
+	 * Register the line where a machine is located unless the address is
+	 * currently known for a line that may not be replaced, used for addresses
+	 * announced by other hubs (which must not override locally seen machines).
+	 * 
+	 * @param addr the MAC address announced.
+	 * @param line the line where the address was announced.
+	 * @param mayReplace check if the line of an existing entry may be replaced.
+	 */
+	void learnIf(long addr, iLine line, Predicate<iLine> mayReplace) {
+		if (!isUnicast(addr)) { return; }
+		long now = System.currentTimeMillis();
+		if (this.refresh(addr, line, now)) { return; }
+		synchronized(this) {
+			Table t = this.table;
+			int i = t.find(addr);
+			if (i < 0 || (now - t.lastSeen.get(i)) > this.agingMs || mayReplace.test(t.lines.get(i))) {
+				this.put(addr, line, now);
+			}
+		}
+	}
+	
+	/**
+	 * Get the line where a machine is located.
+	 * 
+	 * @param addr the MAC address of the target machine.
+	 * @return the line of the machine or {@code null} if not known (or
+	 *   no longer known due to aging).
+	 */
+	iLine lookup(long addr) {
+		Table t = this.table;
+		int i = t.find(addr);
+		if (i < 0) { return null; }
+		iLine line = t.lines.get(i);
+		if ((System.currentTimeMillis() - t.lastSeen.get(i)) > this.agingMs) {
+			return null; // removed when the table is rebuilt
+		}
+		return line;
+	}
+	
+	/**
+	 * Remove all addresses learned for the given line.
+	 * 
+	 * @param line the line being dropped.
+	 * @return the addresses removed.
+	 */
+	List<Long> forget(iLine line) {
+		List<Long> removed = new ArrayList<>();
+		synchronized(this) {
+			Table t = this.table;
+			for (int i = 0; i < t.capacity(); i++) {
+				long k = t.keys.get(i);
+				if (k > 0 && t.lines.get(i) == line) {
+					removed.add(k - 1);
+					t.remove(i);
+				}
+			}
+		}
+		return removed;
+	}
+	
+	/**
+	 * Remove an address if it is currently learned for the given line.
+	 * 
+	 * @param addr the MAC address to remove.
+	 * @param line the line for which the address must be registered.
+	 * @return {@code true} if the address was removed.
+	 */
+	boolean forget(long addr, iLine line) {
+		synchronized(this) {
+			Table t = this.table;
+			int i = t.find(addr);
+			if (i < 0 || t.lines.get(i) != line) {
+				return false;
+			}
+			t.remove(i);
+			return true;
+		}
+	}
+	
+	/**
+	 * Get the addresses currently known for lines matching a filter.
+	 * 
+	 * @param filter the check for the lines to include.
+	 * @return snapshot of the (not aged) addresses located on the lines
+	 *   accepted by {@code filter}.
+	 */
+	List<Long> addresses(Predicate<iLine> filter) {
+		long limit = System.currentTimeMillis() - this.agingMs;
+		List<Long> result = new ArrayList<>();
+		Table t = this.table;
+		for (int i = 0; i < t.capacity(); i++) {
+			long k = t.keys.get(i);
+			if (k <= 0 || t.lastSeen.get(i) < limit) { continue; }
+			iLine line = t.lines.get(i);
+			if (line != null && filter.test(line)) {
+				result.add(k - 1);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * @return the number of addresses currently learned.
+	 */
+	int size() {
+		synchronized(this) {
+			return this.table.live;
+		}
+	}
+}
@@ -25,13 +25,24 @@ ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 
 package dev.hawala.hub;
+import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Predicate;
+import java.util.concurrent.locks.LockSupport;
+
+import dev.hawala.hub.HubStatistics.Forwarding;
+import dev.hawala.hub.HubStatistics.LineStats;
 
 /**
  * Hub program simulating the thick yellow coax cable of a Xerox network.
@@ -41,6 +52,29 @@ import java.util.List;
  * forwarded to the other connections. Each packet consists of a 2-byte length
  * (big endian) and the raw packet from the client machine.
  * </p>
+ * <p>
+ * By default, each line (connection) is served by 2 threads (a reader and
+ * a forwarder). With the command line option {@code -nio[:threads]}, the
+ * lines are instead multiplexed over a small fixed set of event loop threads
+ * (see {@link NioHubEngine}).
+ * </p>
+ * <p>
+ * Unicast packets are forwarded only to the line where the destination
+ * machine was seen as packet source (see {@link MacTable}), broadcasts and
+ * packets to unknown machines are flooded to all other lines.
+ * </p>
+ * <p>
+ * Traffic statistics can be queried on the optional admin port (see {@link HubAdmin}),
+ * which also allows to switch the per packet logging at runtime.
+ * </p>
+ * <p>
+ * With the command line option {@code -udp}, the hub also accepts clients sending
+ * single ethernet frames as UDP datagrams to the hub port (see {@link UdpHubService}).
+ * </p>
+ * <p>
+ * Several hubs can be connected with trunk links (command line option
+ * {@code -trunk:host:port}) to form a single network segment (see {@link HubTrunks}).
+ * </p>
  * 
  * @author Dr. Hans-Walter Latz / Berlin (2018)
  */
@@ -48,94 +82,322 @@ public class NetHub {
 	
 	private static final int HUB_SOCKET = 3333;
 	
-	private static final int PACKET_LENGTH = 1024;
+	private static int hubPort = HUB_SOCKET;
+	
+	static final int PACKET_LENGTH = 1024;
 	
 	private static final int MAX_CONNECTIONS = 256;
 
-	private static void log(String txt) {
+	// log each packet received and sent? (switchable through the admin port)
+	private static volatile boolean packetLogging = true;
+	
+	// may clients not on the hub's host become mirror ports?
+	private static boolean remoteMonitoring = false;
+
+	static void log(String txt) {
 		System.out.println(txt);
 	}
+	
+	static boolean isPacketLogging() {
+		return packetLogging;
+	}
+	
+	static void setPacketLogging(boolean enabled) {
+		packetLogging = enabled;
+		log("Packet logging switched " + ((enabled) ? "on" : "off"));
+	}
 
-	private static void logf(String pattern, Object... args) {
+	static void logf(String pattern, Object... args) {
 		System.out.printf(pattern, args);
 	}
 	
-	private static class Packet {
-		public final byte[] data = new byte[PACKET_LENGTH + 2]; // +2 for the length data
+	/**
+	 * Packet buffer, reused through a pool of free packets.
+	 * <p>
+	 * A packet is reference counted: the line receiving the packet holds the
+	 * initial reference and passes it to {@code distribute()}, each line the
+	 * packet is queued for holds an additional reference released after sending
+	 * (or dropping) the packet, and the packet returns to the pool when the last
+	 * reference is released.
+	 * </p>
+	 */
+	static class Packet {
+		public final byte[] data = new byte[PACKET_LENGTH + HubTrunks.TRUNK_OVERHEAD + 2]; // +2 for the length data
 		public int packetLen; // net value = length of the content (payload)
+		
+		private static final AtomicIntegerFieldUpdater<Packet> REFCOUNT
+				= AtomicIntegerFieldUpdater.newUpdater(Packet.class, "refCount");
+		private volatile int refCount = 0;
+		
+		/**
+		 * Get a packet from the pool resp. a new packet if the pool is empty.
+		 * 
+		 * @return a packet with a single reference held by the caller.
+		 */
+		static Packet allocate() {
+			Packet p = freePackets.tryDequeue();
+			if (p == null) {
+				p = new Packet();
+			}
+			p.refCount = 1;
+			return p;
+		}
+		
+		/**
+		 * Add a reference to this packet.
+		 * 
+		 * @return this packet.
+		 */
+		Packet retain() {
+			REFCOUNT.incrementAndGet(this);
+			return this;
+		}
+		
+		/**
+		 * Drop a reference to this packet, returning the packet to
+		 * the pool if it was the last reference.
+		 */
+		void release() {
+			int count = REFCOUNT.decrementAndGet(this);
+			if (count == 0) {
+				freePackets.tryEnqueue(this); // if the pool is full: leave the packet to GC
+			} else if (count < 0) {
+				log("** Packet.release(): packet already released");
+			}
+		}
 	}
 	
+	// the pool of free packets
+	private static PacketQueue freePackets = new PacketQueue(1024, PacketQueue.OverflowPolicy.DROP_NEWEST);
+	
 	/**
 	 * Interface for connections to a NetHub.
 	 */
 	public interface iLine {
 		
-		/**
-		 * Transmit a packet ingone from some other machine to the
-		 * machine connected to this line (remote to local transmission).
-		 * 
-		 * @param p packet to be transmitted.
-		 */
-		void send(Packet p);
-		
 		/**
 		 * Put a packet into the queue of packets to be sent to
 		 * the machine connected to this line.
 		 * 
-		 * @param p the packet to be forwarded.
+		 * @param p the packet to be forwarded, with a reference held
+		 *   for this line (to be released when sent or dropped).
 		 */
 		void enqueueOutPacket(Packet p);
 		
 		/**
-		 * Get the next packet from the packet queue to be transmitted
-		 * to the machine connected to this line, possibly waiting for
-		 * a packet to be enqueued.
+		 * end all transmissions.
+		 */
+		void stop();
+		
+		/**
+		 * @return the traffic statistics of this line.
+		 */
+		LineStats getStats();
+		
+		/**
+		 * @return the ethertypes the machine connected to this line subscribed to.
+		 */
+		EtherTypeFilter getFilter();
+		
+		/**
+		 * Switch the packet transfer of this line to the rings in a memory mapped
+		 * file created by the client (see {@link ShmRings}), replying to the
+		 * client with a {@code SHM_ATTACH} control frame if successful.
 		 * 
-		 * @return the next packet to be transmitted.
-		 * @throws InterruptedException
+		 * @param path the path of the ring file.
+		 * @return {@code false} if the line cannot use the ring file.
 		 */
-		Packet dequeuePacket() throws InterruptedException;
+		boolean attachSharedMemory(String path);
 		
 		/**
-		 * end all transmissions.
+		 * @return {@code true} if the client is connected through the loopback
+		 *   interface, i.e. runs on the same host as the hub.
 		 */
-		void stop();
+		boolean isLoopback();
+		
+		/**
+		 * @return the address of the host where the client runs or {@code null}
+		 *   if not known.
+		 */
+		InetAddress getRemoteAddress();
 		
 	}
 	
-	private static final List<iLine> lines = new ArrayList<>();
+	/**
+	 * Factory for line instances, invoked when the new line
+	 * is accepted as connection to the hub.
+	 */
+	interface iLineFactory {
+		
+		/**
+		 * Create the line for the connection number.
+		 * 
+		 * @param connNo the connection number assigned to the new line.
+		 * @return the new line.
+		 * @throws IOException
+		 */
+		iLine create(int connNo) throws IOException;
+		
+	}
+	
+	// the lines currently connected (copy-on-write, as traversed for each flooded packet)
+	private static final List<iLine> lines = new CopyOnWriteArrayList<>();
 	private static int connNo = 0;
 	
-	private static void addLine(Socket s) throws IOException {
+	// the lines where the machines (MAC addresses) seen on the net are located
+	private static long macAgingMs = 300_000; // 5 minutes
+	private static MacTable macTable = new MacTable(macAgingMs);
+	
+	// queueing of packets to be sent on a line
+	private static int queueCapacity = 512;
+	private static PacketQueue.OverflowPolicy overflowPolicy = PacketQueue.OverflowPolicy.DROP_OLDEST;
+	
+	/**
+	 * Create the queue for packets to be sent on a new line.
+	 * 
+	 * @return the new packet queue.
+	 */
+	static PacketQueue createOutQueue() {
+		return new PacketQueue(queueCapacity, overflowPolicy);
+	}
+	
+	/**
+	 * Register a new line created by the {@code factory} if the maximum
+	 * number of connections is not yet reached.
+	 * 
+	 * @param factory creator for the new line.
+	 * @return {@code true} if the line was created and registered.
+	 * @throws IOException
+	 */
+	static boolean addLine(iLineFactory factory) throws IOException {
 		synchronized(lines) {
 			if (lines.size() > MAX_CONNECTIONS) {
 				log("Rejecting new line connection (MAX_CONNECTIONS reached)");
-				s.close();
-				return;
+				return false;
 			}
-			lines.add(new Line(s, connNo++));
+			lines.add(factory.create(connNo++));
+			return true;
 		}
 	}
 	
-	private static void dropLine(iLine f) {
-		synchronized(lines) {
-			lines.remove(f);
+	/**
+	 * Register a new thread based line for the connected socket.
+	 * 
+	 * @param s the socket for the new line.
+	 * @return the new line or {@code null} if the maximum number of
+	 *   connections is reached (the socket is closed in this case).
+	 * @throws IOException
+	 */
+	static iLine addLine(Socket s) throws IOException {
+		iLine[] created = { null };
+		if (!addLine(no -> created[0] = new Line(s, no))) {
+			s.close();
+		}
+		return created[0];
+	}
+	
+	/**
+	 * @param line the line to check.
+	 * @return {@code true} if the line is still connected to the hub.
+	 */
+	static boolean isConnected(iLine line) {
+		return lines.contains(line);
+	}
+	
+	/**
+	 * Check the length of a packet received on a line, allowing trunk lines
+	 * to exceed the packet length by the trunk encapsulation.
+	 * 
+	 * @param pLen the packet length to check.
+	 * @param line the line where the packet is received.
+	 * @return {@code true} if the length is valid for the line.
+	 */
+	static boolean isValidPacketLength(int pLen, iLine line) {
+		if (pLen <= PACKET_LENGTH) {
+			return pLen > 0;
 		}
+		return pLen <= (PACKET_LENGTH + HubTrunks.TRUNK_OVERHEAD) && HubTrunks.isTrunk(line);
+	}
+	
+	/**
+	 * @return the lines currently connected (unmodifiable snapshot).
+	 */
+	static List<iLine> getLines() {
+		return Collections.unmodifiableList(new ArrayList<>(lines));
 	}
 	
-	private static List<iLine> getLinesExcept(iLine exception) {
+	/**
+	 * @return the number of machines currently known by the hub.
+	 */
+	static int getLearnedAddressCount() {
+		return (macTable != null) ? macTable.size() : 0;
+	}
+	
+	/**
+	 * @param filter the check for the lines to include.
+	 * @return the addresses of the machines currently known on the lines
+	 *   accepted by {@code filter}.
+	 */
+	static List<Long> getLearnedAddresses(Predicate<iLine> filter) {
+		return (macTable != null) ? macTable.addresses(filter) : Collections.emptyList();
+	}
+	
+	/**
+	 * Register an address announced by another hub through a trunk,
+	 * unless the address is located on a line of this hub.
+	 * 
+	 * @param addr the MAC address announced.
+	 * @param trunk the trunk where the address was announced.
+	 */
+	static void learnAnnounced(long addr, iLine trunk) {
+		if (macTable != null) {
+			macTable.learnIf(addr, trunk, HubTrunks::isTrunk);
+		}
+	}
+	
+	/**
+	 * Remove an address withdrawn by another hub through a trunk.
+	 * 
+	 * @param addr the MAC address withdrawn.
+	 * @param trunk the trunk where the address was withdrawn.
+	 * @return {@code true} if the address was known on the trunk.
+	 */
+	static boolean forgetAddress(long addr, iLine trunk) {
+		return macTable != null && macTable.forget(addr, trunk);
+	}
+	
+	/**
+	 * @return the aging interval for learned addresses (0 = no learning).
+	 */
+	static long getMacAgingMs() {
+		return macAgingMs;
+	}
+	
+	static void dropLine(iLine f) {
 		synchronized(lines) {
-			List<iLine> otherLines = new ArrayList<>(lines);
-			otherLines.remove(exception);
-			return otherLines;
+			lines.remove(f);
 		}
+		monitors.remove(f);
+		List<Long> forgotten = (macTable != null) ? macTable.forget(f) : Collections.emptyList();
+		HubTrunks.lineDropped(f, forgotten);
+	}
+	
+	// optional delay for collecting packets to be sent together on a line
+	private static long batchWindowNanos = 0;
+	
+	/**
+	 * @return the time to wait for more packets to be sent to a line
+	 *   before writing the packets already queued (0 = no waiting).
+	 */
+	static long getBatchWindowNanos() {
+		return batchWindowNanos;
 	}
 	
 	private static class Forwarder implements Runnable {
 		
-		private final iLine line;
+		private final Line line;
 		
-		public Forwarder(iLine line) {
+		public Forwarder(Line line) {
 			this.line = line;
 		}
 
@@ -143,8 +405,23 @@ public class NetHub {
 		public void run() {
 			while(true) {
 				try {
-					Packet packet = this.line.dequeuePacket(); 
-					this.line.send(packet);
+					// wait for a packet and possibly for more packets to come
+					Packet packet = this.line.dequeuePacket();
+					if (batchWindowNanos > 0) {
+						LockSupport.parkNanos(batchWindowNanos);
+					}
+					
+					// send all packets queued so far with a single flush
+					synchronized(this.line.outputLock) {
+						int count = 0;
+						do {
+							this.line.send(packet);
+							this.line.stats.countOut(packet);
+							packet.release();
+							count++;
+						} while((packet = this.line.pollPacket()) != null);
+						this.line.flush(count);
+					}
 				} catch(Exception e) {
 					log("Forwarder got exception(" + e.getClass().getCanonicalName() + "): " + e.getMessage());
 					this.line.stop();
@@ -155,13 +432,133 @@ public class NetHub {
 		
 	}
 	
-	private static void distribute(Packet p, iLine ingoingLine) {
-		List<iLine> targets = getLinesExcept(ingoingLine);
-		for(iLine t : targets) {
-			if (t != ingoingLine) {
-				t.enqueueOutPacket(p);
+	private static long getAddress(Packet p, int offset) {
+		byte[] d = p.data;
+		return ((long)(d[offset] & 0xFF) << 40)
+			| ((long)(d[offset + 1] & 0xFF) << 32)
+			| ((long)(d[offset + 2] & 0xFF) << 24)
+			| ((long)(d[offset + 3] & 0xFF) << 16)
+			| ((long)(d[offset + 4] & 0xFF) << 8)
+			| (long)(d[offset + 5] & 0xFF);
+	}
+	
+	// the lines also receiving the unicast packets switched to other lines
+	private static final CopyOnWriteArrayList<iLine> monitors = new CopyOnWriteArrayList<>();
+	
+	/**
+	 * Let the line receive copies of all unicast packets switched between
+	 * other lines (besides the broadcast and flooded packets received by all
+	 * lines), allowing to capture the complete traffic on the hub.
+	 * <p>
+	 * As this exposes the traffic of all machines, only clients on the hub's
+	 * host may become a mirror port, unless remote monitoring was enabled
+	 * with the {@code -remotemonitor} parameter.
+	 * </p>
+	 * 
+	 * @param line the line to become a mirror port.
+	 */
+	static void addMonitor(iLine line) {
+		if (HubTrunks.isTrunk(line)) { return; }
+		if (!remoteMonitoring && !line.isLoopback()) {
+			log("Line " + line.getStats().getRemote() + " => refused monitoring for non-local client");
+			return;
+		}
+		if (monitors.addIfAbsent(line)) {
+			log("Line " + line.getStats().getRemote() + " is now monitoring all packets");
+		}
+	}
+	
+	/**
+	 * Forward a packet received on a line to the line of the target machine
+	 * or to all other lines, consuming the reference held by the caller.
+	 * 
+	 * @param p the packet to forward.
+	 * @param ingoingLine the line where the packet was received.
+	 */
+	static void distribute(Packet p, iLine ingoingLine) {
+		if (HubControl.isControl(p)) {
+			HubControl.handle(p, ingoingLine);
+			return;
+		}
+		forward(p, ingoingLine, HubTrunks.getHubId(), -1, HubTrunks.DEFAULT_TTL);
+	}
+	
+	/**
+	 * Forward a packet to the line of the target machine or to all other
+	 * lines, with packets for trunk lines being encapsulated with the trunk
+	 * parameters, consuming the reference held by the caller.
+	 * 
+	 * @param p the packet to forward.
+	 * @param ingoingLine the line where the packet was received.
+	 * @param origin the id of the hub where the packet entered the trunk network.
+	 * @param seq the trunk sequence number of the packet ({@code -1} if not yet assigned).
+	 * @param ttl the hop limit for forwarding the packet through trunks.
+	 */
+	static void forward(Packet p, iLine ingoingLine, long origin, int seq, int ttl) {
+		// learn the source and forward unicast packets to a known target only, while broadcasts
+		// are recognized by the destination address even without MAC table
+		// (packet data start with the 2 length bytes, followed by dst-addr and src-addr)
+		Forwarding forwarding = Forwarding.FLOODED;
+		if (p.packetLen >= 12) {
+			if (macTable != null) {
+				macTable.learn(getAddress(p, 8), ingoingLine);
+			}
+			long dstAddr = getAddress(p, 2);
+			if (!MacTable.isUnicast(dstAddr)) {
+				forwarding = Forwarding.BROADCAST;
+			} else if (macTable != null) {
+				iLine target = macTable.lookup(dstAddr);
+				if (target != null) {
+					HubStatistics.countIn(ingoingLine.getStats(), p, Forwarding.SWITCHED);
+					if (target == ingoingLine) {
+						// target is on the ingoing line: nothing to forward
+					} else if (!HubTrunks.isTrunk(target)) {
+						if (target.getFilter().accepts(EtherTypeFilter.getEtherType(p))) {
+							target.enqueueOutPacket(p.retain());
+						} else {
+							target.getStats().countFiltered();
+						}
+					} else if (ttl > 0) {
+						target.enqueueOutPacket(HubTrunks.encapsulate(p, origin, seq, ttl));
+					}
+					for (iLine m : monitors) {
+						if (m != ingoingLine && m != target && m.getFilter().accepts(EtherTypeFilter.getEtherType(p))) {
+							m.enqueueOutPacket(p.retain());
+						}
+					}
+					p.release();
+					return;
+				}
+			}
+		}
+		HubStatistics.countIn(ingoingLine.getStats(), p, forwarding);
+		
+		// broadcast, multicast or unknown target: flood to all other lines subscribed
+		// to the ethertype (with the trunk encapsulation created once for all trunks)
+		int etherType = EtherTypeFilter.getEtherType(p);
+		boolean withTrunks = HubTrunks.hasTrunks();
+		Packet trunkPacket = null;
+		for(iLine t : lines) {
+			if (t == ingoingLine) {
+				continue;
+			}
+			if (!withTrunks || !HubTrunks.isTrunk(t)) {
+				if (t.getFilter().accepts(etherType)) {
+					t.enqueueOutPacket(p.retain());
+				} else {
+					t.getStats().countFiltered();
+				}
+			} else if (ttl > 0) {
+				if (trunkPacket == null) {
+					trunkPacket = HubTrunks.encapsulate(p, origin, seq, ttl);
+				}
+				t.enqueueOutPacket(trunkPacket.retain());
 			}
 		}
+		if (trunkPacket != null) {
+			trunkPacket.release();
+		}
+		p.release();
 	}
 	
 	private static class Line implements iLine, Runnable {
@@ -171,7 +568,15 @@ public class NetHub {
 		private final InputStream is;
 		private final OutputStream os;
 		
-		private final List<Packet> outPackets = new ArrayList<>();
+		private final PacketQueue outPackets = createOutQueue();
+		private final LineStats stats;
+		private final EtherTypeFilter filter = new EtherTypeFilter();
+		
+		// the rings used instead of the socket after attaching a shared memory file, guarded by outputLock
+		// (the socket is then only used for the doorbell bytes waking up the sleeping consumer)
+		private final Object outputLock = new Object();
+		private volatile ShmRings shm = null;
+		private int shmLost = 0;
 		
 		private Thread reader;
 		private boolean stop = false;
@@ -184,7 +589,8 @@ public class NetHub {
 			this.socket = socket;
 			this.connNo = connNo;
 			this.is = socket.getInputStream();
-			this.os = socket.getOutputStream();
+			this.os = new BufferedOutputStream(socket.getOutputStream(), 16384);
+			this.stats = new LineStats(connNo, String.valueOf(socket.getRemoteSocketAddress()), this.outPackets);
 			
 			this.reader = new Thread(this);
 			this.reader.setName("Reader #" + connNo);
@@ -202,6 +608,8 @@ public class NetHub {
 				this.stop = true;
 				try {
 					if (this.reader != null) { this.reader.interrupt(); }
+					this.forwarder.interrupt();
+					this.socket.close(); // unblock the reader
 				} catch(Exception e) {
 					log("Stopping connection #" + this.connNo + " got exception(" + e.getClass().getCanonicalName() + "): " + e.getMessage());
 				}
@@ -218,28 +626,92 @@ public class NetHub {
 			synchronized(this) {
 				this.qemuLine = true;
 			}
+			this.stats.setMode("qemu");
+		}
+		
+		@Override
+		public LineStats getStats() {
+			return this.stats;
+		}
+		
+		@Override
+		public EtherTypeFilter getFilter() {
+			return this.filter;
+		}
+		
+		@Override
+		public boolean isLoopback() {
+			return this.socket.getInetAddress().isLoopbackAddress();
+		}
+		
+		@Override
+		public InetAddress getRemoteAddress() {
+			return this.socket.getInetAddress();
 		}
 		
 		@Override
+		public boolean attachSharedMemory(String path) {
+			if (this.isQemuLine() || !ShmRings.isSupported()) { return false; }
+			if (!this.isLoopback()) {
+				// the ring file must be on this host, so only local clients may ask to map a file
+				log("Rcv-Thread: connection #" + this.connNo + " => shared memory refused for non-local client");
+				return false;
+			}
+			ShmRings rings;
+			try {
+				rings = ShmRings.attach(new File(path));
+			} catch (IOException e) {
+				log("Rcv-Thread: connection #" + this.connNo + " => cannot attach ring file: " + e.getMessage());
+				return false;
+			}
+			
+			// send the reply as last frame through the socket, switching the forwarder to the rings
+			Packet reply = HubControl.createShmAttachReply(true);
+			try {
+				synchronized(this.outputLock) {
+					OutputStream o = this.getOutputStream();
+					if (o == null) { return false; }
+					o.write(reply.data, 0, reply.packetLen + 2);
+					o.flush();
+					this.shm = rings;
+				}
+			} catch (IOException e) {
+				log("Rcv-Thread: connection #" + this.connNo + " => cannot reply to shared memory attach: " + e.getMessage());
+				return false;
+			} finally {
+				reply.release();
+			}
+			this.stats.setMode("shm");
+			log("Rcv-Thread: connection #" + this.connNo + " => using ring file: " + path);
+			return true;
+		}
+		
+		/**
+		 * Transmit a packet ingone from some other machine to the
+		 * machine connected to this line (remote to local transmission),
+		 * the packet is buffered until the next {@code flush()}.
+		 * 
+		 * @param p packet to be transmitted.
+		 */
 		public void send(Packet p) {
+			if (this.shm != null) {
+				if (!this.shm.getHubToClient().offer(p.data, 2, p.packetLen)) {
+					this.shmLost++; // ring full: the client does not keep up
+				}
+				return;
+			}
 			try {
-				log("Distribute: connection #" + this.connNo + " => sending packet with net size: " + p.packetLen);
+				if (packetLogging) { log("Distribute: connection #" + this.connNo + " => sending packet with net size: " + p.packetLen); }
 				OutputStream o = this.getOutputStream();
 				if (o != null) {
 					if (this.isQemuLine()) {
 						byte[] lenBytes = { 0, 0, (byte)((p.packetLen >> 8) & 0xFF), (byte)(p.packetLen & 0xFF) };
-						log("Distribute: (qemu) sending length");
 						o.write(lenBytes);
-						o.flush();
-						log("Distribute: (qemu) sending data");
 						o.write(p.data, 2, p.packetLen);
-						o.flush();
-						log("Distribute: (qemu) flushed data");
+						if (packetLogging) { log("Distribute: (qemu) buffered data"); }
 					} else {
 						o.write(p.data, 0, p.packetLen + 2);
-						log("Distribute: sent data");
-						o.flush();
-						log("Distribute: flushed data");
+						if (packetLogging) { log("Distribute: buffered data"); }
 					}
 				}
 			} catch (IOException e) {
@@ -248,22 +720,61 @@ public class NetHub {
 			}
 		}
 		
+		/**
+		 * Transmit the packets buffered by {@code send()}.
+		 * 
+		 * @param count number of packets buffered since the last flush. 
+		 */
+		public void flush(int count) {
+			try {
+				OutputStream o = this.getOutputStream();
+				if (o != null && this.shm != null) {
+					this.outPackets.countSent(count - this.shmLost);
+					this.outPackets.countDropped(this.shmLost);
+					this.shmLost = 0;
+					if (this.shm.getHubToClient().wakeupNeeded()) {
+						o.write(0); // doorbell
+						o.flush();
+					}
+				} else if (o != null) {
+					o.flush();
+					if (packetLogging) { log("Distribute: flushed data"); }
+					this.outPackets.countSent(count);
+				}
+			} catch (IOException e) {
+				System.out.printf("Line.flush( conn #%d ) => exception %s\n", this.connNo, e.getMessage());
+				// ignored
+			}
+		}
+		
 		@Override
 		public void enqueueOutPacket(Packet p) {
-			synchronized(this.outPackets) {
-				this.outPackets.add(p);
-				this.outPackets.notifyAll();
+			if (!this.outPackets.offer(p) && !this.doStop()) {
+				log("Distribute: connection #" + this.connNo + " => packet queue overflow => dropping line");
+				this.stop();
 			}
 		}
 		
-		@Override
+		/**
+		 * Get the next packet from the packet queue to be transmitted
+		 * to the machine connected to this line, possibly waiting for
+		 * a packet to be enqueued.
+		 * 
+		 * @return the next packet to be transmitted.
+		 * @throws InterruptedException
+		 */
 		public Packet dequeuePacket() throws InterruptedException {
-			synchronized(this.outPackets) {
-				while(this.outPackets.isEmpty()) {
-					this.outPackets.wait();
-				}
-				return this.outPackets.remove(0);
-			}
+			return this.outPackets.take();
+		}
+		
+		/**
+		 * Get the next packet from the packet queue to be transmitted
+		 * to the machine connected to this line if one is available.
+		 * 
+		 * @return the next packet to be transmitted or {@code null}.
+		 */
+		public Packet pollPacket() {
+			return this.outPackets.poll();
 		}
 		
 		private int getInt(int byteLen) throws IOException {
@@ -276,12 +787,12 @@ public class NetHub {
 				}
 				val = (val << 8) + b;
 			}
-			logf(".. getInt(%d) -> %d\n", byteLen, val);
+			if (packetLogging) { logf(".. getInt(%d) -> %d\n", byteLen, val); }
 			return val;
 		}
 		
 		private Packet getPacket(int pLen) throws IOException {
-			Packet p = new Packet();
+			Packet p = Packet.allocate();
 			p.data[0] = (byte)((pLen >> 8) & 0xFF);
 			p.data[1] = (byte)(pLen & 0xFF);
 			if (pLen > 0) {
@@ -289,6 +800,10 @@ public class NetHub {
 				int pos = 2;
 				while(remaining > 0) {
 					int rLen = this.is.read(p.data, pos, remaining);
+					if (rLen < 0) {
+						p.release();
+						throw new IOException("EOF while reading packet");
+					}
 					remaining -= rLen;
 					pos += rLen;
 				}
@@ -318,6 +833,7 @@ public class NetHub {
 							}
 							if (allZero) {
 								this.switchToQemuMode();
+								p.release();
 							} else { 
 								distribute(p, this);
 							}
@@ -331,16 +847,23 @@ public class NetHub {
 						break;
 					}
 					
-					if (pLen > PACKET_LENGTH) {
+					if (!isValidPacketLength(pLen, this)) {
 						log("Rcv-Thread: connection #" + this.connNo + " => invalid packet size " + pLen + " => dropping line");
 						break;
 					}
-					log("Rcv-Thread: connection #" + this.connNo + " => received packet "+ (++pNum) + " with net size: " + pLen);
+					pNum++;
+					if (packetLogging) { log("Rcv-Thread: connection #" + this.connNo + " => received packet "+ pNum + " with net size: " + pLen); }
 					
 					Packet p = this.getPacket(pLen);
 					
 					// forward the packet to the other lines
 					distribute(p, this);
+					
+					// continue with the ring file if the packet switched the line to shared memory
+					if (this.shm != null) {
+						this.receiveFromSharedMemory();
+						break;
+					}
 				}
 			} catch (IOException e) {
 				// leave the loop on error
@@ -351,6 +874,30 @@ public class NetHub {
 			this.shutdown();
 		}
 		
+		private void receiveFromSharedMemory() throws IOException {
+			ShmRings.Ring ring = this.shm.getClientToHub();
+			while(!this.doStop()) {
+				Packet p = Packet.allocate();
+				int pLen;
+				try {
+					pLen = ring.take(p.data, 2, this.is);
+				} catch (IOException e) {
+					p.release();
+					throw e;
+				}
+				if (pLen < 1 || !isValidPacketLength(pLen, this)) {
+					p.release();
+					log("Rcv-Thread: connection #" + this.connNo + ((pLen < 0) ? " => doorbell closed" : " => invalid packet size " + pLen) + " => dropping line");
+					return;
+				}
+				p.data[0] = (byte)((pLen >> 8) & 0xFF);
+				p.data[1] = (byte)(pLen & 0xFF);
+				p.packetLen = pLen;
+				if (packetLogging) { log("Rcv-Thread: connection #" + this.connNo + " => received packet from ring with net size: " + pLen); }
+				distribute(p, this);
+			}
+		}
+		
 		private boolean doStop() {
 			synchronized(this) {
 				return this.stop;
@@ -365,7 +912,7 @@ public class NetHub {
 		}
 		
 		private void shutdown() {
-			log("Rcv-Thread: connection #" + this.connNo + " .. shutdown");
+			log("Rcv-Thread: connection #" + this.connNo + " .. shutdown (" + this.outPackets + ")");
 			
 			dropLine(this);
 			
@@ -376,17 +923,170 @@ public class NetHub {
 				this.stopped = true;
 				this.reader = null;
 			}
+			
+			this.forwarder.interrupt();
+			this.outPackets.clear();
 		}
 	}
 	
 	public static void main(String[] args) throws InterruptedException {
-		log("Starting NetHub");
+		int nioThreads = 0;
+		int adminPort = 0;
+		boolean withUdp = false;
+		List<String> trunkTargets = new ArrayList<>();
+		
+		// scan command line parameters
+		for (String arg : args) {
+			if (arg.toLowerCase().startsWith("-port:")) {
+				try {
+					hubPort = Integer.parseInt(arg.substring(6));
+				} catch (NumberFormatException e) {
+					hubPort = -1;
+				}
+				if (hubPort < 1 || hubPort > 65535) {
+					log("**** invalid hub port in: " + arg);
+					return;
+				}
+			} else if (arg.toLowerCase().startsWith("-trunk:")) {
+				String target = arg.substring(7);
+				int colon = target.lastIndexOf(':');
+				int port = -1;
+				try {
+					port = (colon > 0) ? Integer.parseInt(target.substring(colon + 1)) : -1;
+				} catch (NumberFormatException e) {
+					// port remains invalid
+				}
+				if (port < 1 || port > 65535) {
+					log("**** invalid trunk target (host:port expected) in: " + arg);
+					return;
+				}
+				trunkTargets.add(target);
+			} else if (arg.toLowerCase().startsWith("-macaging:")) {
+				try {
+					macAgingMs = Long.parseLong(arg.substring(10)) * 1000;
+				} catch (NumberFormatException e) {
+					macAgingMs = -1;
+				}
+				if (macAgingMs < 0) {
+					log("**** invalid aging seconds in: " + arg);
+					return;
+				}
+				macTable = (macAgingMs > 0) ? new MacTable(macAgingMs) : null;
+			} else if (arg.toLowerCase().startsWith("-queue:")) {
+				try {
+					queueCapacity = Integer.parseInt(arg.substring(7));
+				} catch (NumberFormatException e) {
+					queueCapacity = -1;
+				}
+				if (queueCapacity < 1) {
+					log("**** invalid queue length in: " + arg);
+					return;
+				}
+			} else if ("-overflow:dropoldest".equalsIgnoreCase(arg)) {
+				overflowPolicy = PacketQueue.OverflowPolicy.DROP_OLDEST;
+			} else if ("-overflow:dropnewest".equalsIgnoreCase(arg)) {
+				overflowPolicy = PacketQueue.OverflowPolicy.DROP_NEWEST;
+			} else if ("-overflow:disconnect".equalsIgnoreCase(arg)) {
+				overflowPolicy = PacketQueue.OverflowPolicy.DISCONNECT;
+			} else if (arg.toLowerCase().startsWith("-pool:")) {
+				int poolSize = -1;
+				try {
+					poolSize = Integer.parseInt(arg.substring(6));
+				} catch (NumberFormatException e) {
+					// poolSize remains invalid
+				}
+				if (poolSize < 1) {
+					log("**** invalid pool size in: " + arg);
+					return;
+				}
+				freePackets = new PacketQueue(poolSize, PacketQueue.OverflowPolicy.DROP_NEWEST);
+			} else if (arg.toLowerCase().startsWith("-batch:")) {
+				try {
+					batchWindowNanos = Long.parseLong(arg.substring(7)) * 1000;
+				} catch (NumberFormatException e) {
+					batchWindowNanos = -1;
+				}
+				if (batchWindowNanos < 0) {
+					log("**** invalid batching window microseconds in: " + arg);
+					return;
+				}
+			} else if (arg.toLowerCase().startsWith("-admin:")) {
+				try {
+					adminPort = Integer.parseInt(arg.substring(7));
+				} catch (NumberFormatException e) {
+					adminPort = -1;
+				}
+				if (adminPort < 1 || adminPort > 65535) {
+					log("**** invalid admin port in: " + arg);
+					return;
+				}
+			} else if ("-remotemonitor".equalsIgnoreCase(arg)) {
+				remoteMonitoring = true;
+			} else if ("-remotetrunks".equalsIgnoreCase(arg)) {
+				HubTrunks.acceptRemoteTrunks();
+			} else if ("-udp".equalsIgnoreCase(arg)) {
+				withUdp = true;
+			} else if ("-quiet".equalsIgnoreCase(arg)) {
+				packetLogging = false;
+			} else if ("-nio".equalsIgnoreCase(arg)) {
+				nioThreads = Math.min(4, Runtime.getRuntime().availableProcessors());
+			} else if (arg.toLowerCase().startsWith("-nio:")) {
+				try {
+					nioThreads = Integer.parseInt(arg.substring(5));
+				} catch (NumberFormatException e) {
+					nioThreads = -1;
+				}
+				if (nioThreads < 1) {
+					log("**** invalid thread count in: " + arg);
+					return;
+				}
+			} else {
+				log("** invalid parameter ignored: " + arg);
+			}
+		}
+		
+		if (adminPort > 0) {
+			try {
+				HubAdmin.start(adminPort);
+				log("Admin service listening on localhost port " + adminPort);
+			} catch (IOException e) {
+				log("**** cannot listen to admin port " + adminPort + ": " + e.getMessage());
+				return;
+			}
+		}
+		
+		if (withUdp) {
+			try {
+				new UdpHubService(hubPort).start();
+				log("UDP service listening on port " + hubPort);
+			} catch (IOException e) {
+				log("**** cannot listen to UDP port " + hubPort + ": " + e.getMessage());
+				return;
+			}
+		}
+		
+		for (String target : trunkTargets) {
+			int colon = target.lastIndexOf(':');
+			HubTrunks.connect(target.substring(0, colon), Integer.parseInt(target.substring(colon + 1)));
+		}
+		
+		if (nioThreads > 0) {
+			log("Starting NetHub on port " + hubPort + " (nio engine, " + nioThreads + " event loop threads)");
+			try {
+				new NioHubEngine(nioThreads).run(hubPort);
+			} catch (IOException e) {
+				log("**** cannot listen to port " + hubPort + ": " + e.getMessage());
+			}
+			return;
+		}
+		
+		log("Starting NetHub on port " + hubPort);
 		
 		ServerSocket serviceSocket = null;
 		try {
-			serviceSocket = new ServerSocket(HUB_SOCKET);
+			serviceSocket = new ServerSocket(hubPort);
 		} catch (IOException  e) {
-			log("**** cannot listen to port " + HUB_SOCKET);
+			log("**** cannot listen to port " + hubPort);
 			return;
 		}
 		
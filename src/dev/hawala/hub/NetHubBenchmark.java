@@ -0,0 +1,467 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.hub;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load generator and benchmark for the NetHub, measuring the forwarding throughput,
+ * the forwarding latency and the packet losses of a (local) hub.
+ * <p>
+ * The benchmark opens a number of synthetic lines to the hub (using the normal resp. the
+ * QEMU framing), each sending packets with a configurable rate and mix of broadcast
+ * and unicast packets (to randomly chosen other lines) and receiving the packets
+ * forwarded by the hub. Each packet carries the time it was sent, so the latency
+ * from sending to receiving the packet can be measured (all lines are in this JVM).
+ * After a warm-up phase (allowing the hub to learn the addresses of the lines), the
+ * packets sent during the measurement interval are evaluated.
+ * </p>
+ * <p>
+ * Command line parameters (all optional):
+ * </p>
+ * <ul>
+ * <li>{@code -host:}<i>name</i> host of the hub (default: {@code localhost})</li>
+ * <li>{@code -port:}<i>n</i> port of the hub (default: 3333)</li>
+ * <li>{@code -lines:}<i>n</i> number of lines (default: 8)</li>
+ * <li>{@code -qemu:}<i>n</i> number of these lines using the QEMU framing (default: 0)</li>
+ * <li>{@code -broadcast:}<i>percent</i> percentage of broadcast packets (default: 10)</li>
+ * <li>{@code -rate:}<i>n</i> packets per second sent by each line, 0 for "as fast as possible" (default: 1000)</li>
+ * <li>{@code -size:}<i>bytes</i> ethernet packet length (default: 64)</li>
+ * <li>{@code -warmup:}<i>seconds</i> duration of the warm-up phase (default: 2)</li>
+ * <li>{@code -duration:}<i>seconds</i> duration of the measurement (default: 10)</li>
+ * </ul>
+ * 
+ * @author Dodo contributors
+ */
+public class NetHubBenchmark {
+	
+	private static final int ETHERTYPE = 0x88B6; // IEEE local experimental 2 (0x88B5 is used for hub control frames)
+	private static final int MAGIC = 0x4E484246; // 'NHBF'
+	
+	// packet layout (without length prefix)
+	private static final int OFFSET_ETHERTYPE = 12;
+	private static final int OFFSET_MAGIC = 14;
+	private static final int OFFSET_MEASURED = 18;
+	private static final int OFFSET_SENT_AT = 19;
+	private static final int MIN_PACKET_LENGTH = 27;
+	
+	// waiting for the packets still in transit after the measurement
+	private static final int DRAIN_QUIET_MS = 1000;
+	private static final int DRAIN_MAX_MS = 30_000;
+	
+	private static void logf(String template, Object... args) {
+		System.out.printf(template, args);
+	}
+	
+	/**
+	 * Latency histogram with logarithmic buckets (powers of 2) subdivided in
+	 * 32 linear sub-buckets, giving a precision of about 3% for the percentiles.
+	 */
+	private static class LatencyHistogram {
+		
+		private static final int SUB_BUCKETS = 32;
+		private static final int SUB_BITS = 5;
+		
+		private final long[] counts = new long[64 * SUB_BUCKETS];
+		private long total = 0;
+		private long max = 0;
+		
+		private static int indexOf(long value) {
+			if (value < SUB_BUCKETS) { return (int)value; }
+			int exp = 63 - Long.numberOfLeadingZeros(value); // >= SUB_BITS
+			int sub = (int)(value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+			return ((exp - SUB_BITS + 1) * SUB_BUCKETS) + sub;
+		}
+		
+		private static long valueOf(int index) {
+			if (index < SUB_BUCKETS) { return index; }
+			int exp = (index / SUB_BUCKETS) + SUB_BITS - 1;
+			long sub = index % SUB_BUCKETS;
+			return (SUB_BUCKETS + sub) << (exp - SUB_BITS);
+		}
+		
+		void record(long value) {
+			value = Math.max(0, value);
+			this.counts[indexOf(value)]++;
+			this.total++;
+			this.max = Math.max(this.max, value);
+		}
+		
+		void add(LatencyHistogram other) {
+			for (int i = 0; i < this.counts.length; i++) {
+				this.counts[i] += other.counts[i];
+			}
+			this.total += other.total;
+			this.max = Math.max(this.max, other.max);
+		}
+		
+		long getTotal() {
+			return this.total;
+		}
+		
+		long getMax() {
+			return this.max;
+		}
+		
+		long percentile(double percent) {
+			if (this.total == 0) { return 0; }
+			long limit = (long)Math.ceil(this.total * percent / 100.0);
+			long seen = 0;
+			for (int i = 0; i < this.counts.length; i++) {
+				seen += this.counts[i];
+				if (seen >= limit) {
+					return Math.min(valueOf(i), this.max);
+				}
+			}
+			return this.max;
+		}
+	}
+	
+	/**
+	 * A synthetic line to the hub, sending packets with the configured
+	 * pattern and measuring the packets received.
+	 */
+	private static class BenchLine {
+		
+		private final int lineNo;
+		private final boolean qemu;
+		private final Socket socket;
+		private final InputStream is;
+		private final OutputStream os;
+		private final byte[] macAddress;
+		
+		private final LatencyHistogram latencies = new LatencyHistogram(); // only accessed by the receiver
+		private final AtomicLong received = new AtomicLong();
+		private long sent = 0;
+		private long expectedDeliveries = 0;
+		private long bytesSent = 0;
+		
+		private Thread sender;
+		private Thread receiver;
+		
+		private BenchLine(int lineNo, boolean qemu, String host, int port) throws IOException {
+			this.lineNo = lineNo;
+			this.qemu = qemu;
+			this.socket = new Socket(host, port);
+			this.socket.setTcpNoDelay(true);
+			this.is = this.socket.getInputStream();
+			this.os = new BufferedOutputStream(this.socket.getOutputStream(), 16384);
+			this.macAddress = macOf(lineNo);
+			if (qemu) {
+				byte[] probe = new byte[18];
+				probe[3] = 14;
+				this.os.write(probe);
+				this.os.flush();
+			}
+		}
+		
+		private static byte[] macOf(int lineNo) {
+			// locally administered unicast address
+			return new byte[] { 0x02, 0x00, 0x4E, 0x48, (byte)(lineNo >> 8), (byte)lineNo };
+		}
+		
+		private void writePacket(byte[] packet, int len) throws IOException {
+			if (this.qemu) {
+				this.os.write(0);
+				this.os.write(0);
+			}
+			this.os.write(len >> 8);
+			this.os.write(len & 0xFF);
+			this.os.write(packet, 0, len);
+		}
+		
+		private void send(Benchmark b) {
+			byte[] packet = new byte[b.packetSize];
+			packet[OFFSET_ETHERTYPE] = (byte)(ETHERTYPE >> 8);
+			packet[OFFSET_ETHERTYPE + 1] = (byte)ETHERTYPE;
+			putLong(packet, OFFSET_MAGIC, 4, MAGIC);
+			System.arraycopy(this.macAddress, 0, packet, 6, 6);
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			long intervalNanos = (b.rate > 0) ? 1_000_000_000L / b.rate : 0;
+			long nextSend = System.nanoTime();
+			try {
+				// announce this line with a broadcast to let the hub learn the address
+				for (int i = 0; i < 6; i++) { packet[i] = (byte)0xFF; }
+				packet[OFFSET_MEASURED] = 0;
+				putLong(packet, OFFSET_SENT_AT, 8, System.nanoTime());
+				this.writePacket(packet, packet.length);
+				this.os.flush();
+				
+				while(!b.stopSending) {
+					if (intervalNanos > 0) {
+						long now = System.nanoTime();
+						if (now < nextSend) {
+							LockSupport.parkNanos(nextSend - now);
+						}
+						nextSend += intervalNanos;
+					}
+					
+					boolean broadcast = b.lines.size() < 2 || random.nextInt(100) < b.broadcastPercent;
+					if (broadcast) {
+						for (int i = 0; i < 6; i++) { packet[i] = (byte)0xFF; }
+					} else {
+						int target = random.nextInt(b.lines.size() - 1);
+						if (target >= this.lineNo) { target++; }
+						System.arraycopy(macOf(target), 0, packet, 0, 6);
+					}
+					boolean measured = b.measuring;
+					packet[OFFSET_MEASURED] = (byte)(measured ? 1 : 0);
+					putLong(packet, OFFSET_SENT_AT, 8, System.nanoTime());
+					this.writePacket(packet, packet.length);
+					if (intervalNanos > 0 || random.nextInt(16) == 0) {
+						this.os.flush(); // at full speed: let the buffer collect several packets
+					}
+					if (measured) {
+						this.sent++;
+						this.bytesSent += packet.length;
+						this.expectedDeliveries += broadcast ? (b.lines.size() - 1) : 1;
+					}
+				}
+				this.os.flush();
+			} catch (IOException e) {
+				logf("** line %d: send failed: %s\n", this.lineNo, e.getMessage());
+			}
+		}
+		
+		private int readLength() throws IOException {
+			int len = 0;
+			int count = this.qemu ? 4 : 2;
+			for (int i = 0; i < count; i++) {
+				int b = this.is.read();
+				if (b < 0) { throw new EOFException(); }
+				len = (len << 8) | b;
+			}
+			return len;
+		}
+		
+		private void receive() {
+			byte[] packet = new byte[2048];
+			try {
+				while(true) {
+					int len = this.readLength();
+					if (len > packet.length) { throw new IOException("invalid packet length " + len); }
+					int pos = 0;
+					while(pos < len) {
+						int r = this.is.read(packet, pos, len - pos);
+						if (r < 0) { throw new EOFException(); }
+						pos += r;
+					}
+					long now = System.nanoTime();
+					if (len < MIN_PACKET_LENGTH
+							|| getLong(packet, OFFSET_ETHERTYPE, 2) != ETHERTYPE
+							|| getLong(packet, OFFSET_MAGIC, 4) != MAGIC
+							|| packet[OFFSET_MEASURED] == 0) {
+						continue;
+					}
+					this.latencies.record(now - getLong(packet, OFFSET_SENT_AT, 8));
+					this.received.incrementAndGet();
+				}
+			} catch (IOException e) {
+				// socket closed at end of benchmark or connection lost
+			}
+		}
+		
+		private void start(Benchmark b) {
+			this.receiver = new Thread(this::receive);
+			this.receiver.setName("Bench receiver #" + this.lineNo);
+			this.receiver.setDaemon(true);
+			this.receiver.start();
+			this.sender = new Thread(() -> this.send(b));
+			this.sender.setName("Bench sender #" + this.lineNo);
+			this.sender.setDaemon(true);
+			this.sender.start();
+		}
+		
+		private void close() {
+			try { this.socket.close(); } catch (IOException e) { /* ignored */ }
+		}
+	}
+	
+	private static long getLong(byte[] b, int offset, int len) {
+		long v = 0;
+		for (int i = 0; i < len; i++) {
+			v = (v << 8) | (b[offset + i] & 0xFF);
+		}
+		return v;
+	}
+	
+	private static void putLong(byte[] b, int offset, int len, long v) {
+		for (int i = len - 1; i >= 0; i--) {
+			b[offset + i] = (byte)v;
+			v >>>= 8;
+		}
+	}
+	
+	/**
+	 * Configuration and state of a benchmark run.
+	 */
+	private static class Benchmark {
+		private String host = "localhost";
+		private int port = 3333;
+		private int lineCount = 8;
+		private int qemuCount = 0;
+		private int broadcastPercent = 10;
+		private int rate = 1000;
+		private int packetSize = 64;
+		private int warmupSeconds = 2;
+		private int durationSeconds = 10;
+		
+		private final List<BenchLine> lines = new ArrayList<>();
+		private volatile boolean measuring = false;
+		private volatile boolean stopSending = false;
+		
+		private void run() throws IOException, InterruptedException {
+			logf("NetHub benchmark: %s:%d, lines: %d (qemu: %d), broadcasts: %d%%, rate: %s, packet size: %d\n",
+					this.host, this.port, this.lineCount, this.qemuCount, this.broadcastPercent,
+					(this.rate > 0) ? this.rate + " packets/s per line" : "max", this.packetSize);
+			
+			for (int i = 0; i < this.lineCount; i++) {
+				this.lines.add(new BenchLine(i, i < this.qemuCount, this.host, this.port));
+			}
+			for (BenchLine line : this.lines) {
+				line.start(this);
+			}
+			
+			Thread.sleep(this.warmupSeconds * 1000L);
+			this.measuring = true;
+			long start = System.nanoTime();
+			Thread.sleep(this.durationSeconds * 1000L);
+			this.measuring = false;
+			long elapsedNanos = System.nanoTime() - start;
+			this.stopSending = true;
+			for (BenchLine line : this.lines) {
+				line.sender.join();
+			}
+			this.drain();
+			for (BenchLine line : this.lines) {
+				line.close();
+			}
+			for (BenchLine line : this.lines) {
+				line.receiver.join();
+			}
+			
+			this.report(elapsedNanos);
+		}
+		
+		private long getReceived() {
+			long received = 0;
+			for (BenchLine line : this.lines) {
+				received += line.received.get();
+			}
+			return received;
+		}
+		
+		private void drain() throws InterruptedException {
+			long limit = System.currentTimeMillis() + DRAIN_MAX_MS;
+			long last = -1;
+			long current = this.getReceived();
+			while(current != last && System.currentTimeMillis() < limit) {
+				Thread.sleep(DRAIN_QUIET_MS);
+				last = current;
+				current = this.getReceived();
+			}
+		}
+		
+		private void report(long elapsedNanos) {
+			long sent = 0;
+			long bytesSent = 0;
+			long expected = 0;
+			long received = 0;
+			LatencyHistogram latencies = new LatencyHistogram();
+			for (BenchLine line : this.lines) {
+				sent += line.sent;
+				bytesSent += line.bytesSent;
+				expected += line.expectedDeliveries;
+				received += line.received.get();
+				latencies.add(line.latencies);
+			}
+			double seconds = elapsedNanos / 1_000_000_000.0;
+			long dropped = Math.max(0, expected - received);
+			
+			logf("\nmeasured interval: %.3f s\n", seconds);
+			logf("packets sent     : %d (%.0f packets/s, %.2f MByte/s)\n", sent, sent / seconds, bytesSent / seconds / 1_000_000);
+			logf("packets delivered: %d of %d expected (%.0f packets/s)\n", received, expected, received / seconds);
+			logf("packets dropped  : %d (%.3f%%)\n", dropped, (expected > 0) ? (dropped * 100.0) / expected : 0.0);
+			logf("latency (us)     : p50 %.1f  p99 %.1f  p999 %.1f  max %.1f\n",
+					latencies.percentile(50) / 1000.0, latencies.percentile(99) / 1000.0,
+					latencies.percentile(99.9) / 1000.0, latencies.getMax() / 1000.0);
+		}
+	}
+	
+	private static int intArg(String arg, int prefixLength, int min, int max) {
+		int value;
+		try {
+			value = Integer.parseInt(arg.substring(prefixLength));
+		} catch (NumberFormatException e) {
+			value = min - 1;
+		}
+		if (value < min || value > max) {
+			logf("**** invalid value in: %s\n", arg);
+			System.exit(1);
+		}
+		return value;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Benchmark b = new Benchmark();
+		for (String arg : args) {
+			String a = arg.toLowerCase();
+			if (a.startsWith("-host:")) {
+				b.host = arg.substring(6);
+			} else if (a.startsWith("-port:")) {
+				b.port = intArg(arg, 6, 1, 65535);
+			} else if (a.startsWith("-lines:")) {
+				b.lineCount = intArg(arg, 7, 1, 250);
+			} else if (a.startsWith("-qemu:")) {
+				b.qemuCount = intArg(arg, 6, 0, 250);
+			} else if (a.startsWith("-broadcast:")) {
+				b.broadcastPercent = intArg(arg, 11, 0, 100);
+			} else if (a.startsWith("-rate:")) {
+				b.rate = intArg(arg, 6, 0, 1_000_000);
+			} else if (a.startsWith("-size:")) {
+				b.packetSize = intArg(arg, 6, 60, NetHub.PACKET_LENGTH);
+			} else if (a.startsWith("-warmup:")) {
+				b.warmupSeconds = intArg(arg, 8, 0, 3600);
+			} else if (a.startsWith("-duration:")) {
+				b.durationSeconds = intArg(arg, 10, 1, 3600);
+			} else {
+				logf("** invalid parameter ignored: %s\n", arg);
+			}
+		}
+		b.run();
+	}
+}
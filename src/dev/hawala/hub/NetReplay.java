@@ -0,0 +1,751 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.hub;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import dev.hawala.hub.NetHub.Packet;
+import dev.hawala.xns.MachineIds;
+import dev.hawala.xns.level0.NetPacket;
+import dev.hawala.xns.level1.IDP;
+import dev.hawala.xns.level1.IDP.KnownSocket;
+import dev.hawala.xns.level1.IDP.PacketType;
+import dev.hawala.xns.level2.PEX;
+import dev.hawala.xns.level2.SPP;
+
+/**
+ * Replay of XNS traffic captured with {@code NetSpy} (pcap files) against a
+ * server (typically a Dodo server) connected to a NetHub, reporting the response
+ * latencies per Courier program and procedure.
+ * <p>
+ * The packets sent by the workstations (i.e. all machines except the captured server)
+ * are replayed to the server, each workstation by an own thread, with the original
+ * timing (optionally accelerated) or as fast as possible. The packets are rewritten
+ * as follows:
+ * </p>
+ * <ul>
+ * <li>the workstations get synthetic machine ids (locally administered addresses
+ * starting with {@code 02-DD-00-00-00-01}),</li>
+ * <li>the captured server is replaced by the target server,</li>
+ * <li>the network numbers are optionally replaced,</li>
+ * <li>the server side connection ids and sockets of SPP connections are replaced
+ * by the values used by the target server when the connection is opened,</li>
+ * <li>the checksum is recomputed (if present).</li>
+ * </ul>
+ * <p>
+ * As the replay does not implement the SPP protocol machinery (e.g. retransmissions),
+ * a packet of an SPP connection is sent only after the target server sent all packets
+ * acknowledged by the packet in the capture (i.e. the workstation had received at
+ * that time), waiting at most {@code GATE_TIMEOUT_MS} for the server. So the packet
+ * sequence of the SPP connections stays consistent even when replaying faster
+ * than the original traffic.
+ * </p>
+ * <p>
+ * Response latencies are measured for Courier calls over SPP (from sending the call
+ * to the end of the reply message), expedited Courier calls over PEX (clearinghouse and
+ * authentication broadcasts), other PEX requests and echo requests. Remaining
+ * higher level state in the replayed calls (e.g. session handles or verifiers
+ * returned by the original server) is not rewritten, so calls depending on such
+ * data may be rejected by the target server, which is visible in the error counts.
+ * </p>
+ * <p>
+ * Command line parameters:
+ * </p>
+ * <ul>
+ * <li>{@code -host:}<i>name</i> host of the hub (default: {@code localhost})</li>
+ * <li>{@code -port:}<i>n</i> port of the hub (default: 3333)</li>
+ * <li>{@code -speed:}<i>factor</i> replay speed relative to the capture, or {@code max} (default: 1)</li>
+ * <li>{@code -server:}<i>machine-id</i> the server in the capture (default: the machine receiving most packets on the Courier socket)</li>
+ * <li>{@code -target:}<i>machine-id</i> the server to replay against (default: the captured server)</li>
+ * <li>{@code -network:}<i>n</i> network number to use instead of the captured network number(s)</li>
+ * <li><i>pcap-file ...</i> the capture file(s) to replay, in chronological order</li>
+ * </ul>
+ * 
+ * @author Dodo contributors
+ */
+public class NetReplay {
+	
+	private static final int ETHERTYPE_XNS = 0x0600;
+	private static final int ETH_HEADER_LENGTH = 14;
+	
+	private static final long FIRST_WORKSTATION_ID = 0x0000_02DD_0000_0001L;
+	
+	private static final long GATE_TIMEOUT_MS = 5000;
+	private static final long REPLY_TIMEOUT_MS = 5000;
+	
+	private static final int COURIER_CLIENT_TYPE = 2; // expedited courier (clearinghouse resp. authentication)
+	
+	private static final Map<Integer,String> COURIER_PROGRAMS = new HashMap<>();
+	static {
+		COURIER_PROGRAMS.put(0, "BulkData");
+		COURIER_PROGRAMS.put(2, "Clearinghouse");
+		COURIER_PROGRAMS.put(3, "Gap");
+		COURIER_PROGRAMS.put(4, "Printing");
+		COURIER_PROGRAMS.put(10, "Filing");
+		COURIER_PROGRAMS.put(14, "Authentication");
+		COURIER_PROGRAMS.put(15, "Time");
+		COURIER_PROGRAMS.put(17, "MailTransport");
+		COURIER_PROGRAMS.put(18, "Inbasket");
+	}
+	
+	private static void logf(String template, Object... args) {
+		System.out.printf(template, args);
+	}
+	
+	private static String machineId(long id) {
+		return String.format("%02X-%02X-%02X-%02X-%02X-%02X",
+				(id >> 40) & 0xFF, (id >> 32) & 0xFF, (id >> 24) & 0xFF, (id >> 16) & 0xFF, (id >> 8) & 0xFF, id & 0xFF);
+	}
+	
+	/*
+	 * captured packets
+	 */
+	
+	private static class Frame {
+		private final long timestamp; // microseconds
+		private final byte[] data;    // ethernet frame
+		
+		Frame(long timestamp, byte[] data) {
+			this.timestamp = timestamp;
+			this.data = data;
+		}
+		
+		boolean isXns() {
+			return this.data.length >= ETH_HEADER_LENGTH + IDP.IDP_DATA_START
+				&& getWord(this.data, 12) == ETHERTYPE_XNS;
+		}
+		
+		IDP getIdp() {
+			return new IDP(new NetPacket(this.data, ETH_HEADER_LENGTH, this.data.length - ETH_HEADER_LENGTH));
+		}
+	}
+	
+	private static int getWord(byte[] data, int offset) {
+		return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+	}
+	
+	private static void putAddress(byte[] data, int offset, long address) {
+		for (int i = 5; i >= 0; i--) {
+			data[offset + i] = (byte)(address & 0xFF);
+			address >>>= 8;
+		}
+	}
+	
+	private static void readPcap(String filename, List<Frame> frames) throws IOException {
+		try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(filename), 65536))) {
+			int magic = dis.readInt();
+			boolean swapped;
+			boolean nanos;
+			if (magic == 0xA1B2C3D4 || magic == 0xA1B23C4D) {
+				swapped = false;
+				nanos = (magic == 0xA1B23C4D);
+			} else if (magic == 0xD4C3B2A1 || magic == 0x4D3CB2A1) {
+				swapped = true;
+				nanos = (magic == 0x4D3CB2A1);
+			} else {
+				throw new IOException("not a pcap file: " + filename);
+			}
+			dis.skipBytes(16);
+			int linkType = swapped ? Integer.reverseBytes(dis.readInt()) : dis.readInt();
+			if (linkType != 1) {
+				throw new IOException("not an ethernet capture: " + filename);
+			}
+			
+			while(true) {
+				int secs;
+				try {
+					secs = dis.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+				int fraction = dis.readInt();
+				int capLength = dis.readInt();
+				dis.readInt(); // original length
+				if (swapped) {
+					secs = Integer.reverseBytes(secs);
+					fraction = Integer.reverseBytes(fraction);
+					capLength = Integer.reverseBytes(capLength);
+				}
+				byte[] data = new byte[capLength];
+				dis.readFully(data);
+				long micros = (nanos) ? fraction / 1000 : fraction;
+				frames.add(new Frame(((secs & 0xFFFFFFFFL) * 1_000_000) + micros, data));
+			}
+		}
+	}
+	
+	/*
+	 * replay configuration and state
+	 */
+	
+	private static double speed = 1.0; // 0 = as fast as possible
+	private static long capturedServer = -1;
+	private static long targetServer = -1;
+	private static long network = -1;
+	
+	private static OutputStream hubOut;
+	private static long replayStartNanos;
+	private static long captureStartMicros;
+	
+	private static final Map<Long,Workstation> workstations = new LinkedHashMap<>(); // replay-id => workstation
+	private static final Map<String,CallStats> callStats = new TreeMap<>();
+	private static final Map<String,ArrayDeque<PendingCall>> pendingCalls = new HashMap<>();
+	
+	private static final AtomicLong packetsSent = new AtomicLong();
+	private static final AtomicLong packetsReceived = new AtomicLong();
+	private static final AtomicLong gateTimeouts = new AtomicLong();
+	private static final AtomicLong errorPackets = new AtomicLong();
+	
+	/**
+	 * Request sent to the server and waiting for the response.
+	 */
+	private static class PendingCall {
+		private final String label;
+		private final long sentAt = System.nanoTime();
+		
+		PendingCall(String label) {
+			this.label = label;
+		}
+	}
+	
+	/**
+	 * Response statistics for one kind of request.
+	 */
+	private static class CallStats {
+		private int calls = 0;
+		private int returns = 0;
+		private int errors = 0;
+		private final List<Long> latencies = new ArrayList<>();
+	}
+	
+	private static void requestSent(String key, String label) {
+		synchronized(pendingCalls) {
+			pendingCalls.computeIfAbsent(key, k -> new ArrayDeque<>()).addLast(new PendingCall(label));
+			callStats.computeIfAbsent(label, k -> new CallStats()).calls++;
+		}
+	}
+	
+	private static void responseReceived(String key, boolean isError) {
+		long now = System.nanoTime();
+		synchronized(pendingCalls) {
+			ArrayDeque<PendingCall> pending = pendingCalls.get(key);
+			if (pending == null || pending.isEmpty()) { return; } // unsolicited or duplicate response
+			PendingCall call = pending.removeFirst();
+			CallStats stats = callStats.get(call.label);
+			if (isError) {
+				stats.errors++;
+			} else {
+				stats.returns++;
+			}
+			stats.latencies.add(now - call.sentAt);
+			pendingCalls.notifyAll();
+		}
+	}
+	
+	private static int getPendingCount() {
+		synchronized(pendingCalls) {
+			int count = 0;
+			for (ArrayDeque<PendingCall> pending : pendingCalls.values()) {
+				count += pending.size();
+			}
+			return count;
+		}
+	}
+	
+	/**
+	 * Tracking of the Courier messages in one direction of a SPP connection.
+	 */
+	private static class CourierTracker {
+		private boolean versionsSeen = false;
+		private int courierVersion = 3;
+		private boolean atMessageStart = true;
+		
+		/**
+		 * Check the payload of a packet for the begin of a Courier message.
+		 * 
+		 * @param spp the packet to check.
+		 * @return the 16-bit words at the begin of the Courier message (message type
+		 *   and the following words) or {@code null} if no message begins in the packet.
+		 */
+		int[] check(SPP spp) {
+			if (spp.isSystemPacket() || spp.getDatastreamType() != 0) { return null; }
+			int len = spp.getPayloadLength();
+			int pos = 0;
+			int[] header = null;
+			if (!this.versionsSeen && len >= 4) {
+				int high = spp.rdCardinal(2);
+				this.courierVersion = (high >= 3) ? 3 : 2;
+				this.versionsSeen = true;
+				pos = 4;
+			}
+			if (this.versionsSeen && this.atMessageStart && pos + 4 <= len) {
+				header = new int[(len - pos) / 2];
+				for (int i = 0; i < header.length && i < 6; i++) {
+					header[i] = spp.rdCardinal(pos + (i * 2));
+				}
+				this.atMessageStart = false;
+			}
+			if (spp.isEndOfMessage() && (pos < len || header != null)) {
+				this.atMessageStart = true;
+			}
+			return header;
+		}
+	}
+	
+	/**
+	 * State of a SPP connection opened by a workstation.
+	 */
+	private static class Connection {
+		private final String key;
+		private int serverConnectionId = 0; // as assigned by the target server
+		private int serverSocket = 0;       // as used by the target server for the connection
+		private int serverDataPackets = 0;  // data packets received from the target server
+		private int serverNextSequence = -1; // next data packet expected from the target server
+		private int ackBase = -1;           // acknowledge number of the workstation before receiving data
+		private int clientNextSequence = -1; // next data packet of the workstation (ignoring retransmissions)
+		private final CourierTracker calls = new CourierTracker();
+		private final CourierTracker replies = new CourierTracker();
+		
+		Connection(long workstation, int connectionId) {
+			this.key = String.format("spp:%012X:%d", workstation, connectionId);
+		}
+	}
+	
+	private static String courierLabel(int courierVersion, int[] call) {
+		// call: messageType(0) transaction program(1 resp. 2 words) version procedure
+		int program;
+		int idx;
+		if (courierVersion == 3) {
+			if (call.length < 6) { return null; }
+			program = (call[2] << 16) | call[3];
+			idx = 4;
+		} else {
+			if (call.length < 5) { return null; }
+			program = call[2];
+			idx = 3;
+		}
+		String name = COURIER_PROGRAMS.getOrDefault(program, "program");
+		return String.format("Courier %s(%d) v%d proc %d", name, program, call[idx], call[idx + 1]);
+	}
+	
+	/*
+	 * replaying workstation
+	 */
+	
+	private static class Workstation implements Runnable {
+		private final long capturedId;
+		private final long replayId;
+		private final List<Frame> frames = new ArrayList<>();
+		private final Map<Integer,Connection> connections = new ConcurrentHashMap<>();
+		private final byte[] sendBuffer = new byte[NetHub.PACKET_LENGTH + 2];
+		
+		Workstation(long capturedId, long replayId) {
+			this.capturedId = capturedId;
+			this.replayId = replayId;
+		}
+		
+		@Override
+		public void run() {
+			try {
+				for (Frame frame : this.frames) {
+					if (speed > 0) {
+						long dueAt = replayStartNanos + (long)(((frame.timestamp - captureStartMicros) * 1000) / speed);
+						long delay = dueAt - System.nanoTime();
+						if (delay > 0) {
+							Thread.sleep(delay / 1_000_000, (int)(delay % 1_000_000));
+						}
+					}
+					this.replay(frame);
+				}
+			} catch (InterruptedException e) {
+				// stop replaying
+			} catch (IOException e) {
+				logf("** workstation %s: hub connection failed: %s\n", machineId(this.capturedId), e.getMessage());
+			}
+		}
+		
+		private void replay(Frame frame) throws IOException, InterruptedException {
+			IDP idp = frame.getIdp();
+			
+			// rewrite the addresses
+			long dstHost = idp.getDstHost();
+			if (dstHost == capturedServer) {
+				dstHost = targetServer;
+				idp.setDstHost(dstHost);
+			}
+			idp.setSrcHost(this.replayId);
+			if (network >= 0) {
+				if (idp.getDstNetwork() != IDP.LOCAL_NETWORK && idp.getDstNetwork() != IDP.ANY_NETWORK) {
+					idp.setDstNetwork(network);
+				}
+				if (idp.getSrcNetwork() != IDP.LOCAL_NETWORK) {
+					idp.setSrcNetwork(network);
+				}
+			}
+			
+			// rewrite the connection and register the requests
+			PacketType type = idp.getPacketType();
+			if (type == PacketType.SPP) {
+				SPP spp = new SPP(idp);
+				Connection conn = this.connections.computeIfAbsent(
+						spp.getSrcConnectionId(), id -> new Connection(this.replayId, id));
+				int ackBase;
+				synchronized(conn) {
+					if (conn.ackBase < 0) { conn.ackBase = spp.getAcknowledgeNumber(); }
+					ackBase = conn.ackBase;
+				}
+				if (spp.getDstConnectionId() != 0 && spp.getDstConnectionId() != 0xFFFF) { // else: still unknown when opening
+					this.awaitServer(conn, (spp.getAcknowledgeNumber() - ackBase) & 0xFFFF);
+					synchronized(conn) {
+						spp.setDstConnectionId(conn.serverConnectionId);
+						if (conn.serverSocket != 0) {
+							idp.setDstSocket(conn.serverSocket);
+						}
+					}
+				}
+				boolean isNew = false;
+				synchronized(conn) {
+					if (conn.clientNextSequence < 0) {
+						conn.clientNextSequence = spp.getSequenceNumber();
+					}
+					if (!spp.isSystemPacket() && spp.getSequenceNumber() == conn.clientNextSequence) {
+						conn.clientNextSequence = (conn.clientNextSequence + 1) & 0xFFFF;
+						isNew = true;
+					}
+				}
+				int[] call = isNew ? conn.calls.check(spp) : null;
+				if (call != null && call[0] == 0) { // Courier call
+					String label = courierLabel(conn.calls.courierVersion, call);
+					if (label != null) {
+						requestSent(conn.key + ":" + call[1], label);
+					}
+				}
+			} else if (type == PacketType.PEX) {
+				PEX pex = new PEX(idp);
+				String label = null;
+				if (pex.getClientType() == COURIER_CLIENT_TYPE && pex.getPayloadLength() >= 14 && pex.rdCardinal(4) == 0) {
+					int courierVersion = (pex.rdCardinal(2) >= 3) ? 3 : 2;
+					int[] call = new int[6];
+					for (int i = 0; i < call.length && (4 + (i * 2) + 2) <= pex.getPayloadLength(); i++) {
+						call[i] = pex.rdCardinal(4 + (i * 2));
+					}
+					label = courierLabel(courierVersion, call);
+					if (label != null) { label = "Expedited " + label; }
+				}
+				if (label == null) {
+					label = String.format("PEX type %d to socket %d", pex.getClientType(), idp.getDstSocket());
+				}
+				requestSent(String.format("pex:%012X:%d:%d", this.replayId, idp.getSrcSocket(), pex.getIdentification()), label);
+			} else if (type == PacketType.ECHO && idp.getDstSocket() == KnownSocket.ECHO.getSocket()) {
+				requestSent(String.format("echo:%012X:%d", this.replayId, idp.getSrcSocket()), "Echo");
+			}
+			
+			if (idp.getChecksum() != IDP.NO_CHECKSUM) {
+				idp.updateChecksum();
+			}
+			
+			// put the rewritten packet into the ethernet frame and send it
+			int frameLength = frame.data.length;
+			System.arraycopy(frame.data, 0, this.sendBuffer, 2, ETH_HEADER_LENGTH);
+			idp.packet.rdBytes(0, frameLength - ETH_HEADER_LENGTH, this.sendBuffer, 2 + ETH_HEADER_LENGTH, frameLength - ETH_HEADER_LENGTH);
+			if (dstHost != IDP.BROADCAST_ADDR) {
+				putAddress(this.sendBuffer, 2, dstHost);
+			}
+			putAddress(this.sendBuffer, 8, this.replayId);
+			this.sendBuffer[0] = (byte)((frameLength >> 8) & 0xFF);
+			this.sendBuffer[1] = (byte)(frameLength & 0xFF);
+			synchronized(hubOut) {
+				hubOut.write(this.sendBuffer, 0, frameLength + 2);
+				hubOut.flush();
+			}
+			packetsSent.incrementAndGet();
+		}
+		
+		private void awaitServer(Connection conn, int dataPacketsReceived) throws InterruptedException {
+			long timeoutAt = System.currentTimeMillis() + GATE_TIMEOUT_MS;
+			synchronized(conn) {
+				while(conn.serverConnectionId == 0 || conn.serverDataPackets < dataPacketsReceived) {
+					long remaining = timeoutAt - System.currentTimeMillis();
+					if (remaining <= 0) {
+						gateTimeouts.incrementAndGet();
+						return;
+					}
+					conn.wait(remaining);
+				}
+			}
+		}
+		
+		void received(IDP idp) {
+			PacketType type = idp.getPacketType();
+			if (type == PacketType.SPP) {
+				SPP spp = new SPP(idp);
+				Connection conn = this.connections.get(spp.getDstConnectionId());
+				if (conn == null) { return; }
+				boolean isNew = false;
+				synchronized(conn) {
+					if (conn.serverConnectionId == 0) {
+						conn.serverConnectionId = spp.getSrcConnectionId();
+						conn.serverSocket = idp.getSrcSocket();
+					}
+					if (conn.serverNextSequence < 0) {
+						conn.serverNextSequence = spp.getSequenceNumber();
+					}
+					if (!spp.isSystemPacket() && spp.getSequenceNumber() == conn.serverNextSequence) {
+						conn.serverNextSequence = (conn.serverNextSequence + 1) & 0xFFFF;
+						conn.serverDataPackets++;
+						isNew = true;
+					}
+					conn.notifyAll();
+				}
+				int[] reply = isNew ? conn.replies.check(spp) : null;
+				if (reply != null && reply[0] != 0) { // reject(1), return(2), abort(3)
+					responseReceived(conn.key + ":" + reply[1], reply[0] != 2);
+				}
+			} else if (type == PacketType.PEX) {
+				PEX pex = new PEX(idp);
+				responseReceived(String.format("pex:%012X:%d:%d", this.replayId, idp.getDstSocket(), pex.getIdentification()), false);
+			} else if (type == PacketType.ECHO) {
+				responseReceived(String.format("echo:%012X:%d", this.replayId, idp.getDstSocket()), false);
+			} else if (type == PacketType.ERROR) {
+				errorPackets.incrementAndGet();
+			}
+		}
+	}
+	
+	private static void runReceiver(InputStream is) {
+		byte[] buffer = new byte[NetHub.PACKET_LENGTH + HubTrunks.TRUNK_OVERHEAD];
+		try {
+			DataInputStream dis = new DataInputStream(is);
+			while(true) {
+				int len = dis.readUnsignedShort();
+				if (len > buffer.length) {
+					logf("** invalid packet length %d received from hub\n", len);
+					return;
+				}
+				dis.readFully(buffer, 0, len);
+				if (len < ETH_HEADER_LENGTH + IDP.IDP_DATA_START || getWord(buffer, 12) != ETHERTYPE_XNS) { continue; }
+				IDP idp = new IDP(new NetPacket(buffer, ETH_HEADER_LENGTH, len - ETH_HEADER_LENGTH));
+				Workstation ws = workstations.get(idp.getDstHost());
+				if (ws != null) {
+					packetsReceived.incrementAndGet();
+					ws.received(idp);
+				}
+			}
+		} catch (IOException e) {
+			// connection closed
+		}
+	}
+	
+	/*
+	 * main program
+	 */
+	
+	public static void main(String[] args) throws InterruptedException {
+		String hubHost = "localhost";
+		int hubPort = 3333;
+		List<String> pcapFiles = new ArrayList<>();
+		
+		// scan command line parameters
+		for (String arg : args) {
+			String lcArg = arg.toLowerCase();
+			try {
+				if (lcArg.startsWith("-host:")) {
+					hubHost = arg.substring(6);
+				} else if (lcArg.startsWith("-port:")) {
+					hubPort = Integer.parseInt(arg.substring(6));
+				} else if (lcArg.startsWith("-speed:")) {
+					speed = "max".equals(lcArg.substring(7)) ? 0 : Double.parseDouble(arg.substring(7));
+				} else if (lcArg.startsWith("-server:")) {
+					capturedServer = MachineIds.resolve(arg.substring(8));
+				} else if (lcArg.startsWith("-target:")) {
+					targetServer = MachineIds.resolve(arg.substring(8));
+				} else if (lcArg.startsWith("-network:")) {
+					network = Long.parseLong(arg.substring(9)) & 0xFFFFFFFFL;
+				} else if (arg.startsWith("-")) {
+					logf("invalid parameter: %s\n", arg);
+					return;
+				} else {
+					pcapFiles.add(arg);
+				}
+			} catch (NumberFormatException e) {
+				logf("invalid number in parameter: %s\n", arg);
+				return;
+			}
+		}
+		if (pcapFiles.isEmpty() || speed < 0) {
+			logf("usage: NetReplay [-host:name] [-port:n] [-speed:factor|max] [-server:id] [-target:id] [-network:n] pcap-file ...\n");
+			return;
+		}
+		
+		// load the capture
+		List<Frame> frames = new ArrayList<>();
+		try {
+			for (String filename : pcapFiles) {
+				readPcap(filename, frames);
+			}
+		} catch (IOException e) {
+			logf("** unable to read capture: %s\n", e.getMessage());
+			return;
+		}
+		
+		// identify the captured server
+		if (capturedServer < 0) {
+			Map<Long,Integer> courierServers = new HashMap<>();
+			for (Frame frame : frames) {
+				if (!frame.isXns()) { continue; }
+				IDP idp = frame.getIdp();
+				if (idp.getDstSocket() == KnownSocket.COURIER.getSocket() && idp.getDstHost() != IDP.BROADCAST_ADDR) {
+					courierServers.merge(idp.getDstHost(), 1, Integer::sum);
+				}
+			}
+			if (courierServers.isEmpty()) {
+				logf("** no Courier server found in the capture, please specify -server:\n");
+				return;
+			}
+			capturedServer = Collections.max(courierServers.entrySet(), Map.Entry.comparingByValue()).getKey();
+		}
+		if (targetServer < 0) {
+			targetServer = capturedServer;
+		}
+		
+		// distribute the packets of the workstations
+		Map<Long,Workstation> byCapturedId = new HashMap<>();
+		int skipped = 0;
+		for (Frame frame : frames) {
+			if (!frame.isXns()) { skipped++; continue; }
+			IDP idp = frame.getIdp();
+			long src = idp.getSrcHost();
+			long dst = idp.getDstHost();
+			if (src == capturedServer || (dst != capturedServer && dst != IDP.BROADCAST_ADDR)) { skipped++; continue; }
+			Workstation ws = byCapturedId.get(src);
+			if (ws == null) {
+				ws = new Workstation(src, FIRST_WORKSTATION_ID + byCapturedId.size());
+				byCapturedId.put(src, ws);
+				workstations.put(ws.replayId, ws);
+			}
+			ws.frames.add(frame);
+		}
+		if (workstations.isEmpty()) {
+			logf("** no packets to replay in the capture\n");
+			return;
+		}
+		
+		logf("NetReplay: %d packets from %d workstation(s) to replay (%d packets skipped), speed: %s\n",
+				frames.size() - skipped, workstations.size(), skipped, (speed > 0) ? speed + "x" : "max");
+		logf("captured server: %s, target server: %s\n", machineId(capturedServer), machineId(targetServer));
+		for (Workstation ws : workstations.values()) {
+			logf("  workstation %s => %s (%d packets)\n", machineId(ws.capturedId), machineId(ws.replayId), ws.frames.size());
+		}
+		
+		// connect to the hub, receiving only XNS packets
+		Socket socket;
+		try {
+			socket = new Socket(hubHost, hubPort);
+			socket.setTcpNoDelay(true);
+			hubOut = new BufferedOutputStream(socket.getOutputStream());
+			Packet subscribe = HubControl.create(HubControl.OP_SUBSCRIBE, 2);
+			HubControl.putWord(subscribe, HubControl.PAYLOAD_OFFSET, ETHERTYPE_XNS);
+			hubOut.write(subscribe.data, 0, subscribe.packetLen + 2);
+			hubOut.flush();
+			subscribe.release();
+			InputStream is = new BufferedInputStream(socket.getInputStream());
+			Thread receiver = new Thread(() -> runReceiver(is));
+			receiver.setDaemon(true);
+			receiver.start();
+		} catch (IOException e) {
+			logf("** unable to connect to hub %s:%d: %s\n", hubHost, hubPort, e.getMessage());
+			return;
+		}
+		
+		// replay
+		captureStartMicros = frames.get(0).timestamp;
+		replayStartNanos = System.nanoTime();
+		List<Thread> threads = new ArrayList<>();
+		for (Workstation ws : workstations.values()) {
+			Thread t = new Thread(ws);
+			t.setName("replay " + machineId(ws.capturedId));
+			t.start();
+			threads.add(t);
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		long replayNanos = System.nanoTime() - replayStartNanos;
+		
+		// wait for the outstanding responses
+		long timeoutAt = System.currentTimeMillis() + REPLY_TIMEOUT_MS;
+		synchronized(pendingCalls) {
+			while(getPendingCount() > 0 && System.currentTimeMillis() < timeoutAt) {
+				pendingCalls.wait(Math.max(1, timeoutAt - System.currentTimeMillis()));
+			}
+		}
+		
+		// report
+		logf("\nreplayed %d packets in %.3f s, received %d packets, gate timeouts: %d, error packets: %d\n\n",
+				packetsSent.get(), replayNanos / 1e9, packetsReceived.get(), gateTimeouts.get(), errorPackets.get());
+		logf("%-48s %7s %7s %7s %7s %10s %10s %10s\n", "request", "calls", "returns", "errors", "lost", "p50 ms", "p99 ms", "max ms");
+		synchronized(pendingCalls) {
+			for (Map.Entry<String,CallStats> e : callStats.entrySet()) {
+				CallStats stats = e.getValue();
+				List<Long> latencies = stats.latencies;
+				Collections.sort(latencies);
+				int n = latencies.size();
+				int lost = stats.calls - stats.returns - stats.errors;
+				if (n == 0) {
+					logf("%-48s %7d %7d %7d %7d %10s %10s %10s\n", e.getKey(), stats.calls, stats.returns, stats.errors, lost, "-", "-", "-");
+				} else {
+					logf("%-48s %7d %7d %7d %7d %10.3f %10.3f %10.3f\n", e.getKey(), stats.calls, stats.returns, stats.errors, lost,
+							latencies.get((n - 1) / 2) / 1e6, latencies.get((int)((n - 1) * 0.99)) / 1e6, latencies.get(n - 1) / 1e6);
+				}
+			}
+		}
+		
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// ignored
+		}
+	}
+}
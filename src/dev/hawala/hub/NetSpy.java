@@ -26,19 +26,23 @@ ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package dev.hawala.hub;
 
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.Socket;
 import java.net.UnknownHostException;
 
+import dev.hawala.hub.NetHub.Packet;
 import dev.hawala.xns.level2.Error.ErrorCode;
 
 /**
  * Pseudo machine connecting to the hub, simple dumping the content
  * of the packets incl. some XNS structural information to stdout.
+ * <p>
+ * In capture mode, the packets are not decoded but only written to
+ * a pcap file (possibly rotated), allowing to keep a spy attached
+ * to a busy hub without slowing down the hub line.
+ * </p>
  * 
  * @author Dr. Hans-Walter Latz / Berlin (2018)
  */
@@ -66,30 +70,84 @@ public class NetSpy {
 	 * @throws UnknownHostException 
 	 */
 	public static void main(String[] args) throws UnknownHostException, IOException {
-		OutputStream pcapDump = null;
-		if (args.length > 0) {
-			String pcapDumpFilename = args[0];
+		String hubHost = "localhost";
+		int hubPort = HUB_SOCKET;
+		String pcapFilename = null;
+		boolean decode = true;
+		long rotateBytes = 0;
+		long rotateMillis = 0;
+		long ringBytes = 0;
+		
+		// scan command line parameters
+		for (String arg : args) {
+			String lcArg = arg.toLowerCase();
 			try {
-				pcapDump = new FileOutputStream(pcapDumpFilename);
-				logf("\n++\n++ logging packets in PCap format to: %s\n++\n", pcapDumpFilename);
-				
-				pcapWrUInt32(pcapDump, 0xA1B2C3D4);    // magic number
-				pcapWrUInt16(pcapDump, 2);             // major version number
-				pcapWrUInt16(pcapDump, 4);             // minor version number
-				pcapWrUInt32(pcapDump, 0);             // GMT to local correction
-				pcapWrUInt32(pcapDump, 0);             // accuracy of timestamps
-				pcapWrUInt32(pcapDump, buffer.length); // max length of captured packets, in octets
-				pcapWrUInt32(pcapDump, 1);             // data link type (1 == ethernet)
-			} catch (FileNotFoundException e) {
-				logf("invalid PCap dump filename given: '" + pcapDumpFilename + "'\n");
+				if (lcArg.startsWith("-host:")) {
+					hubHost = arg.substring(6);
+				} else if (lcArg.startsWith("-port:")) {
+					hubPort = Integer.parseInt(arg.substring(6));
+				} else if (lcArg.startsWith("-capture:")) {
+					pcapFilename = arg.substring(9);
+					decode = false;
+				} else if (lcArg.startsWith("-rotate:")) {
+					rotateBytes = Long.parseLong(arg.substring(8)) * 1024 * 1024;
+				} else if (lcArg.startsWith("-rotatesecs:")) {
+					rotateMillis = Long.parseLong(arg.substring(12)) * 1000;
+				} else if (lcArg.startsWith("-ring:")) {
+					ringBytes = Long.parseLong(arg.substring(6)) * 1024 * 1024;
+				} else if (arg.startsWith("-")) {
+					logf("invalid parameter: %s\n", arg);
+					return;
+				} else if (pcapFilename == null) {
+					pcapFilename = arg;
+				}
+			} catch (NumberFormatException e) {
+				logf("invalid number in parameter: %s\n", arg);
+				return;
 			}
-			
+		}
+		if (hubPort < 1 || hubPort > 65535 || rotateBytes < 0 || rotateMillis < 0 || ringBytes < 0) {
+			logf("invalid hub port or rotation parameters\n");
+			return;
+		}
+		
+		// in ring buffer mode: keep as many files as fit into the ring size
+		int maxFiles = 0;
+		if (ringBytes > 0) {
+			if (rotateBytes == 0) {
+				rotateBytes = Math.max(1024 * 1024, ringBytes / 8);
+			}
+			maxFiles = (int)Math.max(2, ringBytes / rotateBytes);
+		}
+		
+		PcapWriter pcapDump = null;
+		if (pcapFilename != null) {
+			try {
+				pcapDump = new PcapWriter(pcapFilename, rotateBytes, rotateMillis, maxFiles);
+				logf("\n++\n++ logging packets in PCap format to: %s\n++\n", pcapFilename);
+			} catch (IOException e) {
+				logf("invalid PCap dump filename given: '%s' (%s)\n", pcapFilename, e.getMessage());
+				if (!decode) { return; }
+			}
+		}
+		if (pcapDump != null) {
+			final PcapWriter writer = pcapDump;
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				try { writer.close(); } catch (IOException e) { }
+			}));
 		}
 		
-		Socket s = new Socket("localhost", HUB_SOCKET);
+		Socket s = new Socket(hubHost, hubPort);
 		s.setTcpNoDelay(true);
+		s.setReceiveBufferSize(1024 * 1024);
 		
-		InputStream is = s.getInputStream();
+		// ask the hub to also send us the unicast packets switched between other machines
+		Packet monitor = HubControl.create(HubControl.OP_MONITOR, 0);
+		s.getOutputStream().write(monitor.data, 0, monitor.packetLen + 2);
+		s.getOutputStream().flush();
+		monitor.release();
+		
+		InputStream is = new BufferedInputStream(s.getInputStream(), 65536);
 		
 		int pNum = 0;
 		
@@ -97,9 +155,13 @@ public class NetSpy {
 			pNum++;
 			int b1 = is.read();
 			int b2 = is.read();
-			int pLen = Math.max(0, ((b1 << 8) & 0xFF00) | (b2 & 0xFF));
+			if (b1 < 0 || b2 < 0) {
+				logf("[%d] => hub connection closed\n", pNum);
+				break;
+			}
+			int pLen = ((b1 << 8) & 0xFF00) | (b2 & 0xFF);
 			if (pLen == 0) {
-				logf("[%d] => ignoring empty packet\n", pNum);
+				if (decode) { logf("[%d] => ignoring empty packet\n", pNum); }
 				continue;
 			}
 			if (pLen > buffer.length - 2) {
@@ -107,33 +169,41 @@ public class NetSpy {
 				break;
 			}
 			
-			if (pLen > 0) {
-				int rLen = is.read(buffer, 0, pLen);
-				if (rLen != pLen) {
-					logf("[%d] => short read (%d instead of expected %d) => aborting\n", pNum, rLen, pLen);
-					break;
-				}
+			int rLen = readFully(is, buffer, pLen);
+			if (rLen != pLen) {
+				logf("[%d] => short read (%d instead of expected %d) => aborting\n", pNum, rLen, pLen);
+				break;
 			}
 			bufLen = pLen;
-			long nanoTs = System.nanoTime();
-			logf("\n[%d] => packet length: %d -- at %9d.%06d ms\n", pNum, bufLen, nanoTs / 1000000, nanoTs % 1000000);
-			dumpPacket();
 			
 			if (pcapDump != null) {
-				long milliTs = System.currentTimeMillis();
-				pcapWrUInt32(pcapDump, (int)((milliTs / 1000) & 0xFFFFFFFF)); // timestamp seconds
-				pcapWrUInt32(pcapDump, (int)((nanoTs / 1000) % 1_000_000));   // timestamp microseconds
-				pcapWrUInt32(pcapDump, bufLen);                               // number off octets of packet data saved
-				pcapWrUInt32(pcapDump, bufLen);                               // actual length of packet
-				pcapWrPacket(pcapDump);
-				pcapDump.flush();
+				pcapDump.write(buffer, 0, bufLen);
+			}
+			
+			if (decode) {
+				long nanoTs = System.nanoTime();
+				logf("\n[%d] => packet length: %d -- at %9d.%06d ms\n", pNum, bufLen, nanoTs / 1000000, nanoTs % 1000000);
+				dumpPacket();
 			}
 		}
 		
+		if (pcapDump != null) {
+			pcapDump.close();
+		}
 		is.close();
 		s.close();
 	}
 	
+	private static int readFully(InputStream is, byte[] buf, int len) throws IOException {
+		int total = 0;
+		while(total < len) {
+			int rLen = is.read(buf, total, len - total);
+			if (rLen < 0) { break; }
+			total += rLen;
+		}
+		return total;
+	}
+	
 	private static void dumpPacket() {
 		logf("\n          => raw packet content:");
 		for (int i = 0; i < (bufLen + 1)/2; i++) {
@@ -334,26 +404,4 @@ public class NetSpy {
 		logf("%s%s\n", filler, sb.toString());
 		return isTimeReq;
 	}
-	
-	private static void pcapWrByte(OutputStream os, int value) throws IOException {
-		os.write((byte)value);
-	}
-	
-	private static void pcapWrUInt16(OutputStream os, int value) throws IOException {
-		pcapWrByte(os, (value >> 8) & 0xFF);
-		pcapWrByte(os, value & 0xFF);
-	}
-	
-	private static void pcapWrUInt32(OutputStream os, int value) throws IOException {
-		pcapWrByte(os, (value >> 24) & 0xFF);
-		pcapWrByte(os, (value >> 16) & 0xFF);
-		pcapWrByte(os, (value >> 8) & 0xFF);
-		pcapWrByte(os, value & 0xFF);
-	}
-	
-	private static void pcapWrPacket(OutputStream os) throws IOException {
-		for (int i = 0; i < bufLen; i++) {
-			pcapWrByte(os, buffer[i]);
-		}
-	}
 }
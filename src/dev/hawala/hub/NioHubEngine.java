@@ -0,0 +1,540 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.hub;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import dev.hawala.hub.HubStatistics.LineStats;
+import dev.hawala.hub.NetHub.Packet;
+import dev.hawala.hub.NetHub.iLine;
+
+/**
+ * Alternative engine for the NetHub, serving all lines with non-blocking
+ * socket channels multiplexed over a small fixed set of event loop threads
+ * instead of 2 threads per line.
+ * <p>
+ * Each line is permanently assigned to one event loop (round-robin at connection
+ * time), so all reading from and writing to the line's channel happens in this
+ * event loop thread. Packets for the line coming from other lines are queued and
+ * the line is scheduled for writing in its event loop.
+ * </p>
+ * <p>
+ * The framing protocols are the same as for the thread based lines: a 2-byte
+ * big-endian length followed by the raw packet, resp. a 4-byte length for lines
+ * identified as QEMU connection by an initial all-zero 14 bytes packet.
+ * </p>
+ * <p>
+ * Packets queued for a line are coalesced in the line's send buffer, so all packets
+ * available when the line is served are written with a single channel write. With
+ * a batching window, the event loop additionally delays serving lines with pending
+ * packets by this time (at millisecond granularity) to collect more packets per write.
+ * </p>
+ * 
+ * @author Dodo contributors
+ */
+final class NioHubEngine {
+	
+	// size of the receive buffer of a line, allowing to receive several packets at once
+	private static final int RECV_BUFFER_SIZE = 16384;
+	
+	// size of the send buffer of a line, allowing to send all queued packets (up to this size) at once
+	private static final int SEND_BUFFER_SIZE = 16384;
+	
+	// max. space required for a packet in the send buffer (length + content, possibly encapsulated for a trunk)
+	private static final int MAX_FRAME_SIZE = NetHub.PACKET_LENGTH + HubTrunks.TRUNK_OVERHEAD + 4;
+	
+	private final EventLoop[] loops;
+	private int nextLoop = 0;
+	
+	/**
+	 * Create the engine with the given number of event loop threads.
+	 * 
+	 * @param threadCount number of event loops serving the lines.
+	 * @throws IOException
+	 */
+	NioHubEngine(int threadCount) throws IOException {
+		this.loops = new EventLoop[Math.max(1, threadCount)];
+		for (int i = 0; i < this.loops.length; i++) {
+			this.loops[i] = new EventLoop(i);
+		}
+	}
+	
+	/**
+	 * Start the event loops and accept connections on the given port
+	 * until the listening socket fails.
+	 * 
+	 * @param port the TCP port to listen on.
+	 * @throws IOException if listening on the port is not possible.
+	 */
+	void run(int port) throws IOException {
+		for (EventLoop loop : this.loops) {
+			loop.start();
+		}
+		
+		try (ServerSocketChannel serviceChannel = ServerSocketChannel.open()) {
+			serviceChannel.bind(new InetSocketAddress(port));
+			while(true) {
+				SocketChannel channel = serviceChannel.accept();
+				try {
+					channel.configureBlocking(false);
+					channel.socket().setTcpNoDelay(true);
+					EventLoop loop = this.loops[this.nextLoop];
+					this.nextLoop = (this.nextLoop + 1) % this.loops.length;
+					if (!NetHub.addLine(no -> new NioLine(channel, no, loop))) {
+						channel.close();
+					}
+				} catch (IOException e) {
+					NetHub.log("Accepting connection failed: " + e.getMessage());
+					try { channel.close(); } catch (IOException e1) { /* ignored */ }
+				}
+			}
+		}
+	}
+	
+	/*
+	 * event loop: one selector with the lines it serves
+	 */
+	
+	private static class EventLoop implements Runnable {
+		
+		private final Selector selector;
+		private final Thread thread;
+		
+		// lines to be registered with the selector
+		private final Queue<NioLine> newLines = new ConcurrentLinkedQueue<>();
+		
+		// lines with new packets to be written resp. to be closed
+		private final Queue<NioLine> pendingLines = new ConcurrentLinkedQueue<>();
+		
+		// batching window for pending lines and start of the current batch (0 = none started)
+		private final long batchWindowNanos = NetHub.getBatchWindowNanos();
+		private long batchStart = 0;
+		
+		private EventLoop(int loopNo) throws IOException {
+			this.selector = Selector.open();
+			this.thread = new Thread(this);
+			this.thread.setDaemon(true);
+			this.thread.setName("EventLoop #" + loopNo);
+		}
+		
+		private void start() {
+			this.thread.start();
+		}
+		
+		private void register(NioLine line) {
+			this.newLines.add(line);
+			this.selector.wakeup();
+		}
+		
+		private void schedule(NioLine line) {
+			this.pendingLines.add(line);
+			if (Thread.currentThread() != this.thread) {
+				this.selector.wakeup();
+			}
+		}
+
+		@Override
+		public void run() {
+			while(true) {
+				try {
+					if (this.batchStart == 0) {
+						this.selector.select();
+					} else {
+						// select() has millisecond resolution: round up, so a window below 1 ms
+						// waits 1 ms instead of spinning on selectNow() until the window ends
+						long remainingNanos = this.batchStart + this.batchWindowNanos - System.nanoTime();
+						if (remainingNanos > 0) {
+							this.selector.select((remainingNanos + 999_999) / 1_000_000);
+						} else {
+							this.selector.selectNow();
+						}
+					}
+				} catch (IOException e) {
+					NetHub.log("EventLoop got exception(" + e.getClass().getCanonicalName() + "): " + e.getMessage());
+					continue;
+				}
+				
+				NioLine line;
+				while((line = this.newLines.poll()) != null) {
+					line.registerWith(this.selector);
+				}
+				
+				Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+				while(keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					line = (NioLine)key.attachment();
+					if (!key.isValid()) { continue; }
+					if (key.isReadable()) {
+						line.readable();
+					}
+					if (key.isValid() && key.isWritable()) {
+						line.writable();
+					}
+				}
+				
+				// packets distributed by the lines above to lines of this loop are also handled here
+				// (possibly after waiting for the batching window to collect more packets)
+				if (this.batchWindowNanos > 0 && !this.pendingLines.isEmpty()) {
+					long now = System.nanoTime();
+					if (this.batchStart == 0) {
+						this.batchStart = now;
+					}
+					if ((now - this.batchStart) < this.batchWindowNanos) {
+						continue;
+					}
+				}
+				this.batchStart = 0;
+				while((line = this.pendingLines.poll()) != null) {
+					line.processPending();
+				}
+			}
+		}
+	}
+	
+	/*
+	 * a single line served by an event loop
+	 */
+	
+	private enum RecvState { LENGTH, PROBE_LENGTH, PROBE_BODY, BODY };
+	
+	private static class NioLine implements iLine {
+		
+		private final SocketChannel channel;
+		private final int connNo;
+		private final EventLoop loop;
+		
+		private SelectionKey key = null;
+		
+		// receiving state machine (only accessed by the event loop thread)
+		private final ByteBuffer recvBuffer = ByteBuffer.allocate(RECV_BUFFER_SIZE);
+		private RecvState recvState = RecvState.LENGTH;
+		private int expectedLength = 0;
+		private boolean firstPacket = true;
+		private boolean qemuLine = false;
+		private int pNum = 0;
+		
+		// sending state machine (buffer only accessed by the event loop thread)
+		private final PacketQueue outPackets = NetHub.createOutQueue();
+		private final LineStats stats;
+		private final EtherTypeFilter filter = new EtherTypeFilter();
+		private final AtomicBoolean scheduled = new AtomicBoolean(false);
+		private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(SEND_BUFFER_SIZE);
+		
+		private volatile boolean stop = false;
+		private boolean stopped = false;
+		
+		private NioLine(SocketChannel channel, int connNo, EventLoop loop) {
+			this.channel = channel;
+			this.connNo = connNo;
+			this.loop = loop;
+			this.sendBuffer.flip(); // initially nothing to send
+			this.stats = new LineStats(connNo, String.valueOf(channel.socket().getRemoteSocketAddress()), this.outPackets);
+			
+			NetHub.log("NioLine: connection #" + this.connNo + " => starting");
+			this.loop.register(this);
+		}
+		
+		private void registerWith(Selector selector) {
+			try {
+				this.key = this.channel.register(selector, SelectionKey.OP_READ, this);
+			} catch (ClosedChannelException e) {
+				this.shutdown();
+				return;
+			}
+			if (this.stop) {
+				this.shutdown();
+			} else if (!this.outPackets.isEmpty()) {
+				this.processPending();
+			}
+		}
+
+		@Override
+		public void enqueueOutPacket(Packet p) {
+			if (this.stop) {
+				p.release();
+				return;
+			}
+			if (!this.outPackets.offer(p)) {
+				NetHub.log("NioLine: connection #" + this.connNo + " => packet queue overflow => dropping line");
+				this.stop();
+				return;
+			}
+			this.schedule();
+		}
+
+		@Override
+		public LineStats getStats() {
+			return this.stats;
+		}
+		
+		@Override
+		public EtherTypeFilter getFilter() {
+			return this.filter;
+		}
+		
+		@Override
+		public boolean attachSharedMemory(String path) {
+			return false; // shared memory lines are served by the thread based engine only
+		}
+		
+		@Override
+		public boolean isLoopback() {
+			try {
+				SocketAddress remote = this.channel.getRemoteAddress();
+				return (remote instanceof InetSocketAddress)
+					&& ((InetSocketAddress)remote).getAddress().isLoopbackAddress();
+			} catch (IOException e) {
+				return false;
+			}
+		}
+		
+		@Override
+		public InetAddress getRemoteAddress() {
+			try {
+				SocketAddress remote = this.channel.getRemoteAddress();
+				return (remote instanceof InetSocketAddress) ? ((InetSocketAddress)remote).getAddress() : null;
+			} catch (IOException e) {
+				return null;
+			}
+		}
+
+		@Override
+		public void stop() {
+			this.stop = true;
+			this.scheduled.set(true);
+			this.loop.schedule(this);
+		}
+		
+		private void schedule() {
+			if (this.scheduled.compareAndSet(false, true)) {
+				this.loop.schedule(this);
+			}
+		}
+		
+		private void processPending() {
+			this.scheduled.set(false);
+			if (this.stop) {
+				this.shutdown();
+			} else if (this.key != null) {
+				this.writable();
+			}
+		}
+		
+		/*
+		 * receiving
+		 */
+		
+		private void readable() {
+			try {
+				int count = this.channel.read(this.recvBuffer);
+				if (count < 0) {
+					NetHub.log("NioLine: connection #" + this.connNo + " => got EOF => connection closed");
+					this.shutdown();
+					return;
+				}
+				this.recvBuffer.flip();
+				boolean valid = true;
+				while(valid && this.recvNext()) {
+					valid = !this.stopped;
+				}
+				this.recvBuffer.compact();
+			} catch (IOException e) {
+				NetHub.log("NioLine: connection #" + this.connNo + " got exception(" + e.getClass().getCanonicalName() + "): " + e.getMessage());
+				this.shutdown();
+			}
+		}
+		
+		// advance the receive state machine by one step if enough data is in the receive buffer,
+		// returning if a step was done
+		private boolean recvNext() {
+			ByteBuffer b = this.recvBuffer;
+			switch(this.recvState) {
+			
+			case LENGTH: {
+				if (b.remaining() < ((this.qemuLine) ? 4 : 2)) { return false; }
+				int pLen = (this.qemuLine) ? b.getInt() : b.getShort() & 0xFFFF;
+				if (pLen == 0 && this.firstPacket) {
+					this.recvState = RecvState.PROBE_LENGTH; // get the remaining 2 of 4 bytes
+					return true;
+				}
+				return this.expectBody(pLen);
+			}
+				
+			case PROBE_LENGTH: {
+				if (b.remaining() < 2) { return false; }
+				int pLen = b.getShort() & 0xFFFF;
+				if (pLen == 14) {
+					this.expectedLength = pLen;
+					this.recvState = RecvState.PROBE_BODY;
+					return true;
+				}
+				return this.expectBody(pLen);
+			}
+				
+			case PROBE_BODY: {
+				if (b.remaining() < this.expectedLength) { return false; }
+				Packet p = this.getPacket(this.expectedLength);
+				boolean allZero = true;
+				for (int i = 0; i < 14; i++) {
+					if (p.data[i + 2] != 0) {
+						allZero = false;
+						break;
+					}
+				}
+				if (allZero) {
+					NetHub.log("NioLine: connection #" + this.connNo + " => switching to qemu mode");
+					this.qemuLine = true;
+					this.stats.setMode("qemu");
+					p.release();
+				} else {
+					NetHub.distribute(p, this);
+				}
+				this.recvState = RecvState.LENGTH;
+				return true;
+			}
+				
+			case BODY: {
+				if (b.remaining() < this.expectedLength) { return false; }
+				Packet p = this.getPacket(this.expectedLength);
+				this.pNum++;
+				if (NetHub.isPacketLogging()) {
+					NetHub.log("NioLine: connection #" + this.connNo + " => received packet "+ this.pNum + " with net size: " + p.packetLen);
+				}
+				NetHub.distribute(p, this);
+				this.recvState = RecvState.LENGTH;
+				return true;
+			}
+			
+			}
+			return false;
+		}
+		
+		private boolean expectBody(int pLen) {
+			this.firstPacket = false;
+			if (pLen < 1) {
+				NetHub.log("NioLine: connection #" + this.connNo + " => packet size " + pLen + " ~ EOF => dropping line");
+				this.shutdown();
+				return false;
+			}
+			if (!NetHub.isValidPacketLength(pLen, this)) {
+				NetHub.log("NioLine: connection #" + this.connNo + " => invalid packet size " + pLen + " => dropping line");
+				this.shutdown();
+				return false;
+			}
+			this.expectedLength = pLen;
+			this.recvState = RecvState.BODY;
+			return true;
+		}
+		
+		private Packet getPacket(int pLen) {
+			Packet p = Packet.allocate();
+			p.data[0] = (byte)((pLen >> 8) & 0xFF);
+			p.data[1] = (byte)(pLen & 0xFF);
+			this.recvBuffer.get(p.data, 2, pLen);
+			p.packetLen = pLen;
+			return p;
+		}
+		
+		/*
+		 * sending
+		 */
+		
+		private void writable() {
+			try {
+				while(true) {
+					if (this.sendBuffer.hasRemaining()) {
+						this.channel.write(this.sendBuffer);
+						if (this.sendBuffer.hasRemaining()) {
+							// socket buffer is full: wait until writable again
+							this.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+							return;
+						}
+					}
+					
+					// coalesce the queued packets in the send buffer
+					this.sendBuffer.clear();
+					int count = 0;
+					Packet p;
+					while(this.sendBuffer.remaining() >= MAX_FRAME_SIZE && (p = this.outPackets.poll()) != null) {
+						if (this.qemuLine) {
+							this.sendBuffer.putInt(p.packetLen);
+							this.sendBuffer.put(p.data, 2, p.packetLen);
+						} else {
+							this.sendBuffer.put(p.data, 0, p.packetLen + 2);
+						}
+						this.stats.countOut(p);
+						p.release();
+						count++;
+					}
+					this.sendBuffer.flip();
+					if (count == 0) {
+						this.key.interestOps(SelectionKey.OP_READ);
+						return;
+					}
+					if (NetHub.isPacketLogging()) {
+						NetHub.log("NioLine: connection #" + this.connNo + " => sending " + count + " packet(s), " + this.sendBuffer.remaining() + " bytes");
+					}
+					this.outPackets.countSent(count);
+				}
+			} catch (IOException e) {
+				NetHub.log("NioLine.send( conn #" + this.connNo + " ) => exception " + e.getMessage());
+				this.shutdown();
+			}
+		}
+		
+		/*
+		 * closing
+		 */
+		
+		private void shutdown() {
+			if (this.stopped) { return; }
+			NetHub.log("NioLine: connection #" + this.connNo + " .. shutdown (received: " + this.pNum + ", " + this.outPackets + ")");
+			this.stop = true;
+			this.stopped = true;
+			
+			NetHub.dropLine(this);
+			
+			if (this.key != null) { this.key.cancel(); }
+			try { this.channel.close(); } catch (IOException e) { /* ignored */ }
+			this.outPackets.clear();
+		}
+	}
+}
@@ -0,0 +1,278 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.hub;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import dev.hawala.hub.NetHub.Packet;
+
+/**
+ * Bounded lock-free queue for the packets to be sent to the machine
+ * on a line, with an overflow policy defining what happens if the
+ * machine does not consume the packets fast enough. Packets dropped
+ * by the queue are released.
+ * <p>
+ * Packets are enqueued by the lines receiving packets (multiple producers)
+ * and dequeued by the single sender for the line. The queue is a ring buffer
+ * with per slot sequence numbers (as described by D. Vyukov), so producers
+ * never block and the consumer only parks if the queue is empty. As producers
+ * also dequeue packets for the drop-oldest policy, the dequeue side is also
+ * safe for concurrent use.
+ * </p>
+ * <p>
+ * The raw ring buffer operations {@code tryEnqueue()} and {@code tryDequeue()}
+ * (without policy, statistics and releasing packets) are also used for the
+ * pool of free packets.
+ * </p>
+ * 
+ * @author Dodo contributors
+ */
+class PacketQueue {
+	
+	/**
+	 * Handling of a new packet if the queue is full.
+	 */
+	enum OverflowPolicy {
+		/** drop the oldest packet in the queue to make room for the new packet */
+		DROP_OLDEST,
+		/** drop the new packet */
+		DROP_NEWEST,
+		/** close the line to the machine not consuming its packets */
+		DISCONNECT
+	}
+	
+	private final Packet[] slots;
+	private final AtomicLongArray sequences;
+	private final int mask;
+	private final OverflowPolicy policy;
+	
+	private final AtomicLong enqueuePos = new AtomicLong();
+	private final AtomicLong dequeuePos = new AtomicLong();
+	
+	// the consumer thread currently parked waiting for packets 
+	private volatile Thread waiter = null;
+	
+	// statistics
+	private final AtomicLong enqueued = new AtomicLong();
+	private final AtomicLong sent = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong highWaterMark = new AtomicLong();
+	
+	/**
+	 * Create a packet queue.
+	 * 
+	 * @param capacity minimal number of packets that can be queued (will be
+	 *   rounded up to the next power of 2).
+	 * @param policy the handling for new packets if the queue is full.
+	 */
+	PacketQueue(int capacity, OverflowPolicy policy) {
+		int size = 2;
+		while(size < capacity) { size <<= 1; }
+		this.slots = new Packet[size];
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			this.sequences.set(i, i);
+		}
+		this.mask = size - 1;
+		this.policy = policy;
+	}
+	
+	/**
+	 * Enqueue a packet, possibly making room according to the overflow policy.
+	 * 
+	 * @param p the packet to enqueue.
+	 * @return {@code false} if the queue is full and the overflow policy
+	 *   requires to disconnect the line.
+	 */
+	boolean offer(Packet p) {
+		while(!this.tryEnqueue(p)) {
+			switch(this.policy) {
+			case DROP_NEWEST:
+				this.dropped.incrementAndGet();
+				p.release();
+				return true;
+			case DROP_OLDEST:
+				Packet oldest = this.tryDequeue();
+				if (oldest != null) {
+					this.dropped.incrementAndGet();
+					oldest.release();
+				}
+				break;
+			default:
+				this.dropped.incrementAndGet();
+				p.release();
+				return false;
+			}
+		}
+		
+		this.enqueued.incrementAndGet();
+		long depth = this.size();
+		long hwm = this.highWaterMark.get();
+		while(depth > hwm && !this.highWaterMark.compareAndSet(hwm, depth)) {
+			hwm = this.highWaterMark.get();
+		}
+		
+		Thread w = this.waiter;
+		if (w != null) {
+			LockSupport.unpark(w);
+		}
+		return true;
+	}
+	
+	/**
+	 * Get the next packet without waiting.
+	 * 
+	 * @return the next packet or {@code null} if the queue is empty.
+	 */
+	Packet poll() {
+		return this.tryDequeue();
+	}
+	
+	/**
+	 * Get the next packet, waiting until a packet is available.
+	 * 
+	 * @return the next packet.
+	 * @throws InterruptedException if the waiting thread was interrupted.
+	 */
+	Packet take() throws InterruptedException {
+		Packet p = this.tryDequeue();
+		if (p != null) { return p; }
+		
+		this.waiter = Thread.currentThread();
+		try {
+			while((p = this.tryDequeue()) == null) {
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				LockSupport.park(this);
+			}
+			return p;
+		} finally {
+			this.waiter = null;
+		}
+	}
+	
+	/**
+	 * Count packets dequeued and sent to the machine on the line.
+	 * 
+	 * @param count number of packets sent.
+	 */
+	void countSent(int count) {
+		this.sent.addAndGet(count);
+	}
+	
+	/**
+	 * Count packets dequeued but lost when sending to the machine on the line.
+	 * 
+	 * @param count number of packets lost.
+	 */
+	void countDropped(int count) {
+		this.dropped.addAndGet(count);
+	}
+	
+	/**
+	 * Discard (release) all queued packets.
+	 */
+	void clear() {
+		Packet p;
+		while((p = this.tryDequeue()) != null) {
+			p.release();
+		}
+	}
+	
+	/**
+	 * @return the approximate number of packets currently queued.
+	 */
+	long size() {
+		return Math.max(0, this.enqueuePos.get() - this.dequeuePos.get());
+	}
+	
+	boolean isEmpty() {
+		return this.size() == 0;
+	}
+	
+	long getEnqueued() { return this.enqueued.get(); }
+	
+	long getSent() { return this.sent.get(); }
+	
+	long getDropped() { return this.dropped.get(); }
+	
+	long getHighWaterMark() { return this.highWaterMark.get(); }
+	
+	@Override
+	public String toString() {
+		return String.format("enqueued: %d, sent: %d, dropped: %d, high-water: %d",
+				this.getEnqueued(), this.getSent(), this.getDropped(), this.getHighWaterMark());
+	}
+	
+	/*
+	 * ring buffer operations
+	 */
+	
+	boolean tryEnqueue(Packet p) {
+		long pos = this.enqueuePos.get();
+		while(true) {
+			int idx = (int)(pos & this.mask);
+			long diff = this.sequences.get(idx) - pos;
+			if (diff == 0) {
+				if (this.enqueuePos.compareAndSet(pos, pos + 1)) {
+					this.slots[idx] = p;
+					this.sequences.set(idx, pos + 1); // publish (full barrier for the consumer wakeup check)
+					return true;
+				}
+				pos = this.enqueuePos.get();
+			} else if (diff < 0) {
+				return false; // full
+			} else {
+				pos = this.enqueuePos.get();
+			}
+		}
+	}
+	
+	Packet tryDequeue() {
+		long pos = this.dequeuePos.get();
+		while(true) {
+			int idx = (int)(pos & this.mask);
+			long diff = this.sequences.get(idx) - (pos + 1);
+			if (diff == 0) {
+				if (this.dequeuePos.compareAndSet(pos, pos + 1)) {
+					Packet p = this.slots[idx];
+					this.slots[idx] = null;
+					this.sequences.lazySet(idx, pos + this.mask + 1); // release the slot for producers
+					return p;
+				}
+				pos = this.dequeuePos.get();
+			} else if (diff < 0) {
+				return null; // empty
+			} else {
+				pos = this.dequeuePos.get();
+			}
+		}
+	}
+}
@@ -0,0 +1,254 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.hub;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Writer for ethernet packets in the LibPCap file format, buffering the packets
+ * and optionally rotating the output file based on the file size or age, with
+ * an optional limit for the total size of the files kept (ring buffer mode,
+ * deleting the oldest file when a new file is started).
+ * <p>
+ * When rotating, the files are named by inserting a sequence number before
+ * the file extension of the given filename (e.g. {@code spy.pcap} gives
+ * {@code spy-000001.pcap}, {@code spy-000002.pcap} etc.).
+ * </p>
+ * <p>
+ * The buffered data is written when the buffer is full, when a file is closed
+ * and by a background thread flushing the buffer once per second, so the files
+ * are usable for offline analysis while capturing.
+ * </p>
+ * 
+ * @author Dodo contributors
+ */
+public class PcapWriter implements AutoCloseable {
+	
+	private static final int BUFFER_SIZE = 256 * 1024;
+	private static final int FILE_HEADER_SIZE = 24;
+	private static final int PACKET_HEADER_SIZE = 16;
+	private static final int SNAP_LENGTH = 65535;
+	private static final long FLUSH_INTERVAL_MS = 1000;
+	
+	private final String basename;
+	private final String extension;
+	private final long maxFileBytes;
+	private final long maxFileMillis;
+	private final int maxFiles;
+	
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.BIG_ENDIAN);
+	private final Deque<File> files = new ArrayDeque<>();
+	
+	// timestamp base for microsecond resolution
+	private final long baseMicros = System.currentTimeMillis() * 1000;
+	private final long baseNanos = System.nanoTime();
+	
+	private FileChannel channel = null;
+	private int fileSeq = 0;
+	private long fileBytes;
+	private long fileStart;
+	private boolean closed = false;
+	
+	private final Thread flusher;
+	
+	/**
+	 * Create a writer for a single (not rotated) file.
+	 * 
+	 * @param filename the name of the file to write.
+	 * @throws IOException
+	 */
+	public PcapWriter(String filename) throws IOException {
+		this(filename, 0, 0, 0);
+	}
+	
+	/**
+	 * Create a writer with file rotation.
+	 * 
+	 * @param filename the filename, in which a sequence number is inserted
+	 *   for the single files if rotating.
+	 * @param maxFileBytes the size after which a new file is started (0 = unlimited).
+	 * @param maxFileMillis the time after which a new file is started (0 = unlimited).
+	 * @param maxFiles the number of files to keep, deleting the oldest
+	 *   file when starting a new file (0 = unlimited).
+	 * @throws IOException
+	 */
+	public PcapWriter(String filename, long maxFileBytes, long maxFileMillis, int maxFiles) throws IOException {
+		boolean rotating = maxFileBytes > 0 || maxFileMillis > 0;
+		int dot = filename.lastIndexOf('.');
+		if (!rotating) {
+			this.basename = filename;
+			this.extension = null;
+		} else if (dot > filename.lastIndexOf(File.separatorChar)) {
+			this.basename = filename.substring(0, dot);
+			this.extension = filename.substring(dot);
+		} else {
+			this.basename = filename;
+			this.extension = ".pcap";
+		}
+		this.maxFileBytes = maxFileBytes;
+		this.maxFileMillis = maxFileMillis;
+		this.maxFiles = maxFiles;
+		
+		this.startFile();
+		
+		this.flusher = new Thread(this::runFlusher);
+		this.flusher.setDaemon(true);
+		this.flusher.setName("PcapWriter flusher");
+		this.flusher.start();
+	}
+	
+	/**
+	 * @return the current time in microseconds, with microsecond resolution.
+	 */
+	public long nowMicros() {
+		return this.baseMicros + ((System.nanoTime() - this.baseNanos) / 1000);
+	}
+	
+	/**
+	 * Write a packet with the current time as timestamp.
+	 * 
+	 * @param packet the buffer with the ethernet packet.
+	 * @param offset the start of the packet in {@code packet}.
+	 * @param length the length of the packet.
+	 * @throws IOException
+	 */
+	public void write(byte[] packet, int offset, int length) throws IOException {
+		this.write(packet, offset, length, this.nowMicros());
+	}
+	
+	/**
+	 * Write a packet.
+	 * 
+	 * @param packet the buffer with the ethernet packet.
+	 * @param offset the start of the packet in {@code packet}.
+	 * @param length the length of the packet.
+	 * @param timestampMicros the timestamp of the packet (microseconds since the epoch).
+	 * @throws IOException
+	 */
+	public synchronized void write(byte[] packet, int offset, int length, long timestampMicros) throws IOException {
+		if (this.closed) { throw new IOException("PcapWriter closed"); }
+		int capLength = Math.min(length, SNAP_LENGTH);
+		if ((this.maxFileBytes > 0 && this.fileBytes + PACKET_HEADER_SIZE + capLength > this.maxFileBytes && this.fileBytes > FILE_HEADER_SIZE)
+				|| (this.maxFileMillis > 0 && (System.currentTimeMillis() - this.fileStart) >= this.maxFileMillis)) {
+			this.closeFile();
+			this.startFile();
+		}
+		if (this.buffer.remaining() < PACKET_HEADER_SIZE + capLength) {
+			this.writeBuffer();
+		}
+		this.buffer.putInt((int)(timestampMicros / 1_000_000));
+		this.buffer.putInt((int)(timestampMicros % 1_000_000));
+		this.buffer.putInt(capLength);
+		this.buffer.putInt(length);
+		this.buffer.put(packet, offset, capLength);
+		this.fileBytes += PACKET_HEADER_SIZE + capLength;
+	}
+	
+	/**
+	 * Write the buffered packets to the current file.
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void flush() throws IOException {
+		if (!this.closed) {
+			this.writeBuffer();
+		}
+	}
+	
+	@Override
+	public synchronized void close() throws IOException {
+		if (this.closed) { return; }
+		this.closed = true;
+		this.flusher.interrupt();
+		this.closeFile();
+	}
+	
+	private String currentFilename() {
+		if (this.extension == null) {
+			return this.basename;
+		}
+		return String.format("%s-%06d%s", this.basename, this.fileSeq, this.extension);
+	}
+	
+	private void startFile() throws IOException {
+		this.fileSeq++;
+		File file = new File(this.currentFilename());
+		this.channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		this.files.addLast(file);
+		while(this.maxFiles > 0 && this.files.size() > this.maxFiles) {
+			this.files.removeFirst().delete();
+		}
+		
+		this.buffer.putInt(0xA1B2C3D4); // magic number
+		this.buffer.putShort((short)2);  // major version number
+		this.buffer.putShort((short)4);  // minor version number
+		this.buffer.putInt(0);           // GMT to local correction
+		this.buffer.putInt(0);           // accuracy of timestamps
+		this.buffer.putInt(SNAP_LENGTH); // max length of captured packets, in octets
+		this.buffer.putInt(1);           // data link type (1 == ethernet)
+		this.fileBytes = FILE_HEADER_SIZE;
+		this.fileStart = System.currentTimeMillis();
+	}
+	
+	private void writeBuffer() throws IOException {
+		this.buffer.flip();
+		while(this.buffer.hasRemaining()) {
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+	
+	private void closeFile() throws IOException {
+		try {
+			this.writeBuffer();
+		} finally {
+			this.channel.close();
+			this.channel = null;
+		}
+	}
+	
+	private void runFlusher() {
+		try {
+			while(true) {
+				Thread.sleep(FLUSH_INTERVAL_MS);
+				this.flush();
+			}
+		} catch (InterruptedException e) {
+			// closed
+		} catch (IOException e) {
+			System.err.printf("** PcapWriter: flushing failed: %s\n", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,74 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.hub;
+
+/**
+ * Sliding window over the last 64 sequence numbers received from one
+ * hub, identifying frames already seen (received on a different path).
+ * <p>
+ * Sequence numbers are 31 bit values wrapping around from {@code 0x7FFFFFFF}
+ * to {@code 0}, so the distance between 2 numbers is computed modulo 2^31.
+ * </p>
+ * 
+ * @author Dodo contributors
+ */
+public class SeqWindow {
+	
+	private boolean initialized = false;
+	private int highest;
+	private long seen;
+	
+	/**
+	 * Register a received sequence number.
+	 * 
+	 * @param seq the sequence number of the received frame.
+	 * @return {@code false} if the frame was already seen or is too old.
+	 */
+	public synchronized boolean accept(int seq) {
+		if (!this.initialized) {
+			this.initialized = true;
+			this.highest = seq;
+			this.seen = 1;
+			return true;
+		}
+		int diff = ((seq - this.highest) << 1) >> 1; // signed distance in the 31 bit sequence space
+		if (diff > 0) {
+			this.seen = (diff < 64) ? (this.seen << diff) | 1 : 1;
+			this.highest = seq;
+			return true;
+		}
+		if (diff <= -64) {
+			return false; // too old, regarded as duplicate
+		}
+		long bit = 1L << -diff;
+		if ((this.seen & bit) != 0) {
+			return false;
+		}
+		this.seen |= bit;
+		return true;
+	}
+}
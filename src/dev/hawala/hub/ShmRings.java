@@ -0,0 +1,386 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.hub;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.util.concurrent.locks.LockSupport;
+
+import sun.misc.Unsafe;
+
+/**
+ * Pair of single-producer/single-consumer ring buffers in a memory mapped
+ * file, used for exchanging ethernet frames between the NetHub and a client
+ * (e.g. the Dodo server) running on the same host, bypassing the TCP loopback.
+ * <p>
+ * The file is created by the client (preferably in {@code /dev/shm}), which then
+ * asks the hub to attach to the file over its normal TCP connection to the hub.
+ * The TCP connection is kept for signaling: a consumer finding its ring empty
+ * spins for a short time, then parks for some short intervals and finally
+ * sets its sleeping flag and blocks reading the TCP connection, where the
+ * producer writes a single (doorbell) byte after putting a frame into the ring
+ * of a sleeping consumer. Closing the TCP connection ends the exchange.
+ * </p>
+ * <p>
+ * File layout: a header page (magic, version, slot count and size, followed by
+ * the head, tail and sleeping flag of both rings on separate cache lines),
+ * followed by the slots of the client-to-hub ring and of the hub-to-client ring.
+ * Each slot holds the frame length (4 bytes) and the frame data. Head and tail are
+ * ever increasing 64 bit counters written only by the producer resp. the consumer.
+ * </p>
+ * <p>
+ * <b>Portability:</b> the Java memory model says nothing about memory shared with
+ * another process, and Java 8 has no public API for ordered accesses to a mapped
+ * buffer. The accesses to the buffer are therefore ordered with the memory fences
+ * of {@code sun.misc.Unsafe} (a store fence before publishing a new head resp. tail,
+ * a load fence after reading the head resp. tail of the other side and a full fence
+ * between publishing a counter and checking the sleeping flag of the other side),
+ * which emit the barrier instructions needed on the processor the JVM runs on.
+ * If {@code sun.misc.Unsafe} is not accessible, {@link #isSupported()} returns
+ * {@code false} and TCP is used instead.
+ * </p>
+ * 
+ * @author Dodo contributors
+ */
+public final class ShmRings {
+	
+	/** prefix for the names of ring files */
+	public static final String FILE_PREFIX = "dodo-hub-";
+	
+	/** suffix for the names of ring files */
+	public static final String FILE_SUFFIX = ".ring";
+	
+	private static final int MAGIC = 0x4453484D; // 'DSHM'
+	private static final int VERSION = 1;
+	
+	/** number of frames a ring can hold */
+	public static final int SLOT_COUNT = 512;
+	
+	/** size of a frame slot (length + data) */
+	public static final int SLOT_SIZE = 1088;
+	
+	/** maximum length of a frame in a ring */
+	public static final int MAX_FRAME_LENGTH = SLOT_SIZE - 4;
+	
+	private static final int HEADER_SIZE = 4096;
+	private static final int RING_CONTROL_BASE = 64;
+	private static final int RING_CONTROL_SIZE = 256;
+	private static final int HEAD_OFFSET = 0;     // own cache line (producer)
+	private static final int TAIL_OFFSET = 128;   // own cache line (consumer)
+	private static final int SLEEPING_OFFSET = 136;
+	
+	private static final int FILE_SIZE = HEADER_SIZE + (2 * SLOT_COUNT * SLOT_SIZE);
+	
+	private static final int SPIN_COUNT = 2000;
+	private static final int PARK_COUNT = 10;
+	private static final long PARK_NANOS = 20_000;
+	
+	// provider of the memory fences ordering the accesses to the mapped buffer (see class doc)
+	private static final Unsafe UNSAFE = getUnsafe();
+	
+	private static Unsafe getUnsafe() {
+		try {
+			Field f = Unsafe.class.getDeclaredField("theUnsafe");
+			f.setAccessible(true);
+			return (Unsafe)f.get(null);
+		} catch (Exception | LinkageError e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * @return {@code true} if the ring files can be used, i.e. the memory
+	 *   fences for ordering the accesses to the file are available (see class doc).
+	 */
+	public static boolean isSupported() {
+		return UNSAFE != null;
+	}
+	
+	private final MappedByteBuffer buffer;
+	private final Ring clientToHub;
+	private final Ring hubToClient;
+	
+	private ShmRings(MappedByteBuffer buffer) {
+		this.buffer = buffer;
+		this.clientToHub = new Ring(0);
+		this.hubToClient = new Ring(1);
+	}
+	
+	private static MappedByteBuffer map(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			if (raf.length() < FILE_SIZE) {
+				raf.setLength(FILE_SIZE);
+			}
+			return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+		}
+	}
+	
+	/**
+	 * @return the directory where the ring files are located: {@code /dev/shm}
+	 *   if available, else the temp directory of the JVM.
+	 */
+	public static File getRingDirectory() {
+		File dir = new File("/dev/shm");
+		if (!dir.isDirectory()) {
+			dir = new File(System.getProperty("java.io.tmpdir"));
+		}
+		return dir;
+	}
+	
+	/*
+	 * the hub maps only regular files directly located in the ring directory
+	 * and named like ring files, so a client cannot make the hub map arbitrary files
+	 */
+	private static boolean isRingFileLocation(File file) throws IOException {
+		String name = file.getName();
+		if (!name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX)) {
+			return false;
+		}
+		if (!Files.isRegularFile(file.toPath(), LinkOption.NOFOLLOW_LINKS)) {
+			return false;
+		}
+		File dir = file.getCanonicalFile().getParentFile();
+		return dir != null && dir.equals(getRingDirectory().getCanonicalFile());
+	}
+	
+	/**
+	 * Create and initialize the ring file (client side).
+	 * 
+	 * @param file the file to create (must not exist).
+	 * @return the rings in the file.
+	 * @throws IOException
+	 */
+	public static ShmRings create(File file) throws IOException {
+		if (!file.createNewFile()) {
+			throw new IOException("file already exists: " + file.getPath());
+		}
+		MappedByteBuffer buffer = map(file);
+		buffer.putInt(4, VERSION);
+		buffer.putInt(8, SLOT_COUNT);
+		buffer.putInt(12, SLOT_SIZE);
+		UNSAFE.storeFence(); // the header must be complete before it becomes valid
+		buffer.putInt(0, MAGIC);
+		return new ShmRings(buffer);
+	}
+	
+	/**
+	 * Map the ring file created by a client (hub side).
+	 * 
+	 * @param file the file created by the client, which must be located in
+	 *   the ring directory and be named with the ring file prefix and suffix.
+	 * @return the rings in the file.
+	 * @throws IOException if the file does not exist or is not a valid ring file.
+	 */
+	public static ShmRings attach(File file) throws IOException {
+		if (!isRingFileLocation(file) || file.length() != FILE_SIZE) {
+			throw new IOException("not a ring file: " + file.getPath());
+		}
+		MappedByteBuffer buffer = map(file);
+		int magic = buffer.getInt(0);
+		UNSAFE.loadFence(); // read the header only after seeing it valid
+		if (magic != MAGIC || buffer.getInt(4) != VERSION
+				|| buffer.getInt(8) != SLOT_COUNT || buffer.getInt(12) != SLOT_SIZE) {
+			throw new IOException("invalid ring file header: " + file.getPath());
+		}
+		return new ShmRings(buffer);
+	}
+	
+	/**
+	 * @return the ring transporting frames from the client to the hub.
+	 */
+	public Ring getClientToHub() {
+		return this.clientToHub;
+	}
+	
+	/**
+	 * @return the ring transporting frames from the hub to the client.
+	 */
+	public Ring getHubToClient() {
+		return this.hubToClient;
+	}
+	
+	/**
+	 * A single-producer/single-consumer ring in the ring file.
+	 */
+	public final class Ring {
+		
+		private final int headPos;
+		private final int tailPos;
+		private final int sleepingPos;
+		private final int slotsBase;
+		
+		// views for copying frame data, each used only by the producer resp. consumer thread
+		private final ByteBuffer producerView = buffer.duplicate();
+		private final ByteBuffer consumerView = buffer.duplicate();
+		
+		private Ring(int ringNo) {
+			int control = RING_CONTROL_BASE + (ringNo * RING_CONTROL_SIZE);
+			this.headPos = control + HEAD_OFFSET;
+			this.tailPos = control + TAIL_OFFSET;
+			this.sleepingPos = control + SLEEPING_OFFSET;
+			this.slotsBase = HEADER_SIZE + (ringNo * SLOT_COUNT * SLOT_SIZE);
+		}
+		
+		private int slotPos(long counter) {
+			return this.slotsBase + (int)(counter % SLOT_COUNT) * SLOT_SIZE;
+		}
+		
+		/**
+		 * @return {@code true} if no frame is in the ring.
+		 */
+		public boolean isEmpty() {
+			MappedByteBuffer b = buffer;
+			return b.getLong(this.headPos) == b.getLong(this.tailPos);
+		}
+		
+		/**
+		 * Put a frame into the ring (producer side).
+		 * 
+		 * @param data the buffer containing the frame.
+		 * @param offset the start of the frame in {@code data}.
+		 * @param length the length of the frame.
+		 * @return {@code false} if the ring is full.
+		 */
+		public boolean offer(byte[] data, int offset, int length) {
+			if (length < 0 || length > MAX_FRAME_LENGTH) {
+				throw new IllegalArgumentException("invalid frame length: " + length);
+			}
+			MappedByteBuffer b = buffer;
+			long head = b.getLong(this.headPos);
+			long tail = b.getLong(this.tailPos);
+			UNSAFE.loadFence(); // write the slot only after seeing it given back by the consumer
+			if ((head - tail) >= SLOT_COUNT) {
+				return false;
+			}
+			int pos = this.slotPos(head);
+			b.putInt(pos, length);
+			this.producerView.position(pos + 4);
+			this.producerView.put(data, offset, length);
+			UNSAFE.storeFence(); // the frame must be complete before it becomes visible
+			b.putLong(this.headPos, head + 1);
+			return true;
+		}
+		
+		/**
+		 * Check if the consumer fell asleep and must be woken by a doorbell byte
+		 * (producer side, after putting frames into the ring).
+		 * 
+		 * @return {@code true} if the caller must send the doorbell byte.
+		 */
+		public boolean wakeupNeeded() {
+			UNSAFE.fullFence(); // the new head must be visible before checking the sleeping flag
+			MappedByteBuffer b = buffer;
+			if (b.getInt(this.sleepingPos) == 0) {
+				return false;
+			}
+			b.putInt(this.sleepingPos, 0);
+			return true;
+		}
+		
+		/**
+		 * Get the next frame from the ring if available (consumer side).
+		 * 
+		 * @param data the buffer where to copy the frame.
+		 * @param offset the start position for the frame in {@code data}.
+		 * @return the length of the frame or {@code -1} if the ring is empty.
+		 * @throws IOException if the frame does not fit into {@code data}.
+		 */
+		public int poll(byte[] data, int offset) throws IOException {
+			MappedByteBuffer b = buffer;
+			long tail = b.getLong(this.tailPos);
+			long head = b.getLong(this.headPos);
+			UNSAFE.loadFence(); // read the frame only after seeing the new head
+			if (head == tail) {
+				return -1;
+			}
+			int pos = this.slotPos(tail);
+			int length = b.getInt(pos);
+			if (length < 0 || length > MAX_FRAME_LENGTH || length > (data.length - offset)) {
+				throw new IOException("invalid frame length in ring: " + length);
+			}
+			this.consumerView.position(pos + 4);
+			this.consumerView.get(data, offset, length);
+			UNSAFE.loadFence(); // the slot must be read before it is given back to the producer
+			b.putLong(this.tailPos, tail + 1);
+			return length;
+		}
+		
+		/**
+		 * Get the next frame from the ring, waiting for a frame if necessary
+		 * by spinning, parking and finally blocking on the doorbell stream
+		 * (consumer side).
+		 * 
+		 * @param data the buffer where to copy the frame.
+		 * @param offset the start position for the frame in {@code data}.
+		 * @param doorbell the stream where the producer signals new frames.
+		 * @return the length of the frame or {@code -1} if the doorbell
+		 *   stream was closed.
+		 * @throws IOException
+		 */
+		public int take(byte[] data, int offset, InputStream doorbell) throws IOException {
+			MappedByteBuffer b = buffer;
+			int waits = 0;
+			while(true) {
+				int length = this.poll(data, offset);
+				if (length >= 0) {
+					return length;
+				}
+				waits++;
+				if (waits < SPIN_COUNT) {
+					continue;
+				}
+				if (waits < SPIN_COUNT + PARK_COUNT) {
+					LockSupport.parkNanos(PARK_NANOS);
+					continue;
+				}
+				
+				// go to sleep unless a frame arrived meanwhile
+				b.putInt(this.sleepingPos, 1);
+				UNSAFE.fullFence(); // the sleeping flag must be visible before checking the ring
+				if (this.isEmpty()) {
+					if (doorbell.read() < 0) {
+						return -1;
+					}
+					int pending = doorbell.available();
+					if (pending > 0) {
+						doorbell.skip(pending);
+					}
+				}
+				b.putInt(this.sleepingPos, 0);
+				waits = 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,314 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.hub;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import dev.hawala.hub.HubStatistics.LineStats;
+import dev.hawala.hub.NetHub.Packet;
+import dev.hawala.hub.NetHub.iLine;
+
+/**
+ * UDP transport for the NetHub, with each datagram carrying a single raw ethernet
+ * frame (without length prefix), avoiding that a lost TCP segment blocks all traffic
+ * on a line (SPP and the other XNS protocols do their own retransmission).
+ * <p>
+ * The service listens on the UDP port with the same number as the TCP port of the hub.
+ * Each remote socket address sending datagrams to the hub becomes a line of the hub,
+ * coexisting with the TCP lines. As there is no connection, a line is dropped if
+ * no datagram was received from the client within the idle timeout (clients should
+ * send a {@code KEEPALIVE} control frame if they have nothing to send).
+ * </p>
+ * <p>
+ * As any datagram could otherwise create a line, a line is only created for a client
+ * starting with a {@code KEEPALIVE} or {@code SUBSCRIBE} control frame (other datagrams
+ * from unknown addresses are ignored), and the number of UDP lines is limited.
+ * The packets queued for all UDP lines are sent by a single sender thread.
+ * </p>
+ * 
+ * @author Dodo contributors
+ */
+final class UdpHubService implements Runnable {
+	
+	private static final int IDLE_TIMEOUT_MS = 120_000; // 2 minutes
+	private static final int IDLE_CHECK_INTERVAL_MS = 1_000;
+	
+	// max. number of UDP lines
+	private static final int MAX_LINES = 64;
+	
+	// max. number of packets sent to a line before serving the next line
+	private static final int MAX_SEND_BURST = 64;
+	
+	private final DatagramSocket socket;
+	private final Map<SocketAddress,UdpLine> peers = new ConcurrentHashMap<>();
+	
+	// the lines having packets to be sent, served by the sender thread
+	private final LinkedBlockingQueue<UdpLine> sendReady = new LinkedBlockingQueue<>();
+	
+	/**
+	 * Create the UDP service.
+	 * 
+	 * @param port the UDP port to listen on.
+	 * @throws SocketException
+	 */
+	UdpHubService(int port) throws SocketException {
+		this.socket = new DatagramSocket(port);
+		this.socket.setSoTimeout(IDLE_CHECK_INTERVAL_MS);
+	}
+	
+	/**
+	 * Start receiving and sending datagrams.
+	 */
+	void start() {
+		Thread t = new Thread(this);
+		t.setDaemon(true);
+		t.setName("UDP receiver");
+		t.start();
+		
+		Thread s = new Thread(this::sendPackets);
+		s.setDaemon(true);
+		s.setName("UDP sender");
+		s.start();
+	}
+	
+	@Override
+	public void run() {
+		long nextIdleCheck = System.currentTimeMillis() + IDLE_CHECK_INTERVAL_MS;
+		Packet p = Packet.allocate();
+		DatagramPacket dp = new DatagramPacket(p.data, 2, NetHub.PACKET_LENGTH + 1); // +1 to detect too long frames
+		while(true) {
+			long now = System.currentTimeMillis();
+			if (now >= nextIdleCheck) {
+				this.dropIdleLines(now);
+				nextIdleCheck = now + IDLE_CHECK_INTERVAL_MS;
+			}
+			
+			try {
+				dp.setData(p.data, 2, NetHub.PACKET_LENGTH + 1);
+				this.socket.receive(dp);
+			} catch (SocketTimeoutException e) {
+				continue;
+			} catch (IOException e) {
+				NetHub.log("UDP receiver got exception(" + e.getClass().getCanonicalName() + "): " + e.getMessage());
+				continue;
+			}
+			
+			int pLen = dp.getLength();
+			if (pLen < 1 || pLen > NetHub.PACKET_LENGTH) {
+				NetHub.log("UDP: ignoring datagram with invalid size " + pLen + " from " + dp.getSocketAddress());
+				continue;
+			}
+			p.data[0] = (byte)((pLen >> 8) & 0xFF);
+			p.data[1] = (byte)(pLen & 0xFF);
+			p.packetLen = pLen;
+			
+			UdpLine line = this.getLine(dp.getSocketAddress(), p);
+			if (line == null) {
+				continue;
+			}
+			line.lastReceived = System.currentTimeMillis();
+			
+			if (NetHub.isPacketLogging()) { NetHub.log("UDP: connection #" + line.connNo + " => received packet with net size: " + pLen); }
+			NetHub.distribute(p, line);
+			p = Packet.allocate();
+		}
+	}
+	
+	private UdpLine getLine(SocketAddress remote, Packet first) {
+		UdpLine line = this.peers.get(remote);
+		if (line != null) {
+			return line;
+		}
+		
+		// only a client announcing itself gets a line
+		int opcode = HubControl.isControl(first) ? HubControl.getOpcode(first) : -1;
+		if (opcode != HubControl.OP_KEEPALIVE && opcode != HubControl.OP_SUBSCRIBE) {
+			if (NetHub.isPacketLogging()) { NetHub.log("UDP: ignoring datagram from unknown client " + remote); }
+			return null;
+		}
+		if (this.peers.size() >= MAX_LINES) {
+			if (NetHub.isPacketLogging()) { NetHub.log("UDP: max. number of lines reached => ignoring client " + remote); }
+			return null;
+		}
+		try {
+			UdpLine[] created = { null };
+			if (!NetHub.addLine(no -> created[0] = new UdpLine(remote, no))) {
+				return null;
+			}
+			this.peers.put(remote, created[0]);
+			NetHub.log("UDP: connection #" + created[0].connNo + " => new line for " + remote);
+			return created[0];
+		} catch (IOException e) {
+			return null; // not thrown when creating a UDP line
+		}
+	}
+	
+	private void dropIdleLines(long now) {
+		for (UdpLine line : this.peers.values()) {
+			if ((now - line.lastReceived) > IDLE_TIMEOUT_MS) {
+				NetHub.log("UDP: connection #" + line.connNo + " => idle timeout => dropping line");
+				line.stop();
+			}
+		}
+	}
+	
+	/*
+	 * send the packets queued for the lines, serving the lines in the order
+	 * they got packets to be sent
+	 */
+	private void sendPackets() {
+		DatagramPacket dp = new DatagramPacket(new byte[0], 0);
+		while(true) {
+			UdpLine line;
+			try {
+				line = this.sendReady.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			line.scheduled.set(false);
+			if (line.stopped) {
+				line.outPackets.clear();
+				continue;
+			}
+			
+			dp.setSocketAddress(line.remote);
+			int count = 0;
+			Packet p;
+			while(count < MAX_SEND_BURST && (p = line.outPackets.poll()) != null) {
+				dp.setData(p.data, 2, p.packetLen);
+				try {
+					this.socket.send(dp);
+				} catch (IOException e) {
+					// lost as on a real network
+					if (NetHub.isPacketLogging()) { NetHub.log("UDP: connection #" + line.connNo + " => send failed: " + e.getMessage()); }
+				}
+				line.stats.countOut(p);
+				p.release();
+				count++;
+			}
+			line.outPackets.countSent(count);
+			
+			// let the other lines send before sending the remaining packets
+			if (!line.outPackets.isEmpty()) {
+				line.schedule();
+			}
+		}
+	}
+	
+	/**
+	 * Line for a client sending datagrams from a remote socket address, with
+	 * the packets queued for the client being sent by the sender thread.
+	 */
+	private class UdpLine implements iLine {
+		
+		private final SocketAddress remote;
+		private final int connNo;
+		private final PacketQueue outPackets = NetHub.createOutQueue();
+		private final LineStats stats;
+		private final EtherTypeFilter filter = new EtherTypeFilter();
+		
+		// is the line already queued for the sender thread?
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		
+		private volatile long lastReceived = System.currentTimeMillis();
+		private volatile boolean stopped = false;
+		
+		private UdpLine(SocketAddress remote, int connNo) {
+			this.remote = remote;
+			this.connNo = connNo;
+			this.stats = new LineStats(connNo, String.valueOf(remote), this.outPackets);
+			this.stats.setMode("udp");
+		}
+		
+		private void schedule() {
+			if (this.scheduled.compareAndSet(false, true)) {
+				sendReady.add(this);
+			}
+		}
+
+		@Override
+		public void enqueueOutPacket(Packet p) {
+			if (!this.outPackets.offer(p)) {
+				if (!this.stopped) {
+					NetHub.log("UDP: connection #" + this.connNo + " => packet queue overflow => dropping line");
+					this.stop();
+				}
+				return;
+			}
+			this.schedule();
+		}
+
+		@Override
+		public void stop() {
+			synchronized(this) {
+				if (this.stopped) { return; }
+				this.stopped = true;
+			}
+			peers.remove(this.remote, this);
+			NetHub.dropLine(this);
+			this.outPackets.clear();
+			NetHub.log("UDP: connection #" + this.connNo + " .. shutdown (" + this.outPackets + ")");
+		}
+
+		@Override
+		public LineStats getStats() {
+			return this.stats;
+		}
+
+		@Override
+		public EtherTypeFilter getFilter() {
+			return this.filter;
+		}
+
+		@Override
+		public boolean attachSharedMemory(String path) {
+			return false; // no shared memory for remote clients
+		}
+		
+		@Override
+		public boolean isLoopback() {
+			return (this.remote instanceof InetSocketAddress)
+				&& ((InetSocketAddress)this.remote).getAddress().isLoopbackAddress();
+		}
+		
+		@Override
+		public InetAddress getRemoteAddress() {
+			return (this.remote instanceof InetSocketAddress) ? ((InetSocketAddress)this.remote).getAddress() : null;
+		}
+	}
+}
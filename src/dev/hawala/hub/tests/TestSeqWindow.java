@@ -0,0 +1,69 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.hub.tests;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import dev.hawala.hub.SeqWindow;
+
+public class TestSeqWindow {
+	
+	private static final int MAX_SEQ = 0x7FFF_FFFF;
+	
+	@Test
+	public void testDuplicatesAndReordering() {
+		SeqWindow w = new SeqWindow();
+		assertTrue(w.accept(100));
+		assertTrue(w.accept(102));
+		assertTrue(w.accept(101)); // late, not yet seen
+		assertFalse(w.accept(101));
+		assertFalse(w.accept(102));
+		assertFalse(w.accept(102 - 64)); // too old
+	}
+	
+	@Test
+	public void testWrapAround() {
+		SeqWindow w = new SeqWindow();
+		assertTrue(w.accept(MAX_SEQ - 2));
+		assertTrue(w.accept(MAX_SEQ));
+		
+		// the sequence continues with 0 after the wrap
+		assertTrue(w.accept(0));
+		assertTrue(w.accept(1));
+		assertFalse(w.accept(0));
+		assertFalse(w.accept(MAX_SEQ)); // seen before the wrap
+		assertTrue(w.accept(MAX_SEQ - 1)); // late from before the wrap
+		assertFalse(w.accept(MAX_SEQ - 1));
+		
+		// numbers far beyond the window before the wrap are old
+		assertFalse(w.accept(MAX_SEQ - 100));
+		assertTrue(w.accept(2));
+	}
+}
@@ -27,6 +27,7 @@ ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package dev.hawala.xns;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -34,6 +35,7 @@ import java.util.Map.Entry;
 
 import dev.hawala.xns.level1.IDP;
 import dev.hawala.xns.level2.SppConnection;
+import dev.hawala.xns.level3.courier.CourierRegistry;
 import dev.hawala.xns.level3.courier.CourierServer;
 import dev.hawala.xns.level4.auth.Authentication2Impl;
 import dev.hawala.xns.level4.auth.BfsAuthenticationResponder;
@@ -53,6 +55,7 @@ import dev.hawala.xns.level4.printing.Printing3Impl;
 import dev.hawala.xns.level4.pup.PupHostLookupResponder;
 import dev.hawala.xns.level4.rip.RipResponder;
 import dev.hawala.xns.level4.time.TimeServiceResponder;
+import dev.hawala.xns.network.NetMachine;
 
 /**
  * Simple XNS server providing some services from the Xerox world.
@@ -79,9 +82,14 @@ public class DodoServer {
 	private static long networkNo = 0x0401;
 	private static long machineId = LocalSite.getMachineId();
 	private static boolean doChecksums = true;
+	private static String checksumPolicy = null;
 	private static boolean doDarkstarWorkaround = false;
+	private static int dispatchWorkers = 0;
+	private static int pexWorkers = 0;
+	private static int pexRequestsPerSecond = 0;
 	private static String netHubHost = "localhost";
 	private static int netHubPort = 3333;
+	private static String netHubTransport = "tcp";
 	
 	private static int localTimeOffsetMinutes = 0;
 	private static int dstFirstDay = 0;
@@ -127,6 +135,21 @@ public class DodoServer {
 	
 	// startFileServer <=> fileServiceSpecs.size() > 0
 	private static Map<String,String> fileServiceSpecs = new HashMap<>();
+	
+	// further machines started in this JVM besides the Dodo server machine
+	private static class SiteSpec {
+		private String name;
+		private long networkNo;
+		private String machineIdName;
+		private long machineId;
+		private boolean startEchoService;
+		private boolean startTimeService;
+		private boolean startRipService;
+		private String printServiceName;
+		private String printServiceOutputDirectory;
+	}
+	
+	private static List<SiteSpec> siteSpecs = new ArrayList<>();
 
 	private static boolean initializeConfiguration(String filename) {
 		// load the properties file
@@ -144,9 +167,14 @@ public class DodoServer {
 		networkNo = props.getLong("networkNo", networkNo);
 		String mId = props.getString("machineId", null);
 		doChecksums = props.getBoolean("useChecksums", doChecksums);
+		checksumPolicy = props.getString("checksumPolicy", checksumPolicy);
 		doDarkstarWorkaround = props.getBoolean("ether.useDarkstarWorkaround", doDarkstarWorkaround);
+		dispatchWorkers = props.getInt("dispatchWorkers", dispatchWorkers);
+		pexWorkers = props.getInt("pexWorkers", pexWorkers);
+		pexRequestsPerSecond = props.getInt("pexRequestsPerSecond", pexRequestsPerSecond);
 		netHubHost = props.getString("netHubHost", netHubHost);
 		netHubPort = props.getInt("netHubPort", netHubPort);
+		netHubTransport = props.getString("netHubTransport", netHubTransport);
 		
 		localTimeOffsetMinutes = props.getInt("localTimeOffsetMinutes", localTimeOffsetMinutes);
 		localTimeOffsetMinutes = props.getInt("timeService.localTimeOffsetMinutes", localTimeOffsetMinutes);
@@ -198,6 +226,28 @@ public class DodoServer {
 			fileSvcIdx++;
 		}
 		
+		// sites given in this file replace the sites of a previously loaded (base) configuration
+		List<SiteSpec> newSiteSpecs = new ArrayList<>();
+		int siteIdx = 0;
+		String siteMachineId;
+		while ((siteMachineId = props.getString("site." + siteIdx + ".machineId", null)) != null) {
+			String prefix = "site." + siteIdx + ".";
+			SiteSpec spec = new SiteSpec();
+			spec.name = props.getString(prefix + "name", "DodoServer-" + siteIdx);
+			spec.networkNo = props.getLong(prefix + "networkNo", networkNo);
+			spec.machineIdName = siteMachineId;
+			spec.startEchoService = props.getBoolean(prefix + "startEchoService", startEchoService);
+			spec.startTimeService = props.getBoolean(prefix + "startTimeService", startTimeService);
+			spec.startRipService = props.getBoolean(prefix + "startRipService", startRipService);
+			spec.printServiceName = props.getString(prefix + "printService.name", null);
+			spec.printServiceOutputDirectory = props.getString(prefix + "printService.outputDirectory", null);
+			newSiteSpecs.add(spec);
+			siteIdx++;
+		}
+		if (!newSiteSpecs.isEmpty()) {
+			siteSpecs = newSiteSpecs;
+		}
+		
 		sppHandshakeCheckInterval = props.getInt("spp.handshakeCheckInterval", sppHandshakeCheckInterval);
 		sppHandshakeSendackCountdown = props.getInt(MachineIds.CFG_SPP_HANDSHAKE_SENDACK_COUNTDOWN, sppHandshakeSendackCountdown);
 		sppHandshakeResendCountdown = props.getInt(MachineIds.CFG_SPP_HANDSHAKE_RESEND_COUNTDOWN, sppHandshakeResendCountdown);
@@ -213,6 +263,43 @@ public class DodoServer {
 			machineId = MachineIds.resolve(mId);
 		}
 		
+		for (SiteSpec spec : siteSpecs) {
+			spec.machineId = MachineIds.resolve(spec.machineIdName);
+			if (spec.machineId == machineId) {
+				System.err.printf("Error: machineId of site '%s' is the machineId of the Dodo server\n", spec.name);
+				outcome = false;
+			}
+			if ((spec.printServiceName == null) != (spec.printServiceOutputDirectory == null)) {
+				System.err.printf("Error: site '%s' needs both printService.name and printService.outputDirectory for a print service\n", spec.name);
+				outcome = false;
+			}
+		}
+		
+		if (getHubTransport() == null) {
+			System.err.printf("Error: invalid netHubTransport '%s' (tcp, shm or udp expected)\n", netHubTransport);
+			outcome = false;
+		}
+		
+		if (getChecksumPolicy() == null) {
+			System.err.printf("Error: invalid checksumPolicy '%s' (off, verify, report or enforce expected)\n", checksumPolicy);
+			outcome = false;
+		}
+		
+		if (dispatchWorkers < 0 || dispatchWorkers > 64) {
+			System.err.printf("Error: invalid dispatchWorkers %d (0..64 expected)\n", dispatchWorkers);
+			outcome = false;
+		}
+		
+		if (pexWorkers < 0 || pexWorkers > 64) {
+			System.err.printf("Error: invalid pexWorkers %d (0..64 expected)\n", pexWorkers);
+			outcome = false;
+		}
+		
+		if (pexRequestsPerSecond < 0) {
+			System.err.printf("Error: invalid pexRequestsPerSecond %d (0 or more expected)\n", pexRequestsPerSecond);
+			outcome = false;
+		}
+		
 		if (startChsAndAuth || fileServiceSpecs.size() > 0) {
 			if (isEmpty(organizationName)) {
 				System.err.printf("Error: organizationName may not be empty\n");
@@ -227,6 +314,27 @@ public class DodoServer {
 		return outcome;
 	}
 	
+	private static LocalSite.HubTransport getHubTransport() {
+		for (LocalSite.HubTransport t : LocalSite.HubTransport.values()) {
+			if (t.name().equalsIgnoreCase(netHubTransport)) {
+				return t;
+			}
+		}
+		return null;
+	}
+	
+	private static NetMachine.ChecksumPolicy getChecksumPolicy() {
+		if (checksumPolicy == null) {
+			return doChecksums ? NetMachine.ChecksumPolicy.REPORT : NetMachine.ChecksumPolicy.OFF;
+		}
+		for (NetMachine.ChecksumPolicy p : NetMachine.ChecksumPolicy.values()) {
+			if (p.name().equalsIgnoreCase(checksumPolicy)) {
+				return p;
+			}
+		}
+		return null;
+	}
+	
 	private static boolean isEmpty(String s) {
 		return (s == null || s.isEmpty());
 	}
@@ -320,8 +428,10 @@ public class DodoServer {
 		}
 		
 		// configure and start the network engine
-		LocalSite.configureHub(netHubHost, netHubPort);
-		LocalSite.configureLocal(networkNo, machineId, "DodoServer", doChecksums, doDarkstarWorkaround);
+		LocalSite.configureHub(netHubHost, netHubPort, getHubTransport());
+		LocalSite.configureLocal(networkNo, machineId, "DodoServer", getChecksumPolicy(), doDarkstarWorkaround);
+		LocalSite.configureDispatching(dispatchWorkers);
+		LocalSite.configurePexServing(pexWorkers, pexRequestsPerSecond);
 		localSite = LocalSite.getInstance();
 		
 		// set time base for all time dependent items
@@ -335,26 +445,8 @@ public class DodoServer {
 					bootService);
 		}
 		
-		// echo service
-		if (startEchoService) {
-			localSite.clientBindToSocket(
-					IDP.KnownSocket.ECHO.getSocket(), 
-					new EchoResponder());
-		}
-		
-		// time service
-		if (startTimeService) {
-			localSite.pexListen(
-					IDP.KnownSocket.TIME.getSocket(), 
-					new TimeServiceResponder(localTimeOffsetMinutes, dstFirstDay, dstLastDay, timeServiceSendingTimeGap));
-		}
-		
-		// routing protocol responder
-		RipResponder ripResponder = null;
-		if (startRipService) {
-			ripResponder = new RipResponder();
-			localSite.clientBindToSocket(IDP.KnownSocket.ROUTING.getSocket(), ripResponder);
-		}
+		// echo, time and routing protocol services
+		RipResponder ripResponder = startBasicServices(localSite, startEchoService, startTimeService, startRipService);
 		
 		// clearinghouse and authentication services
 		if (startChsAndAuth) {
@@ -395,14 +487,8 @@ public class DodoServer {
 		// print service
 		if (printServiceName != null && printServiceOutputDirectory != null) {
 			try {
-				Printing3Impl.init(
-						printServiceName,
-						printServiceOutputDirectory,
-						printServiceDisassembleIp,
-						printServicePaperSizes,
-						printServiceIp2PsProcFilename,
-						printServicePsPostprocessor);
-				Printing3Impl.register();
+				Printing3Impl printService = createPrintService(printServiceName, printServiceOutputDirectory);
+				printService.register();
 			} catch(Exception e) {
 				System.out.printf("Error starting printservice '%s': %s\n", printServiceName, e.getMessage());
 			}
@@ -440,6 +526,11 @@ public class DodoServer {
 		// run courier server with dispatcher
 		CourierServer courierServer = new CourierServer(localSite);
 		
+		// further machines with their own services
+		for (SiteSpec spec : siteSpecs) {
+			startSite(spec);
+		}
+		
 		// silence logging a bit
 		Log.L0.doLog(false);
 		Log.L1.doLog(false);
@@ -451,5 +542,75 @@ public class DodoServer {
 		 * let the server machine run...
 		 */
 	}
+	
+	private static RipResponder startBasicServices(iNetMachine site, boolean withEcho, boolean withTime, boolean withRip) throws XnsException {
+		// echo service
+		if (withEcho) {
+			site.clientBindToSocket(
+					IDP.KnownSocket.ECHO.getSocket(), 
+					new EchoResponder());
+		}
+		
+		// time service
+		if (withTime) {
+			site.pexListen(
+					IDP.KnownSocket.TIME.getSocket(), 
+					new TimeServiceResponder(localTimeOffsetMinutes, dstFirstDay, dstLastDay, timeServiceSendingTimeGap));
+		}
+		
+		// routing protocol responder
+		RipResponder ripResponder = null;
+		if (withRip) {
+			ripResponder = new RipResponder();
+			site.clientBindToSocket(IDP.KnownSocket.ROUTING.getSocket(), ripResponder);
+		}
+		return ripResponder;
+	}
+	
+	private static Printing3Impl createPrintService(String serviceName, String outputDirectory) {
+		return new Printing3Impl(
+				serviceName,
+				outputDirectory,
+				printServiceDisassembleIp,
+				printServicePaperSizes,
+				printServiceIp2PsProcFilename,
+				printServicePsPostprocessor);
+	}
+	
+	/*
+	 * start a further machine in this JVM, sharing the NetHub connection with the Dodo server
+	 * machine, but having its own services and its own Courier server
+	 * (only services without global state can be started on these machines)
+	 */
+	private static void startSite(SiteSpec spec) {
+		iNetMachine site;
+		try {
+			site = LocalSite.createSite(
+					spec.networkNo, spec.machineId, spec.name, getChecksumPolicy(), doDarkstarWorkaround,
+					dispatchWorkers, pexWorkers, pexRequestsPerSecond).getMachine();
+		} catch (IllegalStateException e) {
+			System.out.printf("Error starting site '%s': %s\n", spec.name, e.getMessage());
+			return;
+		}
+		System.out.printf("Started site '%s' => network: 0x%04X machine: %012X\n", spec.name, spec.networkNo, spec.machineId);
+		
+		try {
+			startBasicServices(site, spec.startEchoService, spec.startTimeService, spec.startRipService);
+		} catch (XnsException e) {
+			System.out.printf("Error starting services for site '%s': %s\n", spec.name, e.getMessage());
+			return;
+		}
+		
+		if (spec.printServiceName != null) {
+			try {
+				CourierRegistry siteRegistry = new CourierRegistry();
+				Printing3Impl printService = createPrintService(spec.printServiceName, spec.printServiceOutputDirectory);
+				printService.register(siteRegistry);
+				new CourierServer(site, IDP.KnownSocket.COURIER.getSocket(), siteRegistry);
+			} catch(Exception e) {
+				System.out.printf("Error starting printservice '%s' for site '%s': %s\n", spec.printServiceName, spec.name, e.getMessage());
+			}
+		}
+	}
 
 }
@@ -27,114 +27,424 @@ ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package dev.hawala.xns;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import dev.hawala.xns.level0.NetPacket;
 import dev.hawala.xns.level1.IDP;
 import dev.hawala.xns.network.AsyncIdpPipeline;
 import dev.hawala.xns.network.NetMachine;
+import dev.hawala.xns.network.NetMachine.ChecksumPolicy;
+import dev.hawala.xns.network.NioHubLink;
+import dev.hawala.xns.network.ShmHubLink;
+import dev.hawala.xns.network.TcpHubLink;
+import dev.hawala.xns.network.UdpHubLink;
+import dev.hawala.xns.network.iHubLink;
 
 /**
- * Factory class for creating the single XNS machine at the local site
- * (current JVM), connecting it to a virtual network provided by a
+ * Factory class for creating the XNS machines at the local site
+ * (current JVM), connecting them to a virtual network provided by a
  * {@code NetHub} for communication with other emulated XNS systems.
  * <p>
- * The instance of {@code localSite} is mainly the interface to the
- * {@code NetHub}, transferring packets at the IDP level. The implementation of
+ * The {@code LocalSite} is mainly the interface to the {@code NetHub},
+ * transferring packets at the IDP level. The implementation of
  * the higher level protocols (above IDP) is delegated to a {@code NetMachine}
  * which dispatches the received packets to the handlers registered for the
  * corresponding ports and protocols, providing these handlers to send
  * generated data packets.  
  * </p>
+ * <p>
+ * A local site can host several independent machines ({@code Site} instances),
+ * each with its own network number, machine id and services. All machines of
+ * a local site share a single connection to the {@code NetHub} with one receiving
+ * thread demultiplexing the packets by the destination machine id (broadcasts are
+ * delivered to all machines), and one sending thread, which also delivers packets
+ * between the machines of the local site without going through the {@code NetHub}.
+ * </p>
+ * <p>
+ * The static methods {@code configureHub()}, {@code configureLocal()},
+ * {@code getInstance()} etc. work on a default local site, created when first
+ * used, with a default machine for the common case of a single machine per JVM.
+ * Further local sites with their own {@code NetHub} connection can be created
+ * with the constructor.
+ * </p>
  * 
  * @author Dr. Hans-Walter Latz / Berlin (2016-2018)
  */
 public class LocalSite {
 	
+	/**
+	 * Transport used for the connection to the {@code NetHub}.
+	 */
+	public enum HubTransport {
+		/** TCP connection with length prefixed frames, reconnecting automatically after hub outages */
+		TCP,
+		/** memory mapped ring file (hub on the same host), falling back to TCP if not accepted by the hub */
+		SHM,
+		/** UDP datagrams with one frame each */
+		UDP
+	}
+	
 	// 60 bytes seems the minimum ethernet packet length accepted by Pilot (Ethernet requirement?)
 	private static final int MIN_ETHER_PACKET_LEN = 60;
 	private static final int MIN_IDP_PACKET_LEN = MIN_ETHER_PACKET_LEN - 14; // 2x 3 words for ether-addr + 1 word for ether-type
 	
-	private static final Object lock = new Object();
+	private static final Object defaultsLock = new Object();
 	
-	// configuration with defaults
+	// configuration of the default machine with defaults
 	private static long networkId = 2273; // 0x0001_0120; // arbitrary
 	private static long machineId = 0x0000_1000_FF12_3401L; // 10-00-FF-12-34-01
-	private static boolean enforceChecksums = true;
+	private static ChecksumPolicy checksumPolicy = ChecksumPolicy.REPORT;
 	private static boolean prolongatePacketsForDarkstar = false;
+	private static int dispatchWorkers = 0;
+	private static int pexWorkers = 0;
+	private static int pexRequestsPerSecond = 0;
 	
 	private static String machineName = "DwarfSvc:domain:org";
 	
-	private static NetMachine theMachine = null;
+	// configuration of the hub connection of the default local site with defaults
+	private static String defaultHubHost = "localhost";
+	private static int defaultHubSocket = 3333;
+	private static HubTransport defaultHubTransport = HubTransport.TCP;
+	
+	// the default local site, created when first used
+	private static LocalSite defaultLocalSite = null;
+	
+	// the default machine, created by getInstance()
+	private static Site defaultSite = null;
 	
-	private static String hubHost = "localhost";
-	private static int hubSocket = 3333;
 	private static final int HUB_CONNECT_RETRY_INTERVAL = 2000; // 2 seconds
 	
-	private static Socket sock = null;
-	private static InputStream istream = null;
-	private static OutputStream ostream = null;
+	// hub control frame subscribing to XNS packets (ethertype 0x0600) only, sent when connecting to the hub
+	// (2 bytes for the link, 2x 6 zero address bytes, ethertype 0x88B5, 'N' 'H', opcode SUBSCRIBE, ethertype list)
+	private static final byte[] HUB_SUBSCRIBE_XNS = {
+		0x00, 0x00,
+		0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+		0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+		(byte)0x88, (byte)0xB5,
+		'N', 'H',
+		0x05,
+		0x06, 0x00
+	};
+	
+	// max. number of packets taken from a pipeline in one go
+	private static final int MAX_PIPELINE_BATCH = 64;
+	
+	private final Object lock = new Object();
+	
+	// connection parameters to the hub
+	private final String hubHost;
+	private final int hubSocket;
+	private final HubTransport hubTransport;
 	
-	private static final AsyncIdpPipeline local2remotePipeline = new AsyncIdpPipeline();
-	private static final AsyncIdpPipeline remote2localPipeline = new AsyncIdpPipeline();
+	// all machines currently hosted by this local site
+	private final Map<Long, Site> sitesByMachineId = new ConcurrentHashMap<>();
+	private final List<Site> sites = new CopyOnWriteArrayList<>();
 	
-	private static Thread machine2remoteThread = null;;
-	private static Thread remote2localThread = null;;
-	private static Thread local2machineThread = null;
+	private iHubLink hubLink = null;
 	
-	private static void connectToHub() throws InterruptedException {
-		while(sock == null) {
+	// packets sent by all machines of this local site, to be delivered to local machines resp. the hub
+	private final AsyncIdpPipeline local2remotePipeline = new AsyncIdpPipeline();
+	
+	// packets of the current batch still to be sent by the machine2remote thread
+	private int pendingBatchPackets = 0;
+	
+	// the threads shared by all machines of this local site, started with the first machine
+	private Thread machine2remoteThread = null;
+	private Thread remote2localThread = null;
+	
+	private final byte[] sendBuffer = new byte[2048];
+	private final byte[] recvBuffer = new byte[2048];
+	
+	// (used by the machine2remote thread only)
+	private final byte[] copyBuffer = new byte[2048];
+	
+	/**
+	 * Create a local site for hosting XNS machines, connected to a {@code NetHub}
+	 * when the first machine is created.
+	 * 
+	 * @param hubHost hostname for the {@code NetHub} machine, {@code null}
+	 * 		for not using the {@code NetHub}, i.e. only connections between
+	 * 		the machines of this local site are possible.
+	 * @param hubSocket socket used by the {@code NetHub} service
+	 * @param hubTransport the transport to use for the connection to the {@code NetHub}
+	 */
+	public LocalSite(String hubHost, int hubSocket, HubTransport hubTransport) {
+		this.hubHost = hubHost;
+		this.hubSocket = hubSocket;
+		this.hubTransport = (hubTransport != null) ? hubTransport : HubTransport.TCP;
+	}
+	
+	/**
+	 * A single XNS machine hosted by a local site, with its own network
+	 * number, machine id and {@code NetMachine} for the services.
+	 */
+	public class Site {
+		
+		private final long siteNetworkId;
+		private final long siteMachineId;
+		private final ChecksumPolicy siteChecksumPolicy;
+		private final boolean siteProlongatePackets;
+		
+		private final NetMachine machine;
+		
+		// packets received for this machine, to be handled by the NetMachine
+		private final AsyncIdpPipeline remote2localPipeline = new AsyncIdpPipeline();
+		private final Thread local2machineThread;
+		
+		private Site(long network, long machine, String name, ChecksumPolicy policy, boolean doDarkstarWorkaround, int workers) {
+			this.siteNetworkId = network;
+			this.siteMachineId = machine;
+			this.siteChecksumPolicy = (policy != null) ? policy : ChecksumPolicy.OFF;
+			this.siteProlongatePackets = doDarkstarWorkaround;
+			this.machine = new NetMachine(network, machine, name, this::sendFromMachine, this.siteChecksumPolicy, workers);
+			
+			this.local2machineThread = new Thread(() -> {
+				List<IDP> batch = new ArrayList<>();
+				while(true) {
+					try {
+						this.remote2localPipeline.drainTo(batch, MAX_PIPELINE_BATCH);
+						for (int i = 0; i < batch.size(); i++) {
+							IDP idp = batch.get(i);
+							if (Log.L0.isEnabled()) {
+								Log.L0.printf(idp, "local2machine -> theMachine.handlePacket(idp)\n");
+							}
+							this.machine.handlePacket(idp);
+						}
+					} catch (InterruptedException e) {
+						// shutting down
+						return;
+					} finally {
+						batch.clear();
+					}
+				}
+			});
+		}
+		
+		/**
+		 * @return the XNS machine for registering the services of this site.
+		 */
+		public iNetMachine getMachine() {
+			return this.machine;
+		}
+		
+		/**
+		 * @return the network where the machine is located.
+		 */
+		public long getNetworkId() {
+			return this.siteNetworkId;
+		}
+		
+		/**
+		 * @return the machine-id (MAC address) of the machine.
+		 */
+		public long getMachineId() {
+			return this.siteMachineId;
+		}
+		
+		/**
+		 * @return the local site hosting this machine.
+		 */
+		public LocalSite getLocalSite() {
+			return LocalSite.this;
+		}
+		
+		/**
+		 * Stop the machine and remove it from the local site.
+		 */
+		public void shutdown() {
+			synchronized(LocalSite.this.lock) {
+				LocalSite.this.sites.remove(this);
+				LocalSite.this.sitesByMachineId.remove(this.siteMachineId, this);
+			}
+			synchronized(defaultsLock) {
+				if (defaultSite == this) {
+					defaultSite = null;
+				}
+			}
+			this.machine.shutdown();
+			this.remote2localPipeline.abort();
+		}
+		
+		/*
+		 * sender for the NetMachine: finalize the packet content for this machine
+		 * before handing it to the shared sending thread
+		 */
+		private void sendFromMachine(IDP idp) {
+			if (idp == null) { return; }
+			
+			// force correct source information of outgoing packet
+			idp.setSrcHost(this.siteMachineId);
+			idp.setSrcNetwork(this.siteNetworkId);
+			
+			// if not sent as broadcast:
+			// correct network for responses to requests sent to 'any' or 'local'network
+			// to inform the sender about the network it is directly attached to
+			long destNetwork = idp.getDstNetwork();
+			if (idp.getDstHost() != IDP.BROADCAST_ADDR
+				&& (destNetwork == IDP.LOCAL_NETWORK || destNetwork == IDP.ANY_NETWORK)) {
+				idp.setDstNetwork(this.siteNetworkId);
+			}
+			
+			// force checksum to reflect the content, if requested
+			// (packets arriving here still have checksum = 0xFFFF = no_checksum,
+			// but computing the checksum requires the final content, which is only
+			// ensured here after the last content changes above)
+			if (this.siteChecksumPolicy != ChecksumPolicy.OFF) {
+				idp.updateChecksum();
+			} else {
+				idp.resetChecksum();
+			}
+			
+			LocalSite.this.local2remotePipeline.send(idp);
+		}
+		
+		/*
+		 * is this machine a recipient of the packet sent by a local machine?
+		 */
+		private boolean isLocalTarget(IDP idp) {
+			long dstNetwork = idp.getDstNetwork();
+			return (idp.getDstHost() == this.siteMachineId || idp.getDstHost() == IDP.BROADCAST_ADDR)
+					&& (dstNetwork == this.siteNetworkId || dstNetwork == IDP.LOCAL_NETWORK);
+		}
+		
+		/*
+		 * hand a received packet to the NetMachine
+		 */
+		private void deliver(IDP idp) {
+			this.remote2localPipeline.send(idp);
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("LocalSite.Site[ network: 0x%04X machine: 0x%012X ]", this.siteNetworkId, this.siteMachineId);
+		}
+	}
+	
+	/**
+	 * Create and start an additional XNS machine hosted by this local site, sharing
+	 * the connection to the {@code NetHub} with all other machines of this local site.
+	 * 
+	 * @param network the XNS network identification where the machine is located
+	 * @param machine the machine-id (MAC address) for the machine, must be unique
+	 * 		in this local site
+	 * @param name the symbolic name of the machine
+	 * @param policy the handling of checksums of received packets; checksums
+	 * 		are generated for outgoing packets unless the policy is {@code OFF}
+	 * @param doDarkstarWorkaround add 2 additional zero words to an ethernet packet
+	 * 		for Darkstar clients to accept the packets
+	 * @param workers the number of dispatcher worker threads for the machine
+	 * 		(see {@code configureDispatching()})
+	 * @param pexWorkers the number of worker threads processing PEX requests
+	 * 		for the machine (see {@code configurePexServing()})
+	 * @param pexRequestsPerSecond the PEX request rate allowed per requesting host,
+	 * 		{@code 0} for no limit (see {@code configurePexServing()})
+	 * @return the new machine.
+	 * @throws IllegalStateException if a machine with the same machine-id is
+	 * 		already hosted by this local site.
+	 */
+	public Site addSite(long network, long machine, String name, ChecksumPolicy policy, boolean doDarkstarWorkaround, int workers, int pexWorkers, int pexRequestsPerSecond) {
+		synchronized(this.lock) {
+			if (this.sitesByMachineId.containsKey(machine)) {
+				throw new IllegalStateException(String.format("Machine 0x%012X already hosted by the local site", machine));
+			}
+			Site site = new Site(network, machine, name, policy, doDarkstarWorkaround, Math.max(0, workers));
+			int pexRate = Math.max(0, pexRequestsPerSecond);
+			site.machine.configPexServing(Math.max(0, pexWorkers), Math.max(0, pexWorkers) * 64, pexRate, pexRate * 2);
+			this.sitesByMachineId.put(machine, site);
+			this.sites.add(site);
+			site.local2machineThread.start();
+			this.startSharedThreads();
+			return site;
+		}
+	}
+	
+	/**
+	 * @return the machines currently hosted by this local site.
+	 */
+	public List<Site> listSites() {
+		return new ArrayList<>(this.sites);
+	}
+	
+	/**
+	 * @return {@code true} if machines were created in this local site,
+	 * 		fixing the connection to the {@code NetHub}.
+	 */
+	public boolean isStarted() {
+		synchronized(this.lock) {
+			return this.machine2remoteThread != null;
+		}
+	}
+	
+	/**
+	 * Stop all machines of this local site.
+	 */
+	public void stop() {
+		for (Site site : this.listSites()) {
+			site.shutdown();
+		}
+		this.local2remotePipeline.abort();
+	}
+	
+	private void connectToHub() throws InterruptedException {
+		while(this.hubLink == null) {
+			iHubLink link = null;
 			try {
 				Log.L0.printf(null, "opening connection to hub\n");
-				sock = new Socket(hubHost, hubSocket);
-				sock.setTcpNoDelay(true);
-				istream = sock.getInputStream();
-				ostream = sock.getOutputStream();
+				if (this.hubTransport == HubTransport.TCP) {
+					// the NIO link (re)connects itself when receiving, sending the subscription on each new connection
+					this.hubLink = new NioHubLink(this.hubHost, this.hubSocket, Arrays.copyOfRange(HUB_SUBSCRIBE_XNS, 2, HUB_SUBSCRIBE_XNS.length));
+					return;
+				}
+				if (this.hubTransport == HubTransport.UDP) {
+					// the UDP link sends the subscription itself, repeating it with the keepalives
+					this.hubLink = new UdpHubLink(this.hubHost, this.hubSocket, Arrays.copyOfRange(HUB_SUBSCRIBE_XNS, 2, HUB_SUBSCRIBE_XNS.length));
+					return;
+				}
+				link = new TcpHubLink(this.hubHost, this.hubSocket);
+				link.send(HUB_SUBSCRIBE_XNS.clone(), HUB_SUBSCRIBE_XNS.length - 2);
+				link.flush();
+				this.hubLink = (this.hubTransport == HubTransport.SHM) ? ShmHubLink.attach((TcpHubLink)link) : link;
 			} catch(UnknownHostException uhe) {
-				Log.L0.printf(null, "** Unknown host: '%s', network hub unreachable\n", hubHost);
-				lock.wait(); // wait forever resp. until interrupted
+				Log.L0.printf(null, "** Unknown host: '%s', network hub unreachable\n", this.hubHost);
+				this.lock.wait(); // wait forever resp. until interrupted
 			} catch(IOException ioe) {
 				Log.L0.printf(null, "IOException while connecting: %s\n", ioe.getMessage());
-				dropHubConnection(); // cleanup the possibly partial connect
-				lock.wait(HUB_CONNECT_RETRY_INTERVAL);
+				if (link != null) { link.close(); } // cleanup the partial connect
+				this.lock.wait(HUB_CONNECT_RETRY_INTERVAL);
 			}
 		}
 	}
 	
-	private static void dropHubConnection() {
-		if (sock != null || ostream != null || istream != null) {
+	private void dropHubConnection() {
+		if (this.hubLink != null) {
 			Log.L0.printf(null, "closing connection to hub\n");
-		}
-		if (istream != null) {
-			try {istream.close(); } catch(Exception e) { }
-			istream = null;
-		}
-		if (ostream != null) {
-			try {ostream.close(); } catch(Exception e) { }
-			ostream = null;
-		}
-		if (sock != null) {
-			try {sock.close(); } catch(Exception e) { }
-			sock = null;
+			this.hubLink.close();
+			this.hubLink = null;
 		}
 	}
 	
-	private static final byte[] sendBuffer = new byte[2048];
-	private static final byte[] recvBuffer = new byte[2048];
-	
-	private static void sendIdp(IDP idp) throws InterruptedException {
-		OutputStream stream = null;
+	private void sendIdp(IDP idp) throws InterruptedException {
+		// the sending machine decides if the Darkstar work-around is used
+		Site sender = this.sitesByMachineId.get(idp.getSrcHost());
+		boolean prolongatePackets = (sender != null) && sender.siteProlongatePackets;
+		byte[] sendBuffer = this.sendBuffer;
+		
+		iHubLink link = null;
 		boolean failed = false;
 		while(true) {
-			synchronized(lock) {
-				if (ostream == null || (failed && stream == ostream)) {
-					dropHubConnection();
-					connectToHub();
+			synchronized(this.lock) {
+				if (this.hubLink == null || (failed && link == this.hubLink)) {
+					this.dropHubConnection();
+					this.connectToHub();
 				}
-				stream = ostream;
+				link = this.hubLink;
 				failed = false;
 			}
 			try {
@@ -154,7 +464,7 @@ public class LocalSite {
 				
 				// add 2 words for StarOS under DarkStar-1.0.0.1 if requested
 				// (work-around for possible lost 2 words, resulting in ignored packets) 
-				if (prolongatePacketsForDarkstar) {
+				if (prolongatePackets) {
 					sendBuffer[16 + (packetLength++)] = 0;
 					sendBuffer[16 + (packetLength++)] = 0;
 				}
@@ -183,9 +493,10 @@ public class LocalSite {
 				packetLength += 14;
 				
 				// send the ethernet packet to the hub
-				sendBuffer[0] = (byte)((packetLength >> 8) & 0xFF);
-				sendBuffer[1] = (byte)(packetLength & 0xFF);
-				stream.write(sendBuffer, 0, packetLength + 2);
+				link.send(sendBuffer, packetLength);
+				
+				// transmit the buffered packets if no more packets are to be sent immediately
+				this.flushIfIdle(link);
 				return;
 			} catch (IOException e) {
 				System.err.printf("IOException while sending: %s\n", e.getMessage());
@@ -195,34 +506,48 @@ public class LocalSite {
 		}
 	}
 
-	private static int readPacket(InputStream nis) throws IOException {		
-		int b0 = (byte)nis.read();
-		int b1 = (byte)nis.read();
-		int netLen = ((b0 & 0xFF) << 8) | (b1 & 0xFF);
-		if (netLen > recvBuffer.length) { throw new IOException(); }
-		int remaining = netLen;
-		while(remaining > 0) {
-			int chunkSize = nis.read(recvBuffer, (netLen - remaining), remaining);
-			remaining -= chunkSize;
-		}
-		return netLen;
+	private void flushIfIdle(iHubLink link) throws IOException {
+		if (link != null && this.pendingBatchPackets == 0 && this.local2remotePipeline.isEmpty()) {
+			link.flush();
+		}
 	}
 	
-	private static IDP receiveIdp() throws InterruptedException {
-		InputStream stream = null;
+	private void flushIfIdle() {
+		iHubLink link;
+		synchronized(this.lock) {
+			link = this.hubLink;
+		}
+		try {
+			this.flushIfIdle(link);
+		} catch (IOException e) {
+			System.err.printf("IOException while flushing: %s\n", e.getMessage());
+			synchronized(this.lock) {
+				if (link == this.hubLink) {
+					this.dropHubConnection(); // reconnect with next packet sent
+				}
+			}
+		}
+	}
+
+	/*
+	 * receive the next packet from the hub and deliver it to the local machine(s) it is for
+	 */
+	private void receiveAndDeliver() throws InterruptedException {
+		byte[] recvBuffer = this.recvBuffer;
+		iHubLink link = null;
 		boolean failed = false;
 		while(true) {
-			synchronized(lock) {
-				if (istream == null || (failed && stream == istream)) {
-					dropHubConnection();
-					connectToHub();
+			synchronized(this.lock) {
+				if (this.hubLink == null || (failed && link == this.hubLink)) {
+					this.dropHubConnection();
+					this.connectToHub();
 				}
-				stream = istream;
+				link = this.hubLink;
 				failed = false;
 			}
 			try {
 				// receive packet from hub
-				int contentLength = readPacket(stream);
+				int contentLength = link.receive(recvBuffer);
 				
 				// check ethernet header
 				if (contentLength < 14) {
@@ -242,17 +567,31 @@ public class LocalSite {
 						| ((long)(recvBuffer[3] & 0xFF) << 16)
 						| ((long)(recvBuffer[4] & 0xFF) << 8)
 						| (long)(recvBuffer[5] & 0xFF);
-				if (destAddress != machineId && destAddress != IDP.BROADCAST_ADDR) {
-					// packet not relevant (directed to us or broadcasted)
+				
+				// deliver the ethernet payload as (recycled) IDP packet (removing the 14 bytes ethernet header)
+				// to the machine it is directed to resp. to all machines for broadcasts
+				if (destAddress == IDP.BROADCAST_ADDR) {
+					for (Site site : this.sites) {
+						IDP idp = IDP.obtain(recvBuffer, 14, contentLength - 14);
+						if (Log.L0.isEnabled()) {
+							Log.L0.printf(idp, "received XNS broadcast from hub, source: %s, for: %s\n", idp.getSrcEndpoint(), site);
+						}
+						site.deliver(idp);
+					}
+					return;
+				}
+				Site site = this.sitesByMachineId.get(destAddress);
+				if (site == null) {
+					// packet not relevant (not directed to one of our machines or broadcasted)
 					Log.L0.printf(null, "packet from hub ignored, not for us (to: 0x%06X)\n", destAddress);
 					continue;
 				}
-				
-				// return the ethernet payload as IDP packet (removing the 14 bytes ethernet header)
-				NetPacket rawPacket = new NetPacket(recvBuffer, 14, contentLength - 14);
-				IDP idp = new IDP(rawPacket);
-				Log.L0.printf(idp, "received XNS packet from hub, source: %s\n", idp.getSrcEndpoint());
-				return idp;
+				IDP idp = IDP.obtain(recvBuffer, 14, contentLength - 14);
+				if (Log.L0.isEnabled()) {
+					Log.L0.printf(idp, "received XNS packet from hub, source: %s\n", idp.getSrcEndpoint());
+				}
+				site.deliver(idp);
+				return;
 			} catch (IOException e) {
 				System.err.printf("IOException while receiving: %s\n", e.getMessage());
 				// continue receiving after reconnecting to hub
@@ -261,9 +600,159 @@ public class LocalSite {
 		}
 	}
 	
+	/*
+	 * deliver a packet sent by a local machine to the local machine(s) it is for,
+	 * returning if the packet must also be sent to the hub
+	 */
+	private boolean deliverLocally(IDP idp, String via) {
+		if (idp.getDstHost() == IDP.BROADCAST_ADDR) {
+			// each local machine gets its own copy, the original goes to the hub
+			for (Site site : this.sites) {
+				if (site.isLocalTarget(idp)) {
+					if (Log.L0.isEnabled()) {
+						Log.L0.printf(idp, "%s -> feeding back broadcast to %s\n", via, site);
+					}
+					site.deliver(this.copyOf(idp));
+				}
+			}
+			return true;
+		}
+		
+		Site site = this.sitesByMachineId.get(idp.getDstHost());
+		if (site != null && site.isLocalTarget(idp)) {
+			Log.L0.printf(idp, "%s -> feeding back to local (into remote2localPipeline of %s)\n", via, site);
+			site.deliver(idp);
+			return false; // no need to forward to others if explicitly directed to a local machine
+		}
+		return true;
+	}
+	
+	private IDP copyOf(IDP idp) {
+		NetPacket p = idp.packet;
+		int length = p.rdBytes(0, p.getPayloadLength(), this.copyBuffer, 0, this.copyBuffer.length);
+		return IDP.obtain(this.copyBuffer, 0, length);
+	}
+	
+	// (lock must be held)
+	private void startSharedThreads() {
+		if (this.machine2remoteThread != null) { return; }
+		
+		// create and start the threads, either with hub connection or local only 
+		if (this.hubHost != null && this.hubSocket > 0 && this.hubSocket < 65536) {
+			this.machine2remoteThread = new Thread(() -> {
+				List<IDP> batch = new ArrayList<>();
+				while(true) {
+					try {
+						this.local2remotePipeline.drainTo(batch, MAX_PIPELINE_BATCH);
+						for (int i = 0; i < batch.size(); i++) {
+							IDP idp = batch.get(i);
+							this.pendingBatchPackets = batch.size() - i - 1;
+							
+							// transfer the packet to local if target is a local machine and to to hub
+							Log.L0.printf(idp, "local2remotePipeline(hub) -> packet to: 0x%06X\n", idp.getDstHost());
+							if (!this.deliverLocally(idp, "local2remotePipeline(hub)")) {
+								this.flushIfIdle(); // packets buffered before this one must not wait for the next packet
+								continue;
+							}
+							this.sendIdp(idp);
+						}
+					} catch (InterruptedException e) {
+						// shutting down
+						return;
+					} finally {
+						batch.clear();
+					}
+				}
+			});
+			this.remote2localThread = new Thread(() -> {
+				while(true) {
+					try {
+						this.receiveAndDeliver();
+					} catch (InterruptedException e) {
+						// shutting down
+						return;
+					}
+				}
+			});
+		} else {
+			this.machine2remoteThread = new Thread(() -> {
+				List<IDP> batch = new ArrayList<>();
+				while(true) {
+					try {
+						this.local2remotePipeline.drainTo(batch, MAX_PIPELINE_BATCH);
+						for (int i = 0; i < batch.size(); i++) {
+							IDP idp = batch.get(i);
+							
+							// transfer the packet to local if target is a local machine (here we have no hub to transfer to)
+							Log.L0.printf(idp, "local2remotePipeline(local) -> packet to: 0x%06X\n", idp.getDstHost());
+							this.deliverLocally(idp, "local2remotePipeline(local)");
+						}
+					} catch (InterruptedException e) {
+						// shutting down
+						return;
+					} finally {
+						batch.clear();
+					}
+				}
+			});
+		}
+		
+		this.machine2remoteThread.start();
+		if (this.remote2localThread != null) {this.remote2localThread.start(); }
+	}
+	
+	/**
+	 * Get the default local site, creating it with the parameters set with
+	 * {@code configureHub()} if necessary.
+	 * 
+	 * @return the default local site.
+	 */
+	public static LocalSite getDefault() {
+		synchronized(defaultsLock) {
+			if (defaultLocalSite == null) {
+				defaultLocalSite = new LocalSite(defaultHubHost, defaultHubSocket, defaultHubTransport);
+			}
+			return defaultLocalSite;
+		}
+	}
+	
+	/**
+	 * Create and start an additional XNS machine hosted by the default local site
+	 * (see {@code addSite()}).
+	 * 
+	 * @param network the XNS network identification where the machine is located
+	 * @param machine the machine-id (MAC address) for the machine, must be unique
+	 * 		in the default local site
+	 * @param name the symbolic name of the machine
+	 * @param policy the handling of checksums of received packets
+	 * @param doDarkstarWorkaround add 2 additional zero words to an ethernet packet
+	 * 		for Darkstar clients to accept the packets
+	 * @param workers the number of dispatcher worker threads for the machine
+	 * @param pexWorkers the number of worker threads processing PEX requests
+	 * @param pexRequestsPerSecond the PEX request rate allowed per requesting host
+	 * @return the new machine.
+	 * @throws IllegalStateException if a machine with the same machine-id is
+	 * 		already hosted by the default local site.
+	 */
+	public static Site createSite(long network, long machine, String name, ChecksumPolicy policy, boolean doDarkstarWorkaround, int workers, int pexWorkers, int pexRequestsPerSecond) {
+		return getDefault().addSite(network, machine, name, policy, doDarkstarWorkaround, workers, pexWorkers, pexRequestsPerSecond);
+	}
+	
+	/**
+	 * @return the machines currently hosted by the default local site.
+	 */
+	public static List<Site> getSites() {
+		synchronized(defaultsLock) {
+			if (defaultLocalSite == null) {
+				return Collections.emptyList();
+			}
+			return defaultLocalSite.listSites();
+		}
+	}
+	
 	/**
-	 * Configure the parameters of the local XNS machine. This is possible
-	 * as long as the (singleton) machine has not yet been instantiated.
+	 * Configure the parameters of the default XNS machine. This is possible
+	 * as long as the default machine has not yet been instantiated.
 	 * 
 	 * @param network the XNS network identification where the machine is located
 	 * 		<br/>Default: {@code 0x0001_0120}
@@ -280,12 +769,30 @@ public class LocalSite {
 	 * @return {@code true} if the parameters where set.
 	 */
 	public static boolean configureLocal(long network, long machine, String name, boolean doChecksums, boolean doDarkstarWorkaround) {
-		synchronized(lock) {
-			if (theMachine != null) { return false; }
+		return configureLocal(network, machine, name, doChecksums ? ChecksumPolicy.REPORT : ChecksumPolicy.OFF, doDarkstarWorkaround);
+	}
+	
+	/**
+	 * Configure the parameters of the default XNS machine. This is possible
+	 * as long as the default machine has not yet been instantiated.
+	 * 
+	 * @param network the XNS network identification where the machine is located
+	 * @param machine the machine-id (MAC address) for the machine
+	 * @param name the symbolic name of the machine
+	 * @param policy the handling of checksums of received packets; checksums
+	 * 		are generated for outgoing packets unless the policy is {@code OFF}
+	 * 		<br/>Default: {@code REPORT}
+	 * @param doDarkstarWorkaround add 2 additional zero words to an ethernet packet
+	 * 		for Darkstar clients to accept the packets
+	 * @return {@code true} if the parameters where set.
+	 */
+	public static boolean configureLocal(long network, long machine, String name, ChecksumPolicy policy, boolean doDarkstarWorkaround) {
+		synchronized(defaultsLock) {
+			if (defaultSite != null) { return false; }
 			networkId = network;
 			machineId = machine;
 			machineName = name;
-			enforceChecksums = doChecksums;
+			checksumPolicy = policy;
 			prolongatePacketsForDarkstar = doDarkstarWorkaround;
 			
 			return true;
@@ -293,8 +800,51 @@ public class LocalSite {
 	}
 	
 	/**
-	 * Configure the connection parameters to the {@code NetHub} serving
-	 * as network backbone. 
+	 * Configure the delivery of ingoing packets to the listeners of the default XNS
+	 * machine. This is possible as long as the default machine has not yet
+	 * been instantiated.
+	 * 
+	 * @param workers the number of dispatcher worker threads delivering the packets,
+	 * 		with the packets for the same socket resp. SPP connection always delivered
+	 * 		in order by the same worker; {@code 0} delivers all packets sequentially
+	 * 		in the single receiving thread
+	 * 		<br/>Default: {@code 0}
+	 * @return {@code true} if the parameter was set.
+	 */
+	public static boolean configureDispatching(int workers) {
+		synchronized(defaultsLock) {
+			if (defaultSite != null) { return false; }
+			dispatchWorkers = Math.max(0, workers);
+			return true;
+		}
+	}
+	
+	/**
+	 * Configure the processing of ingoing PEX requests by the default XNS machine.
+	 * This is possible as long as the default machine has not yet been instantiated.
+	 * 
+	 * @param workers the number of worker threads processing PEX requests, with
+	 * 		at most {@code 64} requests per worker waiting for processing; {@code 0}
+	 * 		processes the requests in the thread delivering the packets
+	 * 		<br/>Default: {@code 0}
+	 * @param requestsPerSecond the request rate allowed per requesting host, with
+	 * 		bursts of twice this number of requests; {@code 0} for no limit
+	 * 		<br/>Default: {@code 0}
+	 * @return {@code true} if the parameters were set.
+	 */
+	public static boolean configurePexServing(int workers, int requestsPerSecond) {
+		synchronized(defaultsLock) {
+			if (defaultSite != null) { return false; }
+			pexWorkers = Math.max(0, workers);
+			pexRequestsPerSecond = Math.max(0, requestsPerSecond);
+			return true;
+		}
+	}
+	
+	/**
+	 * Configure the connection parameters of the default local site to the
+	 * {@code NetHub} serving as network backbone. This is possible as long as
+	 * no machine has been instantiated in the default local site.
 	 * 
 	 * @param host
 	 * 		hostname for the {@code NetHub} machine (default: "localhost").
@@ -304,141 +854,68 @@ public class LocalSite {
 	 * @return {@code true} if the parameters where set.
 	 */
 	public static boolean configureHub(String host, int sockNo) {
-		synchronized(lock) {
-			if (theMachine != null) { return false; }
-			hubHost = host;
-			hubSocket = sockNo;
+		return configureHub(host, sockNo, HubTransport.TCP);
+	}
+	
+	/**
+	 * Configure the connection parameters of the default local site to the
+	 * {@code NetHub} serving as network backbone. This is possible as long as
+	 * no machine has been instantiated in the default local site.
+	 * 
+	 * @param host
+	 * 		hostname for the {@code NetHub} machine (default: "localhost").
+	 * 		Setting this value to {@code null} disables using the {@code NetHub},
+	 * 		i.e. only local connections inside the machine are possible.  
+	 * @param sockNo socket used by the {@code NetHub} service (default: 3333)
+	 * @param transport the transport to use for the connection to the {@code NetHub}
+	 * @return {@code true} if the parameters where set.
+	 */
+	public static boolean configureHub(String host, int sockNo, HubTransport transport) {
+		synchronized(defaultsLock) {
+			if (defaultLocalSite != null) {
+				if (defaultLocalSite.isStarted()) { return false; }
+				defaultLocalSite = null; // not used so far, recreated with the new parameters
+			}
+			defaultHubHost = host;
+			defaultHubSocket = sockNo;
+			defaultHubTransport = transport;
 			return true;
 		}
 	}
 	
 	/**
-	 * Possibly instantiate and get the one (single) XNS machine
+	 * Possibly instantiate and get the default XNS machine
 	 * for the local site (this JVM instance).
 	 * 
-	 * @return the singleton XNS machine.
+	 * @return the default XNS machine.
 	 */
 	public static iNetMachine getInstance() {
-		synchronized(lock) {
-			// is the singleton already there?
-			if (theMachine == null) {
-				// create the machine
-				theMachine = new NetMachine(networkId, machineId, machineName, local2remotePipeline, enforceChecksums);
-				
-				// create and start the threads, either with hub connection or local only 
-				if (hubHost != null && hubSocket > 0 && hubSocket < 65536) {
-					machine2remoteThread = new Thread(() -> {
-						while(true) {
-							try {
-								IDP idp = local2remotePipeline.get();
-								
-								// force correct source information of outgoing packet
-								idp.setSrcHost(machineId);
-								idp.setSrcNetwork(networkId);
-								
-								// if not sent as broadcast:
-								// correct network for responses to requests sent to 'any' or 'local'network
-								// to inform the sender about the network it is directly attached to
-								long destNetwork = idp.getDstNetwork();
-								if (idp.getDstHost() != IDP.BROADCAST_ADDR
-									&& (destNetwork == IDP.LOCAL_NETWORK || destNetwork == IDP.ANY_NETWORK)) {
-									idp.setDstNetwork(networkId);
-								}
-								
-								// force checksum to reflect the content, if requested
-								// (packets arriving here still have checksum = 0xFFFF = no_checksum,
-								// but computing the checksum requires the final content, which is only
-								// ensured here after the last content changes above)
-								if (enforceChecksums) {
-									idp.updateChecksum();
-								} else {
-									idp.resetChecksum();
-								}
-								
-								// transfer the packet to local if target is this site and to to hub
-								Log.L0.printf(idp, "local2remotePipeline(hub) -> packet to: 0x%06X\n", idp.getDstHost());
-								if ((idp.getDstHost() == machineId || idp.getDstHost() == IDP.BROADCAST_ADDR)
-										&& (idp.getDstNetwork() == networkId || idp.getDstNetwork() == IDP.LOCAL_NETWORK)) {
-									Log.L0.printf(idp, "local2remotePipeline(hub) -> feeding back to local (into remote2localPipeline)\n");
-									remote2localPipeline.send(idp);
-									if (idp.getDstHost() == machineId) {
-										return; // no need to forward to others if explicitly directed to this machine
-									}
-								}
-								sendIdp(idp);
-							} catch (InterruptedException e) {
-								// shutting down
-								return;
-							}
-						}
-					});
-					remote2localThread = new Thread(() -> {
-						while(true) {
-							try {
-								IDP idp = receiveIdp();
-								Log.L0.printf(idp, "remote2localPipeline -> new packet\n");
-								remote2localPipeline.send(idp);
-							} catch (InterruptedException e) {
-								// shutting down
-								return;
-							}
-						}
-					});
-				} else {
-					machine2remoteThread = new Thread(() -> {
-						while(true) {
-							try {
-								IDP idp = local2remotePipeline.get();
-								
-								// force correct source information of outgoing packet
-								idp.setSrcHost(machineId);
-								idp.setSrcNetwork(networkId);
-								
-								// no need for checksums if local only communication
-								
-								// transfer the packet to local if target is this site (here we have no hub to transfer to)
-								Log.L0.printf(idp, "local2remotePipeline(local) -> packet to: 0x%06X\n", idp.getDstHost());
-								if ((idp.getDstHost() == machineId || idp.getDstHost() == IDP.BROADCAST_ADDR)
-										&& (idp.getDstNetwork() == networkId || idp.getDstNetwork() == IDP.LOCAL_NETWORK)) {
-									Log.L0.printf(idp, "local2remotePipeline(local) -> feeding back to local (into remote2localPipeline)\n");
-									remote2localPipeline.send(idp);
-								}
-							} catch (InterruptedException e) {
-								// shutting down
-								return;
-							}
-						}
-					});
-				}
-				local2machineThread = new Thread(() -> {
-					while(true) {
-						try {
-							IDP idp = remote2localPipeline.get();
-							Log.L0.printf(idp, "local2machine -> theMachine.handlePacket(idp)\n");
-							theMachine.handlePacket(idp);
-						} catch (InterruptedException e) {
-							// shutting down
-							return;
-						} 
-					}
-				});
-				
-				machine2remoteThread.start();
-				if (remote2localThread != null) {remote2localThread.start(); }
-				local2machineThread.start();
+		synchronized(defaultsLock) {
+			// is the default machine already there?
+			if (defaultSite == null) {
+				defaultSite = getDefault().addSite(
+						networkId, machineId, machineName, checksumPolicy, prolongatePacketsForDarkstar,
+						dispatchWorkers, pexWorkers, pexRequestsPerSecond);
 			}
 			
-			// return the singleton
-			return theMachine;
+			// return the default machine
+			return defaultSite.getMachine();
 		}
 	}
 	
+	/**
+	 * Stop all machines of the default local site; a new default local site
+	 * is created when used next time.
+	 */
 	public static void shutdown() {
-		if (theMachine != null) {
-			theMachine.shutdown();
+		LocalSite localSite;
+		synchronized(defaultsLock) {
+			localSite = defaultLocalSite;
+			defaultLocalSite = null;
+		}
+		if (localSite != null) {
+			localSite.stop();
 		}
-		local2remotePipeline.abort();
-		remote2localPipeline.abort();
 	}
 	
 	public static long getNetworkId() { return networkId; }
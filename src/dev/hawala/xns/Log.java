@@ -26,17 +26,38 @@ ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package dev.hawala.xns;
 
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
 import dev.hawala.xns.level0.Payload;
 
 /**
  * Simple logging for the Dodo XNS components.
+ * <p>
+ * Each component logs through its own {@code Logger}, which can be
+ * silenced individually; the check if a logger is enabled is a single
+ * volatile read, so a silenced logger costs nearly nothing (besides the
+ * varargs array built by the caller, which can be avoided by checking
+ * {@code isEnabled()} first or using the {@code Supplier} variant).
+ * </p>
+ * <p>
+ * Log entries are not formatted by the logging thread: the caller only
+ * captures the format, a snapshot of the arguments and the reference
+ * identification into a slot of a lock-free ring buffer, which is drained
+ * by a background writer thread doing the formatting and the output to
+ * {@code System.out}. The entries of all loggers are written in the order
+ * the slots were claimed; if the ring buffer is full, loggers wait for the
+ * writer to free a slot, so no log line gets lost.
+ * </p>
  * 
  * @author Dr. Hans-Walter Latz / Berlin (2016-2018)
  */
 public class Log {
 	
-	private static final Object lock = new Object();
-	
 	private static final String INDENT_SEP = "    ";
 
 	public static class Logger {
@@ -44,7 +65,7 @@ public class Log {
 		private final String nullIntro;
 		private final String indent;
 		
-		private boolean silenced = false;
+		private volatile boolean silenced = false;
 		
 		private Logger(String indent) {
 			this(indent, "#----#");
@@ -55,33 +76,57 @@ public class Log {
 			this.nullIntro = nullIntro;
 		}
 		
+		/**
+		 * Log a line if this logger is enabled, with the formatting being
+		 * deferred to the log writer thread.
+		 * <p>
+		 * Arguments other than strings, numbers, characters, booleans and
+		 * enums are converted to their string representation before this
+		 * method returns, so mutable objects (like recycled packets) are
+		 * logged with their state at the time of the call.
+		 * </p>
+		 * 
+		 * @param ref the object the log line is about: a packet (logged with
+		 *   its packet id), some other object (logged with its string representation)
+		 *   or {@code null} (logged with the intro of the logger).
+		 * @param format the {@code String.format()} template for the log line.
+		 * @param args the arguments for the template.
+		 * @return this logger.
+		 */
 		public Logger printf(Object ref, String format, Object... args) {
-			synchronized(lock) {
-				if (this.silenced) { return this; }
-				Payload pl = (ref instanceof Payload) ? (Payload)ref : null;
-				String sref = (ref == null) ? this.nullIntro : "#" + ref.toString() + "#";
-				String id = (pl != null) ? String.format("[%4d]", pl.getPacketId()) : sref;  
-				String line = String.format(format,  args);
-				System.out.printf("%s %s%s", id, this.indent, line);
-				return this;
-			}
+			if (this.silenced) { return this; }
+			enqueue(this, ref, format, snapshot(args), null);
+			return this;
 		}
 		
-		public void doLog(boolean enabled) {
-			synchronized(lock) {
-				this.silenced = !enabled;
-			}
+		/**
+		 * Log a line if this logger is enabled, with the text of the log line
+		 * being produced by the given supplier in the calling thread only if
+		 * the logger is enabled.
+		 * 
+		 * @param ref the object the log line is about (see {@code printf()}).
+		 * @param message the supplier for the log line text.
+		 * @return this logger.
+		 */
+		public Logger log(Object ref, Supplier<String> message) {
+			if (this.silenced) { return this; }
+			enqueue(this, ref, null, null, message.get());
+			return this;
 		}
 		
-//		public Logger append(String txt) {
-//			System.out.printf(txt);
-//			return this;
-//		}
+		/**
+		 * Check if this logger currently writes log lines, allowing to
+		 * skip preparing the arguments for {@code printf()} otherwise.
+		 * 
+		 * @return {@code true} if the logger is not silenced.
+		 */
+		public boolean isEnabled() {
+			return !this.silenced;
+		}
 		
-//		public Logger append(String format, Object... args) {
-//			System.out.printf(format, args);
-//			return this;
-//		}
+		public void doLog(boolean enabled) {
+			this.silenced = !enabled;
+		}
 		
 	}
 	
@@ -117,4 +162,187 @@ public class Log {
 		Log.L3.doLog(true);
 		Log.L4.doLog(true);
 	}
+	
+	/**
+	 * Wait until all log entries created so far are written by the
+	 * log writer thread, but at most the given time.
+	 * 
+	 * @param maxWaitMs the max. time to wait in milliseconds.
+	 * @return {@code true} if all entries were written.
+	 */
+	public static boolean flush(long maxWaitMs) {
+		if (Thread.currentThread() == writer) { return true; }
+		long target = claimed.get();
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+		while (written < target) {
+			if (System.nanoTime() > deadline) { return false; }
+			LockSupport.unpark(writer);
+			LockSupport.parkNanos(WAIT_NANOS);
+		}
+		return true;
+	}
+	
+	/*
+	 * ring buffer of log entries
+	 */
+	
+	private static final int RING_SIZE = 8192; // must be a power of 2
+	private static final int RING_MASK = RING_SIZE - 1;
+	
+	private static final long WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+	private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	
+	private static class Entry {
+		private Logger logger;
+		private long packetId;    // -1 if ref is not a packet
+		private String refText;   // used if packetId < 0
+		private String format;    // null if text is preformatted
+		private Object[] args;
+		private String text;
+	}
+	
+	private static final Entry[] ring = new Entry[RING_SIZE];
+	static {
+		for (int i = 0; i < RING_SIZE; i++) { ring[i] = new Entry(); }
+	}
+	
+	// count of slots claimed by producers so far
+	private static final AtomicLong claimed = new AtomicLong();
+	
+	// sequence number + 1 of the entry last published in each slot
+	private static final AtomicLongArray published = new AtomicLongArray(RING_SIZE);
+	
+	// count of entries consumed by the writer, i.e. slots free again for producers
+	private static volatile long consumed = 0;
+	
+	// count of entries written to the output stream
+	private static volatile long written = 0;
+	
+	private static volatile boolean writerParked = false;
+	
+	private static Object[] snapshot(Object[] args) {
+		if (args == null) { return null; }
+		for (int i = 0; i < args.length; i++) {
+			Object arg = args[i];
+			if (arg == null
+					|| arg instanceof String
+					|| arg instanceof Number
+					|| arg instanceof Character
+					|| arg instanceof Boolean
+					|| arg instanceof Enum) {
+				continue;
+			}
+			args[i] = arg.toString();
+		}
+		return args;
+	}
+	
+	private static void enqueue(Logger logger, Object ref, String format, Object[] args, String text) {
+		long packetId = -1;
+		String refText = null;
+		if (ref instanceof Payload) {
+			packetId = ((Payload)ref).getPacketId();
+		} else {
+			refText = (ref == null) ? logger.nullIntro : "#" + ref.toString() + "#";
+		}
+		
+		if (Thread.currentThread() == writer) {
+			// logging while formatting (e.g. in a toString()): never wait for ourself
+			PrintStream out = System.out;
+			out.print(render(new StringBuilder(), logger, packetId, refText, format, args, text));
+			return;
+		}
+		
+		long seq = claimed.getAndIncrement();
+		while (seq - consumed >= RING_SIZE) {
+			// ring buffer full: wait for the writer to free our slot
+			LockSupport.unpark(writer);
+			LockSupport.parkNanos(WAIT_NANOS);
+		}
+		
+		Entry e = ring[(int)(seq & RING_MASK)];
+		e.logger = logger;
+		e.packetId = packetId;
+		e.refText = refText;
+		e.format = format;
+		e.args = args;
+		e.text = text;
+		published.set((int)(seq & RING_MASK), seq + 1);
+		
+		if (writerParked) {
+			LockSupport.unpark(writer);
+		}
+	}
+	
+	private static StringBuilder render(StringBuilder sb, Logger logger, long packetId, String refText, String format, Object[] args, String text) {
+		if (packetId >= 0) {
+			sb.append(String.format("[%4d]", packetId));
+		} else {
+			sb.append(refText);
+		}
+		sb.append(' ').append(logger.indent);
+		if (text != null) {
+			sb.append(text);
+		} else {
+			try {
+				sb.append(String.format(format, args));
+			} catch (RuntimeException exc) {
+				sb.append("** unformattable log line: ").append(format).append(" => ").append(exc.getMessage()).append('\n');
+			}
+		}
+		return sb;
+	}
+	
+	private static final Thread writer = new Thread(Log::writeEntries, "Dodo-Log-Writer");
+	static {
+		writer.setDaemon(true);
+		writer.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(1000), "Dodo-Log-Flush"));
+	}
+	
+	private static void writeEntries() {
+		StringBuilder sb = new StringBuilder();
+		long next = 0;
+		while (true) {
+			int slot = (int)(next & RING_MASK);
+			if (published.get(slot) != next + 1) {
+				// nothing to write at the moment: push out what we have and wait
+				if (sb.length() > 0) {
+					PrintStream out = System.out;
+					out.print(sb);
+					out.flush();
+					sb.setLength(0);
+					written = next;
+				}
+				writerParked = true;
+				if (published.get(slot) != next + 1) {
+					LockSupport.parkNanos(IDLE_NANOS);
+				}
+				writerParked = false;
+				continue;
+			}
+			
+			Entry e = ring[slot];
+			Logger logger = e.logger;
+			long packetId = e.packetId;
+			String refText = e.refText;
+			String format = e.format;
+			Object[] args = e.args;
+			String text = e.text;
+			e.logger = null;
+			e.refText = null;
+			e.format = null;
+			e.args = null;
+			e.text = null;
+			next++;
+			consumed = next;
+			
+			render(sb, logger, packetId, refText, format, args, text);
+			if (sb.length() > 16384) {
+				System.out.print(sb);
+				sb.setLength(0);
+				written = next;
+			}
+		}
+	}
 }
@@ -53,7 +53,10 @@ public class NetPacket extends Payload {
 	// (output) transmitted
 	// XXXX private int packetLength = 0;
 	
-	private final long packetId = packetIds.incrementAndGet();
+	// zero bytes for clearing the remains of the previous content when reloading
+	private static final byte[] ZEROS = new byte[MAX_PACKET_SIZE];
+	
+	private long packetId = packetIds.incrementAndGet();
 	
 	/**
 	 * Construct an empty packet.
@@ -83,6 +86,29 @@ public class NetPacket extends Payload {
 		this(sourcePacketData, 0, sourcePacketData.length);
 	}
 	
+	/**
+	 * Replace the content of this packet with the passed source data, giving the
+	 * packet a new packet id. This allows to reuse packet instances for ingoing
+	 * packets, but is only possible for packets not derived from an other packet.
+	 * 
+	 * @param sourcePacketData the source data from where to copy the packets raw payload.
+	 * @param offset position of the first packet content byte in {@code sourcePacketData}
+	 * @param length byte count of the packet content byte in {@code sourcePacketData}
+	 * @return this packet.
+	 */
+	public NetPacket reload(byte[] sourcePacketData, int offset, int length) {
+		if (this.basePayload != null) {
+			throw new IllegalStateException("Cannot reload a packet derived from an other packet");
+		}
+		int previousLength = this.getPayloadLength();
+		if (previousLength > length) {
+			this.wrBytes(0, previousLength, ZEROS, 0, previousLength);
+		}
+		this.setPayloadLength(this.wrBytes(0, MAX_PACKET_SIZE, sourcePacketData, offset, length));
+		this.packetId = packetIds.incrementAndGet();
+		return this;
+	}
+	
 	/**
 	 * Create a packet from an other packet, sharing the same packet content data as the
 	 * other packet, but only using a subset of its packet content.
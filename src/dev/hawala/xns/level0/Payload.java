@@ -26,10 +26,18 @@ ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package dev.hawala.xns.level0;
 
+import java.nio.ByteBuffer;
+
 /**
  * Implementation of a net packet payload, allowing to get or put
  * values in wire representation and create sub-payloads sharing the
  * common data buffer. 
+ * <p>
+ * The 16, 32 and 48 bit values are accessed through a big-endian
+ * {@code ByteBuffer} view of the data buffer with a single access if the
+ * value lies completely in the payload, falling back to accessing the
+ * single bytes only at the boundaries of the payload.
+ * </p>
  * 
  * @author Dr. Hans-Walter Latz, Berlin (Germany), 2016
  *
@@ -39,6 +47,9 @@ public abstract class Payload {
 	// the raw payload buffer, possibly shared among instances of this class
 	private final byte[] payload;
 	
+	// big-endian view of 'payload' for word-wide accesses (absolute indexing only, so it can be shared)
+	private final ByteBuffer buffer;
+	
 	// offset of the raw payload in 'payload' (used if this payload represents an internal
 	// structure of an encapsulating packet, e.g. an Error packet containing an IDP packet)
 	private final int pBase;
@@ -65,6 +76,7 @@ public abstract class Payload {
 			throw new IllegalArgumentException("Invalid (negative) payload size");
 		}
 		this.payload = new byte[size];
+		this.buffer = ByteBuffer.wrap(this.payload);
 		this.pBase = 0;
 		this.nominalBase = 0;
 		this.maxLength = size;
@@ -93,6 +105,7 @@ public abstract class Payload {
 			visibleLength = 0;
 		}
 		this.payload = basePayload.payload;
+		this.buffer = basePayload.buffer;
 		this.nominalBase = base;
 		this.pBase = base + basePayload.pBase;
 		this.maxLength = Math.min(visibleLength, basePayload.getMaxPayloadLength() - base);
@@ -115,6 +128,29 @@ public abstract class Payload {
 		this(basePayload, base, basePayload.maxLength);
 	}
 	
+	/**
+	 * Re-derive the accessible range of this sub-payload from the current
+	 * state of the base payload, as done when constructing the sub-payload,
+	 * after the base payload was reloaded with new content.
+	 * 
+	 * @param visibleLength the maximum byte count accessible in this sub-payload (possibly
+	 *     reduced if less bytes are available in the 'basePayload' starting from the base).
+	 */
+	protected void resetView(int visibleLength) {
+		if (this.basePayload == null) {
+			throw new IllegalStateException("Not a sub-payload");
+		}
+		if (visibleLength < 1) {
+			visibleLength = 0;
+		}
+		this.maxLength = Math.min(visibleLength, this.basePayload.getMaxPayloadLength() - this.nominalBase);
+		this.currLength = this.basePayload.getPayloadLength() - this.nominalBase;
+		if (this.currLength < 0) {
+			this.basePayload.setPayloadLength(this.nominalBase);
+			this.currLength = 0;
+		}
+	}
+	
 	/**
 	 * Get the current payload length of this payload.
 	 * 
@@ -265,6 +301,9 @@ public abstract class Payload {
 	 * @return the unsigned 16 bit integer value found at the specified payload position.
 	 */
 	public int rdCardinal(int at) {
+		if (at >= 0 && at <= this.maxLength - 2) {
+			return this.buffer.getShort(at + this.pBase) & 0xFFFF;
+		}
 		int result = 0;
 		if (at >= 0 && at < this.maxLength) { result = (this.payload[at + this.pBase] & 0xFF) << 8; }
 		at++;
@@ -281,6 +320,10 @@ public abstract class Payload {
 	 *   the payload at the given position.
 	 */
 	public void wrCardinal(int at, int value) {
+		if (at >= 0 && at <= this.maxLength - 2) {
+			this.buffer.putShort(at + this.pBase, (short)value);
+			return;
+		}
 		if (at >= 0 && at < this.maxLength) { this.payload[at + this.pBase] = (byte)((value >> 8) & 0xFF); }
 		at++;
 		if (at >= 0 && at < this.maxLength) { this.payload[at + this.pBase] = (byte)(value & 0xFF); }
@@ -294,6 +337,9 @@ public abstract class Payload {
 	 * @return the unsigned 32 bit integer value found at the specified payload position.
 	 */
 	public long rdLongCardinal(int at) {
+		if (at >= 0 && at <= this.maxLength - 4) {
+			return this.buffer.getInt(at + this.pBase) & 0xFFFFFFFFL;
+		}
 		long result = ((long)this.rdCardinal(at) << 16) | (long)this.rdCardinal(at+2);
 		return result;
 	}
@@ -307,6 +353,10 @@ public abstract class Payload {
 	 *   the payload at the given position.
 	 */
 	public void wrLongCardinal(int at, long value) {
+		if (at >= 0 && at <= this.maxLength - 4) {
+			this.buffer.putInt(at + this.pBase, (int)value);
+			return;
+		}
 		this.wrCardinal(at,  (int)((value >> 16) & 0xFFFF));
 		this.wrCardinal(at+2,  (int)(value & 0xFFFF));
 	}
@@ -319,6 +369,10 @@ public abstract class Payload {
 	 * @return the 48 bit value found at the specified payload position.
 	 */
 	public long rdAddress(int at) {
+		if (at >= 0 && at <= this.maxLength - 6) {
+			int index = at + this.pBase;
+			return ((long)(this.buffer.getShort(index) & 0xFFFF) << 32) | (this.buffer.getInt(index + 2) & 0xFFFFFFFFL);
+		}
 		long result = ((long)this.rdCardinal(at) << 32) | ((long)this.rdCardinal(at+2) << 16) | ((long)this.rdCardinal(at+4));
 		return result;
 	}
@@ -332,11 +386,39 @@ public abstract class Payload {
 	 *   the payload at the given position.
 	 */
 	public void wrAddress(int at, long value) {
+		if (at >= 0 && at <= this.maxLength - 6) {
+			int index = at + this.pBase;
+			this.buffer.putShort(index, (short)(value >> 32));
+			this.buffer.putInt(index + 2, (int)value);
+			return;
+		}
 		this.wrCardinal(at,  (int)((value >> 32) & 0xFFFF));
 		this.wrCardinal(at+2,  (int)((value >> 16) & 0xFFFF));
 		this.wrCardinal(at+4,  (int)(value & 0xFFFF));
 	}
-	
+
+	/**
+	 * Compute the XNS checksum over a range of the payload, with an odd
+	 * byte count being rounded up to the next word. Bytes outside the valid
+	 * payload range will be considered to have the value {@code 0}.
+	 *
+	 * @param at the offset of the first byte of the range.
+	 * @param length the byte count of the range.
+	 * @return the checksum over the range.
+	 */
+	public int computeChecksum(int at, int length) {
+		if (at < 0 || length <= 0) { return 0; }
+		int words = (length + 1) / 2;
+		int available = Math.max(0, Math.min(words * 2, this.maxLength - at));
+		int checksum = XnsChecksum.compute(this.buffer, at + this.pBase, available);
+		int zeroWords = words - ((available + 1) / 2);
+		if (zeroWords > 0) {
+			// appending zero words only rotates the checksum
+			checksum = XnsChecksum.adjust(0, zeroWords, 0, 0, checksum);
+		}
+		return checksum;
+	}
+
 	public String payloadToString() {
 		StringBuilder sb = new StringBuilder().append("(").append(this.currLength).append("/").append(this.maxLength).append(")[");
 		String sep = "";
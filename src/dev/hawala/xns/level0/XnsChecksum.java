@@ -0,0 +1,252 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.xns.level0;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Computation of the XNS software checksum, as used for IDP packets and for
+ * the content of files in a volume.
+ * <p>
+ * The checksum defined by the XNS specification (resp. the CKSUM instruction)
+ * adds each 16 bit word in one's complement arithmetic and rotates the sum left
+ * by one bit after each addition. As both operations are arithmetic modulo
+ * {@code 0xFFFF}, the checksum over the words {@code w[0] .. w[n-1]} is
+ * the sum of {@code w[m] * 2^(n-m)} modulo {@code 0xFFFF}, where the factor only
+ * depends on {@code (n-m) mod 16}. This allows to sum up 8 bytes at a time into
+ * the 32 bit lanes of 8 long accumulators (one lane for each word position modulo 16)
+ * and to fold the carries and the rotations only once for a larger range of the data.
+ * </p>
+ * <p>
+ * Besides the static computation over a byte range, instances of this class
+ * allow to compute the checksum for data arriving in chunks of arbitrary
+ * length (e.g. when streaming file content), and the static method
+ * {@link #adjust(int, int, int, int, int)} allows to update a checksum if
+ * only some header words of the data changed.
+ * </p>
+ * <p>
+ * All checksum values returned are in the range {@code 0x0000 .. 0xFFFE},
+ * so the "no checksum" value {@code 0xFFFF} is never produced (the one's complement
+ * zero {@code 0xFFFF} is reported as {@code 0x0000}).
+ * </p>
+ * 
+ * @author Dodo contributors
+ */
+public final class XnsChecksum {
+	
+	// masks the low 16 bits of both 32 bit lanes of a long
+	private static final long LANES = 0x0000FFFF0000FFFFL;
+	
+	// max. count of 32 byte groups that can be summed up in the 32 bit lanes without overflow
+	private static final int FOLD_GROUPS = 0x10000;
+	
+	// byte count below which setting up and folding the lanes costs more than it saves
+	private static final int SHORT_LENGTH = 64;
+	
+	// the checksum over the words seen so far, modulo 0xFFFF
+	private int sum = 0;
+	
+	// the high byte of the next word if an odd byte count has been seen so far, else -1
+	private int pendingByte = -1;
+	
+	/**
+	 * Compute the checksum over a byte range, a trailing odd byte being padded
+	 * with a zero byte.
+	 * 
+	 * @param data the data to checksum.
+	 * @param offset the start of the range in {@code data}.
+	 * @param length the byte count of the range.
+	 * @return the checksum over the range.
+	 */
+	public static int compute(byte[] data, int offset, int length) {
+		return reduce(sum(ByteBuffer.wrap(data), offset, length));
+	}
+	
+	/**
+	 * Compute the checksum over a byte range of a (big-endian) byte buffer, a
+	 * trailing odd byte being padded with a zero byte. The buffer is accessed with
+	 * absolute indexing only, so its position and limit are left unchanged.
+	 * 
+	 * @param data the data to checksum.
+	 * @param offset the start of the range in {@code data}.
+	 * @param length the byte count of the range.
+	 * @return the checksum over the range.
+	 */
+	public static int compute(ByteBuffer data, int offset, int length) {
+		return reduce(sum(data, offset, length));
+	}
+	
+	/**
+	 * Update a checksum for a changed word in the checksummed data, without
+	 * having to recompute the checksum over the complete data.
+	 * 
+	 * @param checksum the valid checksum of the data before the change.
+	 * @param wordCount the number of words in the checksummed data.
+	 * @param wordIndex the index of the changed word in the checksummed data.
+	 * @param oldWord the value of the word before the change.
+	 * @param newWord the value of the word after the change.
+	 * @return the checksum over the changed data.
+	 */
+	public static int adjust(int checksum, int wordCount, int wordIndex, int oldWord, int newWord) {
+		long delta = (newWord & 0xFFFF) + 0xFFFF - (oldWord & 0xFFFF);
+		return reduce((checksum & 0xFFFF) + (delta << ((wordCount - wordIndex) & 15)));
+	}
+	
+	/**
+	 * Add the given bytes to the data checksummed by this instance.
+	 * 
+	 * @param data the buffer with the bytes to add.
+	 * @param offset the start of the bytes in {@code data}.
+	 * @param length the count of bytes to add.
+	 * @return this instance (for command chaining).
+	 */
+	public XnsChecksum update(byte[] data, int offset, int length) {
+		if (length <= 0) { return this; }
+		if (this.pendingByte >= 0) {
+			this.addWord((this.pendingByte << 8) | (data[offset] & 0xFF));
+			this.pendingByte = -1;
+			offset++;
+			length--;
+		}
+		int evenLength = length & ~1;
+		if (evenLength > 0) {
+			long blockSum = sum(ByteBuffer.wrap(data), offset, evenLength);
+			this.sum = reduce(((long)this.sum << ((evenLength >>> 1) & 15)) + blockSum);
+		}
+		if (evenLength < length) {
+			this.pendingByte = data[offset + evenLength] & 0xFF;
+		}
+		return this;
+	}
+	
+	/**
+	 * Get the checksum over the data added so far, a trailing odd byte being
+	 * padded with a zero byte.
+	 * 
+	 * @return the checksum value.
+	 */
+	public int getValue() {
+		if (this.pendingByte < 0) {
+			return this.sum;
+		}
+		return reduce(((long)this.sum + (this.pendingByte << 8)) << 1);
+	}
+	
+	/**
+	 * Restart the checksum computation with empty data.
+	 */
+	public void reset() {
+		this.sum = 0;
+		this.pendingByte = -1;
+	}
+	
+	private void addWord(int w) {
+		this.sum = reduce(((long)this.sum + w) << 1);
+	}
+	
+	/*
+	 * sum the range in lanes, returning a value congruent to the checksum modulo 0xFFFF
+	 */
+	private static long sum(ByteBuffer data, int offset, int length) {
+		long result = 0;
+		int pos = offset;
+		
+		// the 32 byte groups: as 2^16 is 1 modulo 0xFFFF, the word at position j in each group
+		// has the same factor 2^(16-j) relative to the end of the groups
+		int groups = (length < SHORT_LENGTH) ? 0 : length >>> 5;
+		while (groups > 0) {
+			int count = Math.min(groups, FOLD_GROUPS);
+			groups -= count;
+			
+			// each accumulator has 2 lanes for positions j (high lane) and j+2 (low lane)
+			long a0 = 0, b0 = 0, a1 = 0, b1 = 0, a2 = 0, b2 = 0, a3 = 0, b3 = 0;
+			for (int i = 0; i < count; i++) {
+				long l0 = data.getLong(pos);
+				long l1 = data.getLong(pos + 8);
+				long l2 = data.getLong(pos + 16);
+				long l3 = data.getLong(pos + 24);
+				a0 += (l0 >>> 16) & LANES; // positions 0, 2
+				b0 += l0 & LANES;          // positions 1, 3
+				a1 += (l1 >>> 16) & LANES; // positions 4, 6
+				b1 += l1 & LANES;          // positions 5, 7
+				a2 += (l2 >>> 16) & LANES; // positions 8, 10
+				b2 += l2 & LANES;          // positions 9, 11
+				a3 += (l3 >>> 16) & LANES; // positions 12, 14
+				b3 += l3 & LANES;          // positions 13, 15
+				pos += 32;
+			}
+			
+			result += lanes(a0, 0, 14) + lanes(b0, 15, 13)
+			        + lanes(a1, 12, 10) + lanes(b1, 11, 9)
+			        + lanes(a2, 8, 6) + lanes(b2, 7, 5)
+			        + lanes(a3, 4, 2) + lanes(b3, 3, 1);
+			result = reduce(result);
+		}
+		
+		// the remaining words (less than 32 incl. a trailing odd byte) with add-and-rotate,
+		// the carries staying in the upper bits of the long
+		int end = offset + length;
+		long tail = 0;
+		int tailWords = 0;
+		while (pos <= end - 8) {
+			long l = data.getLong(pos);
+			tail = (tail << 4)
+			     + ((l >>> 48) << 4)
+			     + (((l >>> 32) & 0xFFFF) << 3)
+			     + (((l >>> 16) & 0xFFFF) << 2)
+			     + ((l & 0xFFFF) << 1);
+			pos += 8;
+			tailWords += 4;
+		}
+		while (pos < end - 1) {
+			tail = (tail + (data.getShort(pos) & 0xFFFF)) << 1;
+			pos += 2;
+			tailWords++;
+		}
+		if (pos < end) {
+			tail = (tail + ((data.get(pos) & 0xFF) << 8)) << 1;
+			tailWords++;
+		}
+		
+		return (result << tailWords) + tail;
+	}
+	
+	/*
+	 * fold the carries back into the low 16 bits (end-around carry), giving the value modulo 0xFFFF
+	 */
+	private static int reduce(long value) {
+		while (value > 0xFFFF) {
+			value = (value & 0xFFFF) + (value >>> 16);
+		}
+		return (value == 0xFFFF) ? 0 : (int)value;
+	}
+	
+	private static long lanes(long lanes, int highShift, int lowShift) {
+		return ((lanes >>> 32) << highShift) + ((lanes & 0xFFFFFFFFL) << lowShift);
+	}
+	
+}
@@ -156,6 +156,18 @@ public class IDP extends Payload {
 	private long srcHost = 0;
 	private int srcSocket = 0;
 	
+	// the higher level protocol view wrapping this packet, cached for reuse by the protocol wrapper
+	private Payload protocolView = null;
+	
+	// pool of recyclable packets for ingoing data
+	private static final int POOL_CAPACITY = 256;
+	private static final IDP[] pool = new IDP[POOL_CAPACITY];
+	private static int poolCount = 0;
+	
+	// is this packet taken from resp. returned to the pool?
+	private boolean recyclable = false;
+	private boolean inPool = false;
+	
 	/**
 	 * Create an empty internet datagram packet with minimal length and yet
 	 * no IDP transport or payload content.
@@ -179,6 +191,10 @@ public class IDP extends Payload {
 		super(packet, IDP_DATA_START, packet.rdCardinal(2) - IDP_DATA_START);
 		
 		this.packet = packet;
+		this.loadHeader();
+	}
+	
+	private void loadHeader() {
 		this.checksum = this.packet.rdCardinal(0);
 		this.length = this.packet.rdCardinal(2);
 		this.transportControl = this.packet.rdByte(4);
@@ -193,6 +209,72 @@ public class IDP extends Payload {
 		super.setPayloadLength(Math.min(this.getPayloadLength(), this.length - IDP_DATA_START));
 	}
 	
+	/**
+	 * Get an internet datagram packet for the given raw packet data, using a
+	 * packet from the pool of recycled packets if possible. This is intended for
+	 * ingoing packets, which should be given back to the pool with {@code release()}
+	 * by the final owner of the packet.
+	 * 
+	 * @param sourcePacketData the source data from where to copy the raw packet.
+	 * @param offset position of the first packet byte in {@code sourcePacketData}
+	 * @param length byte count of the packet in {@code sourcePacketData}
+	 * @return the internet datagram packet with the given content.
+	 */
+	public static IDP obtain(byte[] sourcePacketData, int offset, int length) {
+		IDP idp = null;
+		synchronized(pool) {
+			if (poolCount > 0) {
+				idp = pool[--poolCount];
+				pool[poolCount] = null;
+				idp.inPool = false;
+			}
+		}
+		if (idp == null) {
+			idp = new IDP(new NetPacket(sourcePacketData, offset, length));
+			idp.recyclable = true;
+			return idp;
+		}
+		idp.packet.reload(sourcePacketData, offset, length);
+		idp.resetView(idp.packet.rdCardinal(2) - IDP_DATA_START);
+		idp.loadHeader();
+		return idp;
+	}
+	
+	/**
+	 * Give this packet back to the pool of recyclable packets if it was
+	 * obtained from the pool, so neither this packet nor any protocol view
+	 * wrapping it may be used by the caller after this call. Releasing a
+	 * packet not obtained from the pool or releasing a packet a second time
+	 * has no effect.
+	 */
+	public void release() {
+		if (!this.recyclable) { return; }
+		synchronized(pool) {
+			if (this.inPool || poolCount >= POOL_CAPACITY) { return; }
+			this.inPool = true;
+			pool[poolCount++] = this;
+		}
+	}
+	
+	/**
+	 * Get the higher level protocol view last cached for this packet.
+	 * 
+	 * @return the protocol view or {@code null}.
+	 */
+	public Payload getProtocolView() {
+		return this.protocolView;
+	}
+	
+	/**
+	 * Cache the higher level protocol view wrapping this packet, allowing
+	 * the protocol wrapper to reuse the view when the packet is recycled.
+	 * 
+	 * @param view the protocol view wrapping this packet.
+	 */
+	public void setProtocolView(Payload view) {
+		this.protocolView = view;
+	}
+	
 	/**
 	 * Create an internet datagram packet with blank transport data but
 	 * with the given (IDP-) payload data.
@@ -252,100 +334,6 @@ public class IDP extends Payload {
 		return this;
 	}
 	
-	/**
-	 * Recompute the checksum of this IDP packet. 
-	 * 
-	 * @return this IDP instance (for command chaining).
-	 */
-	public IDP computeChecksum_A() {
-		long newChecksum = 0;
-		int wordCount = (this.length + 1) / 2;
-		for (int i = 1; i < wordCount; i++) {
-			newChecksum += this.packet.rdCardinal(i << 1);
-			newChecksum <<= 1;
-		}
-		
-		this.checksum = (int)(newChecksum & 0xFFFF);
-		this.packet.wrCardinal(0, this.checksum);
-		
-		return this;
-	}
-	public IDP computeChecksum_B() {
-		long newChecksum = 0;
-		int wordCount = (this.length + 1) / 2;
-		for (int i = 1; i < wordCount; i++) {
-			newChecksum += this.packet.rdCardinal(i << 1);
-			newChecksum <<= 1;
-			if (newChecksum > 0xFFFF) {
-				newChecksum += 1;
-			}
-			newChecksum &= 0xFFFF;
-		}
-		
-		this.checksum = (int)(newChecksum & 0xFFFF);
-		this.packet.wrCardinal(0, this.checksum);
-		
-		return this;
-	}
-	public IDP computeChecksum_C() {
-		long newChecksum = 0;
-		int limit = ((length % 2) != 0) ? length + 1 : length;
-		for (int i = 2; i < limit; i++) {
-			newChecksum += this.packet.rdByte(i) & 0xFF;
-			newChecksum <<= 1;
-			if (newChecksum > 0xFFFF) {
-				newChecksum += 1;
-			}
-			newChecksum &= 0xFFFF;
-		}
-		
-		this.checksum = (int)(newChecksum & 0xFFFF);
-		this.packet.wrCardinal(0, this.checksum);
-		
-		return this;
-	}
-	
-	public IDP computeChecksum_D() {
-		long newChecksum = 0;
-		int limit = ((length % 2) != 0) ? length + 1 : length;
-		for (int i = 2; i < limit; i++) {
-			newChecksum <<= 1;
-			newChecksum += this.packet.rdByte(i) & 0xFF;
-			if (newChecksum > 0xFFFF) {
-				newChecksum += 1;
-			}
-			newChecksum &= 0xFFFF;
-		}
-		
-		this.checksum = (int)(newChecksum & 0xFFFF);
-		this.packet.wrCardinal(0, this.checksum);
-		
-		return this;
-	}
-	
-	public IDP computeChecksum_E() {
-		int newChecksum = 0;
-		int limit = ((length % 2) != 0) ? length + 1 : length;
-		for (int i = 0; i < limit; i++) {
-			int b1 = this.packet.rdByte(i++) & 0xFF;
-			int b2 = this.packet.rdByte(i) & 0xFF;
-			int w = (b1 << 8) | b2;
-			int tmp = newChecksum + w;
-			if (tmp > 0xFFFF) { tmp += 1;}
-			if ((tmp & 0x8000) != 0) {
-				newChecksum = (tmp << 1) + 1;
-			} else {
-				newChecksum = tmp << 1;
-			}
-			newChecksum &= 0xFFFF;
-		}
-
-		this.checksum = newChecksum;
-		this.packet.wrCardinal(0, this.checksum);
-		
-		return this;
-	}
-	
 	/**
 	 * Compute checksum for the current IDP content (xns payload
 	 * except the checksum word), based on the CKSUM instruction.
@@ -358,29 +346,16 @@ public class IDP extends Payload {
 		return this;
 	}
 	
+	/**
+	 * Compute the checksum over the current IDP content (xns payload
+	 * except the checksum word), including the garbage byte if the
+	 * packet length is odd.
+	 * 
+	 * @return the checksum for the current IDP content.
+	 */
 	public int computeChecksum() {
-		int cksum = 0;
 		int limit = ((length % 2) != 0) ? length + 1 : length;
-		for (int i = 2; i < limit; i++) {
-			int b1 = this.packet.rdByte(i++) & 0xFF;
-			int b2 = this.packet.rdByte(i) & 0xFF;
-			int w = (b1 << 8) | b2;
-			cksum = checksum(cksum, w);
-		}
-		
-		if (cksum == 0177777) { cksum = 0; }
-		return cksum;
-	}
-	
-	private static int checksum(int cksum, int data) {
-		int temp = (cksum + (data & 0xFFFF)) & 0xFFFF;
-		if (cksum > temp) { temp = temp + 1; }
-		if (temp >= 0100000) {
-			temp = (temp * 2) + 1;
-		} else {
-			temp = temp * 2;
-		}
-		return temp & 0xFFFF;
+		return this.packet.computeChecksum(2, limit - 2);
 	}
 	
 	/**
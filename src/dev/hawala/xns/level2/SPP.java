@@ -76,6 +76,9 @@ public class SPP extends Payload {
 	private int acknowledgeNumber = 0;
 	private int allocationNumber = 0;
 	
+	// the id of the raw packet when the SPP header was loaded from the packet
+	private long loadedPacketId = -1;
+	
 	/**
 	 * Construct a new SPP packet with blank header fields (SPP and IDP)
 	 * and payload.
@@ -97,7 +100,34 @@ public class SPP extends Payload {
 	public SPP(IDP idp) {
 		super(idp, SPP_DATA_START, idp.getLength() - SPP_DATA_START);
 		this.idp = idp;
-		
+		this.loadHeader();
+	}
+	
+	/**
+	 * Get the SPP view for an (ingoing) IDP packet, reusing the SPP view
+	 * cached in the IDP packet if present, reloading the SPP header data if
+	 * the packet was recycled with new content since.
+	 * 
+	 * @param idp the internet datagram packet to be wrapped.
+	 * @return the SPP view of the packet.
+	 */
+	public static SPP of(IDP idp) {
+		Payload view = idp.getProtocolView();
+		if (view instanceof SPP && ((SPP)view).idp == idp) {
+			SPP spp = (SPP)view;
+			if (spp.loadedPacketId != idp.getPacketId()) {
+				spp.resetView(idp.getLength() - SPP_DATA_START);
+				spp.loadHeader();
+			}
+			return spp;
+		}
+		SPP spp = new SPP(idp);
+		idp.setProtocolView(spp);
+		return spp;
+	}
+	
+	private void loadHeader() {
+		this.loadedPacketId = this.idp.getPacketId();
 		this.connectionControl = this.idp.rdByte(0);
 		this.datastreamType = this.idp.rdByte(1);
 		this.srcConnectionId = this.idp.rdCardinal(2);
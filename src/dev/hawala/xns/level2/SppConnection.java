@@ -371,13 +371,22 @@ public class SppConnection {
 
 	private long lastOthersActivity;
 	
+	/**
+	 * Process an ingoing packet for this connection, taking the ownership
+	 * of the packet: the packet is released unless it is queued as data
+	 * packet, in which case it is released when dequeued and consumed.
+	 * 
+	 * @param idp the ingoing packet.
+	 */
 	public void handleIngonePacket(IDP idp) {
 		if (idp.getDstHost() == IDP.BROADCAST_ADDR) {
+			idp.release();
 			return; // ignore errating broadcast packets hitting our socket
 		}
 		synchronized(this) {
-			SPP spp = new SPP(idp);
+			SPP spp = SPP.of(idp);
 			boolean doNotify = false;
+			boolean queued = false;
 			
 			long now = System.currentTimeMillis();
 			this.lastOthersActivity = now;
@@ -481,6 +490,7 @@ public class SppConnection {
 				if (seqNo > this.inMaxAllowedSeqNo) {
 					if (spp.isAttention()) {
 						this.spillOver.add(spp);
+						queued = true;
 						return;
 					} else {
 						Log.L3.printf(idp, " SppConnection.handleIngonePacket(): seqNo > this.inMaxAllowedSeqNo for packet: %s\n", idp.toString());
@@ -492,6 +502,7 @@ public class SppConnection {
 				
 				// place the packet into its position in the window
 				this.ingonePackets[seqNo - this.inFirstSeqNo] = spp;
+				queued = true;
 				
 				// update the acknowledgment data (from us to the other end)
 				boolean checkSpillOver = true;
@@ -516,6 +527,9 @@ public class SppConnection {
 				// wake up potential readers
 				doNotify = true;
 			} finally {
+				if (!queued) {
+					idp.release();
+				}
 				if (doNotify) {
 					// let waiting reader(s) get the packet(s) and process them
 					this.notifyAll();
@@ -533,6 +547,14 @@ public class SppConnection {
 		this.allowReAwaking = allowReAwaking;
 	}
 	
+	/**
+	 * Get the next data packet of the ingoing data stream, possibly waiting
+	 * for the packet to arrive. The caller takes the ownership of the packet and
+	 * should release it ({@code spp.idp.release()}) after consuming the content. 
+	 * 
+	 * @return the next data packet or {@code null} if the connection was closed.
+	 * @throws InterruptedException
+	 */
 	public SPP dequeueIngonePacket() throws InterruptedException {
 		synchronized(this) {
 			if (this.state == State.CLOSED) {
@@ -558,6 +580,7 @@ public class SppConnection {
 							//System.out.printf("** dequeueIngonePacket( local socket 0x%04X ): got packet, payload.length = %s\n", this.myEndpoint.socket, packet.getPayloadLength());
 						}
 						if (packet != null && packet.getPayloadLength() < 1) {
+							packet.idp.release();
 							packet = null;
 						}
 						if (this.state != State.CONNECTED) {
@@ -579,6 +602,11 @@ public class SppConnection {
 	private SPP innerdequeueIngonePacket(Long timeout) throws InterruptedException {
 		SPP dequeued = null;
 		while (dequeued == null || dequeued.isAttention()) { // ignore OOB packets in the sequence, as attentions are handled separately
+			if (dequeued != null) {
+				dequeued.idp.release();
+				dequeued = null;
+			}
+			
 			// make sure (possibly wait for) that there is a packet to dequeue
 			while(this.ingonePackets[0] == null) {
 				if (timeout == null) {
@@ -647,6 +675,7 @@ public class SppConnection {
 				this.transmitPacket(closeAck.idp);
 				Log.L3.printf(this.intro, "** dequeueIngonePacket(): received close-request, sent close-ack\n");
 				//System.out.printf("** dequeueIngonePacket( local socket 0x%04X ): received close-request, sent close-ack\n", this.myEndpoint.socket);
+				dequeued.idp.release();
 				dequeued = null; // we consumed this packet instead of the caller ...
 				continue; // ... so possibly return the next incoming packet
 			}
@@ -672,6 +701,7 @@ public class SppConnection {
 					Log.L3.printf(this.intro, "** dequeueIngonePacket(): (close-initiating) OTHER end confirmed connection close%s\n", awakeningInfo);
 					//System.out.printf("** dequeueIngonePacket( local socket 0x%04X ): (close-initiating) OTHER end confirmed connection close%s\n", this.myEndpoint.socket, awakeningInfo);
 				}
+				dequeued.idp.release();
 				return null; // signal to the caller that connection is now closed (dropping the still active connection will happen later at the occasion of a new connection)
 			}
 		}
@@ -823,16 +853,18 @@ public class SppConnection {
 			this.transmitPacket(spp.idp);
 			this.noResendBefore = System.currentTimeMillis() + this.sppResendDelay;
 			Log.L3.printf(this.intro, "enqueueOutgoingPacket(): ---------------- sent data packet - seqNo = %d\n", spp.getSequenceNumber());
-			String s = "enqueueOutgoingPacket(): outQueue = [ ";
-			for (int i = 0; i < this.outgoingPackets.length; i++) {
-				SPP p = this.outgoingPackets[i];
-				if (p == null) {
-					s += "- ";
-				} else {
-					s +=  p.getSequenceNumber() + " ";
+			if (Log.L3.isEnabled()) {
+				StringBuilder sb = new StringBuilder("enqueueOutgoingPacket(): outQueue = [ ");
+				for (int i = 0; i < this.outgoingPackets.length; i++) {
+					SPP p = this.outgoingPackets[i];
+					if (p == null) {
+						sb.append("- ");
+					} else {
+						sb.append(p.getSequenceNumber()).append(' ');
+					}
 				}
+				Log.L3.printf(this.intro, "%s]\n", sb);
 			}
-			Log.L3.printf(this.intro, s + "]\n");
 			
 			this.notifyAll();
 			
@@ -45,14 +45,20 @@ public class CourierConnection {
 	
 	private final String connId;
 	private final iWireStream wireStream;
+	private final CourierRegistry registry;
 	
 	private boolean needVersions = true;
 	private boolean sendVersions = true;
 	private int courierVersion = COURIER_VERSION_MIN; // default to minimum
 	
 	public CourierConnection(iWireStream courierStream, String connId) {
+		this(courierStream, connId, CourierRegistry.getDefault());
+	}
+	
+	public CourierConnection(iWireStream courierStream, String connId, CourierRegistry registry) {
 		this.wireStream = courierStream;
 		this.connId = connId;
+		this.registry = registry;
 	}
 	
 	public iRawCourierConnectionClient processSingleCall() throws EndOfMessageException, NoMoreWriteSpaceException {
@@ -113,7 +119,7 @@ public class CourierConnection {
 		// get the conversation id for this call and dispatch this call
 		int transaction = this.wireStream.readI16();
 		Log.C.printf(this.connId, "CourierConnection - dispatching call with transaction %d\n", transaction);
-		iRawCourierConnectionClient connectionClient = CourierRegistry.dispatch(this.courierVersion, transaction, this.wireStream);
+		iRawCourierConnectionClient connectionClient = this.registry.dispatchCall(this.courierVersion, transaction, this.wireStream);
 		Log.C.printf(this.connId, "CourierConnection - done call with transaction %d\n\n", transaction);
 		return connectionClient;
 	}
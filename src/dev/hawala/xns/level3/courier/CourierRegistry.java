@@ -39,40 +39,78 @@ import dev.hawala.xns.level3.courier.iWireStream.NoMoreWriteSpaceException;
 /**
  * Central management of registered Courier programs and dispatching
  * of Courier procedure invocations.
+ * <p>
+ * The static methods work on the default registry used by the Courier
+ * server of the default machine. Machines with their own set of Courier
+ * programs (e.g. further sites in the same JVM) use an own instance of
+ * this class for their Courier server.
+ * </p>
  * 
  * @author Dr. Hans-Walter Latz / Berlin (2018)
  */
 public class CourierRegistry {
 	
-	private static Map<Long,CrProgram> crPrograms = new HashMap<>();
+	private static final CourierRegistry defaultRegistry = new CourierRegistry();
+	
+	private final Map<Long,CrProgram> crPrograms = new HashMap<>();
+	
+	/**
+	 * @return the registry used by the static methods.
+	 */
+	public static CourierRegistry getDefault() {
+		return defaultRegistry;
+	}
 	
 	public static void register(CrProgram program) {
-		long key = getProgKey(program.getProgramNumber(), program.getVersionNumber());
-		crPrograms.put(key, program);
+		defaultRegistry.add(program);
 	}
 	
 	public static void unregister(int progNo, int progVersion) {
+		defaultRegistry.remove(progNo, progVersion);
+	}
+	
+	public static void unregister(int progNo) {
+		defaultRegistry.remove(progNo);
+	}
+	
+	public static boolean isRegistered(int progNo, int progVersion) {
+		return defaultRegistry.contains(progNo, progVersion);
+	}
+	
+	public static iRawCourierConnectionClient dispatch(
+						int courierVersion,
+						int transaction,
+						iWireStream connection) throws NoMoreWriteSpaceException, EndOfMessageException {
+		return defaultRegistry.dispatchCall(courierVersion, transaction, connection);
+	}
+	
+	public void add(CrProgram program) {
+		long key = getProgKey(program.getProgramNumber(), program.getVersionNumber());
+		this.crPrograms.put(key, program);
+	}
+	
+	public void remove(int progNo, int progVersion) {
 		long key = getProgKey(progNo, progVersion);
-		if (crPrograms.containsKey(key)) {
-			crPrograms.remove(key);
+		if (this.crPrograms.containsKey(key)) {
+			this.crPrograms.remove(key);
 		}
 	}
 	
-	public static void unregister(int progNo) {
+	public void remove(int progNo) {
 		List<CrProgram> unregs = new ArrayList<>();
-		for (CrProgram p : crPrograms.values()) {
+		for (CrProgram p : this.crPrograms.values()) {
 			if (p.getProgramNumber() == progNo) {
 				unregs.add(p);
 			}
 		}
 		for (CrProgram p : unregs) {
-			unregister(p.getProgramNumber(), p.getVersionNumber());
+			this.remove(p.getProgramNumber(), p.getVersionNumber());
 		}
 	}
 	
-	public static boolean isRegistered(int progNo, int progVersion) {
+	public boolean contains(int progNo, int progVersion) {
 		long key = getProgKey(progNo, progVersion);
-		return crPrograms.containsKey(key);
+		return this.crPrograms.containsKey(key);
 	}
 	
 	private static long getProgKey(int progNo, int progVersion) {
@@ -81,7 +119,7 @@ public class CourierRegistry {
 		return key;
 	}
 	
-	public static iRawCourierConnectionClient dispatch(
+	public iRawCourierConnectionClient dispatchCall(
 						int courierVersion,
 						int transaction,
 						iWireStream connection) throws NoMoreWriteSpaceException, EndOfMessageException {
@@ -90,9 +128,9 @@ public class CourierRegistry {
 		long key = getProgKey(programNo, programVersion);
 		
 		// ok, program is registered in the requested version
-		if (crPrograms.containsKey(key)) {
+		if (this.crPrograms.containsKey(key)) {
 			Log.C.printf(null, "CourierRegistry: dispatching to program %d version %d\n", programNo, programVersion);
-			CrProgram program = crPrograms.get(key);
+			CrProgram program = this.crPrograms.get(key);
 			return program.dispatch(transaction, connection);
 		}
 		
@@ -101,7 +139,7 @@ public class CourierRegistry {
 		boolean progExists = false;
 		int minVersion = 0x7FFFFFFF;
 		int maxVersion = -1;
-		for (CrProgram p : crPrograms.values()) {
+		for (CrProgram p : this.crPrograms.values()) {
 			if (p.getProgramNumber() == programNo) {
 				progExists = true;
 				int pVersion = p.getVersionNumber();
@@ -61,6 +61,7 @@ public class CourierServer implements Runnable {
 	
 	private final iNetMachine site;
 	private final int socket;
+	private final CourierRegistry registry;
 	
 	private final iSppServerSocket srvSocket;
 	private final Thread crListenerThread;
@@ -72,8 +73,13 @@ public class CourierServer implements Runnable {
 	}
 	
 	public CourierServer(iNetMachine site, int socket) throws XnsException {
+		this(site, socket, CourierRegistry.getDefault());
+	}
+	
+	public CourierServer(iNetMachine site, int socket, CourierRegistry registry) throws XnsException {
 		this.site = site;
 		this.socket = socket;
+		this.registry = registry;
 		
 		this.srvSocket = this.site.sppListen(this.socket);
 		
@@ -116,7 +122,7 @@ public class CourierServer implements Runnable {
 			iSppSocket clientSocket = this.srvSocket.listen();
 			if (clientSocket != null) {
 				Log.C.printf(null, "CourierServer - new connection opened, starting new CourierServerConnection\n");
-				CourierServerConnection conn = new CourierServerConnection(clientSocket, clientConnectionNo++);
+				CourierServerConnection conn = new CourierServerConnection(clientSocket, clientConnectionNo++, this.registry);
 				this.addConnection(conn);
 				conn.start();
 			} else {
@@ -136,14 +142,14 @@ public class CourierServer implements Runnable {
 		
 		private boolean closed = false;
 		
-		private CourierServerConnection(iSppSocket clientSocket, int connNo) {
+		private CourierServerConnection(iSppSocket clientSocket, int connNo, CourierRegistry registry) {
 			this.clientSocket = clientSocket;
 			this.connId = String.format("CR%04d", connNo);
 			
 			iSppInputStream nis = clientSocket.getInputStream();
 			iSppOutputStream nos = clientSocket.getOutputStream();
 			WireSPPStream wireStream = new WireSPPStream(nis, nos);
-			this.crConn = new CourierConnection(wireStream, this.connId);
+			this.crConn = new CourierConnection(wireStream, this.connId, registry);
 			
 			this.thr = new Thread(this);
 			this.thr.setName("CourierServerConnection-" + this.connId);
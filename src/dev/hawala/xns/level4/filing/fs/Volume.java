@@ -54,6 +54,7 @@ import java.util.Map.Entry;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
+import dev.hawala.xns.level0.XnsChecksum;
 import dev.hawala.xns.level4.common.Time2;
 
 /**
@@ -638,7 +639,7 @@ public class Volume {
 				return;
 			}
 			
-			int checksum = 0;
+			XnsChecksum checksum = new XnsChecksum();
 			int dataSize = 0;
 			File contentFile = this.volume.getDataFile(fe.getFileID(), true);
 			try (BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(contentFile))) {
@@ -647,33 +648,14 @@ public class Volume {
 				while((bytesTransferred = contentSource.read(buffer)) > 0) {
 					bos.write(buffer, 0, bytesTransferred);
 					dataSize += bytesTransferred;
-					if (bytesTransferred < buffer.length) {
-						buffer[bytesTransferred] = (byte)0;
-					}
-					for (int i = 0; i < bytesTransferred; i += 2) {
-						int b1 = buffer[i] & 0xFF;
-						int b2 = buffer[i+1] & 0xFF;
-						int w = (b1 << 8) | b2;
-						checksum = checksum(checksum, w);
-					}
+					checksum.update(buffer, 0, bytesTransferred);
 				}
 			}
-			fe.setChecksum(checksum);
+			fe.setChecksum(checksum.getValue());
 			fe.setDataSize(dataSize);
 			fe.setHasContent(true);
 		}
 		
-		private static int checksum(int cksum, int data) {
-			int temp = (cksum + (data & 0xFFFF)) & 0xFFFF;
-			if (cksum > temp) { temp = temp + 1; }
-			if (temp >= 0100000) {
-				temp = (temp * 2) + 1;
-			} else {
-				temp = temp * 2;
-			}
-			return temp & 0xFFFF;
-		}
-		
 //		public void replaceFileContentRange(long fileID, iContentSource contentSource, int from, int count) {
 //			** content range access not supported so far **
 //		}
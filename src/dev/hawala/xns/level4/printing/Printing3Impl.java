@@ -91,23 +91,34 @@ import dev.hawala.xns.level4.printing.Printing3.ValueRecord;
 
 /**
  * Implementation of an printing service for the Printing3 Courier protocol.
+ * <p>
+ * Each instance is a separate print service with its own configuration and
+ * print request states, registered with the Courier registry of the machine
+ * providing the service.
+ * </p>
  * 
  * @author Dr. Hans-Walter Latz / Berlin 2019
  */
 public class Printing3Impl {
 	
 	// initialization data
-	private static String printServiceName = "?:?:?";
-	private static int[] printSvcId = new int[2];
-	private static String outputDirectoryName;
-	private static boolean disassembleIpFiles;
-	private static byte[] ip2psProc = null;
-	private static byte[] ip2psXcsProc = null;
-	private static String psPostprocessor;
+	private final String printServiceName;
+	private final int[] printSvcId = new int[2];
+	private final String outputDirectoryName;
+	private final boolean disassembleIpFiles;
+	private byte[] ip2psProc = null;
+	private byte[] ip2psXcsProc = null;
+	private String psPostprocessor;
+	
+	// paper sizes supported by this print service (here defaulted, possibly overridden at service startup)
+	private final List<PaperKnownSize> supportedPaperSizes = new ArrayList<>(Arrays.asList(
+									PaperKnownSize.a4,
+									PaperKnownSize.usLetter,
+									PaperKnownSize.usLegal));
 	
 	private static final String XEROX_PS_FONTS = "dev/hawala/xns/level4/printing/xerox-font-replacements.txt";
 	
-	// print job id generation
+	// print job id generation (common to all print services, as these may share the output directory)
 	private static long lastPrintJobId = System.currentTimeMillis() & 0x0000_FFFF_FFFF_FFFFL;
 	
 	private static synchronized long getNextPrintJobId() {
@@ -116,17 +127,17 @@ public class Printing3Impl {
 	}
 	
 	// handling for print request status
-	private static Map<String,StatusEnum> printRequestStatus = new HashMap<>();
+	private final Map<String,StatusEnum> printRequestStatus = new HashMap<>();
 	
-	private static synchronized void writePrintRequestStatus(String jobName, StatusEnum status) {
-		printRequestStatus.put(jobName, status);
+	private synchronized void writePrintRequestStatus(String jobName, StatusEnum status) {
+		this.printRequestStatus.put(jobName, status);
 	}
 	
-	private static synchronized StatusEnum readPrintRequestStatus(String jobName) {
-		return printRequestStatus.get(jobName);
+	private synchronized StatusEnum readPrintRequestStatus(String jobName) {
+		return this.printRequestStatus.get(jobName);
 	}
 	
-	public static void init(
+	public Printing3Impl(
 			String serviceName,
 			String outputDirectory,
 			boolean disassembleIp,
@@ -134,11 +145,11 @@ public class Printing3Impl {
 			String ip2psProcFilename,
 			String printServicePsPostprocessor) {
 		int printSvcNameHash = serviceName.hashCode();
-		printServiceName = serviceName;
-		printSvcId[0] = (printSvcNameHash >>> 16);
-		printSvcId[1] = printSvcNameHash & 0xFFFF;
-		outputDirectoryName = outputDirectory;
-		disassembleIpFiles = disassembleIp;
+		this.printServiceName = serviceName;
+		this.printSvcId[0] = (printSvcNameHash >>> 16);
+		this.printSvcId[1] = printSvcNameHash & 0xFFFF;
+		this.outputDirectoryName = outputDirectory;
+		this.disassembleIpFiles = disassembleIp;
 		
 		if (paperSizeCandidates != null) {
 			String[] cands = paperSizeCandidates.split(",");
@@ -151,20 +162,20 @@ public class Printing3Impl {
 				}
 			}
 			if (newPaperSizes.size() > 0) {
-				supportedPaperSizes.clear();
-				supportedPaperSizes.addAll(newPaperSizes);
+				this.supportedPaperSizes.clear();
+				this.supportedPaperSizes.addAll(newPaperSizes);
 			}
 		}
 		StringBuilder sb = new StringBuilder();
 		String sep = "";
-		for (PaperKnownSize size: supportedPaperSizes) {
+		for (PaperKnownSize size: this.supportedPaperSizes) {
 			sb.append(sep).append(size.toString());
 			sep = ", ";
 		}
 		System.out.printf("####### Printing3, supported paperSizes: %s\n", sb.toString());
 
 		// load the ip-to-ps conversion module (Postscript) if specified 
-		ip2psProc = null;
+		this.ip2psProc = null;
 		if (ip2psProcFilename != null) {
 			File ip2psProcFile = new File(ip2psProcFilename);
 			if (!ip2psProcFile.exists() || !ip2psProcFile.canRead()) {
@@ -173,9 +184,9 @@ public class Printing3Impl {
 			}
 			try (FileInputStream fis = new FileInputStream(ip2psProcFilename)) {
 				int remaining = (int)(int)ip2psProcFile.length();
-				ip2psProc = new byte[remaining];
+				this.ip2psProc = new byte[remaining];
 				while(remaining > 0) {
-					remaining -= fis.read(ip2psProc, ip2psProc.length - remaining, ip2psProc.length);
+					remaining -= fis.read(this.ip2psProc, this.ip2psProc.length - remaining, this.ip2psProc.length);
 				}
 				System.out.printf("####### Printing3, using ip-to-ps proc: %s\n", ip2psProcFilename);
 			} catch(IOException e) {
@@ -186,7 +197,7 @@ public class Printing3Impl {
 		
 		// if possible: patch the ip-to-ps conversion module to implant/replace font mappings for Modern,
 		// Classic and Equation fonts (using Xerox PFB files)
-		if (ip2psProc != null) {
+		if (this.ip2psProc != null) {
 			File ip2psProcFile = new File(ip2psProcFilename);
 			File pfbDir = new File(ip2psProcFile.getParentFile(), "pfb");
 			if (pfbDir.exists()
@@ -199,7 +210,7 @@ public class Printing3Impl {
 				ByteArrayOutputStream bos = new ByteArrayOutputStream();
 				try (
 					 PrintStream ps = new PrintStream(bos);
-					 BufferedReader rdr = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(ip2psProc)));
+					 BufferedReader rdr = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(this.ip2psProc)));
 					 InputStream xFonts = (new InterpressUtils()).getClass().getClassLoader().getResourceAsStream(XEROX_PS_FONTS)
 					) {
 					boolean checkFonts = false;
@@ -236,59 +247,65 @@ public class Printing3Impl {
 
 				byte[] newIp2PsProc = bos.toByteArray();
 				if (newIp2PsProc.length > 0) {
-					ip2psXcsProc = newIp2PsProc;
+					this.ip2psXcsProc = newIp2PsProc;
 				}
 			}
 		}
 		
-		psPostprocessor = null;
+		this.psPostprocessor = null;
 		if (printServicePsPostprocessor != null) {
 			File postProcessor = new File(printServicePsPostprocessor);
 			if (postProcessor.exists() && postProcessor.canExecute()) {
-				psPostprocessor = printServicePsPostprocessor;
-				System.out.printf("####### Printing3, using ps post-processor: %s\n", psPostprocessor);
+				this.psPostprocessor = printServicePsPostprocessor;
+				System.out.printf("####### Printing3, using ps post-processor: %s\n", this.psPostprocessor);
 			} else {
-				System.out.printf("##\n##### Printing3, specified ps post-processor not found or not executable: %s\n##\n", psPostprocessor);
+				System.out.printf("##\n##### Printing3, specified ps post-processor not found or not executable: %s\n##\n", printServicePsPostprocessor);
 			}
 		}
 	}
 	
-	// paper sizes supported by this print service (here defaulted, possibly overridden at service startup)
-	private static final List<PaperKnownSize> supportedPaperSizes = new ArrayList<>(Arrays.asList(
-									PaperKnownSize.a4,
-									PaperKnownSize.usLetter,
-									PaperKnownSize.usLegal));
-	
 	/*
 	 * ************************* registration/deregistration
 	 */
 	
 	/**
 	 * register Courier-Program Printing3 with
-	 * this implementation to Courier dispatcher.
+	 * this implementation to the default Courier dispatcher.
+	 */
+	public void register() {
+		this.register(CourierRegistry.getDefault());
+	}
+	
+	/**
+	 * register Courier-Program Printing3 with
+	 * this implementation to the given Courier dispatcher.
+	 * 
+	 * @param registry the Courier registry of the machine providing the print service.
 	 */
-	public static void register() {
-		if (outputDirectoryName == null || outputDirectoryName.isEmpty()) {
+	public void register(CourierRegistry registry) {
+		if (this.outputDirectoryName == null || this.outputDirectoryName.isEmpty()) {
 			throw new IllegalStateException("Printing3Impl not correctly initialized (empty outputDirectoryName)");
 		}
-		File outDir = new File(outputDirectoryName);
+		File outDir = new File(this.outputDirectoryName);
 		if (!outDir.exists() || !outDir.isDirectory() || !outDir.canWrite()) {
 			throw new IllegalStateException("Printing3Impl not correctly initialized (outputDirectory missing or not writable)");
 		}
 		
 		Printing3 prog = new Printing3();
-		prog.Print.use(Printing3Impl::print);
-		prog.GetPrinterProperties.use(Printing3Impl::getPrinterProperties);
-		prog.GetPrintRequestStatus.use(Printing3Impl::getPrintRequestStatus);
-		prog.GetPrinterStatus.use(Printing3Impl::getPrinterStatus);
-		CourierRegistry.register(prog);
+		prog.Print.use(this::print);
+		prog.GetPrinterProperties.use(this::getPrinterProperties);
+		prog.GetPrintRequestStatus.use(this::getPrintRequestStatus);
+		prog.GetPrinterStatus.use(this::getPrinterStatus);
+		registry.add(prog);
 	}
 	
 	/**
-	 * unregister Printing3 implementation from Courier dispatcher
+	 * unregister Printing3 implementation from the given Courier dispatcher
+	 * 
+	 * @param registry the Courier registry where the print service was registered.
 	 */
-	public static void unregister() {
-		CourierRegistry.unregister(Printing3.PROGRAM, Printing3.VERSION);
+	public void unregister(CourierRegistry registry) {
+		registry.remove(Printing3.PROGRAM, Printing3.VERSION);
 	}
 	
 	/*
@@ -304,7 +321,7 @@ public class Printing3Impl {
 	 *     TooManyClients, TransferError, Undefined] = 0;
 	 */
 	@SuppressWarnings("unchecked")
-	public static void print(PrintParams params, PrintResults results) {
+	public void print(PrintParams params, PrintResults results) {
 		// lower 48 bits of the jobId will be part of the printRequestID and filename
 		long jobId = getNextPrintJobId();
 		
@@ -413,8 +430,8 @@ public class Printing3Impl {
 			requestId.get(3).set(0xFFFF);
 			requestId.get(4).set(0xFFFF);
 		} else {
-			requestId.get(0).set(printSvcId[0]);
-			requestId.get(1).set(printSvcId[1]);
+			requestId.get(0).set(this.printSvcId[0]);
+			requestId.get(1).set(this.printSvcId[1]);
 			requestId.get(2).set((int)((jobId >> 32) & 0xFFFFL));
 			requestId.get(3).set((int)((jobId >> 16) & 0xFFFFL));
 			requestId.get(4).set((int)(jobId & 0xFFFFL));
@@ -441,7 +458,7 @@ public class Printing3Impl {
 				"\n  staple...............: %s" +
 				"\n  twoSided.............: %s" +
 				"\n",
-				printServiceName,
+				this.printServiceName,
 				requestId.get(0).get(),
 				requestId.get(1).get(),
 				requestId.get(2).get(),
@@ -474,7 +491,7 @@ public class Printing3Impl {
 			new TransferErrorRecord(TransferProblem.formatIncorrect).raise();
 		}
 		String jobName = String.format("%04X_%04X_%04X", requestId.get(2).get(), requestId.get(3).get(), requestId.get(4).get());
-		String filenameBase = String.format("%s/job_%s", outputDirectoryName, jobName);
+		String filenameBase = String.format("%s/job_%s", this.outputDirectoryName, jobName);
 		String ipFilename = filenameBase + ".ip";
 		try (FileOutputStream fos = new FileOutputStream(ipFilename)) {
 			byte[] buffer = new byte[512];
@@ -494,7 +511,7 @@ public class Printing3Impl {
 		}
 		System.out.println("... done receiving ip master");
 		
-		writePrintRequestStatus(jobName, StatusEnum.pending);
+		this.writePrintRequestStatus(jobName, StatusEnum.pending);
 		
 		// TODO: check if we "can" process the master (e.g. do we support the requested page size, ...)
 		
@@ -514,12 +531,12 @@ public class Printing3Impl {
 	 */
 	// public for testability
 	@SuppressWarnings("unchecked")
-	public static void getPrinterProperties(RECORD params, GetPrinterPropertiesResults results) {
-		System.out.printf("####### %s :: getPrinterProperties()\n", printServiceName);
+	public void getPrinterProperties(RECORD params, GetPrinterPropertiesResults results) {
+		System.out.printf("####### %s :: getPrinterProperties()\n", this.printServiceName);
 		
 		// add paper sizes supported by this printer
 		MediaRecord media = (MediaRecord)results.properties.add().setChoice(PrinterPropertiesChoice.ppmedia);
-		fillSupportedMedia(media);
+		this.fillSupportedMedia(media);
 		
 		// tell: ppstapple = false
 		ValueRecord<BOOLEAN> ppstappleRecord = (ValueRecord<BOOLEAN>)results.properties.add().setChoice(PrinterPropertiesChoice.ppstaple);
@@ -535,9 +552,9 @@ public class Printing3Impl {
 	 *  RETURNS [status: RequestStatus]
 	 *  REPORTS [ServiceUnavailable, SystemError, Undefined] = 2;
 	 */
-	public static void getPrintRequestStatus(GetPrintRequestStatusParams params, GetPrintRequestStatusResults results) {
+	public void getPrintRequestStatus(GetPrintRequestStatusParams params, GetPrintRequestStatusResults results) {
 		System.out.printf("####### %s :: getPrintRequestStatus( requestId: %04X %04X %04X %04X %04X )\n",
-				printServiceName,
+				this.printServiceName,
 				params.printRequestID.get(0).get(),
 				params.printRequestID.get(1).get(),
 				params.printRequestID.get(2).get(),
@@ -559,10 +576,10 @@ public class Printing3Impl {
 			RequestID reqId = params.printRequestID;
 			String jobName = String.format("%04X_%04X_%04X", reqId.get(2).get(), reqId.get(3).get(), reqId.get(4).get());
 			
-			statusValue = readPrintRequestStatus(jobName);
+			statusValue = this.readPrintRequestStatus(jobName);
 			
 			if (statusValue == null) {
-				String ipFilename = String.format("%s/job_%s.ip", outputDirectoryName, jobName);
+				String ipFilename = String.format("%s/job_%s.ip", this.outputDirectoryName, jobName);
 				File ipFile = new File(ipFilename);
 				statusValue = (ipFile.exists())
 						? StatusEnum.completed
@@ -579,8 +596,8 @@ public class Printing3Impl {
 	 *  RETURNS [status: PrinterStatus]
 	 *  REPORTS [ServiceUnavailable, SystemError, Undefined] = 3;
 	 */
-	public static void getPrinterStatus(RECORD params, GetPrinterStatusResults results) {
-		System.out.printf("####### %s :: getPrinterStatus()\n", printServiceName);
+	public void getPrinterStatus(RECORD params, GetPrinterStatusResults results) {
+		System.out.printf("####### %s :: getPrinterStatus()\n", this.printServiceName);
 		
 		SpoolerStatusRecord spoolerStatus = (SpoolerStatusRecord)results.status.add().setChoice(PrinterStatusChoice.spooler);
 		spoolerStatus.value.set(SpoolerStatusEnum.available);
@@ -592,15 +609,15 @@ public class Printing3Impl {
 		printerStatus.value.set(PrinterStatusEnum.available);
 		
 		MediaRecord media = (MediaRecord)results.status.add().setChoice(PrinterStatusChoice.media);
-		fillSupportedMedia(media);
+		this.fillSupportedMedia(media);
 	}
 	
 	/*
 	 * internals
 	 */
 	
-	private static void fillSupportedMedia(MediaRecord media) {
-		for (PaperKnownSize paperSize : supportedPaperSizes) {
+	private void fillSupportedMedia(MediaRecord media) {
+		for (PaperKnownSize paperSize : this.supportedPaperSizes) {
 			CHOICE<MediumChoice> medium = media.value.add();
 			PaperRecord paperRecord = (PaperRecord)medium.setChoice(MediumChoice.paper);
 			KnownSizeRecord knownSizeRecord = (KnownSizeRecord)paperRecord.value.setChoice(PaperChoice.knownSize);
@@ -643,7 +660,7 @@ public class Printing3Impl {
 				;
 	}
 	
-	private static class JobProcessor implements Runnable {
+	private class JobProcessor implements Runnable {
 		private final String jobName;
 		private final String ipFilename;
 		private final String filenameBase;
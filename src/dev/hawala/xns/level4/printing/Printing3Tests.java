@@ -41,13 +41,15 @@ import dev.hawala.xns.level4.printing.Printing3.PrintResults;
 import dev.hawala.xns.level4.printing.Printing3.ValueRecord;
 
 public class Printing3Tests {
+	
+	private final Printing3Impl printService = new Printing3Impl("UnitTest:dev:hawala", ".", false, null, null, null);
 
 	@Test
 	public void testGetPrinterProperties() {
 		RECORD params = RECORD.empty();
 		GetPrinterPropertiesResults results = GetPrinterPropertiesResults.make();
 		
-		Printing3Impl.getPrinterProperties(params, results);
+		this.printService.getPrinterProperties(params, results);
 		
 		StringBuilder sb = new StringBuilder();
 		String resultsDesc = results.append(sb, "", "getPrinterProperties() => results").toString();
@@ -59,7 +61,7 @@ public class Printing3Tests {
 		RECORD params = RECORD.empty();
 		GetPrinterStatusResults results = GetPrinterStatusResults.make();
 		
-		Printing3Impl.getPrinterStatus(params, results);
+		this.printService.getPrinterStatus(params, results);
 		
 		StringBuilder sb = new StringBuilder();
 		String resultsDesc = results.append(sb, "", "getPrinterStatus() => results").toString();
@@ -77,7 +79,7 @@ public class Printing3Tests {
 		params.printRequestID.get(3).set(0xFFFF);
 		params.printRequestID.get(4).set(0xFFFF);
 		
-		Printing3Impl.getPrintRequestStatus(params, results);
+		this.printService.getPrintRequestStatus(params, results);
 		
 		StringBuilder sb = new StringBuilder();
 		String resultsDesc = results.append(sb, "", "getPrintRequestStatus() => results").toString();
@@ -98,7 +100,7 @@ public class Printing3Tests {
 		
 		params.master.descriptor.setChoice(DescriptorKind.nullKind);
 		
-		Printing3Impl.print(params, results);
+		this.printService.print(params, results);
 		
 		StringBuilder sb = new StringBuilder();
 		String resultsDesc = results.append(sb, "", "print() => results").toString();
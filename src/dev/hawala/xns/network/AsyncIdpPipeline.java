@@ -26,49 +26,352 @@ ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package dev.hawala.xns.network;
 
-import java.util.Queue;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 import dev.hawala.xns.level1.IDP;
 
 /**
  * Pipeline of IDP packets.
+ * <p>
+ * The pipeline is a lock-free multi-producer single-consumer queue: any number of
+ * threads may {@code send()} packets, but only one thread at a time may take packets
+ * out with {@code get()} resp. {@code drainTo()}. The consumer parks when the pipeline
+ * is empty and is unparked by the next producer, so a burst of packets costs one
+ * wakeup and can be handled in one go with {@code drainTo()}.
+ * </p>
+ * <p>
+ * The packets are held in a ring buffer with per slot sequence numbers (as described
+ * by D. Vyukov, like the packet queues of the {@code NetHub}), so passing a packet
+ * through the pipeline does not allocate. An unbounded pipeline moves packets to a
+ * locked overflow queue while the ring is full; once a packet went to the overflow
+ * queue, all following packets also go there until the consumer has emptied it,
+ * keeping the order of the packets sent by each producer.
+ * </p>
+ * <p>
+ * The pipeline can optionally be bounded: producers then wait (park) while the pipeline
+ * is full, giving backpressure to the producing side, which is counted in the statistics.
+ * Bounding must only be used where the consumer never waits for a producer of the same
+ * pipeline.
+ * </p>
  * 
  * @author Dr. Hans-Walter Latz / Berlin (2018)
  */
 public class AsyncIdpPipeline implements iIDPSender {
 	
-	private final Queue<IDP> packets = new LinkedList<>();
+	private static final long PRODUCER_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
 	
-	private boolean abort = false;
+	// ring size for unbounded pipelines
+	private static final int DEFAULT_RING_SIZE = 1024;
+	
+	// the ring buffer
+	private final IDP[] slots;
+	private final AtomicLongArray sequences;
+	private final int mask;
+	private final AtomicLong enqueuePos = new AtomicLong();
+	private long dequeuePos = 0; // consumer only
+	
+	// packets not fitting into the ring of an unbounded pipeline
+	private final ArrayDeque<IDP> overflow = new ArrayDeque<>();
+	private volatile boolean overflowing = false;
+	
+	// max. number of packets in the pipeline, 0 = unbounded
+	private final int capacity;
+	
+	private final AtomicInteger size = new AtomicInteger();
+	
+	// the consumer thread if parked while waiting for packets
+	private volatile Thread parkedConsumer = null;
+	
+	private volatile boolean abort = false;
+	
+	// statistics
+	private final LongAdder enqueued = new LongAdder();
+	private final LongAdder producerWaits = new LongAdder();
+	private final LongAdder producerWaitNanos = new LongAdder();
+	private final AtomicInteger highWaterMark = new AtomicInteger();
+	
+	/**
+	 * Create an unbounded pipeline.
+	 */
+	public AsyncIdpPipeline() {
+		this(0);
+	}
+	
+	/**
+	 * Create a pipeline, optionally bounded.
+	 * 
+	 * @param capacity the max. number of packets in the pipeline before producers
+	 * 		must wait, {@code 0} for an unbounded pipeline.
+	 */
+	public AsyncIdpPipeline(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Invalid capacity for AsyncIdpPipeline: " + capacity);
+		}
+		this.capacity = capacity;
+		
+		// a bounded pipeline never holds more than capacity packets, so these always fit into the ring
+		int ringSize = 2;
+		while(ringSize < ((capacity == 0) ? DEFAULT_RING_SIZE : capacity)) { ringSize <<= 1; }
+		this.slots = new IDP[ringSize];
+		this.sequences = new AtomicLongArray(ringSize);
+		for (int i = 0; i < ringSize; i++) {
+			this.sequences.set(i, i);
+		}
+		this.mask = ringSize - 1;
+	}
 
 	@Override
 	public void send(IDP idp) {
-		if (idp == null) { return; }
-		synchronized(this.packets) {
-			if (this.abort) { return; }
-			this.packets.add(idp);
-			this.packets.notifyAll();
+		if (idp == null || this.abort) { return; }
+		
+		int count = this.reserveSlot();
+		if (count < 0) { return; } // aborted while waiting for room
+		if (count > this.highWaterMark.get()) {
+			this.updateHighWaterMark(count);
+		}
+		
+		if (this.overflowing || !this.tryEnqueue(idp)) {
+			synchronized(this.overflow) {
+				this.overflow.add(idp);
+				this.overflowing = true;
+			}
+		}
+		this.enqueued.increment();
+		
+		Thread consumer = this.parkedConsumer;
+		if (consumer != null) {
+			LockSupport.unpark(consumer);
 		}
 	}
 	
-	public IDP get() throws InterruptedException {
-		synchronized(this.packets) {
-			while(this.packets.isEmpty()) {
-				if (this.abort) { throw new InterruptedException(); }
-				this.packets.wait();
+	private int reserveSlot() {
+		if (this.capacity == 0) {
+			return this.size.incrementAndGet();
+		}
+		
+		long waitStart = 0;
+		try {
+			while(true) {
+				int count = this.size.get();
+				if (count < this.capacity) {
+					if (this.size.compareAndSet(count, count + 1)) {
+						return count + 1;
+					}
+					continue;
+				}
+				
+				// pipeline is full: wait until the consumer took some packets
+				if (this.abort) { return -1; }
+				if (waitStart == 0) {
+					waitStart = System.nanoTime();
+					this.producerWaits.increment();
+				}
+				Thread consumer = this.parkedConsumer;
+				if (consumer != null) {
+					LockSupport.unpark(consumer);
+				}
+				LockSupport.parkNanos(this, PRODUCER_WAIT_NANOS);
+			}
+		} finally {
+			if (waitStart != 0) {
+				this.producerWaitNanos.add(System.nanoTime() - waitStart);
+			}
+		}
+	}
+	
+	private void updateHighWaterMark(int count) {
+		int hwm = this.highWaterMark.get();
+		while (count > hwm && !this.highWaterMark.compareAndSet(hwm, count)) {
+			hwm = this.highWaterMark.get();
+		}
+	}
+	
+	/**
+	 * Take the next packet from the pipeline, if one is available
+	 * (consumer thread only).
+	 * 
+	 * @return the next packet or {@code null} if none is currently available.
+	 */
+	public IDP poll() {
+		IDP idp = this.tryDequeue();
+		if (idp == null && this.overflowing) {
+			synchronized(this.overflow) {
+				// overflowed packets may only be taken when the ring is drained, as a producer
+				// may have packets in the ring that were sent before its packets in the overflow
+				if (this.enqueuePos.get() == this.dequeuePos) {
+					idp = this.overflow.poll();
+					if (this.overflow.isEmpty()) {
+						this.overflowing = false;
+					}
+				}
 			}
+		}
+		if (idp != null) {
+			this.size.decrementAndGet();
+		}
+		return idp;
+	}
+	
+	/**
+	 * Wait for the next packet in the pipeline (consumer thread only).
+	 * 
+	 * @return the next packet.
+	 * @throws InterruptedException if the pipeline was aborted.
+	 */
+	public IDP get() throws InterruptedException {
+		while(true) {
 			if (this.abort) { throw new InterruptedException(); }
-			IDP idp = this.packets.remove();
-			return idp;
+			IDP idp = this.poll();
+			if (idp != null) { return idp; }
+			this.park();
+		}
+	}
+	
+	/**
+	 * Wait for packets in the pipeline and transfer all available packets
+	 * to the given collection (consumer thread only).
+	 * 
+	 * @param batch the collection where to add the packets, in pipeline order.
+	 * @param maxPackets the max. number of packets to transfer.
+	 * @return the number of packets transferred, at least 1.
+	 * @throws InterruptedException if the pipeline was aborted.
+	 */
+	public int drainTo(Collection<? super IDP> batch, int maxPackets) throws InterruptedException {
+		batch.add(this.get());
+		int count = 1;
+		IDP idp;
+		while (count < maxPackets && (idp = this.poll()) != null) {
+			batch.add(idp);
+			count++;
+		}
+		return count;
+	}
+	
+	private void park() throws InterruptedException {
+		this.parkedConsumer = Thread.currentThread();
+		try {
+			// re-check after publishing the parked thread, so a concurrent send cannot be missed
+			if (this.size.get() == 0 && !this.abort) {
+				LockSupport.park(this);
+			} else {
+				// a producer has reserved room but not yet stored the packet: wait for it
+				Thread.yield();
+			}
+		} finally {
+			this.parkedConsumer = null;
+		}
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+	}
+	
+	/*
+	 * ring buffer operations
+	 */
+	
+	private boolean tryEnqueue(IDP idp) {
+		long pos = this.enqueuePos.get();
+		while(true) {
+			int idx = (int)(pos & this.mask);
+			long diff = this.sequences.get(idx) - pos;
+			if (diff == 0) {
+				if (this.enqueuePos.compareAndSet(pos, pos + 1)) {
+					this.slots[idx] = idp;
+					this.sequences.set(idx, pos + 1); // publish
+					return true;
+				}
+				pos = this.enqueuePos.get();
+			} else if (diff < 0) {
+				return false; // full
+			} else {
+				pos = this.enqueuePos.get();
+			}
 		}
 	}
 	
+	private IDP tryDequeue() {
+		long pos = this.dequeuePos;
+		int idx = (int)(pos & this.mask);
+		if (this.sequences.get(idx) != pos + 1) {
+			return null; // empty or the producer of the slot did not yet publish the packet
+		}
+		IDP idp = this.slots[idx];
+		this.slots[idx] = null;
+		this.dequeuePos = pos + 1;
+		this.sequences.lazySet(idx, pos + this.mask + 1); // release the slot for producers
+		return idp;
+	}
+	
+	/**
+	 * @return {@code true} if no packets are currently waiting in the pipeline.
+	 */
+	public boolean isEmpty() {
+		return this.size.get() == 0;
+	}
+	
+	/**
+	 * @return the number of packets currently waiting in the pipeline.
+	 */
+	public int size() {
+		return this.size.get();
+	}
+	
+	/**
+	 * @return the max. number of packets in the pipeline, {@code 0} if unbounded.
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+	
+	/**
+	 * @return the number of packets put into the pipeline so far.
+	 */
+	public long getEnqueued() {
+		return this.enqueued.sum();
+	}
+	
+	/**
+	 * @return the number of times a producer had to wait for room in a bounded pipeline.
+	 */
+	public long getProducerWaits() {
+		return this.producerWaits.sum();
+	}
+	
+	/**
+	 * @return the total time in nanoseconds producers waited for room in a bounded pipeline.
+	 */
+	public long getProducerWaitNanos() {
+		return this.producerWaitNanos.sum();
+	}
+	
+	/**
+	 * @return the max. number of packets waiting in the pipeline so far.
+	 */
+	public int getHighWaterMark() {
+		return this.highWaterMark.get();
+	}
+	
 	public void abort() {
-		synchronized(this.packets) {
-			this.abort = true;
-			this.packets.notifyAll();
+		this.abort = true;
+		Thread consumer = this.parkedConsumer;
+		if (consumer != null) {
+			LockSupport.unpark(consumer);
 		}
 	}
+	
+	@Override
+	public String toString() {
+		return String.format(
+				"AsyncIdpPipeline[ size: %d capacity: %d enqueued: %d high-water: %d producer-waits: %d (%d ms) ]",
+				this.size(), this.capacity, this.getEnqueued(), this.getHighWaterMark(),
+				this.getProducerWaits(), TimeUnit.NANOSECONDS.toMillis(this.getProducerWaitNanos()));
+	}
 
 }
@@ -31,6 +31,7 @@ import java.util.Date;
 import java.util.List;
 
 import org.jnetpcap.Pcap;
+import org.jnetpcap.PcapBpfProgram;
 import org.jnetpcap.PcapIf;
 import org.jnetpcap.packet.PcapPacket;
 import org.jnetpcap.packet.PcapPacketHandler;
@@ -83,6 +84,15 @@ public class ExternalNetworkAdapter implements Runnable {
 		int flags = Pcap.MODE_PROMISCUOUS; // capture all packets
 		int timeout = 1; // 10 * 1000;           // 10 seconds in millis
 		this.pcap = Pcap.openLive(this.device.getName(), snaplen, flags, timeout, errbuf);
+		
+		// let the capture driver deliver XNS packets only, instead of skipping the others in the packet handler
+		if (this.pcap != null) {
+			PcapBpfProgram xnsOnly = new PcapBpfProgram();
+			if (this.pcap.compile(xnsOnly, "ether proto 0x0600", 1, 0) != Pcap.OK
+					|| this.pcap.setFilter(xnsOnly) != Pcap.OK) {
+				System.err.printf("Unable to set XNS capture filter, error is %s\n", this.pcap.getErr());
+			}
+		}
 	}
 	
 	/*
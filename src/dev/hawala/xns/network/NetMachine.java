@@ -26,10 +26,12 @@ ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package dev.hawala.xns.network;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.BitSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 import dev.hawala.xns.EndpointAddress;
 import dev.hawala.xns.Log;
@@ -60,6 +62,8 @@ public class NetMachine implements iNetMachine {
 	private static final int CLIENTSOCKET_RANGE_START = 16384; // [0..3000) are well known socket according to Pilot Programmers Manual of Feb/89
 	private static final int CLIENTSOCKET_RANGE_END = 65535;
 	
+	private static final int SOCKET_COUNT = 65536;
+	
 	private static final int CLIENTSOCKET_PEXREQUEST_WAITER = CLIENTSOCKET_RANGE_START - 1; 
 	
 	// construction data
@@ -67,28 +71,88 @@ public class NetMachine implements iNetMachine {
 	private final long machineId;
 	private final String machineName;
 	private final iIDPSender sender;
-	private final boolean enforceChecksums;
+	private final ChecksumPolicy checksumPolicy;
+	
+	// all local sockets currently bound to a handler for ingoing packets, indexed by the socket number
+	// (read without locking when dispatching, modified only while holding the lock on socketsBound)
+	private final AtomicReferenceArray<iIDPReceiver> sockets = new AtomicReferenceArray<>(SOCKET_COUNT);
+	
+	// the sockets currently bound, for finding free client sockets
+	private final BitSet socketsBound = new BitSet(SOCKET_COUNT);
 	
-	// all local sockets currently bound to a handler for ingoing packets
-	private final Map<Integer, iIDPReceiver> sockets = new HashMap<>();
+	// where to start searching for the next free client socket, so socket numbers are
+	// used round-robin (wrapping around) and a socket just unbound is not reused at once
+	private int nextClientSocket = CLIENTSOCKET_RANGE_START;
 	
 	// the one(!) handler for ingoing responses to PEX requests sent by this machine
 	private final PexRequestHandler pexRequestHandler = new PexRequestHandler();
 	
+	// counters for the stages of the ingoing packet handling
+	private final ReceiveCounters counters = new ReceiveCounters();
+	
+	// the workers delivering ingoing packets to the listeners, null if delivered by the receiving thread
+	private final PacketDispatcher dispatcher;
+	
+	// counters and admission/execution of ingoing PEX requests for all PEX servers of this machine
+	private final PexServerCounters pexCounters = new PexServerCounters();
+	private final PexServingPool pexServing = new PexServingPool("NetMachine-pex", this.pexCounters);
+	
+	/**
+	 * Handling of the checksum of ingoing packets.
+	 */
+	public enum ChecksumPolicy {
+		/** checksums are not verified */
+		OFF,
+		/** checksums are verified, packets with a bad checksum are logged and counted but processed */
+		VERIFY,
+		/** checksums are verified, packets with a bad checksum are answered with an error packet but processed */
+		REPORT,
+		/** checksums are verified, packets with a bad checksum are rejected with an error packet and dropped */
+		ENFORCE
+	}
+	
 	/*
 	 * construction
 	 */
 	
-	public NetMachine(long networkId, long machineId, String machineName, iIDPSender sender, boolean enforceChecksums) {
+	/**
+	 * Create a machine delivering ingoing packets to the listeners either in the thread
+	 * calling {@code handlePacket()} or by a pool of dispatcher workers.
+	 * <p>
+	 * With dispatcher workers, the packets for the same socket resp. the same SPP connection
+	 * are always delivered by the same worker in the order received, but independent sockets
+	 * or connections are served in parallel.
+	 * </p>
+	 * 
+	 * @param networkId the network where the machine is located.
+	 * @param machineId the machine-id (MAC address) for the machine.
+	 * @param machineName the symbolic name of the machine.
+	 * @param sender the sender for outgoing packets.
+	 * @param checksumPolicy the handling of checksums of ingoing packets.
+	 * @param dispatchWorkers the number of dispatcher workers, {@code 0} for delivering
+	 * 		packets in the thread calling {@code handlePacket()}.
+	 */
+	public NetMachine(long networkId, long machineId, String machineName, iIDPSender sender, ChecksumPolicy checksumPolicy, int dispatchWorkers) {
 		this.networkId = networkId;
 		this.machineId = machineId;
 		this.machineName = machineName;
 		this.sender = sender;
-		this.enforceChecksums = enforceChecksums;
+		this.checksumPolicy = (checksumPolicy != null) ? checksumPolicy : ChecksumPolicy.OFF;
+		this.dispatcher = (dispatchWorkers > 0)
+				? new PacketDispatcher("NetMachine-dispatch", dispatchWorkers, this::dispatchDecoded)
+				: null;
 		
 		this.clientBindToSocket(CLIENTSOCKET_PEXREQUEST_WAITER, this.pexRequestHandler);
 	}
 	
+	public NetMachine(long networkId, long machineId, String machineName, iIDPSender sender, ChecksumPolicy checksumPolicy) {
+		this(networkId, machineId, machineName, sender, checksumPolicy, 0);
+	}
+	
+	public NetMachine(long networkId, long machineId, String machineName, iIDPSender sender, boolean enforceChecksums) {
+		this(networkId, machineId, machineName, sender, enforceChecksums ? ChecksumPolicy.REPORT : ChecksumPolicy.OFF);
+	}
+	
 	/*
 	 * simple info routines
 	 */
@@ -114,12 +178,16 @@ public class NetMachine implements iNetMachine {
 
 	@Override
 	public boolean clientBindToSocket(int sockNo, iIDPReceiver listener) {
-		synchronized(this.sockets) {
-			if (this.sockets.containsKey(sockNo)) {
+		if (sockNo < 0 || sockNo >= SOCKET_COUNT) {
+			Log.L1.printf(null, "ERROR: clientBindToSocket( sockNo = %d, listener = %s ) => invalid socket number!\n", sockNo, listener);
+			return false;
+		}
+		synchronized(this.socketsBound) {
+			if (this.socketsBound.get(sockNo)) {
 				Log.L1.printf(null, "ERROR: clientBindToSocket( sockNo = %d, listener = %s ) => socket already bound!\n", sockNo, listener);
 				return false;
 			}
-			this.sockets.put(sockNo, listener);
+			this.bind(sockNo, listener);
 			Log.L1.printf(null, "clientBindToSocket( sockNo = %d, listener = %s ): socket bound\n", sockNo, listener);
 			listener.start(new EndpointAddress(this.networkId, this.machineId, sockNo), this.sender);
 			Log.L1.printf(null, "clientBindToSocket( sockNo = %d, listener = %s ): listener started\n", sockNo, listener);
@@ -129,29 +197,47 @@ public class NetMachine implements iNetMachine {
 	
 	@Override
 	public int clientBindToFreeSocket(iIDPReceiver listener) {
-		synchronized(this.sockets) {
-			for (int sockNo = CLIENTSOCKET_RANGE_START; sockNo <= CLIENTSOCKET_RANGE_END; sockNo++) {
-				if (!this.sockets.containsKey(sockNo)) {
-					this.sockets.put(sockNo, listener);
-					Log.L1.printf(null, "clientBindToSocket( listener = %s ): bound to socket %d\n", listener, sockNo);
-					listener.start(new EndpointAddress(this.networkId, this.machineId, sockNo), this.sender);
-					Log.L1.printf(null, "clientBindToSocket( listener = %s ): listener started\n", listener);
-					return sockNo;
-				}
+		synchronized(this.socketsBound) {
+			int sockNo = this.findFreeClientSocket();
+			if (sockNo >= 0) {
+				this.bind(sockNo, listener);
+				this.nextClientSocket = (sockNo < CLIENTSOCKET_RANGE_END) ? sockNo + 1 : CLIENTSOCKET_RANGE_START;
+				Log.L1.printf(null, "clientBindToSocket( listener = %s ): bound to socket %d\n", listener, sockNo);
+				listener.start(new EndpointAddress(this.networkId, this.machineId, sockNo), this.sender);
+				Log.L1.printf(null, "clientBindToSocket( listener = %s ): listener started\n", listener);
+				return sockNo;
 			}
 		}
 		Log.L1.printf(null, "ERROR: clientBindToSocket( listener = %s ): no free socket to bind to\n", listener);
 		return -1;
 	}
 	
+	// (lock on socketsBound must be held)
+	private int findFreeClientSocket() {
+		int sockNo = this.socketsBound.nextClearBit(this.nextClientSocket);
+		if (sockNo <= CLIENTSOCKET_RANGE_END) {
+			return sockNo;
+		}
+		// wrap around to the start of the client range
+		sockNo = this.socketsBound.nextClearBit(CLIENTSOCKET_RANGE_START);
+		return (sockNo < this.nextClientSocket) ? sockNo : -1;
+	}
+	
+	// (lock on socketsBound must be held)
+	private void bind(int sockNo, iIDPReceiver listener) {
+		this.sockets.set(sockNo, listener);
+		this.socketsBound.set(sockNo);
+	}
+	
 	@Override
 	public boolean stopListening(int sockNo) {
-		synchronized(this.sockets) {
-			if (!this.sockets.containsKey(sockNo)) {
+		synchronized(this.socketsBound) {
+			if (sockNo < 0 || sockNo >= SOCKET_COUNT || !this.socketsBound.get(sockNo)) {
 				Log.L1.printf(null, "ERROR: stopListening( sockNo = %d ): no listener bound to socket\n", sockNo);
 				return false;
 			}
-			iIDPReceiver receiver = this.sockets.remove(sockNo);
+			iIDPReceiver receiver = this.sockets.getAndSet(sockNo, null);
+			this.socketsBound.clear(sockNo);
 			Log.L1.printf(null, "stopListening( sockNo = %d ): unbound socket\n", sockNo);
 			if (receiver != null) {
 				receiver.stopped();
@@ -162,12 +248,17 @@ public class NetMachine implements iNetMachine {
 	}
 	
 	public void shutdown() {
-		synchronized(this.sockets) {
-			List<Integer> sockets = new ArrayList<>(this.sockets.keySet());
-			for (Integer sockNo : sockets) {
-				this.stopListening(sockNo.intValue());
+		synchronized(this.socketsBound) {
+			int sockNo = this.socketsBound.nextSetBit(0);
+			while (sockNo >= 0) {
+				this.stopListening(sockNo);
+				sockNo = this.socketsBound.nextSetBit(sockNo + 1);
 			}
 		}
+		if (this.dispatcher != null) {
+			this.dispatcher.shutdown();
+		}
+		this.pexServing.shutdown();
 	}
 	
 	public iIDPSender getIdpSender() {
@@ -179,73 +270,232 @@ public class NetMachine implements iNetMachine {
 	 */
 	
 	private iIDPReceiver getListener(int sockNo) {
-		synchronized(this.sockets) {
-			return this.sockets.get(sockNo);
-		}
+		return (sockNo >= 0 && sockNo < SOCKET_COUNT) ? this.sockets.get(sockNo) : null;
 	}
 
+	/**
+	 * Counters for the stages of the ingoing packet handling in
+	 * {@code handlePacket()}.
+	 */
+	public static class ReceiveCounters {
+		
+		private final LongAdder received = new LongAdder();
+		
+		private final LongAdder checksumNone = new LongAdder();
+		private final LongAdder checksumOk = new LongAdder();
+		private final LongAdder checksumBad = new LongAdder();
+		
+		private final LongAdder decoded = new LongAdder();
+		private final LongAdder errorPackets = new LongAdder();
+		private final LongAdder malformed = new LongAdder();
+		
+		private final LongAdder dispatched = new LongAdder();
+		private final LongAdder noListener = new LongAdder();
+		
+		/** @return the count of packets passed to {@code handlePacket()} */
+		public long getReceived() { return this.received.sum(); }
+		
+		/** @return the count of packets not checked for the checksum (no checksum or policy OFF) */
+		public long getChecksumNone() { return this.checksumNone.sum(); }
+		
+		/** @return the count of packets with a correct checksum */
+		public long getChecksumOk() { return this.checksumOk.sum(); }
+		
+		/** @return the count of packets with a bad checksum */
+		public long getChecksumBad() { return this.checksumBad.sum(); }
+		
+		/** @return the count of packets passing the decode stage */
+		public long getDecoded() { return this.decoded.sum(); }
+		
+		/** @return the count of decoded ERROR packets */
+		public long getErrorPackets() { return this.errorPackets.sum(); }
+		
+		/** @return the count of packets dropped as not decodable */
+		public long getMalformed() { return this.malformed.sum(); }
+		
+		/** @return the count of packets delivered to a listener */
+		public long getDispatched() { return this.dispatched.sum(); }
+		
+		/** @return the count of packets for a socket without listener */
+		public long getNoListener() { return this.noListener.sum(); }
+		
+		@Override
+		public String toString() {
+			return String.format(
+					"received: %d, checksum none/ok/bad: %d/%d/%d, decoded: %d (errors: %d, malformed: %d), dispatched: %d, no listener: %d",
+					this.getReceived(),
+					this.getChecksumNone(), this.getChecksumOk(), this.getChecksumBad(),
+					this.getDecoded(), this.getErrorPackets(), this.getMalformed(),
+					this.getDispatched(), this.getNoListener());
+		}
+	}
+	
+	/**
+	 * @return the counters for the ingoing packet handling of this machine.
+	 */
+	public ReceiveCounters getReceiveCounters() {
+		return this.counters;
+	}
+	
+	/**
+	 * Process an ingoing packet in 3 stages: verify the checksum as specified by
+	 * the checksum policy, decode the packet and dispatch it to the listener
+	 * registered for the target socket.
+	 * <p>
+	 * If this machine has dispatcher workers, the last stage is done asynchronously
+	 * by the worker responsible for the target socket resp. SPP connection.
+	 * </p>
+	 * <p>
+	 * The ownership of the packet passes to the listener receiving the packet;
+	 * packets dropped in one of the stages are released here.
+	 * </p>
+	 * 
+	 * @param idp the ingoing packet.
+	 */
 	public void handlePacket(IDP idp) {
-		if (idp.getPacketType() == PacketType.SPP) {
-			SPP spp = new SPP(idp);
-			Log.L1.printf(idp, "handlePacket( %s )\n", spp.toString());
-		} else {
-			Log.L1.printf(idp, "handlePacket( %s )\n", idp.toString());
+		this.counters.received.increment();
+		
+		if (!this.checkChecksum(idp)) {
+			idp.release();
+			return;
 		}
 		
-		// temp: verify the checksum to test the algorithm
-		int packetChecksum = idp.getChecksum();
-		if (packetChecksum != IDP.NO_CHECKSUM) {
-			int tmpCkSum = idp.computeChecksum();
-			if (tmpCkSum != packetChecksum) {
-				Log.E.printf(idp, "** checksums: orig = 0x%04X - recomputed = 0x%04X\n%s\n",
-						packetChecksum, tmpCkSum, idp.packet.payloadToString());
-//			} else {
-//				Log.I.printf(idp, "++ checksum OK (orig == recomputed = 0x%04X)\n", packetChecksum);
+		Error err;
+		try {
+			err = this.decode(idp);
+		} catch (IllegalArgumentException iae) {
+			this.counters.malformed.increment();
+			Log.E.printf(idp, "** handlePacket(): dropping malformed packet: %s\n", iae.getMessage());
+			idp.release();
+			return;
+		}
+		
+		if (this.dispatcher != null) {
+			this.dispatcher.submit(shardKey(idp, err), idp);
+		} else {
+			this.dispatch(idp, err);
+		}
+	}
+	
+	/*
+	 * the key for the packet sequence to be delivered in order by the same dispatcher worker:
+	 * the target socket, qualified with the remote end for SPP packets (so the connection requests
+	 * from different clients to a SPP server socket are independent)
+	 */
+	private static int shardKey(IDP idp, Error err) {
+		if (err != null) {
+			IDP offending = err.getOffendingIdpPaket();
+			if (offending.getPacketType() == PacketType.SPP) {
+				return connectionKey(offending.getSrcSocket(), offending.getDstHost(), offending.getDstSocket());
 			}
+			return offending.getSrcSocket();
+		}
+		if (idp.getPacketType() == PacketType.SPP) {
+			return connectionKey(idp.getDstSocket(), idp.getSrcHost(), idp.getSrcSocket());
+		}
+		return idp.getDstSocket();
+	}
+	
+	private static int connectionKey(int localSocket, long remoteHost, int remoteSocket) {
+		long key = (remoteHost * 31 + remoteSocket) * 31 + localSocket;
+		return (int)(key ^ (key >>> 32));
+	}
+	
+	/*
+	 * stage 3 for dispatcher workers: the error packet view is rebuilt in the worker
+	 */
+	private void dispatchDecoded(IDP idp) {
+		Error err = (idp.getPacketType() == PacketType.ERROR) ? new Error(idp) : null;
+		this.dispatch(idp, err);
+	}
+	
+	/*
+	 * stage 1: verify the checksum once, returning if the packet is to be processed further
+	 */
+	private boolean checkChecksum(IDP idp) {
+		int packetChecksum = idp.getChecksum();
+		if (this.checksumPolicy == ChecksumPolicy.OFF || packetChecksum == IDP.NO_CHECKSUM) {
+			this.counters.checksumNone.increment();
+			return true;
+		}
+		
+		int localChecksum = idp.computeChecksum();
+		if (localChecksum == packetChecksum) {
+			this.counters.checksumOk.increment();
+			return true;
 		}
-		// end temp
 		
-		int targetSocket = idp.getDstSocket();
+		this.counters.checksumBad.increment();
+		if (this.checksumPolicy == ChecksumPolicy.VERIFY) {
+			Log.E.printf(idp, "** handlePacket(): checksum error (packet-checksum: 0x%04X, locally-recomputed: 0x%04X)\n",
+					packetChecksum, localChecksum);
+			return true;
+		}
+		
+		boolean dropping = (this.checksumPolicy == ChecksumPolicy.ENFORCE);
+		Log.L1.printf(idp, "** handlePacket(): checksum error (packet-checksum: 0x%04X, locally-recomputed: 0x%04X)%s\n",
+				packetChecksum, localChecksum, dropping ? ", dropping packet" : "");
+		// avoid error ping-pong or replying errors to broadcasts
+		if (idp.getPacketType() != PacketType.ERROR && idp.getDstHost() != IDP.BROADCAST_ADDR) {
+			this.sender.send(new Error(ErrorCode.BAD_CHECKSUM, idp.getDstSocket(), idp).idp);
+		}
+		return !dropping;
+	}
+	
+	/*
+	 * stage 2: decode the packet, returning the error packet view if the packet is an ERROR packet
+	 */
+	private Error decode(IDP idp) {
+		PacketType packetType = idp.getPacketType();
+		Error err = (packetType == PacketType.ERROR) ? new Error(idp) : null;
+		this.counters.decoded.increment();
 		
-		Error err = (idp.getPacketType() == PacketType.ERROR) ? new Error(idp) : null;
 		if (err != null) {
-			IDP errPacket = err.getOffendingIdpPaket();
-			String errData = (errPacket.getPacketType() == PacketType.SPP)
-					? (new SPP(errPacket)).toString()
-					: errPacket.toString();
-			Log.E.printf(idp,
-					"handlePacket(): packet type is ERROR(%s), offending packet: %s\n",
-					err.getErrorCode(),
-					errData);
-			targetSocket = err.getOffendingIdpPaket().getSrcSocket();
+			this.counters.errorPackets.increment();
+			if (Log.E.isEnabled()) {
+				IDP errPacket = err.getOffendingIdpPaket();
+				String errData = (errPacket.getPacketType() == PacketType.SPP)
+						? (new SPP(errPacket)).toString()
+						: errPacket.toString();
+				Log.E.printf(idp,
+						"handlePacket(): packet type is ERROR(%s), offending packet: %s\n",
+						err.getErrorCode(),
+						errData);
+			}
+		} else if (Log.L1.isEnabled()) {
+			String data = (packetType == PacketType.SPP) ? SPP.of(idp).toString() : idp.toString();
+			Log.L1.printf(idp, "handlePacket( %s )\n", data);
 		}
 		
+		return err;
+	}
+	
+	/*
+	 * stage 3: deliver the packet to the listener for the target socket
+	 */
+	private void dispatch(IDP idp, Error err) {
+		int targetSocket = (err != null) ? err.getOffendingIdpPaket().getSrcSocket() : idp.getDstSocket();
+		
 		iIDPReceiver listener = this.getListener(targetSocket);
 		if (listener == null) {
+			this.counters.noListener.increment();
 			Log.L1.printf(idp, "** handlePacket(): no listener registered for target socket\n");
 			// avoid error ping-pong or replying errors to broadcasts
 			if (err == null && idp.getDstHost() != IDP.BROADCAST_ADDR) {
 				Log.L1.printf(idp, "** handlePacket(): sending back error packet\n");
 				this.sender.send(new Error(ErrorCode.NO_SOCKET, idp.getDstSocket(), idp).idp);
 			}
+			idp.release();
 			return;
 		}
 		
-		int ckSum = idp.getChecksum();
-		if (this.enforceChecksums && ckSum != IDP.NO_CHECKSUM) {
-			int localCkSum = idp.computeChecksum();
-			if (localCkSum != ckSum) {
-				Log.L1.printf(idp, "** handlePacket(): checkum error (packet-checksum: 0x%04X, locally-recomputed: 0x%04X\n",
-						ckSum, localCkSum);
-				this.sender.send(new Error(ErrorCode.BAD_CHECKSUM, idp.getDstSocket(), idp).idp);
-			}
-		}
-		
+		this.counters.dispatched.increment();
+		boolean logging = Log.L1.isEnabled();
 		if (err != null) {
-			Log.L1.printf(idp, "handlePacket(): invoking listener.acceptError()\n");
+			if (logging) { Log.L1.printf(idp, "handlePacket(): invoking listener.acceptError()\n"); }
 			listener.acceptError(err);
 		} else {
-			Log.L1.printf(idp, "handlePacket(): invoking listener.accept()\n");
+			if (logging) { Log.L1.printf(idp, "handlePacket(): invoking listener.accept()\n"); }
 			listener.accept(idp);
 		}
 	}
@@ -280,20 +530,86 @@ public class NetMachine implements iNetMachine {
 	 * PEX request servicing
 	 */
 	
+	/**
+	 * Counters for the ingoing requests to the PEX servers of a machine.
+	 */
+	public static class PexServerCounters {
+		
+		// (updated by the PexServingPool)
+		final LongAdder accepted = new LongAdder();
+		final LongAdder rateLimited = new LongAdder();
+		final LongAdder queueFull = new LongAdder();
+		final LongAdder duplicates = new LongAdder();
+		
+		/** @return the count of requests passed to the responders */
+		public long getAccepted() { return this.accepted.sum(); }
+		
+		/** @return the count of requests dropped as the requesting host exceeded its rate limit */
+		public long getRateLimited() { return this.rateLimited.sum(); }
+		
+		/** @return the count of requests dropped as the queue for the workers was full */
+		public long getQueueFull() { return this.queueFull.sum(); }
+		
+		/** @return the count of requests dropped for rate limit or queue full */
+		public long getDropped() { return this.getRateLimited() + this.getQueueFull(); }
+		
+		/** @return the count of retransmitted requests ignored as the original request is still in progress */
+		public long getDuplicates() { return this.duplicates.sum(); }
+		
+		@Override
+		public String toString() {
+			return String.format(
+					"accepted: %d, dropped: %d (rate limited: %d, queue full: %d), duplicates: %d",
+					this.getAccepted(),
+					this.getDropped(), this.getRateLimited(), this.getQueueFull(),
+					this.getDuplicates());
+		}
+	}
+	
+	/**
+	 * @return the counters for the ingoing PEX requests of this machine.
+	 */
+	public PexServerCounters getPexServerCounters() {
+		return this.pexCounters;
+	}
+	
+	/**
+	 * Configure the processing of ingoing requests for the PEX servers of this machine.
+	 * <p>
+	 * By default, requests are processed without rate limit in the thread delivering
+	 * the request packet. With workers, a slow responder (e.g. a clearinghouse lookup)
+	 * does not delay the other packets for this machine.
+	 * </p>
+	 * 
+	 * @param workers the number of worker threads processing the requests,
+	 * 		{@code 0} for processing in the thread delivering the packet.
+	 * @param queueCapacity the max. number of requests waiting for a worker, further
+	 * 		requests are dropped.
+	 * @param requestsPerSecond the sustained request rate allowed per requesting host,
+	 * 		{@code 0} for no limit.
+	 * @param burst the number of requests a host may send at once before being limited
+	 * 		to {@code requestsPerSecond}.
+	 */
+	public void configPexServing(int workers, int queueCapacity, int requestsPerSecond, int burst) {
+		this.pexServing.configure(workers, queueCapacity, requestsPerSecond, burst);
+	}
+	
 	private static class PexServer implements iIDPReceiver {
 		private final iPexResponder responder;
 		private final iWakeupRequestor wakeupRequestor;
+		private final PexServingPool pool;
 		private iIDPSender realSender;
 		private EndpointAddress localEndpoint;
 		
-		public PexServer(iPexResponder responder, iWakeupRequestor wakeupRequestor) {
+		public PexServer(iPexResponder responder, iWakeupRequestor wakeupRequestor, PexServingPool pool) {
 			this.responder = responder;
 			this.wakeupRequestor = wakeupRequestor;
+			this.pool = pool;
 		}
 		
 		@Override
 		public synchronized void start(EndpointAddress localEndpoint, iIDPSender sender) {
-			Log.L1.printf(null, "PexServer.start( localEndpoint = %s , sender = ... )\n", localEndpoint.toString());
+			Log.L1.printf(null, "PexServer.start( localEndpoint = %s , sender = ... )\n", localEndpoint);
 			this.localEndpoint = localEndpoint;
 			this.realSender = sender;
 		}
@@ -308,21 +624,36 @@ public class NetMachine implements iNetMachine {
 			iIDPSender sender = this.getSender();
 			if (sender == null) {
 				 // stopped
-				Log.L1.printf(idp, "PexServer.accept[localEndpoint = %s](): stopped\n", localEndpoint.toString());
+				Log.L1.printf(idp, "PexServer.accept[localEndpoint = %s](): stopped\n", localEndpoint);
+				idp.release();
 				return;
 			}
 			if (idp.getPacketType() != PacketType.PEX) {
 				Error err = new Error(ErrorCode.INVALID_PACKET_TYPE, 0, idp);
-				Log.L1.printf(idp, "PexServer.accept[localEndpoint = %s](): not PEX, sending back error\n", localEndpoint.toString());
+				Log.L1.printf(idp, "PexServer.accept[localEndpoint = %s](): not PEX, sending back error\n", localEndpoint);
 				sender.send(err.idp);
+				idp.release(); // the error holds a copy of the offending packet
 				return;
 			}
 			
-			// let the packet be processed
+			// let the packet be processed, unless already in progress or the requester is too demanding
 			PEX pex = new PEX(idp);
 			byte[] payload = new byte[pex.getPayloadLength()];
 			pex.rdBytes(0, payload.length, payload, 0, payload.length);
-			Log.L1.printf(idp, "PexServer.accept[localEndpoint = %s](): invoking responder.handlePacket()\n", localEndpoint.toString());
+			boolean accepted = this.pool.submit(
+					idp.getSrcHost(),
+					idp.getSrcSocket(),
+					pex.getIdentification(),
+					idp,
+					() -> this.process(pex, payload, sender));
+			if (!accepted) {
+				Log.L1.printf(idp, "PexServer.accept[localEndpoint = %s](): duplicate or rejected request, ignored\n", localEndpoint);
+				idp.release();
+			}
+		}
+		
+		private void process(PEX pex, byte[] payload, iIDPSender sender) {
+			Log.L1.printf(pex.idp, "PexServer.process[localEndpoint = %s](): invoking responder.handlePacket()\n", localEndpoint);
 			this.responder.handlePacket(
 					pex.idp.getSrcHost(),
 					pex.getClientType(),
@@ -343,26 +674,26 @@ public class NetMachine implements iNetMachine {
 			
 			// if we have a wakeup service => enlist the wakeup
 			if (this.wakeupRequestor != null) {
-				this.wakeupRequestor.wakeUp(idp.getSrcHost());
+				this.wakeupRequestor.wakeUp(pex.idp.getSrcHost());
 			}
 		}
 		
 		@Override
 		public void acceptError(Error err) {
 			// ignore errors sent back due to responses we sent (avoid error ping-pong...)
-			Log.L1.printf(err, "PexServer.acceptError[localEndpoint = %s](): ignoring error packet\n", localEndpoint.toString());
+			Log.L1.printf(err, "PexServer.acceptError[localEndpoint = %s](): ignoring error packet\n", localEndpoint);
 		}
 		
 		@Override
 		public synchronized void stopped() {
-			Log.L1.printf(null, "PexServer.stopped[localEndpoint = %s]()\n", localEndpoint.toString());
+			Log.L1.printf(null, "PexServer.stopped[localEndpoint = %s]()\n", localEndpoint);
 			this.realSender = null;
 		}
 	}
 
 	@Override
 	public iPexSocket pexListen(int localPort, iPexResponder responder, iWakeupRequestor wakeUpRequestor) throws XnsException {
-		PexServer server = new PexServer(responder, wakeUpRequestor);
+		PexServer server = new PexServer(responder, wakeUpRequestor, this.pexServing);
 		if (!this.clientBindToSocket(localPort, server)) {
 			throw new XnsException(XnsException.ExceptionType.SocketAlreadyInUse);
 		}
@@ -398,9 +729,11 @@ public class NetMachine implements iNetMachine {
 		private final int retryCount;
 		private final boolean raiseExceptionOnTimeout;
 		
-		private Payload result;
+		// completed with the response (PEX or Error) or with null on timeout
+		private final CompletableFuture<Payload> result = new CompletableFuture<>();
 		
-		private long nextTimeout;
+		// the next retransmission or timeout event, only modified by the timer wheel thread
+		private volatile TimerWheel.Timeout timeout;
 		private int retries = 0;
 		
 		private PexResponseWaiter(
@@ -414,164 +747,121 @@ public class NetMachine implements iNetMachine {
 			this.retransmitIntervalMs = retransmitIntervalMs;
 			this.retryCount = retryCount;
 			this.raiseExceptionOnTimeout = raiseExceptionOnTimeout;
-			
-			this.nextTimeout = System.currentTimeMillis() + this.retransmitIntervalMs;
-		}
-		
-		public long getTimeout() {
-			return this.nextTimeout;
 		}
 		
 		public boolean canRetry() {
-			if (this.retries++ < this.retryCount) {
-				this.nextTimeout = System.currentTimeMillis() + this.retransmitIntervalMs;
-				return true;
-			}
-			return false;
+			return (this.retries++ < this.retryCount);
 		}
 		
-		public Payload getResult() {
-			return result;
-		}
-
-		public void setResult(Payload result) {
-			this.result = result;
-		}
-
-		@Override
-		public int hashCode() {
-			return (int)(this.identification & 0xFFFFFFFFL);
-		}
-
-		@Override
-		public boolean equals(Object obj) {
-			if (this == obj) { return true; }
-			if (obj == null) { return false; }
-			if (this.getClass() != obj.getClass()) { return false; }
-			PexResponseWaiter other = (PexResponseWaiter) obj;
-			return (this.identification == other.identification);
+		public void complete(Payload response) {
+			TimerWheel.Timeout t = this.timeout;
+			if (t != null) {
+				t.cancel();
+			}
+			this.result.complete(response);
 		}
 	}
 	
-	private static class PexRequestHandler implements iIDPReceiver, Runnable {
+	private static class PexRequestHandler implements iIDPReceiver {
 		
-		private final List<PexResponseWaiter> pendingRequests = new ArrayList<>();
+		private static final long TIMER_TICK_MS = 10;
+		private static final int TIMER_WHEEL_SIZE = 512;
 		
-		private final List<PexResponseWaiter> doneRequests = new ArrayList<>();
+		// the requests waiting for a response, keyed by the PEX identification
+		private final ConcurrentHashMap<Long, PexResponseWaiter> pendingRequests = new ConcurrentHashMap<>();
 		
-		private final Thread timeouterThread = new Thread(this);
+		// retransmission and timeout handling, created when started
+		private volatile TimerWheel timer = null;
 		
 		private EndpointAddress localEndpoint = null;
-		private iIDPSender sender = null;
+		private volatile iIDPSender sender = null;
 		
 		private long retransmitIntervalMs = 1000;
 		private int retryCount = 2;
 		private boolean raiseExceptionOnTimeout = false;;
 		
-		// retry and timeout handling thread
-		@Override
-		public void run() {
-			synchronized(this) {
-				List<PexResponseWaiter> timeouts = new ArrayList<>();
-				while(true) {
-					try {
-						this.wait(100); // ~10 wake-ups per second 
-					} catch (InterruptedException e) {
-						return;
-					}
-					
-					// check if we are still online
-					if (this.sender == null) {
-						return; // no, we have been stopped
-					}
-					
-					// check for timeouts and possible retries
-					long now = System.currentTimeMillis();
-					timeouts.clear();
-					for(PexResponseWaiter prw : this.pendingRequests) {
-						if (now >= prw.getTimeout()) {
-							if (prw.canRetry()) {
-								this.sender.send(prw.requestPacket);
-							} else {
-								timeouts.add(prw);
-							}
-						}
-					}
-					
-					// move real timeouts to done
-					boolean notify = false;
-					for (PexResponseWaiter prw : timeouts) {
-						this.pendingRequests.remove(prw);
-						this.doneRequests.add(prw);
-						notify = true;
-					}
-					if (notify) {
-						this.notifyAll();
-					}
-				}
+		// retry and timeout handling, invoked in the timer wheel thread
+		private void handleTimeout(PexResponseWaiter prw) {
+			if (prw.result.isDone()) {
+				return; // response came in the meantime
+			}
+			iIDPSender currSender = this.sender;
+			if (currSender != null && prw.canRetry()) {
+				currSender.send(prw.requestPacket);
+				this.scheduleTimeout(prw);
+			} else {
+				this.pendingRequests.remove(prw.identification, prw);
+				prw.complete(null);
+			}
+		}
+		
+		private void scheduleTimeout(PexResponseWaiter prw) {
+			TimerWheel currTimer = this.timer;
+			if (currTimer != null) {
+				prw.timeout = currTimer.schedule(() -> this.handleTimeout(prw), prw.retransmitIntervalMs);
 			}
 		}
 
 		@Override
 		public void start(EndpointAddress localEndpoint, iIDPSender sender) {
 			synchronized(this) {
+				this.timer = new TimerWheel("PexRequestHandler-timer", TIMER_TICK_MS, TIMER_WHEEL_SIZE);
 				this.localEndpoint = localEndpoint;
 				this.sender = sender;
 				this.notifyAll();
 			}
-			this.timeouterThread.start();
 		}
 
 		@Override
 		public void accept(IDP idp) {
 			Log.L1.printf(idp, "PexRequestHandler.accept()\n");
-			synchronized(this) {
-				if (idp.getPacketType() == PacketType.PEX) {
-					PEX pex = new PEX(idp);
-					PexResponseWaiter prw = find(this.pendingRequests, pex.getIdentification());
-					if (prw != null) {
-						Log.L1.printf(idp, "PexRequestHandler.accept(): matching PexResponseWaiter found, moving request to done\n");
-						this.pendingRequests.remove(prw);
-						prw.setResult(pex);
-						this.doneRequests.add(prw);
-						this.notifyAll();
-					} else {
-						Log.L1.printf(idp, "PexRequestHandler.accept(): no PexResponseWaiter found for ingone packet, ignored\n");
-					}
+			if (idp.getPacketType() == PacketType.PEX) {
+				PEX pex = new PEX(idp);
+				PexResponseWaiter prw = this.pendingRequests.remove(pex.getIdentification());
+				if (prw != null) {
+					Log.L1.printf(idp, "PexRequestHandler.accept(): matching PexResponseWaiter found, completing request\n");
+					prw.complete(pex);
 				} else {
-					Log.L1.printf(idp, "PexRequestHandler.accept(): ingone packet not PEX, ignored\n");
+					Log.L1.printf(idp, "PexRequestHandler.accept(): no PexResponseWaiter found for ingone packet, ignored\n");
 				}
+			} else {
+				Log.L1.printf(idp, "PexRequestHandler.accept(): ingone packet not PEX, ignored\n");
 			}
 		}
 
 		@Override
 		public void acceptError(Error err) {
 			Log.L1.printf(err, "PexRequestHandler.acceptError()\n");
-			synchronized(this) {
-				IDP idp = err.getOffendingIdpPaket();
-				if (idp.getPacketType() == PacketType.PEX) {
-					PEX pex = new PEX(idp);
-					PexResponseWaiter prw = find(this.pendingRequests, pex.getIdentification());
-					if (prw != null) {
-						Log.L1.printf(err, "PexRequestHandler.acceptError(): matching PexResponseWaiter found, moving request to done\n");
-						this.pendingRequests.remove(prw);
-						prw.setResult(err);
-						this.doneRequests.add(prw);
-						this.notifyAll();
-					} else {
-						Log.L1.printf(err, "PexRequestHandler.acceptError(): no PexResponseWaiter found for offending packet, ignored\n");
-					}
+			IDP idp = err.getOffendingIdpPaket();
+			if (idp.getPacketType() == PacketType.PEX) {
+				PEX pex = new PEX(idp);
+				PexResponseWaiter prw = this.pendingRequests.remove(pex.getIdentification());
+				if (prw != null) {
+					Log.L1.printf(err, "PexRequestHandler.acceptError(): matching PexResponseWaiter found, completing request\n");
+					prw.complete(err);
 				} else {
-					Log.L1.printf(err, "PexRequestHandler.acceptError(): offending packet not PEX, ignored\n");
+					Log.L1.printf(err, "PexRequestHandler.acceptError(): no PexResponseWaiter found for offending packet, ignored\n");
 				}
+			} else {
+				Log.L1.printf(err, "PexRequestHandler.acceptError(): offending packet not PEX, ignored\n");
 			}
 		}
 
 		@Override
 		public void stopped() {
+			TimerWheel oldTimer;
 			synchronized(this) {
 				this.sender = null;
-				this.doneRequests.addAll(this.pendingRequests);
+				oldTimer = this.timer;
+				this.timer = null;
+			}
+			if (oldTimer != null) {
+				oldTimer.stop();
+			}
+			// let all requests still waiting time out
+			for (PexResponseWaiter prw : this.pendingRequests.values()) {
+				this.pendingRequests.remove(prw.identification, prw);
+				prw.complete(null);
 			}
 		}
 		
@@ -584,6 +874,8 @@ public class NetMachine implements iNetMachine {
 		}
 		
 		public Payload sendAndwaitForResponse(PEX pex) throws XnsException {
+			PexResponseWaiter prw;
+			iIDPSender currSender;
 			synchronized(this) {
 				// make sure we can send the pex request
 				if (this.localEndpoint != null && this.sender == null) {
@@ -605,42 +897,40 @@ public class NetMachine implements iNetMachine {
 					throw new XnsException(XnsException.ExceptionType.Stopped);
 				}
 				
-				// register the request as pending and send the request packet
-				PexResponseWaiter prw = new PexResponseWaiter(
+				prw = new PexResponseWaiter(
 						pex.idp.withSource(this.localEndpoint),
 						pex.getIdentification(),
 						this.retransmitIntervalMs,
 						this.retryCount,
 						this.raiseExceptionOnTimeout);
-				this.pendingRequests.add(prw);
-				Log.L1.printf(pex, "PexRequestHandler.sendAndwaitForResponse(): created PexResponseWaiter for client-identification 0x%08X\n", pex.getIdentification());
-				this.sender.send(prw.requestPacket);
-				
-				// wait for the request having some outcome and signal the result 
-				while(!this.doneRequests.contains(prw)) {
-					try {
-						this.wait();
-					} catch (InterruptedException e) {
-						break;
-					}
-				}
-				Payload result = prw.getResult();
-				Log.L1.printf(pex, "PexRequestHandler.sendAndwaitForResponse(): proceeding with result:: %s\n", result);
-				if (result == null && prw.raiseExceptionOnTimeout) {
-					throw new XnsException(XnsException.ExceptionType.TransmissionTimeout);
-				}
-				return result;
+				currSender = this.sender;
 			}
-		}
-		
-		// must be called with synchronized access to the list
-		private static PexResponseWaiter find(List<PexResponseWaiter> list, long id) {
-			for (PexResponseWaiter prw : list) {
-				if (prw.identification == id) {
-					return prw;
-				}
+			
+			// register the request as pending and send the request packet
+			this.pendingRequests.put(prw.identification, prw);
+			Log.L1.printf(pex, "PexRequestHandler.sendAndwaitForResponse(): created PexResponseWaiter for client-identification 0x%08X\n", pex.getIdentification());
+			this.scheduleTimeout(prw);
+			currSender.send(prw.requestPacket);
+			if (this.sender == null) {
+				// stopped while registering, so possibly missed by stopped()
+				this.pendingRequests.remove(prw.identification, prw);
+				prw.complete(null);
+			}
+			
+			// wait for the request having some outcome and signal the result 
+			Payload result;
+			try {
+				result = prw.result.get();
+			} catch (InterruptedException | ExecutionException e) {
+				this.pendingRequests.remove(prw.identification, prw);
+				prw.complete(null);
+				result = null;
 			}
-			return null;
+			Log.L1.printf(pex, "PexRequestHandler.sendAndwaitForResponse(): proceeding with result:: %s\n", result);
+			if (result == null && prw.raiseExceptionOnTimeout) {
+				throw new XnsException(XnsException.ExceptionType.TransmissionTimeout);
+			}
+			return result;
 		}
 	}
 
@@ -0,0 +1,401 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.xns.network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.UnresolvedAddressException;
+import java.util.concurrent.atomic.LongAdder;
+
+import dev.hawala.xns.Log;
+
+/**
+ * Connection to the {@code NetHub} through a non-blocking TCP socket channel,
+ * with each frame preceded by its length (2 bytes big endian), surviving
+ * outages of the hub.
+ * <p>
+ * The connection is (re-)established by the thread calling {@code receive()},
+ * retrying with an exponential backoff as long as the hub is not reachable.
+ * The {@code hello} frame given at construction time (e.g. the subscription
+ * for the relevant ethertypes) is sent first on each new connection.
+ * </p>
+ * <p>
+ * Frames sent while the hub is not reachable are queued in a bounded buffer
+ * and transmitted after reconnecting; frames not fitting into the buffer are
+ * dropped (the higher level protocols will retransmit if necessary). So
+ * {@code send()} and {@code flush()} never fail for a connection problem and
+ * {@code receive()} fails only after {@code close()}.
+ * </p>
+ * <p>
+ * Received bytes are read into a direct buffer, from where each frame is copied
+ * once into the buffer of the caller; only the bytes of an incomplete frame at
+ * the end of the buffer are moved before reading the next bytes.
+ * </p>
+ * 
+ * @author Dodo contributors
+ */
+public class NioHubLink implements iHubLink {
+	
+	private static final int RECV_BUFFER_SIZE = 65536;
+	private static final int DEFAULT_SEND_BUFFER_SIZE = 262144; // 256 KByte (about 400 max. sized XNS frames)
+	
+	private static final long CONNECT_TIMEOUT = 5000; // 5 seconds
+	private static final long BACKOFF_INITIAL = 100; // 100 ms
+	private static final long BACKOFF_MAX = 8000; // 8 seconds
+	private static final long SELECT_TICK = 1000; // check for close() at least each second
+	
+	private final InetSocketAddress hubAddress;
+	private final byte[] hello;
+	
+	// receiving side (used only by the thread calling receive()), kept in read mode
+	private final ByteBuffer inBuffer = ByteBuffer.allocateDirect(RECV_BUFFER_SIZE);
+	private final Selector readSelector;
+	
+	// sending side, frames queued from a frame boundary, in write mode (all guarded by outBuffer)
+	private final ByteBuffer outBuffer;
+	private final Selector writeSelector;
+	private volatile SocketChannel channel = null; // null while not connected, modified only with the lock on outBuffer
+	
+	private volatile boolean closed = false;
+	
+	// statistics
+	private final LongAdder connects = new LongAdder();
+	private final LongAdder failedConnects = new LongAdder();
+	private final LongAdder framesDropped = new LongAdder();
+	private final LongAdder framesReceived = new LongAdder();
+	
+	/**
+	 * Create the link to the hub with the default send buffer size; the connection
+	 * is established by the first call to {@code receive()}.
+	 * 
+	 * @param host the name of the hub host.
+	 * @param port the port where the hub listens.
+	 * @param hello the frame to send first when connected, may be {@code null}.
+	 * @throws IOException if the selectors cannot be opened.
+	 */
+	public NioHubLink(String host, int port, byte[] hello) throws IOException {
+		this(host, port, hello, DEFAULT_SEND_BUFFER_SIZE);
+	}
+	
+	/**
+	 * Create the link to the hub; the connection is established by the first
+	 * call to {@code receive()}.
+	 * 
+	 * @param host the name of the hub host.
+	 * @param port the port where the hub listens.
+	 * @param hello the frame to send first when connected, may be {@code null}.
+	 * @param sendBufferSize the max. number of bytes queued for sending
+	 * 		(including the 2 length bytes per frame).
+	 * @throws IOException if the selectors cannot be opened.
+	 */
+	public NioHubLink(String host, int port, byte[] hello, int sendBufferSize) throws IOException {
+		this.hubAddress = InetSocketAddress.createUnresolved(host, port);
+		this.hello = (hello != null) ? hello.clone() : null;
+		this.outBuffer = ByteBuffer.allocateDirect(Math.max(2048, sendBufferSize));
+		this.inBuffer.flip(); // empty, in read mode
+		this.readSelector = Selector.open();
+		try {
+			this.writeSelector = Selector.open();
+		} catch (IOException e) {
+			this.readSelector.close();
+			throw e;
+		}
+	}
+	
+	/*
+	 * sending
+	 */
+	
+	@Override
+	public void send(byte[] buffer, int frameLength) throws IOException {
+		synchronized(this.outBuffer) {
+			if (this.outBuffer.remaining() < frameLength + 2) {
+				// try to make room by transmitting the queued frames
+				this.flushQueued();
+				if (this.outBuffer.remaining() < frameLength + 2) {
+					this.framesDropped.increment();
+					return;
+				}
+			}
+			this.outBuffer.putShort((short)frameLength);
+			this.outBuffer.put(buffer, 2, frameLength);
+		}
+	}
+	
+	@Override
+	public void flush() throws IOException {
+		synchronized(this.outBuffer) {
+			this.flushQueued();
+		}
+	}
+	
+	// (lock on outBuffer must be held)
+	private void flushQueued() {
+		if (this.channel == null || this.outBuffer.position() == 0) {
+			return; // not connected (keep the frames queued) or nothing to send
+		}
+		this.outBuffer.flip();
+		try {
+			this.writeFully(this.channel, this.outBuffer);
+			this.outBuffer.clear();
+		} catch (IOException e) {
+			Log.L0.printf(null, "NioHubLink: sending to hub failed: %s\n", e.getMessage());
+			this.dropPartialFrame();
+			this.disconnect();
+		}
+	}
+	
+	// (lock on outBuffer must be held, outBuffer in read mode with a failed write)
+	private void dropPartialFrame() {
+		// find the frame where the write stopped and discard it if partially sent,
+		// so the queue starts again at a frame boundary for the next connection
+		int written = this.outBuffer.position();
+		int frameStart = 0;
+		while (frameStart < written) {
+			int frameLength = this.outBuffer.getShort(frameStart) & 0xFFFF;
+			frameStart += frameLength + 2;
+		}
+		if (frameStart > written) {
+			this.framesDropped.increment();
+		}
+		this.outBuffer.position(Math.min(frameStart, this.outBuffer.limit()));
+		this.outBuffer.compact();
+	}
+	
+	// (lock on outBuffer must be held)
+	private void writeFully(SocketChannel ch, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (ch.write(buffer) == 0) {
+				if (this.closed) { throw new IOException("link closed"); }
+				SelectionKey key = ch.keyFor(this.writeSelector);
+				if (key == null) {
+					ch.register(this.writeSelector, SelectionKey.OP_WRITE);
+				}
+				this.writeSelector.select(SELECT_TICK);
+				this.writeSelector.selectedKeys().clear();
+			}
+		}
+	}
+	
+	/*
+	 * receiving
+	 */
+	
+	@Override
+	public int receive(byte[] buffer) throws IOException {
+		while(true) {
+			// deliver the next complete frame if already received
+			if (this.inBuffer.remaining() >= 2) {
+				int frameLength = this.inBuffer.getShort(this.inBuffer.position()) & 0xFFFF;
+				if (frameLength > buffer.length || frameLength > RECV_BUFFER_SIZE - 2) {
+					Log.L0.printf(null, "NioHubLink: invalid frame length %d, reconnecting\n", frameLength);
+					this.connectionLost();
+					continue;
+				}
+				if (this.inBuffer.remaining() >= frameLength + 2) {
+					this.inBuffer.position(this.inBuffer.position() + 2);
+					this.inBuffer.get(buffer, 0, frameLength);
+					this.framesReceived.increment();
+					return frameLength;
+				}
+			}
+			
+			// get more bytes, possibly after (re)connecting to the hub
+			SocketChannel ch = this.getChannel();
+			if (ch == null) {
+				ch = this.connect();
+			}
+			this.inBuffer.compact();
+			int count;
+			try {
+				count = ch.read(this.inBuffer);
+			} catch (IOException e) {
+				count = -1;
+			} finally {
+				this.inBuffer.flip();
+			}
+			if (count < 0) {
+				Log.L0.printf(null, "NioHubLink: connection to hub lost\n");
+				this.connectionLost();
+			} else if (count == 0) {
+				this.readSelector.select(SELECT_TICK);
+				this.readSelector.selectedKeys().clear();
+				if (this.closed) { throw new IOException("link closed"); }
+			}
+		}
+	}
+	
+	private SocketChannel getChannel() throws IOException {
+		if (this.closed) { throw new IOException("link closed"); }
+		return this.channel;
+	}
+	
+	private void connectionLost() {
+		this.inBuffer.clear().flip(); // discard a partial frame
+		synchronized(this.outBuffer) {
+			this.disconnect();
+		}
+	}
+	
+	// (lock on outBuffer must be held)
+	private void disconnect() {
+		if (this.channel != null) {
+			try { this.channel.close(); } catch (IOException e) { }
+			this.channel = null;
+		}
+	}
+	
+	/*
+	 * (re)connecting, done by the receiving thread
+	 */
+	
+	private SocketChannel connect() throws IOException {
+		long backoff = BACKOFF_INITIAL;
+		while(true) {
+			if (this.closed) { throw new IOException("link closed"); }
+			
+			SocketChannel ch = null;
+			try {
+				Log.L0.printf(null, "NioHubLink: connecting to hub %s\n", this.hubAddress);
+				ch = SocketChannel.open();
+				ch.configureBlocking(false);
+				ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				InetSocketAddress addr = new InetSocketAddress(this.hubAddress.getHostString(), this.hubAddress.getPort());
+				if (!ch.connect(addr)) {
+					SelectionKey key = ch.register(this.readSelector, SelectionKey.OP_CONNECT);
+					long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+					while (!ch.finishConnect()) {
+						long remaining = deadline - System.currentTimeMillis();
+						if (remaining <= 0 || this.closed) { throw new IOException("connect timeout"); }
+						this.readSelector.select(Math.min(remaining, SELECT_TICK));
+						this.readSelector.selectedKeys().clear();
+					}
+					key.interestOps(SelectionKey.OP_READ);
+				} else {
+					ch.register(this.readSelector, SelectionKey.OP_READ);
+				}
+				
+				synchronized(this.outBuffer) {
+					if (this.hello != null) {
+						ByteBuffer helloFrame = ByteBuffer.allocate(this.hello.length + 2);
+						helloFrame.putShort((short)this.hello.length).put(this.hello).flip();
+						this.writeFully(ch, helloFrame);
+					}
+					this.channel = ch;
+					this.flushQueued();
+				}
+				this.connects.increment();
+				Log.L0.printf(null, "NioHubLink: connected to hub %s\n", this.hubAddress);
+				return ch;
+			} catch (IOException | UnresolvedAddressException e) {
+				this.failedConnects.increment();
+				Log.L0.printf(null, "NioHubLink: connecting to hub failed: %s, retrying in %d ms\n", e, backoff);
+				if (ch != null) {
+					try { ch.close(); } catch (IOException ce) { }
+				}
+				this.readSelector.selectNow(); // flush the key of the closed channel
+				try {
+					Thread.sleep(backoff);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw new IOException("interrupted while reconnecting");
+				}
+				backoff = Math.min(backoff * 2, BACKOFF_MAX);
+			}
+		}
+	}
+	
+	/*
+	 * closing and statistics
+	 */
+	
+	@Override
+	public void close() {
+		this.closed = true;
+		synchronized(this.outBuffer) {
+			this.disconnect();
+		}
+		this.readSelector.wakeup();
+		this.writeSelector.wakeup();
+	}
+	
+	/**
+	 * @return {@code true} if currently connected to the hub.
+	 */
+	public boolean isConnected() {
+		return this.channel != null;
+	}
+	
+	/**
+	 * @return the number of bytes currently queued for sending.
+	 */
+	public int getQueuedBytes() {
+		synchronized(this.outBuffer) {
+			return this.outBuffer.position();
+		}
+	}
+	
+	/**
+	 * @return the number of successful connects to the hub.
+	 */
+	public long getConnects() {
+		return this.connects.sum();
+	}
+	
+	/**
+	 * @return the number of failed attempts to connect to the hub.
+	 */
+	public long getFailedConnects() {
+		return this.failedConnects.sum();
+	}
+	
+	/**
+	 * @return the number of frames dropped as not fitting into the send buffer.
+	 */
+	public long getFramesDropped() {
+		return this.framesDropped.sum();
+	}
+	
+	/**
+	 * @return the number of frames received from the hub.
+	 */
+	public long getFramesReceived() {
+		return this.framesReceived.sum();
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("NioHubLink[ hub: %s connected: %s connects: %d failed: %d received: %d dropped: %d queued: %d ]",
+				this.hubAddress, this.isConnected(), this.getConnects(), this.getFailedConnects(),
+				this.getFramesReceived(), this.getFramesDropped(), this.getQueuedBytes());
+	}
+}
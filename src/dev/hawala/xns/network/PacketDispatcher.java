@@ -0,0 +1,140 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.xns.network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import dev.hawala.xns.Log;
+import dev.hawala.xns.level1.IDP;
+
+/**
+ * Pool of worker threads delivering ingoing packets to the listeners
+ * of a {@code NetMachine}.
+ * <p>
+ * Each worker has its own pipeline and packets are assigned to a worker
+ * by a shard key, so all packets with the same key (same target socket
+ * resp. same SPP connection) are delivered in sequence by the same worker,
+ * while a listener blocking its worker (e.g. waiting for room in a
+ * connection or sleeping in a responder) only delays the packets of the
+ * other keys sharing this worker.
+ * </p>
+ * 
+ * @author Dodo contributors
+ */
+class PacketDispatcher {
+	
+	private static final int MAX_BATCH = 32;
+	
+	private final AsyncIdpPipeline[] shards;
+	private final Thread[] workers;
+	
+	/**
+	 * Create and start the workers.
+	 * 
+	 * @param name the name prefix for the worker threads.
+	 * @param workerCount the number of workers (at least 1).
+	 * @param target the delivery of a packet to its listener, invoked in the worker threads.
+	 */
+	PacketDispatcher(String name, int workerCount, Consumer<IDP> target) {
+		int count = Math.max(1, workerCount);
+		this.shards = new AsyncIdpPipeline[count];
+		this.workers = new Thread[count];
+		for (int i = 0; i < count; i++) {
+			AsyncIdpPipeline shard = new AsyncIdpPipeline();
+			this.shards[i] = shard;
+			this.workers[i] = new Thread(() -> runWorker(shard, target), name + "-" + i);
+			this.workers[i].setDaemon(true);
+		}
+		for (Thread worker : this.workers) {
+			worker.start();
+		}
+	}
+	
+	private static void runWorker(AsyncIdpPipeline shard, Consumer<IDP> target) {
+		List<IDP> batch = new ArrayList<>();
+		while(true) {
+			try {
+				shard.drainTo(batch, MAX_BATCH);
+				for (int i = 0; i < batch.size(); i++) {
+					IDP idp = batch.get(i);
+					try {
+						target.accept(idp);
+					} catch (RuntimeException e) {
+						// a failing listener must not stop the delivery for the other keys of this worker
+						Log.E.printf(idp, "** PacketDispatcher: listener failed: %s\n", e);
+					}
+				}
+			} catch (InterruptedException e) {
+				// shutting down
+				return;
+			} finally {
+				batch.clear();
+			}
+		}
+	}
+	
+	/**
+	 * Enqueue a packet for delivery by the worker responsible for the shard key.
+	 * 
+	 * @param shardKey the key identifying the packet sequence the packet belongs to.
+	 * @param idp the packet to deliver.
+	 */
+	void submit(int shardKey, IDP idp) {
+		int mixed = shardKey * 0x9E3779B9; // spread adjacent socket numbers
+		int shard = (mixed ^ (mixed >>> 16)) & 0x7FFFFFFF;
+		this.shards[shard % this.shards.length].send(idp);
+	}
+	
+	/**
+	 * @return the number of worker threads.
+	 */
+	int getWorkerCount() {
+		return this.workers.length;
+	}
+	
+	/**
+	 * Stop the workers, dropping the packets not yet delivered.
+	 */
+	void shutdown() {
+		for (AsyncIdpPipeline shard : this.shards) {
+			shard.abort();
+		}
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("PacketDispatcher[");
+		for (int i = 0; i < this.shards.length; i++) {
+			AsyncIdpPipeline shard = this.shards[i];
+			sb.append(String.format(" %d: enqueued %d, queued %d, high-water %d;",
+					i, shard.getEnqueued(), shard.size(), shard.getHighWaterMark()));
+		}
+		return sb.append(" ]").toString();
+	}
+}
@@ -0,0 +1,266 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.xns.network;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dev.hawala.xns.Log;
+import dev.hawala.xns.level1.IDP;
+import dev.hawala.xns.network.NetMachine.PexServerCounters;
+
+/**
+ * Admission and execution of ingoing PEX requests for the PEX servers of
+ * a {@code NetMachine}.
+ * <p>
+ * Requests are checked against a token bucket of the requesting host, so a
+ * single misbehaving workstation cannot flood the PEX services, and requests
+ * already queued or in progress are not processed again if the client
+ * retransmits the request (same host, socket and identification).
+ * Admitted requests are executed by a pool of worker threads with a bounded
+ * queue, requests not fitting in the queue are dropped (the client will
+ * retransmit later). Without workers, requests are processed in the thread
+ * delivering the packet, as before.
+ * </p>
+ * 
+ * @author Dodo contributors
+ */
+class PexServingPool {
+	
+	// max. number of hosts with a token bucket, the least recently active hosts are forgotten beyond this
+	private static final int MAX_TRACKED_HOSTS = 1024;
+	
+	// identification of a request for recognizing retransmissions
+	private static final class RequestKey {
+		private final long host;
+		private final int socket;
+		private final long identification;
+		
+		private RequestKey(long host, int socket, long identification) {
+			this.host = host;
+			this.socket = socket;
+			this.identification = identification;
+		}
+		
+		@Override
+		public int hashCode() {
+			long h = (this.host * 31 + this.socket) * 31 + this.identification;
+			return (int)(h ^ (h >>> 32));
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) { return true; }
+			if (!(obj instanceof RequestKey)) { return false; }
+			RequestKey other = (RequestKey) obj;
+			return this.host == other.host
+				&& this.socket == other.socket
+				&& this.identification == other.identification;
+		}
+	}
+	
+	// request rate limit for a single host
+	private static final class TokenBucket {
+		private double tokens;
+		private long lastRefill;
+		
+		private TokenBucket(double tokens, long now) {
+			this.tokens = tokens;
+			this.lastRefill = now;
+		}
+		
+		private synchronized boolean tryAcquire(long now, double tokensPerNano, double capacity) {
+			this.refill(now, tokensPerNano, capacity);
+			if (this.tokens < 1.0) {
+				return false;
+			}
+			this.tokens -= 1.0;
+			return true;
+		}
+		
+		private void refill(long now, double tokensPerNano, double capacity) {
+			this.tokens = Math.min(capacity, this.tokens + (now - this.lastRefill) * tokensPerNano);
+			this.lastRefill = now;
+		}
+	}
+	
+	// the rate limit parameters: refill rate and bucket capacity, no limit if the rate is 0
+	private volatile double tokensPerNano = 0;
+	private volatile double burst = 0;
+	
+	// the workers, null if requests are processed by the calling thread
+	private volatile ThreadPoolExecutor executor = null;
+	
+	private final String name;
+	private final PexServerCounters counters;
+	private final Map<Long, TokenBucket> buckets = new LinkedHashMap<Long, TokenBucket>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, TokenBucket> eldest) {
+			return this.size() > MAX_TRACKED_HOSTS;
+		}
+	};
+	private final Set<RequestKey> inProgress = ConcurrentHashMap.newKeySet();
+	
+	/**
+	 * Create a pool processing requests in the calling thread without rate limit.
+	 * 
+	 * @param name the name prefix for the worker threads.
+	 * @param counters the counters to update.
+	 */
+	PexServingPool(String name, PexServerCounters counters) {
+		this.name = name;
+		this.counters = counters;
+	}
+	
+	/**
+	 * Change the processing parameters for subsequent requests.
+	 * 
+	 * @param workers the number of worker threads, {@code 0} for processing in the calling thread.
+	 * @param queueCapacity the max. number of requests waiting for a worker.
+	 * @param requestsPerSecond the sustained request rate allowed per host, {@code 0} for no limit.
+	 * @param burstSize the number of requests a host may send at once.
+	 */
+	synchronized void configure(int workers, int queueCapacity, int requestsPerSecond, int burstSize) {
+		this.burst = Math.max(1, burstSize);
+		this.tokensPerNano = Math.max(0, requestsPerSecond) / 1_000_000_000.0;
+		synchronized(this.buckets) {
+			this.buckets.clear();
+		}
+		
+		ThreadPoolExecutor oldExecutor = this.executor;
+		if (workers > 0) {
+			AtomicInteger threadNo = new AtomicInteger();
+			this.executor = new ThreadPoolExecutor(
+					workers, workers,
+					0, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+					r -> {
+						Thread t = new Thread(r, this.name + "-" + threadNo.getAndIncrement());
+						t.setDaemon(true);
+						return t;
+					},
+					new ThreadPoolExecutor.AbortPolicy());
+		} else {
+			this.executor = null;
+		}
+		if (oldExecutor != null) {
+			oldExecutor.shutdown(); // let the requests already queued finish
+		}
+	}
+	
+	/**
+	 * Process a request unless it is a duplicate of a request in progress or
+	 * the requesting host exceeds its rate limit or the queue is full.
+	 * 
+	 * @param host the requesting host.
+	 * @param socket the socket of the requester.
+	 * @param identification the PEX identification of the request.
+	 * @param request the request packet, released to the packet pool once
+	 *   the processing is done; the caller must release it if the request
+	 *   is not accepted.
+	 * @param task the request processing.
+	 * @return {@code true} if the request was accepted for processing.
+	 */
+	boolean submit(long host, int socket, long identification, IDP request, Runnable task) {
+		RequestKey key = new RequestKey(host, socket, identification);
+		if (!this.inProgress.add(key)) {
+			this.counters.duplicates.increment();
+			return false;
+		}
+		
+		if (!this.tryAcquire(host)) {
+			this.inProgress.remove(key);
+			this.counters.rateLimited.increment();
+			return false;
+		}
+		
+		Runnable work = () -> {
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				Log.E.printf(null, "** PexServingPool: request processing failed: %s\n", e);
+			} finally {
+				this.inProgress.remove(key);
+				request.release();
+			}
+		};
+		
+		ThreadPoolExecutor currExecutor = this.executor;
+		if (currExecutor == null) {
+			this.counters.accepted.increment();
+			work.run();
+			return true;
+		}
+		try {
+			currExecutor.execute(work);
+			this.counters.accepted.increment();
+			return true;
+		} catch (RejectedExecutionException e) {
+			this.inProgress.remove(key);
+			this.counters.queueFull.increment();
+			return false;
+		}
+	}
+	
+	private boolean tryAcquire(long host) {
+		double rate = this.tokensPerNano;
+		if (rate <= 0) {
+			return true; // no rate limit
+		}
+		double capacity = this.burst;
+		long now = System.nanoTime();
+		TokenBucket bucket;
+		synchronized(this.buckets) {
+			// access ordered: adding the bucket for a new host beyond the limit drops the least recently active host
+			bucket = this.buckets.get(host);
+			if (bucket == null) {
+				bucket = new TokenBucket(capacity, now);
+				this.buckets.put(host, bucket);
+			}
+		}
+		return bucket.tryAcquire(now, rate, capacity);
+	}
+	
+	/**
+	 * Stop the worker threads.
+	 */
+	synchronized void shutdown() {
+		if (this.executor != null) {
+			this.executor.shutdownNow();
+			this.executor = null;
+		}
+	}
+}
@@ -0,0 +1,186 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.xns.network;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.LockSupport;
+
+import dev.hawala.hub.ShmRings;
+import dev.hawala.xns.Log;
+
+/**
+ * Connection to a {@code NetHub} running on the same host, exchanging
+ * the frames through the rings in a memory mapped file (see {@link ShmRings}),
+ * with the TCP connection to the hub only used for attaching the ring
+ * file and for waking up the other side when it is waiting for frames.
+ * 
+ * @author Dodo contributors
+ */
+public class ShmHubLink implements iHubLink {
+	
+	private static final int ATTACH_TIMEOUT = 2000; // 2 seconds
+	private static final long SEND_PARK_NANOS = 50_000;
+	
+	private final TcpHubLink tcp;
+	private final ShmRings.Ring sendRing;
+	private final ShmRings.Ring recvRing;
+	
+	// set when the link was closed resp. the hub closed the connection
+	private volatile boolean closed = false;
+	
+	private ShmHubLink(TcpHubLink tcp, ShmRings rings) {
+		this.tcp = tcp;
+		this.sendRing = rings.getClientToHub();
+		this.recvRing = rings.getHubToClient();
+	}
+	
+	/**
+	 * Create a ring file and ask the hub connected through {@code tcp} to
+	 * use it for exchanging the frames (frames received from the hub while
+	 * waiting for the reply are discarded).
+	 * 
+	 * @param tcp the (new) connection to the hub.
+	 * @return the shared memory link or {@code tcp} if the hub did not accept
+	 *   the ring file (e.g. hub running on a different host or not supporting
+	 *   shared memory) or if shared memory cannot be used on this processor.
+	 * @throws IOException if the connection to the hub failed.
+	 */
+	public static iHubLink attach(TcpHubLink tcp) throws IOException {
+		if (!ShmRings.isSupported()) {
+			Log.L0.printf(null, "shared memory rings not supported by this JVM, using TCP\n");
+			return tcp;
+		}
+		File file = File.createTempFile(ShmRings.FILE_PREFIX, ShmRings.FILE_SUFFIX, ShmRings.getRingDirectory());
+		if (!file.delete()) {
+			throw new IOException("unable to prepare ring file " + file.getPath());
+		}
+		
+		ShmRings rings;
+		try {
+			rings = ShmRings.create(file);
+		} catch (IOException e) {
+			Log.L0.printf(null, "** unable to create ring file %s: %s\n", file.getPath(), e.getMessage());
+			file.delete();
+			return tcp;
+		}
+		
+		boolean attached = false;
+		try {
+			// send the attach request control frame
+			// (2x 6 zero address bytes, ethertype 0x88B5, 'N' 'H', opcode SHM_ATTACH, path of the ring file)
+			byte[] path = file.getAbsolutePath().getBytes(StandardCharsets.UTF_8);
+			byte[] request = new byte[2 + 17 + path.length];
+			request[14] = (byte)0x88;
+			request[15] = (byte)0xB5;
+			request[16] = 'N';
+			request[17] = 'H';
+			request[18] = 0x06;
+			System.arraycopy(path, 0, request, 19, path.length);
+			tcp.send(request, request.length - 2);
+			tcp.flush();
+			
+			// wait for the reply, which is the last frame received through TCP
+			tcp.setReceiveTimeout(ATTACH_TIMEOUT);
+			byte[] frame = new byte[2048];
+			while(true) {
+				int len = tcp.receive(frame);
+				if (len >= 18
+						&& frame[12] == (byte)0x88 && frame[13] == (byte)0xB5
+						&& frame[14] == 'N' && frame[15] == 'H' && frame[16] == 0x06) {
+					attached = (frame[17] == 1);
+					break;
+				}
+			}
+		} catch (SocketTimeoutException e) {
+			// no reply: hub without shared memory support
+		} finally {
+			file.delete(); // the mapping remains valid for both sides
+		}
+		tcp.setReceiveTimeout(0);
+		
+		if (!attached) {
+			Log.L0.printf(null, "hub did not accept the ring file, using TCP\n");
+			return tcp;
+		}
+		Log.L0.printf(null, "using shared memory rings for the hub connection\n");
+		return new ShmHubLink(tcp, rings);
+	}
+
+	@Override
+	public void send(byte[] buffer, int frameLength) throws IOException {
+		if (frameLength > ShmRings.MAX_FRAME_LENGTH) {
+			throw new IOException("invalid frame length " + frameLength);
+		}
+		
+		// wait for the hub to make room if the ring is full (backpressure), waking up
+		// the hub if it fell asleep before the frames not yet flushed were put into the ring
+		while(!this.sendRing.offer(buffer, 2, frameLength)) {
+			if (this.closed) {
+				throw new EOFException("connection to hub closed");
+			}
+			this.flush();
+			LockSupport.parkNanos(SEND_PARK_NANOS);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (this.sendRing.wakeupNeeded()) {
+			OutputStream doorbell = this.tcp.getOutputStream();
+			doorbell.write(0);
+			doorbell.flush();
+		}
+	}
+
+	@Override
+	public int receive(byte[] buffer) throws IOException {
+		int len;
+		try {
+			len = this.recvRing.take(buffer, 0, this.tcp.getInputStream());
+		} catch (IOException e) {
+			this.closed = true;
+			throw e;
+		}
+		if (len < 0) {
+			this.closed = true;
+			throw new EOFException("connection to hub closed");
+		}
+		return len;
+	}
+
+	@Override
+	public void close() {
+		this.closed = true;
+		this.tcp.close();
+	}
+
+}
@@ -243,6 +243,7 @@ public abstract class SppAbstractConnection implements iSppSocket, iIDPReceiver
 			this.consumedBytes += count;
 			if (this.consumedBytes >= currSpp.getPayloadLength()) {
 				isEndOfMessage = this.currSpp.isEndOfMessage();
+				this.currSpp.idp.release();
 				this.currSpp = null;
 			}
 			
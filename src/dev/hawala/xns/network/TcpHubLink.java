@@ -0,0 +1,127 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.xns.network;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketException;
+
+/**
+ * Connection to the {@code NetHub} through a TCP socket, with each
+ * frame preceded by its length (2 bytes big endian).
+ * 
+ * @author Dodo contributors
+ */
+public class TcpHubLink implements iHubLink {
+	
+	private static final int SEND_BUFFER_SIZE = 16384; // frames are sent in bursts when flushing
+	
+	private final Socket sock;
+	private final InputStream istream;
+	private final OutputStream ostream;
+	
+	/**
+	 * Connect to the hub.
+	 * 
+	 * @param host the name of the hub host.
+	 * @param port the port where the hub listens.
+	 * @throws IOException
+	 */
+	public TcpHubLink(String host, int port) throws IOException {
+		this.sock = new Socket(host, port);
+		try {
+			this.sock.setTcpNoDelay(true);
+			this.istream = this.sock.getInputStream();
+			this.ostream = new BufferedOutputStream(this.sock.getOutputStream(), SEND_BUFFER_SIZE);
+		} catch (IOException e) {
+			this.close();
+			throw e;
+		}
+	}
+	
+	@Override
+	public void send(byte[] buffer, int frameLength) throws IOException {
+		buffer[0] = (byte)((frameLength >> 8) & 0xFF);
+		buffer[1] = (byte)(frameLength & 0xFF);
+		this.ostream.write(buffer, 0, frameLength + 2);
+	}
+	
+	@Override
+	public void flush() throws IOException {
+		this.ostream.flush();
+	}
+	
+	@Override
+	public int receive(byte[] buffer) throws IOException {
+		int b0 = this.istream.read();
+		int b1 = this.istream.read();
+		if (b0 < 0 || b1 < 0) { throw new EOFException("connection to hub closed"); }
+		int netLen = (b0 << 8) | b1;
+		if (netLen > buffer.length) { throw new IOException("invalid frame length " + netLen); }
+		int pos = 0;
+		while(pos < netLen) {
+			int chunkSize = this.istream.read(buffer, pos, netLen - pos);
+			if (chunkSize < 0) { throw new EOFException("connection to hub closed"); }
+			pos += chunkSize;
+		}
+		return netLen;
+	}
+	
+	/**
+	 * Set the timeout for {@code receive()}.
+	 * 
+	 * @param millis the timeout in milliseconds, 0 for no timeout.
+	 * @throws SocketException
+	 */
+	public void setReceiveTimeout(int millis) throws SocketException {
+		this.sock.setSoTimeout(millis);
+	}
+	
+	/**
+	 * @return the raw input stream of the connection.
+	 */
+	InputStream getInputStream() {
+		return this.istream;
+	}
+	
+	/**
+	 * @return the (buffered) output stream of the connection.
+	 */
+	OutputStream getOutputStream() {
+		return this.ostream;
+	}
+	
+	@Override
+	public void close() {
+		try { this.sock.close(); } catch(Exception e) { }
+	}
+
+}
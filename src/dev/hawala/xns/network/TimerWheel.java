@@ -0,0 +1,235 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.xns.network;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import dev.hawala.xns.Log;
+
+/**
+ * Hashed timer wheel for scheduling many short-lived timeouts (like the
+ * retransmissions and timeouts of PEX requests) with constant cost for
+ * scheduling and cancelling.
+ * <p>
+ * The wheel has a fixed number of buckets, each covering one tick; a timeout
+ * is placed in the bucket where its deadline falls modulo the wheel size, with
+ * the number of full wheel rounds to wait before it expires. A single daemon
+ * thread advances the wheel once per tick and runs the expired tasks, so these
+ * tasks must be short and must not block. While no timeouts are pending, the
+ * wheel thread parks until the next timeout is scheduled.
+ * </p>
+ * <p>
+ * New timeouts are handed over to the wheel thread through a lock-free queue,
+ * the buckets themselves are only accessed by the wheel thread.
+ * </p>
+ * 
+ * @author Dodo contributors
+ */
+class TimerWheel {
+	
+	/**
+	 * Handle of a scheduled task, allowing to cancel it.
+	 */
+	static final class Timeout {
+		private final Runnable task;
+		private final long deadline; // nanos relative to the wheel start
+		private long remainingRounds;
+		private volatile boolean cancelled = false;
+		
+		private Timeout(Runnable task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+		
+		/**
+		 * Prevent the task from being run if it did not expire yet.
+		 */
+		void cancel() {
+			this.cancelled = true;
+		}
+		
+		/**
+		 * @return {@code true} if this timeout was cancelled.
+		 */
+		boolean isCancelled() {
+			return this.cancelled;
+		}
+	}
+	
+	private final long tickNanos;
+	private final int mask;
+	private final List<List<Timeout>> buckets;
+	
+	// timeouts scheduled but not yet placed in their bucket
+	private final ConcurrentLinkedQueue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+	
+	private final Thread wheelThread;
+	private final long startTime;
+	private volatile boolean stopped = false;
+	
+	// is the wheel thread parked waiting for new timeouts?
+	private volatile boolean idle = false;
+	
+	// the tick currently processed and the number of timeouts in the buckets (only used by the wheel thread)
+	private long tick = 0;
+	private int pending = 0;
+	
+	/**
+	 * Create and start a timer wheel.
+	 * 
+	 * @param name the name of the wheel thread.
+	 * @param tickMs the resolution of the timer in milliseconds.
+	 * @param wheelSize the number of buckets, rounded up to a power of 2.
+	 */
+	TimerWheel(String name, long tickMs, int wheelSize) {
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMs));
+		int size = Integer.highestOneBit(Math.max(2, wheelSize) - 1) << 1;
+		this.mask = size - 1;
+		this.buckets = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			this.buckets.add(new ArrayList<>());
+		}
+		
+		this.startTime = System.nanoTime();
+		this.wheelThread = new Thread(this::run, name);
+		this.wheelThread.setDaemon(true);
+		this.wheelThread.start();
+	}
+	
+	/**
+	 * Schedule a task to be run in the wheel thread after the given delay.
+	 * 
+	 * @param task the task to run, must not block.
+	 * @param delayMs the delay in milliseconds.
+	 * @return the handle for cancelling the task.
+	 */
+	Timeout schedule(Runnable task, long delayMs) {
+		long deadline = System.nanoTime() - this.startTime + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMs));
+		Timeout timeout = new Timeout(task, deadline);
+		this.newTimeouts.add(timeout);
+		if (this.idle) {
+			LockSupport.unpark(this.wheelThread);
+		}
+		return timeout;
+	}
+	
+	/**
+	 * Stop the wheel thread, pending timeouts are discarded.
+	 */
+	void stop() {
+		this.stopped = true;
+		LockSupport.unpark(this.wheelThread);
+	}
+	
+	/*
+	 * the wheel thread
+	 */
+	
+	private void run() {
+		while(!this.stopped) {
+			if (this.pending == 0) {
+				this.waitForNewTimeouts();
+				if (this.stopped) { break; }
+			}
+			long now = this.waitForNextTick();
+			if (this.stopped) { break; }
+			this.transferNewTimeouts();
+			this.expireTimeouts(this.buckets.get((int)(this.tick & this.mask)), now);
+			this.tick++;
+		}
+		this.newTimeouts.clear();
+		for (List<Timeout> bucket : this.buckets) {
+			bucket.clear();
+		}
+	}
+	
+	private void waitForNewTimeouts() {
+		this.idle = true;
+		try {
+			// re-check after publishing the idle state, so a concurrent schedule cannot be missed
+			while(this.newTimeouts.isEmpty() && !this.stopped) {
+				LockSupport.park(this);
+			}
+		} finally {
+			this.idle = false;
+		}
+		
+		// the buckets are empty, so the ticks passed while parked can be skipped
+		long currentTick = (System.nanoTime() - this.startTime) / this.tickNanos;
+		this.tick = Math.max(this.tick, currentTick);
+	}
+	
+	private long waitForNextTick() {
+		long tickEnd = this.tickNanos * (this.tick + 1);
+		while(true) {
+			long now = System.nanoTime() - this.startTime;
+			long sleep = tickEnd - now;
+			if (sleep <= 0 || this.stopped) {
+				return now;
+			}
+			LockSupport.parkNanos(this, sleep);
+		}
+	}
+	
+	private void transferNewTimeouts() {
+		Timeout timeout;
+		while((timeout = this.newTimeouts.poll()) != null) {
+			if (timeout.cancelled) { continue; }
+			long expiryTick = timeout.deadline / this.tickNanos;
+			timeout.remainingRounds = (expiryTick - this.tick) / this.buckets.size();
+			long targetTick = Math.max(expiryTick, this.tick); // deadlines already passed go into the current bucket
+			this.buckets.get((int)(targetTick & this.mask)).add(timeout);
+			this.pending++;
+		}
+	}
+	
+	private void expireTimeouts(List<Timeout> bucket, long now) {
+		Iterator<Timeout> it = bucket.iterator();
+		while(it.hasNext()) {
+			Timeout timeout = it.next();
+			if (timeout.cancelled) {
+				it.remove();
+				this.pending--;
+			} else if (timeout.remainingRounds <= 0 && timeout.deadline <= now) {
+				it.remove();
+				this.pending--;
+				try {
+					timeout.task.run();
+				} catch (RuntimeException e) {
+					Log.E.printf(null, "** TimerWheel: task failed: %s\n", e);
+				}
+			} else if (timeout.remainingRounds > 0) {
+				timeout.remainingRounds--;
+			}
+		}
+	}
+}
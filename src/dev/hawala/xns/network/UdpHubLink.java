@@ -0,0 +1,160 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.xns.network;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+
+/**
+ * Connection to the {@code NetHub} through UDP, with each datagram carrying
+ * a single ethernet frame, so a lost frame does not delay the following frames
+ * (as a lost TCP segment would do).
+ * <p>
+ * As the hub drops UDP clients not heard from for some time and creates a line
+ * for a UDP client only when receiving a {@code KEEPALIVE} or {@code SUBSCRIBE}
+ * control frame, the subscription frame given when creating the link resp. a
+ * {@code KEEPALIVE} frame is sent when creating the link and again at the keepalive
+ * interval, so the hub re-creates the line (with its ethertype filter) after
+ * dropping it or after being restarted.
+ * </p>
+ * 
+ * @author Dodo contributors
+ */
+public class UdpHubLink implements iHubLink {
+	
+	private static final int KEEPALIVE_INTERVAL = 30_000; // 30 seconds
+	
+	// hub control frame KEEPALIVE
+	// (2x 6 zero address bytes, ethertype 0x88B5, 'N' 'H', opcode KEEPALIVE)
+	private static final byte[] KEEPALIVE_FRAME = {
+		0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+		0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+		(byte)0x88, (byte)0xB5,
+		'N', 'H',
+		0x07
+	};
+	
+	private final DatagramSocket socket;
+	private final DatagramPacket sendPacket;
+	private final DatagramPacket recvPacket;
+	
+	// the subscription control frame (without length bytes) to be repeated, null if none
+	private final byte[] subscription;
+	
+	// when the subscription resp. keepalive frame was last sent
+	private long lastAnnounced = 0;
+	
+	/**
+	 * Create the UDP connection to the hub.
+	 * 
+	 * @param host the name of the hub host.
+	 * @param port the port where the hub listens.
+	 * @throws IOException
+	 */
+	public UdpHubLink(String host, int port) throws IOException {
+		this(host, port, null);
+	}
+	
+	/**
+	 * Create the UDP connection to the hub, sending the subscription frame
+	 * now and again at the keepalive interval.
+	 * 
+	 * @param host the name of the hub host.
+	 * @param port the port where the hub listens.
+	 * @param subscription the {@code SUBSCRIBE} control frame (without the 2
+	 *   length bytes), may be {@code null}.
+	 * @throws IOException
+	 */
+	public UdpHubLink(String host, int port, byte[] subscription) throws IOException {
+		InetSocketAddress hub = new InetSocketAddress(host, port);
+		if (hub.isUnresolved()) {
+			throw new UnknownHostException(host);
+		}
+		this.socket = new DatagramSocket();
+		this.socket.connect(hub);
+		this.socket.setSoTimeout(KEEPALIVE_INTERVAL / 3);
+		this.sendPacket = new DatagramPacket(new byte[0], 0);
+		this.recvPacket = new DatagramPacket(new byte[0], 0);
+		this.subscription = (subscription != null) ? subscription.clone() : null;
+		this.sendControlFrame((this.subscription != null) ? this.subscription : KEEPALIVE_FRAME);
+		this.lastAnnounced = System.currentTimeMillis();
+	}
+
+	@Override
+	public void send(byte[] buffer, int frameLength) throws IOException {
+		synchronized(this.sendPacket) {
+			this.sendPacket.setData(buffer, 2, frameLength);
+			this.socket.send(this.sendPacket);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		// each frame is sent immediately
+	}
+
+	@Override
+	public int receive(byte[] buffer) throws IOException {
+		while(true) {
+			this.sendKeepaliveIfIdle();
+			try {
+				this.recvPacket.setData(buffer);
+				this.socket.receive(this.recvPacket);
+				return this.recvPacket.getLength();
+			} catch (SocketTimeoutException e) {
+				// check for keepalive and continue waiting
+			}
+		}
+	}
+	
+	// (only called by the receiving thread)
+	private void sendKeepaliveIfIdle() throws IOException {
+		long now = System.currentTimeMillis();
+		// repeated even when sending data, as the hub may have been restarted meanwhile
+		if ((now - this.lastAnnounced) >= KEEPALIVE_INTERVAL) {
+			this.sendControlFrame((this.subscription != null) ? this.subscription : KEEPALIVE_FRAME);
+			this.lastAnnounced = now;
+		}
+	}
+	
+	private void sendControlFrame(byte[] frame) throws IOException {
+		synchronized(this.sendPacket) {
+			this.sendPacket.setData(frame);
+			this.socket.send(this.sendPacket);
+		}
+	}
+
+	@Override
+	public void close() {
+		this.socket.close();
+	}
+
+}
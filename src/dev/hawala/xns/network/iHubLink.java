@@ -0,0 +1,71 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.xns.network;
+
+import java.io.IOException;
+
+/**
+ * Interface for the connection of the local site to the {@code NetHub},
+ * transporting raw ethernet frames.
+ * 
+ * @author Dodo contributors
+ */
+public interface iHubLink {
+	
+	/**
+	 * Send an ethernet frame to the hub, possibly buffered until
+	 * the next {@code flush()}.
+	 * 
+	 * @param buffer the buffer with the frame starting at offset 2 (the 2 bytes
+	 *   before the frame can be used by the link for the frame length)
+	 * @param frameLength the length of the frame.
+	 * @throws IOException
+	 */
+	public void send(byte[] buffer, int frameLength) throws IOException;
+	
+	/**
+	 * Transmit the frames buffered by {@code send()}.
+	 * 
+	 * @throws IOException
+	 */
+	public void flush() throws IOException;
+	
+	/**
+	 * Receive the next ethernet frame from the hub, waiting for a frame if necessary.
+	 * 
+	 * @param buffer the buffer where to store the frame (starting at offset 0).
+	 * @return the length of the frame.
+	 * @throws IOException if the connection failed or was closed.
+	 */
+	public int receive(byte[] buffer) throws IOException;
+	
+	/**
+	 * Close the connection to the hub.
+	 */
+	public void close();
+
+}
@@ -39,6 +39,19 @@ public interface iIDPReceiver {
 	
 	void start(EndpointAddress localEndpoint, iIDPSender sender);
 	
+	/**
+	 * Process an ingoing packet for the socket of this listener.
+	 * <p>
+	 * The ownership of the packet passes to the listener: if the packet
+	 * (or a protocol view wrapping it) is not needed any longer, the listener
+	 * should give it back with {@code idp.release()}, allowing to reuse the
+	 * packet for the next ingoing packet. A listener keeping the packet beyond
+	 * this call must release it only after its last use, or not at all (leaving
+	 * it to the garbage collector); a released packet must not be used anymore.
+	 * </p>
+	 * 
+	 * @param idp the ingoing packet.
+	 */
 	void accept(IDP idp);
 	
 	void acceptError(Error err);
@@ -0,0 +1,144 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.xns.tests;
+
+import java.util.Random;
+
+import dev.hawala.xns.level0.NetPacket;
+import dev.hawala.xns.level0.XnsChecksum;
+import dev.hawala.xns.level1.IDP;
+
+/**
+ * Micro benchmark comparing the byte pair by byte pair XNS checksum algorithm
+ * (as previously used by {@code IDP} and {@code Volume}) with {@link XnsChecksum}
+ * for IDP packets of typical sizes and for file content streamed in chunks.
+ * <p>
+ * Each variant is run in several rounds, the first rounds warming up the
+ * JIT compiler; the result of the last round is reported as nanoseconds per
+ * checksum and as MByte per second. 
+ * </p>
+ * <p>
+ * Usage: {@code ChecksumBenchmark [rounds]}
+ * </p>
+ * 
+ * @author Dodo contributors
+ */
+public class ChecksumBenchmark {
+	
+	private static final int TARGET_BYTES_PER_ROUND = 256 * 1024 * 1024;
+	
+	// the word by word algorithm as specified for the CKSUM instruction
+	private static int wordByWord(byte[] data, int offset, int length) {
+		int cksum = 0;
+		for (int i = 0; i < length; i += 2) {
+			int b1 = data[offset + i] & 0xFF;
+			int b2 = (i + 1 < length) ? data[offset + i + 1] & 0xFF : 0;
+			int temp = (cksum + ((b1 << 8) | b2)) & 0xFFFF;
+			if (cksum > temp) { temp = temp + 1; }
+			if (temp >= 0100000) {
+				temp = (temp * 2) + 1;
+			} else {
+				temp = temp * 2;
+			}
+			cksum = temp & 0xFFFF;
+		}
+		if (cksum == 0177777) { cksum = 0; }
+		return cksum;
+	}
+	
+	// the previous IDP implementation, reading byte pairs from the packet
+	private static int packetByteByByte(NetPacket packet, int length) {
+		int cksum = 0;
+		int limit = ((length % 2) != 0) ? length + 1 : length;
+		for (int i = 2; i < limit; i++) {
+			int b1 = packet.rdByte(i++) & 0xFF;
+			int b2 = packet.rdByte(i) & 0xFF;
+			int temp = (cksum + ((b1 << 8) | b2)) & 0xFFFF;
+			if (cksum > temp) { temp = temp + 1; }
+			if (temp >= 0100000) {
+				temp = (temp * 2) + 1;
+			} else {
+				temp = temp * 2;
+			}
+			cksum = temp & 0xFFFF;
+		}
+		if (cksum == 0177777) { cksum = 0; }
+		return cksum;
+	}
+	
+	private interface Variant {
+		int run(byte[] data, int length);
+	}
+	
+	private static volatile int sink; 
+	
+	private static void measure(String name, int rounds, byte[] data, int length, Variant variant) {
+		int iterations = Math.max(1, TARGET_BYTES_PER_ROUND / length);
+		long nanos = 0;
+		for (int round = 0; round < rounds; round++) {
+			int acc = 0;
+			long start = System.nanoTime();
+			for (int i = 0; i < iterations; i++) {
+				acc += variant.run(data, length);
+			}
+			nanos = System.nanoTime() - start;
+			sink += acc;
+		}
+		double nsPerOp = (double)nanos / iterations;
+		double mbPerSec = ((double)length * iterations / (1024 * 1024)) / (nanos / 1e9);
+		System.out.printf("%-24s %8d bytes %12.1f ns/op %10.1f MB/s\n", name, length, nsPerOp, mbPerSec);
+	}
+	
+	public static void main(String[] args) {
+		int rounds = (args.length > 0) ? Integer.parseInt(args[0]) : 5;
+		
+		byte[] data = new byte[1024 * 1024];
+		new Random(4711).nextBytes(data);
+		
+		// IDP packets: the previous implementation vs. the engine on the packet buffer
+		NetPacket packet = new NetPacket(data);
+		for (int length : new int[] { 42, 576, 1500 }) {
+			measure("idp-byte-by-byte", rounds, data, length, (d, l) -> packetByteByByte(packet, l));
+			IDP idp = new IDP(packet);
+			idp.setPacketLength(length);
+			measure("idp-engine", rounds, data, length, (d, l) -> idp.computeChecksum());
+		}
+		
+		// file content streamed in 512 byte chunks (as in Volume) resp. checksummed in one pass
+		int fileLength = data.length;
+		measure("file-word-by-word", rounds, data, fileLength, (d, l) -> wordByWord(d, 0, l));
+		measure("file-engine-stream", rounds, data, fileLength, (d, l) -> {
+			XnsChecksum checksum = new XnsChecksum();
+			for (int pos = 0; pos < l; pos += 512) {
+				checksum.update(d, pos, Math.min(512, l - pos));
+			}
+			return checksum.getValue();
+		});
+		measure("file-engine-single", rounds, data, fileLength, (d, l) -> XnsChecksum.compute(d, 0, l));
+	}
+	
+}
@@ -0,0 +1,159 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.xns.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import dev.hawala.xns.level1.IDP;
+import dev.hawala.xns.network.AsyncIdpPipeline;
+
+public class TestAsyncIdpPipeline {
+	
+	private static IDP mkIdp(int producer, int seq) {
+		IDP idp = new IDP();
+		idp.setSrcSocket(producer);
+		idp.setDstSocket(seq);
+		return idp;
+	}
+	
+	@Test
+	public void testFifoSingleThread() throws InterruptedException {
+		AsyncIdpPipeline pipeline = new AsyncIdpPipeline();
+		assertTrue(pipeline.isEmpty());
+		assertNull(pipeline.poll());
+		
+		for (int i = 0; i < 10; i++) {
+			pipeline.send(mkIdp(1, i));
+		}
+		assertEquals(10, pipeline.size());
+		assertEquals(0, pipeline.get().getDstSocket());
+		
+		List<IDP> batch = new ArrayList<>();
+		assertEquals(4, pipeline.drainTo(batch, 4));
+		assertEquals(5, pipeline.drainTo(batch, 100));
+		for (int i = 0; i < batch.size(); i++) {
+			assertEquals(i + 1, batch.get(i).getDstSocket());
+		}
+		assertTrue(pipeline.isEmpty());
+		assertEquals(10, pipeline.getEnqueued());
+		assertEquals(10, pipeline.getHighWaterMark());
+	}
+	
+	@Test
+	public void testRingOverflow() throws InterruptedException {
+		AsyncIdpPipeline pipeline = new AsyncIdpPipeline();
+		for (int i = 0; i < 3000; i++) {
+			pipeline.send(mkIdp(1, i));
+		}
+		assertEquals(3000, pipeline.size());
+		
+		// take some packets, so the ring has room again while packets are in the overflow
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, pipeline.get().getDstSocket());
+		}
+		for (int i = 3000; i < 3100; i++) {
+			pipeline.send(mkIdp(1, i));
+		}
+		
+		List<IDP> batch = new ArrayList<>();
+		while (!pipeline.isEmpty()) {
+			pipeline.drainTo(batch, 64);
+		}
+		assertEquals(3000, batch.size());
+		for (int i = 0; i < batch.size(); i++) {
+			assertEquals(i + 100, batch.get(i).getDstSocket());
+		}
+		assertNull(pipeline.poll());
+		assertEquals(3100, pipeline.getEnqueued());
+	}
+	
+	private void runProducers(AsyncIdpPipeline pipeline, int producers, int packetsPerProducer) throws InterruptedException {
+		Thread[] threads = new Thread[producers];
+		for (int p = 0; p < producers; p++) {
+			final int producer = p;
+			threads[p] = new Thread(() -> {
+				for (int i = 0; i < packetsPerProducer; i++) {
+					pipeline.send(mkIdp(producer, i));
+				}
+			});
+			threads[p].start();
+		}
+		
+		// consume all packets, checking the per-producer order
+		int[] nextSeq = new int[producers];
+		List<IDP> batch = new ArrayList<>();
+		int received = 0;
+		while (received < producers * packetsPerProducer) {
+			received += pipeline.drainTo(batch, 32);
+			for (IDP idp : batch) {
+				int producer = idp.getSrcSocket();
+				assertEquals("sequence of producer " + producer, nextSeq[producer], idp.getDstSocket());
+				nextSeq[producer]++;
+			}
+			batch.clear();
+		}
+		
+		for (Thread t : threads) { t.join(); }
+		assertTrue(pipeline.isEmpty());
+		assertEquals(producers * packetsPerProducer, pipeline.getEnqueued());
+	}
+	
+	@Test
+	public void testMultipleProducers() throws InterruptedException {
+		runProducers(new AsyncIdpPipeline(), 4, 20000);
+	}
+	
+	@Test
+	public void testBoundedMultipleProducers() throws InterruptedException {
+		AsyncIdpPipeline pipeline = new AsyncIdpPipeline(8);
+		runProducers(pipeline, 4, 5000);
+		assertTrue(pipeline.getHighWaterMark() <= 8);
+	}
+	
+	@Test
+	public void testAbort() {
+		AsyncIdpPipeline pipeline = new AsyncIdpPipeline();
+		new Thread(() -> {
+			try { Thread.sleep(50); } catch (InterruptedException e) { }
+			pipeline.abort();
+		}).start();
+		try {
+			pipeline.get();
+			fail("InterruptedException expected");
+		} catch (InterruptedException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,170 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.xns.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import dev.hawala.xns.EndpointAddress;
+import dev.hawala.xns.LocalSite;
+import dev.hawala.xns.LocalSite.Site;
+import dev.hawala.xns.Log;
+import dev.hawala.xns.level1.IDP;
+import dev.hawala.xns.level1.IDP.PacketType;
+import dev.hawala.xns.level2.Error;
+import dev.hawala.xns.network.NetMachine.ChecksumPolicy;
+import dev.hawala.xns.network.iIDPReceiver;
+import dev.hawala.xns.network.iIDPSender;
+
+public class TestLocalSites {
+	
+	private static final int TEST_SOCKET = 100;
+	
+	private static class Receiver implements iIDPReceiver {
+		
+		private final BlockingQueue<IDP> received = new LinkedBlockingQueue<>();
+		private iIDPSender sender;
+
+		@Override
+		public void start(EndpointAddress localEndpoint, iIDPSender sender) { this.sender = sender; }
+
+		@Override
+		public void accept(IDP idp) { this.received.add(idp); }
+
+		@Override
+		public void acceptError(Error err) { }
+
+		@Override
+		public void stopped() { }
+		
+		private IDP next() throws InterruptedException {
+			return this.received.poll(2, TimeUnit.SECONDS);
+		}
+	}
+	
+	private static IDP mkIdp(long dstNetwork, long dstHost) {
+		IDP idp = new IDP();
+		idp.setPacketType(PacketType.PEX);
+		idp.setDstNetwork(dstNetwork);
+		idp.setDstHost(dstHost);
+		idp.setDstSocket(TEST_SOCKET);
+		idp.setSrcSocket(TEST_SOCKET);
+		return idp;
+	}
+	
+	@Test
+	public void testMachinesInOneSite() throws InterruptedException {
+		Log.L0.doLog(false);
+		Log.L1.doLog(false);
+		LocalSite.configureHub(null, 0); // local only
+		
+		try {
+			Site a = LocalSite.createSite(0x0401, 0x0000_1000_FF12_3411L, "A", ChecksumPolicy.ENFORCE, false, 0, 0, 0);
+			Site b = LocalSite.createSite(0x0402, 0x0000_1000_FF12_3412L, "B", ChecksumPolicy.OFF, false, 2, 1, 10);
+			try {
+				LocalSite.createSite(0x0403, 0x0000_1000_FF12_3411L, "dup", ChecksumPolicy.OFF, false, 0, 0, 0);
+				fail("duplicate machine id accepted");
+			} catch (IllegalStateException ise) {
+				// expected
+			}
+			
+			Receiver ra = new Receiver();
+			Receiver rb = new Receiver();
+			a.getMachine().clientBindToSocket(TEST_SOCKET, ra);
+			b.getMachine().clientBindToSocket(TEST_SOCKET, rb);
+			
+			// unicast from A to B, with source fixed by A
+			ra.sender.send(mkIdp(0x0402, b.getMachineId()));
+			IDP idp = rb.next();
+			assertEquals(a.getMachineId(), idp.getSrcHost());
+			assertEquals(0x0401, idp.getSrcNetwork());
+			assertTrue(idp.getChecksum() != IDP.NO_CHECKSUM);
+			
+			// broadcast from B reaches both machines
+			rb.sender.send(mkIdp(IDP.LOCAL_NETWORK, IDP.BROADCAST_ADDR));
+			assertEquals(b.getMachineId(), ra.next().getSrcHost());
+			assertEquals(b.getMachineId(), rb.next().getSrcHost());
+			
+			assertEquals(2, LocalSite.getSites().size());
+			a.shutdown();
+			assertEquals(1, LocalSite.getSites().size());
+		} finally {
+			LocalSite.shutdown(); // stops the threads shared by the machines
+		}
+		assertEquals(0, LocalSite.getSites().size());
+	}
+	
+	@Test
+	public void testIndependentLocalSites() throws InterruptedException {
+		Log.L0.doLog(false);
+		Log.L1.doLog(false);
+		LocalSite one = new LocalSite(null, 0, LocalSite.HubTransport.TCP); // local only
+		LocalSite two = new LocalSite(null, 0, LocalSite.HubTransport.TCP); // local only
+		
+		try {
+			// the same machine ids can be used in both local sites
+			Site a1 = one.addSite(0x0401, 0x0000_1000_FF12_3421L, "A1", ChecksumPolicy.OFF, false, 0, 0, 0);
+			Site b1 = one.addSite(0x0401, 0x0000_1000_FF12_3422L, "B1", ChecksumPolicy.OFF, false, 0, 0, 0);
+			Site a2 = two.addSite(0x0401, 0x0000_1000_FF12_3421L, "A2", ChecksumPolicy.OFF, false, 0, 0, 0);
+			Site b2 = two.addSite(0x0401, 0x0000_1000_FF12_3422L, "B2", ChecksumPolicy.OFF, false, 0, 0, 0);
+			assertTrue(a1.getLocalSite() == one);
+			assertTrue(a2.getLocalSite() == two);
+			
+			Receiver ra1 = new Receiver();
+			Receiver rb1 = new Receiver();
+			Receiver ra2 = new Receiver();
+			Receiver rb2 = new Receiver();
+			a1.getMachine().clientBindToSocket(TEST_SOCKET, ra1);
+			b1.getMachine().clientBindToSocket(TEST_SOCKET, rb1);
+			a2.getMachine().clientBindToSocket(TEST_SOCKET, ra2);
+			b2.getMachine().clientBindToSocket(TEST_SOCKET, rb2);
+			
+			// packets and broadcasts stay inside the local site
+			ra1.sender.send(mkIdp(0x0401, b1.getMachineId()));
+			assertEquals(a1.getMachineId(), rb1.next().getSrcHost());
+			rb2.sender.send(mkIdp(IDP.LOCAL_NETWORK, IDP.BROADCAST_ADDR));
+			assertEquals(b2.getMachineId(), ra2.next().getSrcHost());
+			assertEquals(b2.getMachineId(), rb2.next().getSrcHost());
+			assertEquals(null, rb1.received.poll(200, TimeUnit.MILLISECONDS));
+			assertEquals(null, ra1.received.poll(200, TimeUnit.MILLISECONDS));
+			
+			one.stop();
+			assertEquals(0, one.listSites().size());
+			assertEquals(2, two.listSites().size());
+		} finally {
+			one.stop();
+			two.stop();
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.xns.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.junit.Test;
+
+import dev.hawala.xns.network.NioHubLink;
+
+public class TestNioHubLink {
+	
+	private static final byte[] HELLO = { 1, 2, 3 };
+	
+	private static byte[] readFrame(DataInputStream in) throws IOException {
+		int len = in.readUnsignedShort();
+		byte[] frame = new byte[len];
+		in.readFully(frame);
+		return frame;
+	}
+	
+	private static void writeFrame(DataOutputStream out, int len, int fill) throws IOException {
+		out.writeShort(len);
+		for (int i = 0; i < len; i++) { out.write(fill); }
+		out.flush();
+	}
+	
+	private static void send(NioHubLink link, int len, int fill) throws IOException {
+		byte[] buffer = new byte[len + 2];
+		for (int i = 2; i < buffer.length; i++) { buffer[i] = (byte)fill; }
+		link.send(buffer, len);
+	}
+	
+	@Test
+	public void testReconnectAndQueueing() throws Exception {
+		try (ServerSocket hub = new ServerSocket(0)) {
+			NioHubLink link = new NioHubLink("localhost", hub.getLocalPort(), HELLO);
+			
+			// frames sent before the first connect are queued
+			send(link, 100, 0x11);
+			
+			// the receiving thread establishes the connection
+			byte[] recvBuffer = new byte[2048];
+			int[] lengths = new int[2];
+			Thread receiver = new Thread(() -> {
+				try {
+					lengths[0] = link.receive(recvBuffer);
+					lengths[1] = link.receive(recvBuffer);
+				} catch (IOException e) {
+					lengths[0] = -1;
+				}
+			});
+			receiver.setDaemon(true);
+			receiver.start();
+			
+			try (Socket conn = hub.accept()) {
+				DataInputStream in = new DataInputStream(conn.getInputStream());
+				DataOutputStream out = new DataOutputStream(conn.getOutputStream());
+				assertEquals(HELLO.length, readFrame(in).length);
+				assertEquals(100, readFrame(in).length);
+				
+				// a frame split across 2 writes is reassembled
+				out.writeShort(300);
+				out.write(new byte[120]);
+				out.flush();
+				Thread.sleep(50);
+				out.write(new byte[180]);
+				out.flush();
+			}
+			
+			// the hub is gone: sending still succeeds (queued), receiving reconnects
+			for (int i = 0; i < 100 && link.isConnected(); i++) { Thread.sleep(10); }
+			send(link, 60, 0x22);
+			link.flush();
+			try (Socket conn = hub.accept()) {
+				DataInputStream in = new DataInputStream(conn.getInputStream());
+				DataOutputStream out = new DataOutputStream(conn.getOutputStream());
+				assertEquals(HELLO.length, readFrame(in).length);
+				byte[] frame = readFrame(in);
+				assertEquals(60, frame.length);
+				assertEquals(0x22, frame[0]);
+				writeFrame(out, 42, 0x33);
+				receiver.join(5000);
+			}
+			
+			assertEquals(300, lengths[0]);
+			assertEquals(42, lengths[1]);
+			assertEquals(0x33, recvBuffer[0]);
+			assertTrue(link.getConnects() >= 2);
+			link.close();
+		}
+	}
+	
+	@Test
+	public void testBoundedQueue() throws Exception {
+		NioHubLink link = new NioHubLink("localhost", 1, null, 4096);
+		for (int i = 0; i < 10; i++) {
+			send(link, 1000, i);
+		}
+		assertEquals(4 * 1002, link.getQueuedBytes());
+		assertEquals(6, link.getFramesDropped());
+		link.close();
+	}
+}
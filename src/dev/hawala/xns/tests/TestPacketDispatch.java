@@ -0,0 +1,182 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.xns.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import dev.hawala.xns.EndpointAddress;
+import dev.hawala.xns.level1.IDP;
+import dev.hawala.xns.level1.IDP.PacketType;
+import dev.hawala.xns.level2.Error;
+import dev.hawala.xns.network.NetMachine;
+import dev.hawala.xns.network.NetMachine.ChecksumPolicy;
+import dev.hawala.xns.network.iIDPReceiver;
+import dev.hawala.xns.network.iIDPSender;
+
+public class TestPacketDispatch {
+	
+	private static final int PACKETS = 2000;
+	
+	private static class Receiver implements iIDPReceiver {
+		
+		private final List<Integer> received = new ArrayList<>();
+		private final CountDownLatch complete;
+		private final CountDownLatch blocker;
+		
+		private Receiver(int expected, CountDownLatch blocker) {
+			this.complete = new CountDownLatch(expected);
+			this.blocker = blocker;
+		}
+
+		@Override
+		public void start(EndpointAddress localEndpoint, iIDPSender sender) { }
+
+		@Override
+		public void accept(IDP idp) {
+			if (this.blocker != null) {
+				try {
+					this.blocker.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					// ignored
+				}
+			}
+			synchronized(this.received) {
+				this.received.add(idp.getSrcSocket());
+			}
+			this.complete.countDown();
+		}
+
+		@Override
+		public void acceptError(Error err) { }
+
+		@Override
+		public void stopped() { }
+		
+		private boolean awaitComplete() throws InterruptedException {
+			return this.complete.await(5, TimeUnit.SECONDS);
+		}
+		
+		private void assertInOrder() {
+			synchronized(this.received) {
+				for (int i = 0; i < this.received.size(); i++) {
+					assertEquals("packet sequence", i, this.received.get(i).intValue());
+				}
+			}
+		}
+	}
+	
+	private static IDP mkIdp(NetMachine machine, int dstSocket, int seq) {
+		IDP idp = new IDP();
+		idp.setPacketType(PacketType.PEX);
+		idp.setDstNetwork(machine.getNetworkId());
+		idp.setDstHost(machine.getMachineId());
+		idp.setDstSocket(dstSocket);
+		idp.setSrcHost(0x0000_1000_FF12_3499L);
+		idp.setSrcSocket(seq);
+		idp.resetChecksum();
+		return idp;
+	}
+	
+	@Test
+	public void testOrderAndIndependence() throws InterruptedException {
+		NetMachine machine = new NetMachine(0x0401, 0x0000_1000_FF12_3401L, "test", idp -> {}, ChecksumPolicy.OFF, 4);
+		
+		// the receiver on socket 100 blocks its worker until the other sockets
+		// (chosen to be served by other workers) got all their packets
+		CountDownLatch othersDone = new CountDownLatch(1);
+		Receiver blocked = new Receiver(PACKETS, othersDone);
+		Receiver[] others = { new Receiver(PACKETS, null), new Receiver(PACKETS, null), new Receiver(PACKETS, null) };
+		int[] otherSockets = { 101, 102, 104 };
+		
+		machine.clientBindToSocket(100, blocked);
+		for (int i = 0; i < others.length; i++) {
+			machine.clientBindToSocket(otherSockets[i], others[i]);
+		}
+		
+		for (int seq = 0; seq < PACKETS; seq++) {
+			machine.handlePacket(mkIdp(machine, 100, seq));
+			for (int i = 0; i < others.length; i++) {
+				machine.handlePacket(mkIdp(machine, otherSockets[i], seq));
+			}
+		}
+		
+		for (Receiver r : others) {
+			assertTrue("packets delivered while another socket is blocked", r.awaitComplete());
+			r.assertInOrder();
+		}
+		othersDone.countDown();
+		assertTrue(blocked.awaitComplete());
+		blocked.assertInOrder();
+		
+		assertEquals(4 * PACKETS, machine.getReceiveCounters().getDispatched());
+		machine.shutdown();
+	}
+	
+	private static int deliverBadChecksum(ChecksumPolicy policy, List<IDP> sent) throws InterruptedException {
+		NetMachine machine = new NetMachine(0x0401, 0x0000_1000_FF12_3401L, "test", sent::add, policy);
+		Receiver receiver = new Receiver(1, null);
+		machine.clientBindToSocket(100, receiver);
+		
+		IDP idp = mkIdp(machine, 100, 0);
+		idp.updateChecksum();
+		idp.setSrcSocket(1); // invalidates the checksum
+		machine.handlePacket(idp);
+		
+		machine.shutdown();
+		return receiver.received.size();
+	}
+	
+	@Test
+	public void testBadChecksumReported() throws InterruptedException {
+		List<IDP> sent = new ArrayList<>();
+		assertEquals("packets delivered", 1, deliverBadChecksum(ChecksumPolicy.REPORT, sent));
+		assertEquals("error packets sent", 1, sent.size());
+		assertEquals(PacketType.ERROR, sent.get(0).getPacketType());
+	}
+	
+	@Test
+	public void testBadChecksumEnforced() throws InterruptedException {
+		List<IDP> sent = new ArrayList<>();
+		assertEquals("packets delivered", 0, deliverBadChecksum(ChecksumPolicy.ENFORCE, sent));
+		assertEquals("error packets sent", 1, sent.size());
+	}
+	
+	@Test
+	public void testBadChecksumVerified() throws InterruptedException {
+		List<IDP> sent = new ArrayList<>();
+		assertEquals("packets delivered", 1, deliverBadChecksum(ChecksumPolicy.VERIFY, sent));
+		assertEquals("error packets sent", 0, sent.size());
+	}
+}
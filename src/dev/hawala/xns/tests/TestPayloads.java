@@ -91,6 +91,48 @@ public class TestPayloads {
 		assertEquals("payload.rdAddress(50)", 0x323334353637L, packet.rdAddress(50));
 	}
 	
+	@Test
+	public void testSubPayloadWordAccess() {
+		NetPacket packet = this.mkNetPacket();
+		NetPacket sub = new NetPacket(packet, 10, 8); // bytes 0x0A .. 0x11 of packet
+		
+		assertEquals("sub.maxPayloadLength", 8, sub.getMaxPayloadLength());
+		
+		// completely inside the sub-payload
+		assertEquals("sub.rdCardinal(0)", 0x0A0B, sub.rdCardinal(0));
+		assertEquals("sub.rdCardinal(3)", 0x0D0E, sub.rdCardinal(3));
+		assertEquals("sub.rdCardinal(6)", 0x1011, sub.rdCardinal(6));
+		assertEquals("sub.rdLongCardinal(1)", 0x0B0C0D0EL, sub.rdLongCardinal(1));
+		assertEquals("sub.rdLongCardinal(4)", 0x0E0F1011L, sub.rdLongCardinal(4));
+		assertEquals("sub.rdAddress(2)", 0x0C0D0E0F1011L, sub.rdAddress(2));
+		
+		// partially outside the sub-payload: missing bytes are 0
+		assertEquals("sub.rdCardinal(-1)", 0x000A, sub.rdCardinal(-1));
+		assertEquals("sub.rdCardinal(7)", 0x1100, sub.rdCardinal(7));
+		assertEquals("sub.rdCardinal(8)", 0, sub.rdCardinal(8));
+		assertEquals("sub.rdLongCardinal(6)", 0x10110000L, sub.rdLongCardinal(6));
+		assertEquals("sub.rdLongCardinal(-2)", 0x00000A0BL, sub.rdLongCardinal(-2));
+		assertEquals("sub.rdAddress(4)", 0x0E0F10110000L, sub.rdAddress(4));
+		
+		// unsigned values
+		sub.wrCardinal(0, 0xFEDC);
+		assertEquals("sub.rdCardinal(0) after write", 0xFEDC, sub.rdCardinal(0));
+		sub.wrLongCardinal(0, 0xFEDCBA98L);
+		assertEquals("sub.rdLongCardinal(0) after write", 0xFEDCBA98L, sub.rdLongCardinal(0));
+		sub.wrAddress(2, 0xFFEEDDCCBBAAL);
+		assertEquals("sub.rdAddress(2) after write", 0xFFEEDDCCBBAAL, sub.rdAddress(2));
+		
+		// writes are visible in the base payload, bytes outside the sub-payload stay unchanged
+		assertEquals("packet.rdCardinal(10)", 0xFEDC, packet.rdCardinal(10));
+		assertEquals("packet.rdAddress(12)", 0xFFEEDDCCBBAAL, packet.rdAddress(12));
+		sub.wrCardinal(7, 0x1234);
+		assertEquals("packet.rdCardinal(17)", 0x1212, packet.rdCardinal(17));
+		sub.wrLongCardinal(6, 0x55667788L);
+		assertEquals("packet.rdLongCardinal(16)", 0x55661213L, packet.rdLongCardinal(16));
+		sub.wrAddress(-2, 0x0102AABBCCDDL);
+		assertEquals("packet.rdAddress(8)", 0x0809AABBCCDDL, packet.rdAddress(8));
+	}
+	
 	@Test
 	public void testPacketWriteContent() {
 		NetPacket packet = new NetPacket();
@@ -457,4 +499,55 @@ public class TestPayloads {
 //		assertEquals("err3.getMaxPayloadLength()", maxErrPayloadSize, err3.getMaxPayloadLength());
 	}
 
+	private byte[] mkSppPacketBytes(int seqNo, int payloadLength, byte fill) {
+		SPP spp = new SPP();
+		spp.idp.setDstHost(0x0000AA0000000001L);
+		spp.idp.setSrcSocket(0x1234 + seqNo);
+		spp.setSequenceNumber(seqNo);
+		spp.setDstConnectionId(0x4711);
+		for (int i = 0; i < payloadLength; i++) { spp.wrByte(i, fill); }
+		spp.setPayloadLength(payloadLength);
+		byte[] raw = new byte[spp.idp.getLength()];
+		spp.idp.packet.rdBytes(0, raw.length, raw, 0, raw.length);
+		return raw;
+	}
+	
+	@Test
+	public void testRecycledIdp() {
+		byte[] raw1 = mkSppPacketBytes(1, 100, (byte)0x55);
+		byte[] raw2 = mkSppPacketBytes(2, 20, (byte)0x66);
+		
+		IDP idp1 = IDP.obtain(raw1, 0, raw1.length);
+		SPP spp1 = SPP.of(idp1);
+		long packetId1 = idp1.getPacketId();
+		assertEquals("spp1.sequenceNumber", 1, spp1.getSequenceNumber());
+		assertEquals("spp1.payloadLength", 100, spp1.getPayloadLength());
+		assertEquals("SPP.of(idp1)", spp1, SPP.of(idp1));
+		idp1.release();
+		idp1.release(); // second release must be ignored
+		
+		IDP idp2 = IDP.obtain(raw2, 0, raw2.length);
+		assertEquals("recycled idp", idp1, idp2);
+		assertEquals("idp2.srcSocket", 0x1236, idp2.getSrcSocket());
+		assertEquals("idp2.length", raw2.length, idp2.getLength());
+		assertEquals("idp2.payloadLength", raw2.length - IDP.IDP_DATA_START, idp2.getPayloadLength());
+		assertEquals("new packetId", true, idp2.getPacketId() != packetId1);
+		
+		SPP spp2 = SPP.of(idp2);
+		assertEquals("recycled spp", spp1, spp2);
+		assertEquals("spp2.sequenceNumber", 2, spp2.getSequenceNumber());
+		assertEquals("spp2.dstConnectionId", 0x4711, spp2.getDstConnectionId());
+		assertEquals("spp2.payloadLength", 20, spp2.getPayloadLength());
+		assertEquals("spp2.byte[19]", 0x66, spp2.rdByte(19));
+		assertEquals("cleared byte after previous content", 0, idp2.packet.rdByte(raw2.length + 10));
+		
+		IDP idp3 = IDP.obtain(raw1, 0, raw1.length);
+		assertEquals("new idp while recycled one in use", true, idp3 != idp2);
+		
+		IDP plain = new IDP(new NetPacket(raw1));
+		plain.release(); // not from the pool: no effect
+		IDP idp4 = IDP.obtain(raw1, 0, raw1.length);
+		assertEquals("non-pooled idp not recycled", true, idp4 != plain);
+	}
+
 }
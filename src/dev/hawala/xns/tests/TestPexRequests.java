@@ -0,0 +1,110 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.xns.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+import dev.hawala.xns.Log;
+import dev.hawala.xns.level0.Payload;
+import dev.hawala.xns.level1.IDP;
+import dev.hawala.xns.level2.PEX;
+import dev.hawala.xns.network.NetMachine;
+import dev.hawala.xns.network.NetMachine.ChecksumPolicy;
+
+public class TestPexRequests {
+	
+	private static final long NETWORK = 0x0401;
+	private static final long LOCAL_HOST = 0x0000_1000_FF12_3401L;
+	private static final long REMOTE_HOST = 0x0000_1000_FF12_3402L;
+	private static final int REMOTE_SOCKET = 42;
+	
+	private static NetMachine mkMachine(Consumer<IDP> remote) {
+		Log.L1.doLog(false);
+		return new NetMachine(NETWORK, LOCAL_HOST, "test", remote::accept, ChecksumPolicy.OFF);
+	}
+	
+	private static Payload request(NetMachine machine, int id) throws Exception {
+		byte[] data = { 0, (byte)id };
+		return machine.pexRequest(REMOTE_HOST, REMOTE_SOCKET, 1, data, 0, data.length);
+	}
+	
+	@Test
+	public void testRetransmitAndTimeout() throws Exception {
+		AtomicInteger sent = new AtomicInteger();
+		NetMachine machine = mkMachine(idp -> sent.incrementAndGet());
+		try {
+			machine.configPexRequestors(100, 2, false);
+			long start = System.currentTimeMillis();
+			assertNull(request(machine, 1));
+			long elapsed = System.currentTimeMillis() - start;
+			
+			assertEquals(3, sent.get()); // initial request + 2 retries
+			assertTrue("timeout too early: " + elapsed, elapsed >= 300);
+			assertTrue("timeout too late: " + elapsed, elapsed < 600);
+		} finally {
+			machine.shutdown();
+		}
+	}
+	
+	@Test
+	public void testResponseMatchedByIdentification() throws Exception {
+		NetMachine[] machines = new NetMachine[1];
+		NetMachine machine = mkMachine(req -> {
+			// respond (out of order with a stray response before) to the request
+			PEX reqPex = new PEX(req);
+			for (long id : new long[] { reqPex.getIdentification() + 1, reqPex.getIdentification() }) {
+				PEX resp = new PEX(new byte[] { 0x12, 0x34 });
+				resp.setIdentification(id);
+				resp.setClientType(reqPex.getClientType());
+				resp.idp
+					.withSource(NETWORK, REMOTE_HOST, REMOTE_SOCKET)
+					.withDestination(req.getSrcEndpoint());
+				machines[0].handlePacket(resp.idp);
+			}
+		});
+		machines[0] = machine;
+		try {
+			machine.configPexRequestors(200, 0, false);
+			for (int i = 0; i < 10; i++) {
+				Payload result = request(machine, i);
+				assertNotNull(result);
+				assertTrue(result instanceof PEX);
+				assertEquals(0x1234, result.rdCardinal(0));
+			}
+		} finally {
+			machine.shutdown();
+		}
+	}
+}
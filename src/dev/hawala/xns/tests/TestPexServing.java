@@ -0,0 +1,131 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.xns.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import dev.hawala.xns.Log;
+import dev.hawala.xns.level2.PEX;
+import dev.hawala.xns.network.NetMachine;
+import dev.hawala.xns.network.NetMachine.ChecksumPolicy;
+import dev.hawala.xns.network.NetMachine.PexServerCounters;
+
+public class TestPexServing {
+	
+	private static final long NETWORK = 0x0401;
+	private static final long LOCAL_HOST = 0x0000_1000_FF12_3401L;
+	private static final int LOCAL_SOCKET = 42;
+	private static final long CLIENT_A = 0x0000_1000_FF12_3402L;
+	private static final long CLIENT_B = 0x0000_1000_FF12_3403L;
+	
+	private static NetMachine mkMachine(AtomicInteger responses) {
+		Log.L1.doLog(false);
+		return new NetMachine(NETWORK, LOCAL_HOST, "test", idp -> responses.incrementAndGet(), ChecksumPolicy.OFF);
+	}
+	
+	private static void request(NetMachine machine, long host, long identification) {
+		PEX pex = new PEX(new byte[] { 0, 1 });
+		pex.setIdentification(identification);
+		pex.setClientType(1);
+		pex.idp
+			.withSource(NETWORK, host, 1234)
+			.withDestination(NETWORK, LOCAL_HOST, LOCAL_SOCKET);
+		machine.handlePacket(pex.idp);
+	}
+	
+	@Test
+	public void testDuplicatesAndQueueFull() throws Exception {
+		AtomicInteger responses = new AtomicInteger();
+		NetMachine machine = mkMachine(responses);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+		try {
+			machine.configPexServing(1, 2, 0, 1);
+			machine.pexListen(LOCAL_SOCKET, (host, type, payload, rs, es) -> {
+				started.countDown();
+				try { release.await(); } catch (InterruptedException e) { }
+				rs.sendResponse(new byte[64], 0, 64);
+			});
+			
+			// the first request occupies the only worker
+			request(machine, CLIENT_A, 1);
+			assertTrue(started.await(2, TimeUnit.SECONDS));
+			
+			request(machine, CLIENT_A, 1); // retransmission while in progress
+			request(machine, CLIENT_A, 2); // queued
+			request(machine, CLIENT_B, 1); // queued (other host, same identification)
+			request(machine, CLIENT_B, 2); // queue full
+			
+			PexServerCounters counters = machine.getPexServerCounters();
+			assertEquals(3, counters.getAccepted());
+			assertEquals(1, counters.getDuplicates());
+			assertEquals(1, counters.getQueueFull());
+			assertEquals(1, counters.getDropped());
+			
+			release.countDown();
+			for (int i = 0; i < 100 && responses.get() < 3; i++) { Thread.sleep(10); }
+			assertEquals(3, responses.get());
+			
+			// the request is no longer in progress, so a retransmission is processed again
+			request(machine, CLIENT_A, 1);
+			for (int i = 0; i < 100 && responses.get() < 4; i++) { Thread.sleep(10); }
+			assertEquals(4, responses.get());
+			assertEquals(1, counters.getDuplicates());
+		} finally {
+			machine.shutdown();
+		}
+	}
+	
+	@Test
+	public void testRateLimitPerHost() throws Exception {
+		AtomicInteger responses = new AtomicInteger();
+		NetMachine machine = mkMachine(responses);
+		try {
+			machine.configPexServing(0, 0, 1, 5);
+			machine.pexListen(LOCAL_SOCKET, (host, type, payload, rs, es) -> rs.sendResponse(new byte[64], 0, 64));
+			
+			for (int i = 0; i < 20; i++) {
+				request(machine, CLIENT_A, 100 + i);
+			}
+			request(machine, CLIENT_B, 100);
+			
+			PexServerCounters counters = machine.getPexServerCounters();
+			assertEquals(6, counters.getAccepted()); // burst of A + 1 of B
+			assertEquals(15, counters.getRateLimited());
+			assertEquals(6, responses.get());
+		} finally {
+			machine.shutdown();
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.xns.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import dev.hawala.xns.EndpointAddress;
+import dev.hawala.xns.Log;
+import dev.hawala.xns.level1.IDP;
+import dev.hawala.xns.level2.Error;
+import dev.hawala.xns.network.NetMachine;
+import dev.hawala.xns.network.NetMachine.ChecksumPolicy;
+import dev.hawala.xns.network.iIDPReceiver;
+import dev.hawala.xns.network.iIDPSender;
+
+public class TestSocketAllocation {
+	
+	private static final int FIRST_CLIENT_SOCKET = 16384;
+	private static final int CLIENT_SOCKETS = 65536 - FIRST_CLIENT_SOCKET;
+	
+	private static class NullReceiver implements iIDPReceiver {
+		@Override public void start(EndpointAddress localEndpoint, iIDPSender sender) { }
+		@Override public void accept(IDP idp) { }
+		@Override public void acceptError(Error err) { }
+		@Override public void stopped() { }
+	}
+	
+	private static NetMachine mkMachine() {
+		Log.L1.doLog(false);
+		return new NetMachine(0x0401, 0x0000_1000_FF12_3401L, "test", idp -> {}, ChecksumPolicy.OFF);
+	}
+	
+	@Test
+	public void testRoundRobinAllocation() {
+		NetMachine machine = mkMachine();
+		int s1 = machine.clientBindToFreeSocket(new NullReceiver());
+		int s2 = machine.clientBindToFreeSocket(new NullReceiver());
+		assertEquals(FIRST_CLIENT_SOCKET, s1);
+		assertEquals(FIRST_CLIENT_SOCKET + 1, s2);
+		
+		// a socket just unbound is not reused at once
+		assertTrue(machine.stopListening(s1));
+		assertEquals(FIRST_CLIENT_SOCKET + 2, machine.clientBindToFreeSocket(new NullReceiver()));
+		
+		// explicitly bound sockets in the client range are skipped
+		assertTrue(machine.clientBindToSocket(FIRST_CLIENT_SOCKET + 3, new NullReceiver()));
+		assertFalse(machine.clientBindToSocket(FIRST_CLIENT_SOCKET + 3, new NullReceiver()));
+		assertEquals(FIRST_CLIENT_SOCKET + 4, machine.clientBindToFreeSocket(new NullReceiver()));
+		
+		assertFalse(machine.clientBindToSocket(65536, new NullReceiver()));
+		assertFalse(machine.stopListening(-1));
+		
+		machine.shutdown();
+	}
+	
+	@Test
+	public void testWrapAroundAndExhaustion() {
+		NetMachine machine = mkMachine();
+		for (int i = 0; i < CLIENT_SOCKETS; i++) {
+			assertEquals(FIRST_CLIENT_SOCKET + i, machine.clientBindToFreeSocket(new NullReceiver()));
+		}
+		assertEquals(-1, machine.clientBindToFreeSocket(new NullReceiver()));
+		
+		// freed sockets are found again after wrapping around
+		assertTrue(machine.stopListening(FIRST_CLIENT_SOCKET + 10));
+		assertTrue(machine.stopListening(FIRST_CLIENT_SOCKET + 5));
+		assertEquals(FIRST_CLIENT_SOCKET + 5, machine.clientBindToFreeSocket(new NullReceiver()));
+		assertEquals(FIRST_CLIENT_SOCKET + 10, machine.clientBindToFreeSocket(new NullReceiver()));
+		assertEquals(-1, machine.clientBindToFreeSocket(new NullReceiver()));
+		
+		machine.shutdown();
+	}
+}
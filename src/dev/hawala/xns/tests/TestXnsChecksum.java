@@ -0,0 +1,150 @@
+/*
+Copyright (c) 2026, Dodo contributors
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * The name of the author may not be used to endorse or promote products
+      derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY EXPRESS
+OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package dev.hawala.xns.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import dev.hawala.xns.level0.NetPacket;
+import dev.hawala.xns.level0.XnsChecksum;
+import dev.hawala.xns.level1.IDP;
+
+public class TestXnsChecksum {
+	
+	// the word by word algorithm as specified for the CKSUM instruction
+	private static int reference(byte[] data, int offset, int length) {
+		int cksum = 0;
+		for (int i = 0; i < length; i += 2) {
+			int b1 = data[offset + i] & 0xFF;
+			int b2 = (i + 1 < length) ? data[offset + i + 1] & 0xFF : 0;
+			int temp = (cksum + ((b1 << 8) | b2)) & 0xFFFF;
+			if (cksum > temp) { temp = temp + 1; }
+			if (temp >= 0100000) {
+				temp = (temp * 2) + 1;
+			} else {
+				temp = temp * 2;
+			}
+			cksum = temp & 0xFFFF;
+		}
+		if (cksum == 0177777) { cksum = 0; }
+		return cksum;
+	}
+	
+	private static byte[] mkData(int length, long seed) {
+		byte[] data = new byte[length];
+		new Random(seed).nextBytes(data);
+		return data;
+	}
+	
+	@Test
+	public void testComputeAllLengths() {
+		byte[] data = mkData(1100, 4711);
+		for (int offset = 0; offset < 3; offset++) {
+			for (int length = 0; length <= 1024; length++) {
+				assertEquals("checksum(" + offset + "," + length + ")",
+						reference(data, offset, length), XnsChecksum.compute(data, offset, length));
+			}
+		}
+	}
+	
+	@Test
+	public void testComputeSpecialValues() {
+		byte[] ones = new byte[600];
+		for (int i = 0; i < ones.length; i++) { ones[i] = (byte)0xFF; }
+		byte[] zeros = new byte[600];
+		for (int length = 0; length <= 600; length += 7) {
+			assertEquals("ones(" + length + ")", reference(ones, 0, length), XnsChecksum.compute(ones, 0, length));
+			assertEquals("zeros(" + length + ")", reference(zeros, 0, length), XnsChecksum.compute(zeros, 0, length));
+		}
+	}
+	
+	@Test
+	public void testComputeLargeData() {
+		// more than the groups summed up before folding the lanes
+		byte[] data = mkData(0x10000 * 32 + 77, 42);
+		for (int i = 0; i < data.length; i += 3) { data[i] = (byte)0xFF; }
+		assertEquals("large", reference(data, 0, data.length), XnsChecksum.compute(data, 0, data.length));
+	}
+	
+	@Test
+	public void testStreaming() {
+		byte[] data = mkData(5000, 815);
+		int expected = reference(data, 0, data.length);
+		Random rnd = new Random(17);
+		for (int run = 0; run < 50; run++) {
+			XnsChecksum checksum = new XnsChecksum();
+			int pos = 0;
+			while (pos < data.length) {
+				int chunk = Math.min(data.length - pos, rnd.nextInt(130));
+				checksum.update(data, pos, chunk);
+				pos += chunk;
+				assertEquals("partial checksum at " + pos, reference(data, 0, pos), checksum.getValue());
+			}
+			assertEquals("streamed checksum", expected, checksum.getValue());
+		}
+	}
+	
+	@Test
+	public void testAdjust() {
+		byte[] data = mkData(577, 1234);
+		Random rnd = new Random(99);
+		int wordCount = (data.length + 1) / 2;
+		int checksum = reference(data, 0, data.length);
+		for (int i = 0; i < 200; i++) {
+			int wordIndex = rnd.nextInt(wordCount - 1);
+			int oldWord = ((data[wordIndex * 2] & 0xFF) << 8) | (data[wordIndex * 2 + 1] & 0xFF);
+			int newWord = (i % 10 == 0) ? 0xFFFF : rnd.nextInt(0x10000);
+			data[wordIndex * 2] = (byte)(newWord >> 8);
+			data[wordIndex * 2 + 1] = (byte)newWord;
+			checksum = XnsChecksum.adjust(checksum, wordCount, wordIndex, oldWord, newWord);
+			assertEquals("adjusted checksum", reference(data, 0, data.length), checksum);
+		}
+	}
+	
+	private static byte[] packetBytes(NetPacket packet) {
+		byte[] bytes = new byte[packet.getMaxPayloadLength()];
+		packet.rdBytes(0, bytes.length, bytes, 0, bytes.length);
+		return bytes;
+	}
+	
+	@Test
+	public void testIdpChecksum() {
+		byte[] raw = mkData(576, 2023);
+		raw[2] = 0x01; // length: 0x0123 = 291
+		raw[3] = 0x23;
+		NetPacket packet = new NetPacket(raw);
+		IDP idp = new IDP(packet);
+		idp.updateChecksum();
+		assertEquals("idp.checksum", reference(packetBytes(packet), 2, 290), idp.getChecksum());
+		assertEquals("checksum word", idp.getChecksum(), packet.rdCardinal(0));
+		assertEquals("idp.computeChecksum", idp.getChecksum(), idp.computeChecksum());
+	}
+	
+}
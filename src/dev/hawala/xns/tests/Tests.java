@@ -83,15 +83,6 @@ public abstract class Tests {
 			
 			System.out.printf("\nraw packet payload %s\n", pexPacket.idp.packet.payloadToString());
 			
-//			pexPacket.idp.computeChecksum_A();
-//			System.out.printf("=> recomputed checksum_A: 0x%04X\n", pexPacket.idp.getChecksum());
-//			pexPacket.idp.computeChecksum_B();
-//			System.out.printf("=> recomputed checksum_B: 0x%04X\n", pexPacket.idp.getChecksum());
-//			pexPacket.idp.computeChecksum_C();
-//			System.out.printf("=> recomputed checksum_C: 0x%04X\n", pexPacket.idp.getChecksum());
-//			pexPacket.idp.computeChecksum_D();
-//			System.out.printf("=> recomputed checksum_D: 0x%04X\n", pexPacket.idp.getChecksum());
-
 			pexPacket.idp.updateChecksum();
 			System.out.printf("=> recomputed checksum: 0x%04X\n", pexPacket.idp.getChecksum());
 			